@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core.construction.graph;
+
+import org.apache.beam.runners.core.construction.graph.PipelineNode.PCollectionNode;
+
+/**
+ * Decides whether a {@link PCollectionNode} which could be fused into an {@link ExecutableStage}
+ * should be materialized instead, breaking fusion at that {@link PCollectionNode}.
+ *
+ * <p>A cost model can only add fusion breaks to those required by the structure of the pipeline. A
+ * materialized {@link PCollectionNode} is consumed by separate {@link ExecutableStage stages},
+ * which a runner may execute with a different parallelism or distribution of elements.
+ */
+public interface FusionCostModel {
+  /** A {@link FusionCostModel} which never materializes fusible {@link PCollectionNode}s. */
+  FusionCostModel STRUCTURAL = (pipeline, stageInput, candidate) -> false;
+
+  /**
+   * Returns whether {@code candidate}, produced within the stage which consumes {@code
+   * stageInput}, should be materialized even though all of its consumers could be fused into that
+   * stage.
+   */
+  boolean shouldMaterialize(
+      QueryablePipeline pipeline, PCollectionNode stageInput, PCollectionNode candidate);
+}
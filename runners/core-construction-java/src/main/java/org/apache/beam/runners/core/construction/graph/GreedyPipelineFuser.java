@@ -62,12 +62,14 @@ public class GreedyPipelineFuser {
   private static final Logger LOG = LoggerFactory.getLogger(GreedyPipelineFuser.class);
 
   private final QueryablePipeline pipeline;
+  private final FusionCostModel costModel;
   private final FusedPipeline fusedPipeline;
 
-  private GreedyPipelineFuser(Pipeline p) {
+  private GreedyPipelineFuser(Pipeline p, FusionCostModel costModel) {
     // Validate that the original pipeline is well-formed.
     PipelineValidator.validate(p);
     this.pipeline = QueryablePipeline.forPrimitivesIn(p.getComponents());
+    this.costModel = costModel;
     Set<PTransformNode> unfusedRootNodes = new LinkedHashSet<>();
     NavigableSet<CollectionConsumer> rootConsumers = new TreeSet<>();
     for (PTransformNode pTransformNode : pipeline.getRootTransforms()) {
@@ -90,7 +92,19 @@ public class GreedyPipelineFuser {
    * must be rooted at Impulse, or other runner-executed primitive transforms.
    */
   public static FusedPipeline fuse(Pipeline p) {
-    return new GreedyPipelineFuser(p).fusedPipeline;
+    return fuse(p, FusionCostModel.STRUCTURAL);
+  }
+
+  /**
+   * Fuses a {@link Pipeline} into a collection of {@link ExecutableStage ExecutableStages},
+   * additionally materializing any {@link PCollectionNode PCollections} chosen by the {@link
+   * FusionCostModel}.
+   *
+   * <p>For example, a {@link RuntimeStatisticsCostModel} built from the metrics of a previous run
+   * breaks fusion after transforms which fan out to many expensive elements.
+   */
+  public static FusedPipeline fuse(Pipeline p, FusionCostModel costModel) {
+    return new GreedyPipelineFuser(p, costModel).fusedPipeline;
   }
 
   /**
@@ -347,7 +361,8 @@ public class GreedyPipelineFuser {
         rootCollection,
         mutuallyCompatible.stream()
             .map(CollectionConsumer::consumingTransform)
-            .collect(Collectors.toSet()));
+            .collect(Collectors.toSet()),
+        costModel);
   }
 
   private static ExecutableStage sanitizeDanglingPTransformInputs(ExecutableStage stage) {
@@ -44,7 +44,8 @@ import org.slf4j.LoggerFactory;
  * state, always making them the root of {@link ExecutableStage}.
  *
  * <p>A {@link PCollectionNode} with consumers that execute in an environment other than a stage is
- * materialized, and its consumers execute in independent stages.
+ * materialized, and its consumers execute in independent stages. A {@link FusionCostModel} may
+ * additionally choose to materialize any other {@link PCollectionNode}.
  */
 @SuppressWarnings({
   "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
@@ -71,6 +72,22 @@ public class GreedyStageFuser {
       QueryablePipeline pipeline,
       PCollectionNode inputPCollection,
       Set<PTransformNode> initialNodes) {
+    return forGrpcPortRead(pipeline, inputPCollection, initialNodes, FusionCostModel.STRUCTURAL);
+  }
+
+  /**
+   * Returns an {@link ExecutableStage} where the initial {@link PTransformNode PTransform} is a
+   * Remote gRPC Port Read, reading elements from the materialized {@link PCollectionNode
+   * PCollection}, materializing any {@link PCollectionNode PCollections} chosen by the {@link
+   * FusionCostModel}.
+   *
+   * @see #forGrpcPortRead(QueryablePipeline, PCollectionNode, Set)
+   */
+  public static ExecutableStage forGrpcPortRead(
+      QueryablePipeline pipeline,
+      PCollectionNode inputPCollection,
+      Set<PTransformNode> initialNodes,
+      FusionCostModel costModel) {
     checkArgument(
         !initialNodes.isEmpty(),
         "%s must contain at least one %s.",
@@ -111,6 +128,11 @@ public class GreedyStageFuser {
       }
       PCollectionFusibility fusibility =
           canFuse(pipeline, candidate, environment, fusedCollections);
+      if (fusibility == PCollectionFusibility.FUSE
+          && costModel.shouldMaterialize(pipeline, inputPCollection, candidate)) {
+        LOG.debug("Materializing {} as chosen by {}", candidate, costModel);
+        fusibility = PCollectionFusibility.MATERIALIZE;
+      }
       switch (fusibility) {
         case MATERIALIZE:
           materializedPCollections.add(candidate);
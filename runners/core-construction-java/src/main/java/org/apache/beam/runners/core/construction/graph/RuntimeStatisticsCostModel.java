@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core.construction.graph;
+
+import static org.apache.beam.model.pipeline.v1.MetricsApi.monitoringInfoSpec;
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfo;
+import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfoSpecs;
+import org.apache.beam.runners.core.construction.graph.PipelineNode.PCollectionNode;
+import org.apache.beam.runners.core.construction.graph.PipelineNode.PTransformNode;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+
+/**
+ * A {@link FusionCostModel} which breaks fusion after transforms which fan out, based on the
+ * element counts, element sizes and execution times reported as {@link MonitoringInfo
+ * MonitoringInfos} by a previous or sample run of the same pipeline.
+ *
+ * <p>A fusible {@link PCollectionNode} is materialized when it has at least {@link
+ * #withMaxFanOut(double) maxFanOut} times as many elements as the input of its stage, and its
+ * consumers spent longer processing it than materializing it is estimated to take. Without a break,
+ * all of those elements are processed by the workers which read the few input elements of the
+ * stage. A break allows runners to redistribute them, while cheap consumers stay fused.
+ *
+ * <p>{@link PCollectionNode PCollections} and {@link PTransformNode PTransforms} are identified by
+ * the {@code PCOLLECTION} and {@code PTRANSFORM} labels of the {@link MonitoringInfo
+ * MonitoringInfos}, which must match the IDs in the pipeline being fused. Where statistics are
+ * missing, fusion is left to the structural rules.
+ */
+public class RuntimeStatisticsCostModel implements FusionCostModel {
+  /** The default fan-out at which fusion may be broken. */
+  public static final double DEFAULT_MAX_FAN_OUT = 10;
+
+  /** The default estimated time to materialize a megabyte of elements. */
+  public static final double DEFAULT_MATERIALIZATION_MSECS_PER_MEGABYTE = 10;
+
+  private static final double BYTES_PER_MEGABYTE = 1 << 20;
+
+  private static final String ELEMENT_COUNT_URN =
+      extractUrn(MonitoringInfoSpecs.Enum.ELEMENT_COUNT);
+  private static final String SAMPLED_BYTE_SIZE_URN =
+      extractUrn(MonitoringInfoSpecs.Enum.SAMPLED_BYTE_SIZE);
+  private static final String START_BUNDLE_MSECS_URN =
+      extractUrn(MonitoringInfoSpecs.Enum.START_BUNDLE_MSECS);
+  private static final String PROCESS_BUNDLE_MSECS_URN =
+      extractUrn(MonitoringInfoSpecs.Enum.PROCESS_BUNDLE_MSECS);
+  private static final String FINISH_BUNDLE_MSECS_URN =
+      extractUrn(MonitoringInfoSpecs.Enum.FINISH_BUNDLE_MSECS);
+  private static final String PCOLLECTION_LABEL = "PCOLLECTION";
+  private static final String PTRANSFORM_LABEL = "PTRANSFORM";
+
+  /**
+   * Aggregates the given {@link MonitoringInfo MonitoringInfos}, which may be reported for any
+   * number of bundles, into a {@link RuntimeStatisticsCostModel}.
+   */
+  public static RuntimeStatisticsCostModel fromMonitoringInfos(
+      Iterable<MonitoringInfo> monitoringInfos) {
+    Map<String, Long> elementCounts = new HashMap<>();
+    Map<String, Long> sampledElements = new HashMap<>();
+    Map<String, Long> sampledBytes = new HashMap<>();
+    Map<String, Long> executionMsecs = new HashMap<>();
+    for (MonitoringInfo monitoringInfo : monitoringInfos) {
+      String urn = monitoringInfo.getUrn();
+      if (ELEMENT_COUNT_URN.equals(urn)) {
+        elementCounts.merge(
+            monitoringInfo.getLabelsOrThrow(PCOLLECTION_LABEL),
+            decodeInt64(monitoringInfo.getPayload()),
+            Long::sum);
+      } else if (SAMPLED_BYTE_SIZE_URN.equals(urn)) {
+        // A distribution is encoded as its count, sum, min and max.
+        String pCollectionId = monitoringInfo.getLabelsOrThrow(PCOLLECTION_LABEL);
+        try (InputStream payload = monitoringInfo.getPayload().newInput()) {
+          sampledElements.merge(pCollectionId, VarInt.decodeLong(payload), Long::sum);
+          sampledBytes.merge(pCollectionId, VarInt.decodeLong(payload), Long::sum);
+        } catch (IOException e) {
+          throw new IllegalArgumentException("Malformed MonitoringInfo " + monitoringInfo, e);
+        }
+      } else if (START_BUNDLE_MSECS_URN.equals(urn)
+          || PROCESS_BUNDLE_MSECS_URN.equals(urn)
+          || FINISH_BUNDLE_MSECS_URN.equals(urn)) {
+        executionMsecs.merge(
+            monitoringInfo.getLabelsOrThrow(PTRANSFORM_LABEL),
+            decodeInt64(monitoringInfo.getPayload()),
+            Long::sum);
+      }
+    }
+
+    ImmutableMap.Builder<String, Double> meanByteSizes = ImmutableMap.builder();
+    for (Map.Entry<String, Long> sampled : sampledElements.entrySet()) {
+      if (sampled.getValue() > 0) {
+        meanByteSizes.put(
+            sampled.getKey(), (double) sampledBytes.get(sampled.getKey()) / sampled.getValue());
+      }
+    }
+    return new RuntimeStatisticsCostModel(
+        ImmutableMap.copyOf(elementCounts),
+        meanByteSizes.build(),
+        ImmutableMap.copyOf(executionMsecs),
+        DEFAULT_MAX_FAN_OUT,
+        DEFAULT_MATERIALIZATION_MSECS_PER_MEGABYTE);
+  }
+
+  private final Map<String, Long> elementCounts;
+  private final Map<String, Double> meanByteSizes;
+  private final Map<String, Long> executionMsecs;
+  private final double maxFanOut;
+  private final double materializationMsecsPerMegabyte;
+
+  private RuntimeStatisticsCostModel(
+      Map<String, Long> elementCounts,
+      Map<String, Double> meanByteSizes,
+      Map<String, Long> executionMsecs,
+      double maxFanOut,
+      double materializationMsecsPerMegabyte) {
+    this.elementCounts = elementCounts;
+    this.meanByteSizes = meanByteSizes;
+    this.executionMsecs = executionMsecs;
+    this.maxFanOut = maxFanOut;
+    this.materializationMsecsPerMegabyte = materializationMsecsPerMegabyte;
+  }
+
+  /**
+   * Returns a copy of this cost model which considers breaking fusion at {@link PCollectionNode
+   * PCollections} with at least {@code maxFanOut} times as many elements as the input of their
+   * stage.
+   */
+  public RuntimeStatisticsCostModel withMaxFanOut(double maxFanOut) {
+    checkArgument(maxFanOut >= 1, "Max fan-out must be at least 1, got %s", maxFanOut);
+    return new RuntimeStatisticsCostModel(
+        elementCounts, meanByteSizes, executionMsecs, maxFanOut, materializationMsecsPerMegabyte);
+  }
+
+  /**
+   * Returns a copy of this cost model which estimates that materializing a megabyte of elements
+   * takes {@code materializationMsecsPerMegabyte} milliseconds.
+   */
+  public RuntimeStatisticsCostModel withMaterializationMsecsPerMegabyte(
+      double materializationMsecsPerMegabyte) {
+    checkArgument(
+        materializationMsecsPerMegabyte >= 0,
+        "Materialization time must not be negative, got %s",
+        materializationMsecsPerMegabyte);
+    return new RuntimeStatisticsCostModel(
+        elementCounts, meanByteSizes, executionMsecs, maxFanOut, materializationMsecsPerMegabyte);
+  }
+
+  @Override
+  public boolean shouldMaterialize(
+      QueryablePipeline pipeline, PCollectionNode stageInput, PCollectionNode candidate) {
+    Long inputElements = elementCounts.get(stageInput.getId());
+    Long candidateElements = elementCounts.get(candidate.getId());
+    if (inputElements == null || candidateElements == null || inputElements == 0) {
+      return false;
+    }
+    if (candidateElements < maxFanOut * inputElements) {
+      return false;
+    }
+    long consumerMsecs = 0;
+    for (PTransformNode consumer : pipeline.getPerElementConsumers(candidate)) {
+      consumerMsecs += executionMsecs.getOrDefault(consumer.getId(), 0L);
+    }
+    double materializationMsecs =
+        candidateElements
+            * meanByteSizes.getOrDefault(candidate.getId(), 0.0)
+            / BYTES_PER_MEGABYTE
+            * materializationMsecsPerMegabyte;
+    return consumerMsecs > materializationMsecs;
+  }
+
+  private static String extractUrn(MonitoringInfoSpecs.Enum value) {
+    return value.getValueDescriptor().getOptions().getExtension(monitoringInfoSpec).getUrn();
+  }
+
+  private static long decodeInt64(ByteString payload) {
+    try {
+      return VarInt.decodeLong(payload.newInput());
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Malformed MonitoringInfo payload " + payload, e);
+    }
+  }
+}
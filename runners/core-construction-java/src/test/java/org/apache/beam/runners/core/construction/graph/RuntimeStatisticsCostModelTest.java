@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core.construction.graph;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
+import java.io.IOException;
+import java.util.Collections;
+import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfo;
+import org.apache.beam.model.pipeline.v1.RunnerApi.Coder;
+import org.apache.beam.model.pipeline.v1.RunnerApi.Components;
+import org.apache.beam.model.pipeline.v1.RunnerApi.FunctionSpec;
+import org.apache.beam.model.pipeline.v1.RunnerApi.PCollection;
+import org.apache.beam.model.pipeline.v1.RunnerApi.PTransform;
+import org.apache.beam.model.pipeline.v1.RunnerApi.ParDoPayload;
+import org.apache.beam.model.pipeline.v1.RunnerApi.Pipeline;
+import org.apache.beam.model.pipeline.v1.RunnerApi.WindowingStrategy;
+import org.apache.beam.runners.core.construction.Environments;
+import org.apache.beam.runners.core.construction.PTransformTranslation;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link RuntimeStatisticsCostModel}. */
+@RunWith(JUnit4.class)
+public class RuntimeStatisticsCostModelTest {
+  /*
+   * impulse -> .out -> read -> .out -> parDo -> .out
+   */
+  private Pipeline pipeline;
+
+  @Before
+  public void setup() {
+    Components components =
+        Components.newBuilder()
+            .putTransforms(
+                "impulse",
+                PTransform.newBuilder()
+                    .setUniqueName("Impulse")
+                    .putOutputs("output", "impulse.out")
+                    .setSpec(
+                        FunctionSpec.newBuilder()
+                            .setUrn(PTransformTranslation.IMPULSE_TRANSFORM_URN))
+                    .build())
+            .putPcollections("impulse.out", pc("impulse.out"))
+            .putTransforms("read", parDo("Read", "impulse.out", "read.out"))
+            .putPcollections("read.out", pc("read.out"))
+            .putTransforms("parDo", parDo("ParDo", "read.out", "parDo.out"))
+            .putPcollections("parDo.out", pc("parDo.out"))
+            .putEnvironments("py", Environments.createDockerEnvironment("py"))
+            .putCoders("coder", Coder.newBuilder().build())
+            .putCoders("windowCoder", Coder.newBuilder().build())
+            .putWindowingStrategies(
+                "ws", WindowingStrategy.newBuilder().setWindowCoderId("windowCoder").build())
+            .build();
+    pipeline = Pipeline.newBuilder().setComponents(components).build();
+  }
+
+  @Test
+  public void expensiveFanOutIsMaterialized() throws Exception {
+    RuntimeStatisticsCostModel costModel =
+        RuntimeStatisticsCostModel.fromMonitoringInfos(
+            ImmutableList.of(
+                elementCount("impulse.out", 1),
+                elementCount("read.out", 5_000),
+                // Reported separately by two bundles.
+                elementCount("read.out", 5_000),
+                sampledByteSize("read.out", 100, 10_000),
+                processBundleMsecs("parDo", 60_000)));
+
+    FusedPipeline fused = GreedyPipelineFuser.fuse(pipeline, costModel);
+
+    assertThat(
+        fused.getFusedStages(),
+        containsInAnyOrder(
+            ExecutableStageMatcher.withInput("impulse.out")
+                .withOutputs("read.out")
+                .withTransforms("read"),
+            ExecutableStageMatcher.withInput("read.out")
+                .withNoOutputs()
+                .withTransforms("parDo")));
+  }
+
+  @Test
+  public void cheapFanOutStaysFused() throws Exception {
+    RuntimeStatisticsCostModel costModel =
+        RuntimeStatisticsCostModel.fromMonitoringInfos(
+            ImmutableList.of(
+                elementCount("impulse.out", 1),
+                elementCount("read.out", 10_000),
+                // 10,000 elements of 1MB take far longer to materialize than to process.
+                sampledByteSize("read.out", 10, 1_000_000),
+                processBundleMsecs("parDo", 100)));
+
+    assertSingleStage(GreedyPipelineFuser.fuse(pipeline, costModel));
+  }
+
+  @Test
+  public void smallFanOutStaysFused() throws Exception {
+    RuntimeStatisticsCostModel costModel =
+        RuntimeStatisticsCostModel.fromMonitoringInfos(
+                ImmutableList.of(
+                    elementCount("impulse.out", 1_000),
+                    elementCount("read.out", 5_000),
+                    processBundleMsecs("parDo", 60_000)))
+            .withMaxFanOut(10);
+
+    assertSingleStage(GreedyPipelineFuser.fuse(pipeline, costModel));
+  }
+
+  @Test
+  public void missingStatisticsStayFused() {
+    assertSingleStage(
+        GreedyPipelineFuser.fuse(
+            pipeline, RuntimeStatisticsCostModel.fromMonitoringInfos(Collections.emptyList())));
+  }
+
+  private static void assertSingleStage(FusedPipeline fused) {
+    assertThat(
+        fused.getFusedStages(),
+        contains(
+            ExecutableStageMatcher.withInput("impulse.out")
+                .withNoOutputs()
+                .withTransforms("read", "parDo")));
+  }
+
+  private static PCollection pc(String name) {
+    return PCollection.newBuilder()
+        .setUniqueName(name)
+        .setCoderId("coder")
+        .setWindowingStrategyId("ws")
+        .build();
+  }
+
+  private static PTransform parDo(String name, String input, String output) {
+    return PTransform.newBuilder()
+        .setUniqueName(name)
+        .putInputs("input", input)
+        .putOutputs("output", output)
+        .setSpec(
+            FunctionSpec.newBuilder()
+                .setUrn(PTransformTranslation.PAR_DO_TRANSFORM_URN)
+                .setPayload(
+                    ParDoPayload.newBuilder()
+                        .setDoFn(FunctionSpec.newBuilder())
+                        .build()
+                        .toByteString()))
+        .setEnvironmentId("py")
+        .build();
+  }
+
+  private static MonitoringInfo elementCount(String pCollection, long count) throws IOException {
+    return MonitoringInfo.newBuilder()
+        .setUrn("beam:metric:element_count:v1")
+        .setType("beam:metrics:sum_int64:v1")
+        .putLabels("PCOLLECTION", pCollection)
+        .setPayload(encode(count))
+        .build();
+  }
+
+  private static MonitoringInfo sampledByteSize(String pCollection, long count, long meanSize)
+      throws IOException {
+    return MonitoringInfo.newBuilder()
+        .setUrn("beam:metric:sampled_byte_size:v1")
+        .setType("beam:metrics:distribution_int64:v1")
+        .putLabels("PCOLLECTION", pCollection)
+        .setPayload(encode(count, count * meanSize, meanSize, meanSize))
+        .build();
+  }
+
+  private static MonitoringInfo processBundleMsecs(String pTransform, long msecs)
+      throws IOException {
+    return MonitoringInfo.newBuilder()
+        .setUrn("beam:metric:pardo_execution_time:process_bundle_msecs:v1")
+        .setType("beam:metrics:sum_int64:v1")
+        .putLabels("PTRANSFORM", pTransform)
+        .setPayload(encode(msecs))
+        .build();
+  }
+
+  private static ByteString encode(long... values) throws IOException {
+    ByteString.Output output = ByteString.newOutput();
+    for (long value : values) {
+      VarInt.encode(value, output);
+    }
+    return output.toByteString();
+  }
+}
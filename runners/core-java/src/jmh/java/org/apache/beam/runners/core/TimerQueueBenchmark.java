@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core;
+
+import java.util.Random;
+import java.util.function.Supplier;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks comparing the {@link TimerQueue} implementations used by {@link
+ * InMemoryTimerInternals}, setting, resetting and firing many event time timers across many keys.
+ *
+ * <p>Specify {@code -Pbenchmark=TimerQueueBenchmark} to run only these benchmarks.
+ */
+public class TimerQueueBenchmark {
+
+  /** The timers to set, spread randomly over an hour of event time. */
+  @State(Scope.Benchmark)
+  public static class Timers {
+    @Param({"ordered", "timingWheel"})
+    public String queue;
+
+    @Param({"1000", "100000", "1000000"})
+    public int numTimers;
+
+    Supplier<TimerQueue> queueFactory;
+    TimerData[] timers;
+    TimerData[] resetTimers;
+
+    @Setup
+    public void setup() {
+      queueFactory = "ordered".equals(queue) ? TimerQueue::ordered : TimerQueue::timingWheel;
+      Random random = new Random(numTimers);
+      timers = new TimerData[numTimers];
+      resetTimers = new TimerData[numTimers];
+      for (int i = 0; i < numTimers; ++i) {
+        StateNamespace namespace = new StateNamespaceForTest("key" + i);
+        Instant timestamp = new Instant(random.nextInt(3_600_000));
+        timers[i] = TimerData.of("timer", namespace, timestamp, timestamp, TimeDomain.EVENT_TIME);
+        Instant resetTimestamp = timestamp.plus(random.nextInt(60_000));
+        resetTimers[i] =
+            TimerData.of("timer", namespace, resetTimestamp, resetTimestamp, TimeDomain.EVENT_TIME);
+      }
+    }
+  }
+
+  /** Sets all timers and fires them with a single jump of the watermark. */
+  @Benchmark
+  public void setAndFireAll(Timers state, Blackhole blackhole) throws Exception {
+    InMemoryTimerInternals timerInternals = new InMemoryTimerInternals(state.queueFactory);
+    for (TimerData timer : state.timers) {
+      timerInternals.setTimer(timer);
+    }
+    timerInternals.advanceInputWatermark(BoundedWindow.TIMESTAMP_MAX_VALUE);
+    fireEligibleTimers(timerInternals, blackhole);
+  }
+
+  /** Sets all timers, moves each of them once, and fires them as the watermark advances. */
+  @Benchmark
+  public void setResetAndFireIncrementally(Timers state, Blackhole blackhole) throws Exception {
+    InMemoryTimerInternals timerInternals = new InMemoryTimerInternals(state.queueFactory);
+    for (TimerData timer : state.timers) {
+      timerInternals.setTimer(timer);
+    }
+    for (TimerData timer : state.resetTimers) {
+      timerInternals.setTimer(timer);
+    }
+    for (long watermark = 0; timerInternals.hasPendingTimers(); watermark += 1_000) {
+      timerInternals.advanceInputWatermark(new Instant(watermark));
+      fireEligibleTimers(timerInternals, blackhole);
+    }
+  }
+
+  private static void fireEligibleTimers(
+      InMemoryTimerInternals timerInternals, Blackhole blackhole) {
+    TimerData timer;
+    while ((timer = timerInternals.removeNextEventTimer()) != null) {
+      blackhole.consume(timer);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import org.apache.beam.runners.core.metrics.ExecutionStateTracker.ExecutionState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of the overhead of {@link ExecutionStateTracker#enterState} on the execution thread,
+ * with and without a sampler concurrently sampling the tracked threads.
+ *
+ * <p>Specify {@code -Pbenchmark=ExecutionStateTrackerBenchmark} to run only these benchmarks.
+ * Running with several JMH threads ({@code -t}) also tracks several execution threads at once.
+ * Allocation rates can be reported by additionally passing {@code -prof gc} to JMH.
+ */
+public class ExecutionStateTrackerBenchmark {
+
+  /** An execution state which does no work when sampled. */
+  private static class NoopExecutionState extends ExecutionState {
+    NoopExecutionState(String stateName) {
+      super(stateName);
+    }
+
+    @Override
+    public void takeSample(long millisSinceLastSample) {}
+
+    @Override
+    public void reportLull(Thread trackedThread, long millis) {}
+  }
+
+  /** A sampler shared by all benchmark threads, which is optionally sampling in the background. */
+  @State(Scope.Benchmark)
+  public static class SamplerState {
+    @Param({"false", "true"})
+    public boolean sampling;
+
+    ExecutionStateSampler sampler;
+
+    @Setup
+    public void setup() {
+      sampler = ExecutionStateSampler.newForTest();
+      if (sampling) {
+        sampler.start();
+      }
+    }
+
+    @TearDown
+    public void tearDown() {
+      sampler.stop();
+    }
+  }
+
+  /** A tracker which tracks the benchmark thread. */
+  @State(Scope.Thread)
+  public static class TrackerState {
+    final ExecutionState start = new NoopExecutionState(ExecutionStateTracker.START_STATE_NAME);
+    final ExecutionState process = new NoopExecutionState(ExecutionStateTracker.PROCESS_STATE_NAME);
+    final ExecutionState finish = new NoopExecutionState(ExecutionStateTracker.FINISH_STATE_NAME);
+
+    ExecutionStateTracker tracker;
+    Closeable activation;
+
+    @Setup
+    public void setup(SamplerState samplerState) {
+      tracker = new ExecutionStateTracker(samplerState.sampler);
+      activation = tracker.activate();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+      activation.close();
+    }
+  }
+
+  /** Enters and exits a single state. */
+  @Benchmark
+  public long enterState(TrackerState state) throws IOException {
+    try (Closeable process = state.tracker.enterState(state.process)) {
+      return state.tracker.getNumTransitions();
+    }
+  }
+
+  /** Enters and exits a chain of nested states, as when consuming within a fused stage. */
+  @Benchmark
+  public long enterNestedStates(TrackerState state) throws IOException {
+    ExecutionStateTracker tracker = state.tracker;
+    try (Closeable start = tracker.enterState(state.start);
+        Closeable process = tracker.enterState(state.process);
+        Closeable finish = tracker.enterState(state.finish)) {
+      return tracker.getNumTransitions();
+    }
+  }
+}
@@ -21,9 +21,7 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
 
-import java.util.NavigableSet;
-import java.util.NoSuchElementException;
-import java.util.TreeSet;
+import java.util.function.Supplier;
 import org.apache.beam.sdk.state.TimeDomain;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.util.WindowTracing;
@@ -33,7 +31,13 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Table;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Instant;
 
-/** {@link TimerInternals} with all watermarks and processing clock simulated in-memory. */
+/**
+ * {@link TimerInternals} with all watermarks and processing clock simulated in-memory.
+ *
+ * <p>Pending timers are held in a {@link TimerQueue} per time domain. By default these are {@link
+ * TimerQueue#ordered() ordered} queues; runners which hold very large numbers of timers may
+ * instead use {@link TimerQueue#timingWheel() timing wheels}.
+ */
 @SuppressWarnings({
   "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
 })
@@ -43,13 +47,13 @@ public class InMemoryTimerInternals implements TimerInternals {
   Table<StateNamespace, String, TimerData> existingTimers = HashBasedTable.create();
 
   /** Pending input watermark timers, in timestamp order. */
-  private final NavigableSet<TimerData> watermarkTimers = new TreeSet<>();
+  private final TimerQueue watermarkTimers;
 
   /** Pending processing time timers, in timestamp order. */
-  private final NavigableSet<TimerData> processingTimers = new TreeSet<>();
+  private final TimerQueue processingTimers;
 
   /** Pending synchronized processing time timers, in timestamp order. */
-  private final NavigableSet<TimerData> synchronizedProcessingTimers = new TreeSet<>();
+  private final TimerQueue synchronizedProcessingTimers;
 
   /** Current input watermark. */
   private Instant inputWatermarkTime = BoundedWindow.TIMESTAMP_MIN_VALUE;
@@ -66,6 +70,17 @@ public class InMemoryTimerInternals implements TimerInternals {
   /** Class.getSimpleName() cached to avoid allocations for tracing. */
   private static final String SIMPLE_NAME = InMemoryTimerInternals.class.getSimpleName();
 
+  public InMemoryTimerInternals() {
+    this(TimerQueue::ordered);
+  }
+
+  /** Creates timer internals which hold the pending timers of each time domain in a new queue. */
+  public InMemoryTimerInternals(Supplier<TimerQueue> timerQueueFactory) {
+    this.watermarkTimers = timerQueueFactory.get();
+    this.processingTimers = timerQueueFactory.get();
+    this.synchronizedProcessingTimers = timerQueueFactory.get();
+  }
+
   @Override
   public @Nullable Instant currentOutputWatermarkTime() {
     return outputWatermarkTime;
@@ -81,23 +96,11 @@ public class InMemoryTimerInternals implements TimerInternals {
    * timers scheduled in that time domain.
    */
   public @Nullable Instant getNextTimer(TimeDomain domain) {
-    try {
-      switch (domain) {
-        case EVENT_TIME:
-          return watermarkTimers.first().getTimestamp();
-        case PROCESSING_TIME:
-          return processingTimers.first().getTimestamp();
-        case SYNCHRONIZED_PROCESSING_TIME:
-          return synchronizedProcessingTimers.first().getTimestamp();
-        default:
-          throw new IllegalArgumentException("Unexpected time domain: " + domain);
-      }
-    } catch (NoSuchElementException exc) {
-      return null;
-    }
+    TimerData timer = timersForDomain(domain).peek();
+    return timer == null ? null : timer.getTimestamp();
   }
 
-  private NavigableSet<TimerData> timersForDomain(TimeDomain domain) {
+  private TimerQueue timersForDomain(TimeDomain domain) {
     switch (domain) {
       case EVENT_TIME:
         return watermarkTimers;
@@ -144,7 +147,7 @@ public class InMemoryTimerInternals implements TimerInternals {
           existing.getDomain());
 
       if (!timerData.getTimestamp().equals(existing.getTimestamp())) {
-        NavigableSet<TimerData> timers = timersForDomain(timerData.getDomain());
+        TimerQueue timers = timersForDomain(timerData.getDomain());
         timers.remove(existing);
         timers.add(timerData);
         existingTimers.put(timerData.getNamespace(), colKey, timerData);
@@ -311,10 +314,11 @@ public class InMemoryTimerInternals implements TimerInternals {
   }
 
   private @Nullable TimerData removeNextTimer(Instant currentTime, TimeDomain domain) {
-    NavigableSet<TimerData> timers = timersForDomain(domain);
+    TimerQueue timers = timersForDomain(domain);
 
-    if (!timers.isEmpty() && currentTime.isAfter(timers.first().getTimestamp())) {
-      TimerData timer = timers.pollFirst();
+    TimerData next = timers.peek();
+    if (next != null && currentTime.isAfter(next.getTimestamp())) {
+      TimerData timer = timers.poll();
       existingTimers.remove(
           timer.getNamespace(), timer.getTimerId() + '+' + timer.getTimerFamilyId());
       return timer;
@@ -22,6 +22,7 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -33,6 +34,8 @@ import org.apache.beam.sdk.coders.MapCoder;
 import org.apache.beam.sdk.coders.SetCoder;
 import org.apache.beam.sdk.state.ValueState;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.sdk.transforms.windowing.Sessions;
 import org.apache.beam.sdk.transforms.windowing.WindowFn;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
@@ -55,10 +58,12 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
   private final Map<W, Set<W>> activeWindowToStateAddressWindows;
 
   /**
-   * Deep clone of {@link #activeWindowToStateAddressWindows} as of last commit. Used to avoid
-   * writing to state if no changes have been made during the work unit.
+   * Whether an ACTIVE window has been added, removed or had its state address windows changed since
+   * {@link #activeWindowToStateAddressWindows} was read. Used to avoid writing to state if no
+   * changes have been made during the work unit. NEW windows are never persisted, so adding or
+   * removing them does not count as a change.
    */
-  private final Map<W, Set<W>> originalActiveWindowToStateAddressWindows;
+  private boolean modified;
 
   /** Handle representing our state in the backend. */
   private final ValueState<Map<W, Set<W>>> valueState;
@@ -74,7 +79,6 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
     // Little use trying to prefetch this state since the ReduceFnRunner
     // is stymied until it is available.
     activeWindowToStateAddressWindows = emptyIfNull(valueState.read());
-    originalActiveWindowToStateAddressWindows = deepCopy(activeWindowToStateAddressWindows);
   }
 
   @Override
@@ -92,13 +96,12 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
       valueState.clear();
       return;
     }
-    if (activeWindowToStateAddressWindows.equals(originalActiveWindowToStateAddressWindows)) {
+    if (!modified) {
       // No change.
       return;
     }
     valueState.write(activeWindowToStateAddressWindows);
-    // No need to update originalActiveWindowToStateAddressWindows since this object is about to
-    // become garbage.
+    // No need to reset modified since this object is about to become garbage.
   }
 
   @Override
@@ -135,6 +138,7 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
     if (stateAddressWindows.isEmpty()) {
       // Window was NEW, make it ACTIVE with itself as its state address window.
       stateAddressWindows.add(window);
+      modified = true;
     }
   }
 
@@ -146,6 +150,7 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
       Set<W> stateAddressWindows = new LinkedHashSet<>();
       stateAddressWindows.add(window);
       activeWindowToStateAddressWindows.put(window, stateAddressWindows);
+      modified = true;
     }
   }
 
@@ -153,12 +158,16 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
   public void addActiveForTesting(W window, Iterable<W> stateAddressWindows) {
     if (!activeWindowToStateAddressWindows.containsKey(window)) {
       activeWindowToStateAddressWindows.put(window, Sets.newLinkedHashSet(stateAddressWindows));
+      modified = true;
     }
   }
 
   @Override
   public void remove(W window) {
-    activeWindowToStateAddressWindows.remove(window);
+    Set<W> stateAddressWindows = activeWindowToStateAddressWindows.remove(window);
+    if (stateAddressWindows != null && !stateAddressWindows.isEmpty()) {
+      modified = true;
+    }
   }
 
   private class MergeContextImpl extends WindowFn<Object, W>.MergeContext {
@@ -166,10 +175,12 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
     private final List<Collection<W>> allToBeMerged;
     private final List<W> allMergeResults;
     private final Set<W> seen;
+    private final Collection<W> windows;
 
-    public MergeContextImpl(MergeCallback<W> mergeCallback) {
+    public MergeContextImpl(MergeCallback<W> mergeCallback, Collection<W> windows) {
       windowFn.super();
       this.mergeCallback = mergeCallback;
+      this.windows = windows;
       allToBeMerged = new ArrayList<>();
       allMergeResults = new ArrayList<>();
       seen = new HashSet<>();
@@ -177,7 +188,7 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
 
     @Override
     public Collection<W> windows() {
-      return activeWindowToStateAddressWindows.keySet();
+      return windows;
     }
 
     @Override
@@ -220,7 +231,7 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
 
   @Override
   public void merge(MergeCallback<W> mergeCallback) throws Exception {
-    MergeContextImpl context = new MergeContextImpl(mergeCallback);
+    MergeContextImpl context = new MergeContextImpl(mergeCallback, windowsToMerge());
 
     // See what the window function does with the NEW and already ACTIVE windows.
     // Entering userland.
@@ -230,6 +241,80 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
     context.recordMerges();
   }
 
+  /**
+   * Returns the ACTIVE and NEW windows which should be presented to {@link WindowFn#mergeWindows}.
+   *
+   * <p>{@link Sessions} merges all overlapping windows, so the ACTIVE windows it leaves behind are
+   * pairwise disjoint. Any merge must then include a NEW window, and every ACTIVE window taking
+   * part in a merge overlaps one of the NEW windows. For {@link Sessions} only those windows are
+   * presented, so that a key with thousands of ACTIVE sessions does not sort and scan all of them
+   * on every work unit. The ACTIVE windows are matched against the sorted spans of the NEW windows
+   * with a binary search. Other {@link WindowFn WindowFns} are presented with all windows.
+   */
+  private Collection<W> windowsToMerge() {
+    if (windowFn.getClass() != Sessions.class) {
+      return activeWindowToStateAddressWindows.keySet();
+    }
+    List<IntervalWindow> newWindows = new ArrayList<>();
+    for (Map.Entry<W, Set<W>> entry : activeWindowToStateAddressWindows.entrySet()) {
+      if (entry.getValue().isEmpty()) {
+        newWindows.add((IntervalWindow) entry.getKey());
+      }
+    }
+    if (newWindows.isEmpty()) {
+      return Collections.emptyList();
+    }
+    if (newWindows.size() == activeWindowToStateAddressWindows.size()) {
+      return activeWindowToStateAddressWindows.keySet();
+    }
+    List<IntervalWindow> newSpans = disjointSpans(newWindows);
+    List<W> windows = new ArrayList<>();
+    for (Map.Entry<W, Set<W>> entry : activeWindowToStateAddressWindows.entrySet()) {
+      if (entry.getValue().isEmpty()
+          || intersectsAny(newSpans, (IntervalWindow) entry.getKey())) {
+        windows.add(entry.getKey());
+      }
+    }
+    return windows;
+  }
+
+  /** Returns the sorted spans of the groups of overlapping {@code windows}. */
+  private static List<IntervalWindow> disjointSpans(List<IntervalWindow> windows) {
+    Collections.sort(windows);
+    List<IntervalWindow> spans = new ArrayList<>();
+    IntervalWindow current = windows.get(0);
+    for (int i = 1; i < windows.size(); i++) {
+      IntervalWindow window = windows.get(i);
+      if (current.intersects(window)) {
+        current = current.span(window);
+      } else {
+        spans.add(current);
+        current = window;
+      }
+    }
+    spans.add(current);
+    return spans;
+  }
+
+  /** Returns whether {@code window} intersects any of the sorted, disjoint {@code spans}. */
+  private static boolean intersectsAny(List<IntervalWindow> spans, IntervalWindow window) {
+    // Find the last span starting before the end of window. Since the spans are disjoint it is
+    // also the one reaching furthest, so only it can intersect window.
+    int low = 0;
+    int high = spans.size() - 1;
+    int candidate = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (spans.get(mid).start().isBefore(window.end())) {
+        candidate = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return candidate >= 0 && spans.get(candidate).intersects(window);
+  }
+
   /**
    * A {@link WindowFn#mergeWindows} call has determined that {@code toBeMerged} (which must all be
    * ACTIVE}) should be considered equivalent to {@code activeWindow} (which is either a member of
@@ -269,6 +354,7 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
     }
 
     activeWindowToStateAddressWindows.put(mergeResult, newStateAddressWindows);
+    modified = true;
 
     merged(mergeResult);
   }
@@ -278,9 +364,13 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
     // Take just the first state address window.
     Set<W> stateAddressWindows = activeWindowToStateAddressWindows.get(window);
     checkState(stateAddressWindows != null, "Window %s is not ACTIVE", window);
+    if (stateAddressWindows.size() <= 1) {
+      return;
+    }
     W first = Iterables.getFirst(stateAddressWindows, null);
     stateAddressWindows.clear();
     stateAddressWindows.add(first);
+    modified = true;
   }
 
   /**
@@ -399,13 +489,4 @@ public class MergingActiveWindowSet<W extends BoundedWindow> implements ActiveWi
       return multimap;
     }
   }
-
-  /** Return a deep copy of {@code multimap}. */
-  private static <W> Map<W, Set<W>> deepCopy(Map<W, Set<W>> multimap) {
-    Map<W, Set<W>> newMultimap = new HashMap<>();
-    for (Map.Entry<W, Set<W>> entry : multimap.entrySet()) {
-      newMultimap.put(entry.getKey(), new LinkedHashSet<>(entry.getValue()));
-    }
-    return newMultimap;
-  }
 }
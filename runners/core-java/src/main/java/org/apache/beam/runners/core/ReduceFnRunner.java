@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -355,9 +356,11 @@ public class ReduceFnRunner<K, InputT, OutputT, W extends BoundedWindow> {
           mergedWindow, contextFactory.base(mergedWindow, StateStyle.DIRECT).state());
     }
 
-    // Process each element, using the updated activeWindows determined by mergeWindows.
-    for (WindowedValue<InputT> value : values) {
-      processElement(windowToMergeResult, value);
+    // Process the elements window by window, using the updated activeWindows determined by
+    // mergeWindows.
+    for (Map.Entry<W, List<WindowedValue<InputT>>> windowAndValues :
+        valuesByMergedWindow(windowToMergeResult, values).entrySet()) {
+      processElementsInWindow(windowAndValues.getKey(), windowAndValues.getValue());
     }
 
     // Filter to windows that are firing.
@@ -567,24 +570,38 @@ public class ReduceFnRunner<K, InputT, OutputT, W extends BoundedWindow> {
   }
 
   /**
-   * Process an element.
+   * Group the elements by each of the (mergeResultWindow) windows they belong to, preserving the
+   * order of the elements within each window.
    *
    * @param windowToMergeResult map of windows to merged windows. If a window is not present it is
    *     unmerged.
-   * @param value the value being processed
    */
-  private void processElement(Map<W, W> windowToMergeResult, WindowedValue<InputT> value)
-      throws Exception {
-    ImmutableSet<W> windows = toMergedWindows(windowToMergeResult, value.getWindows());
+  private Map<W, List<WindowedValue<InputT>>> valuesByMergedWindow(
+      Map<W, W> windowToMergeResult, Iterable<WindowedValue<InputT>> values) {
+    Map<W, List<WindowedValue<InputT>>> valuesByWindow = new LinkedHashMap<>();
+    for (WindowedValue<InputT> value : values) {
+      for (W window : toMergedWindows(windowToMergeResult, value.getWindows())) {
+        valuesByWindow.computeIfAbsent(window, unused -> new ArrayList<>()).add(value);
+      }
+    }
+    return valuesByWindow;
+  }
 
-    // Process the element for each (mergeResultWindow, not closed) window it belongs to.
-    for (W window : windows) {
-      ReduceFn<K, InputT, OutputT, W>.ProcessValueContext directContext =
-          contextFactory.forValue(
-              window, value.getValue(), value.getTimestamp(), StateStyle.DIRECT);
-      if (triggerRunner.isClosed(directContext.state())) {
-        // This window has already been closed.
-        droppedDueToClosedWindow.inc();
+  /**
+   * Process the elements which belong to the given (mergeResultWindow) window.
+   *
+   * <p>This is equivalent to processing each element in turn, but the per-window work of checking
+   * whether the window is closed, recording pane content, scheduling the garbage collection timer,
+   * adding watermark holds and persisting trigger state is done once for all of the elements.
+   */
+  private void processElementsInWindow(W window, List<WindowedValue<InputT>> values)
+      throws Exception {
+    ReduceFn<K, InputT, OutputT, W>.Context directContext =
+        contextFactory.base(window, StateStyle.DIRECT);
+    if (triggerRunner.isClosed(directContext.state())) {
+      // This window has already been closed.
+      droppedDueToClosedWindow.inc(values.size());
+      for (WindowedValue<InputT> value : values) {
         WindowTracing.debug(
             "ReduceFnRunner.processElement: Dropping element at {} for key:{}; window:{} "
                 + "since window is no longer active at inputWatermark:{}; outputWatermark:{}",
@@ -593,37 +610,42 @@ public class ReduceFnRunner<K, InputT, OutputT, W extends BoundedWindow> {
             window,
             timerInternals.currentInputWatermarkTime(),
             timerInternals.currentOutputWatermarkTime());
-        continue;
       }
+      return;
+    }
+
+    activeWindows.ensureWindowIsActive(window);
+    ReduceFn<K, InputT, OutputT, W>.Context renamedContext =
+        contextFactory.base(window, StateStyle.RENAMED);
+
+    nonEmptyPanes.recordContent(renamedContext.state());
+    scheduleGarbageCollectionTimer(directContext);
+
+    List<Instant> timestamps = new ArrayList<>(values.size());
+    for (WindowedValue<InputT> value : values) {
+      timestamps.add(value.getTimestamp());
+    }
+
+    // Hold back progress of the output watermark until we have processed the pane these
+    // elements will be included within. If an element is later than the output watermark, the
+    // hold will be at GC time.
+    watermarkHold.addHolds(renamedContext, timestamps);
 
-      activeWindows.ensureWindowIsActive(window);
-      ReduceFn<K, InputT, OutputT, W>.ProcessValueContext renamedContext =
+    // Execute the reduceFn, which will buffer the values as appropriate
+    for (WindowedValue<InputT> value : values) {
+      reduceFn.processValue(
           contextFactory.forValue(
-              window, value.getValue(), value.getTimestamp(), StateStyle.RENAMED);
-
-      nonEmptyPanes.recordContent(renamedContext.state());
-      scheduleGarbageCollectionTimer(directContext);
-
-      // Hold back progress of the output watermark until we have processed the pane this
-      // element will be included within. If the element is later than the output watermark, the
-      // hold will be at GC time.
-      watermarkHold.addHolds(renamedContext);
-
-      // Execute the reduceFn, which will buffer the value as appropriate
-      reduceFn.processValue(renamedContext);
-
-      // Run the trigger to update its state
-      triggerRunner.processValue(
-          directContext.window(),
-          directContext.timestamp(),
-          directContext.timers(),
-          directContext.state());
-
-      // At this point, if triggerRunner.shouldFire before the processValue then
-      // triggerRunner.shouldFire after the processValue. In other words adding values
-      // cannot take a trigger state from firing to non-firing.
-      // (We don't actually assert this since it is too slow.)
+              window, value.getValue(), value.getTimestamp(), StateStyle.RENAMED));
     }
+
+    // Run the trigger to update its state
+    triggerRunner.processValues(
+        directContext.window(), timestamps, directContext.timers(), directContext.state());
+
+    // At this point, if triggerRunner.shouldFire before the processValues then
+    // triggerRunner.shouldFire after the processValues. In other words adding values
+    // cannot take a trigger state from firing to non-firing.
+    // (We don't actually assert this since it is too slow.)
   }
 
   /** A descriptor of the activation for a window based on a timer. */
@@ -679,6 +701,40 @@ public class ReduceFnRunner<K, InputT, OutputT, W extends BoundedWindow> {
     }
   }
 
+  /**
+   * Begins prefetching the state that {@link #onTimers} first reads for the windows of the given
+   * timers, without reading it. State backends that batch reads can then fetch it together with
+   * the state read by {@link #processElements}, rather than in a separate round trip once the
+   * timers are processed. Calling this is optional and does not change the result of {@link
+   * #onTimers}.
+   */
+  public void prefetchOnTimers(Iterable<TimerData> timers) {
+    Set<W> windows = new HashSet<>();
+    for (TimerData timer : timers) {
+      if (!(timer.getNamespace() instanceof WindowNamespace)) {
+        // onTimers will reject this timer.
+        continue;
+      }
+      @SuppressWarnings("unchecked")
+      WindowNamespace<W> windowNamespace = (WindowNamespace<W>) timer.getNamespace();
+      W window = windowNamespace.getWindow();
+      if ((TimeDomain.EVENT_TIME != timer.getDomain() && windowIsExpired(window))
+          || !windows.add(window)) {
+        continue;
+      }
+
+      WindowActivation windowActivation =
+          new WindowActivation(
+              contextFactory.base(window, StateStyle.DIRECT),
+              contextFactory.base(window, StateStyle.RENAMED));
+      if (windowActivation.isGarbageCollection) {
+        triggerRunner.prefetchIsClosed(windowActivation.directContext.state());
+      } else {
+        triggerRunner.prefetchShouldFire(window, windowActivation.directContext.state());
+      }
+    }
+  }
+
   public void onTimers(Iterable<TimerData> timers) throws Exception {
     if (!timers.iterator().hasNext()) {
       return;
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core;
+
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A queue of pending {@link TimerData timers} for a single time domain, ordered by {@link
+ * TimerData#compareTo}.
+ *
+ * <p>Used by {@link InMemoryTimerInternals} to hold the timers that have been set but not yet
+ * fired. Implementations are not thread safe.
+ */
+public interface TimerQueue {
+
+  /** Returns a queue backed by a balanced tree, with logarithmic cost for every operation. */
+  static TimerQueue ordered() {
+    return new TreeSetTimerQueue();
+  }
+
+  /**
+   * Returns a queue backed by a hierarchical timing wheel, with constant amortized cost to add,
+   * remove and fire timers independent of the number of pending timers.
+   *
+   * <p>Prefer this queue when holding very large numbers of timers.
+   */
+  static TimerQueue timingWheel() {
+    return new TimingWheelTimerQueue();
+  }
+
+  /** Adds the given timer, returning {@code false} if it was already present. */
+  boolean add(TimerData timer);
+
+  /** Removes the given timer, returning {@code false} if it was not present. */
+  boolean remove(TimerData timer);
+
+  /** Returns the earliest timer without removing it, or {@code null} if the queue is empty. */
+  @Nullable
+  TimerData peek();
+
+  /** Removes and returns the earliest timer, or {@code null} if the queue is empty. */
+  @Nullable
+  TimerData poll();
+
+  /** Returns the number of timers in this queue. */
+  int size();
+
+  default boolean isEmpty() {
+    return size() == 0;
+  }
+}
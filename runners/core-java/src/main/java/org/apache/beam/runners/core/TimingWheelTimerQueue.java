@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link TimerQueue} backed by a hierarchical timing wheel with millisecond resolution.
+ *
+ * <p>Timers are bucketed relative to a cursor which never exceeds the earliest pending timer. A
+ * timer is placed on the level of the most significant {@link #SLOT_BITS}-bit digit in which its
+ * timestamp differs from the cursor, in the slot given by that digit. Every timer on a lower level
+ * is therefore earlier than every timer on a higher level, and on the lowest level each slot holds
+ * the timers of a single millisecond. Adding and removing a timer only touches its bucket and a
+ * per-level occupancy bitmap.
+ *
+ * <p>When the lowest level is exhausted, the cursor advances to the earliest occupied slot of the
+ * next non-empty level and the whole bucket is redistributed onto the lower levels. Each timer is
+ * redistributed at most once per level, so a large advance of the watermark fires timers in bulk
+ * without touching any timers which are not yet eligible.
+ *
+ * <p>Timers set before the cursor, which only happens for timers set behind the latest fired
+ * timer, are kept in a separate sorted set which is always drained first.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
+})
+class TimingWheelTimerQueue implements TimerQueue {
+
+  @VisibleForTesting static final int SLOT_BITS = 6;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+
+  /** The buckets of each level, created on first use. */
+  private final Bucket[][] wheel = new Bucket[LEVELS][SLOTS];
+
+  /** A bitmap per level of the slots which contain timers. */
+  private final long[] occupiedSlots = new long[LEVELS];
+
+  /** Timers which are earlier than the cursor. */
+  private final Bucket overdue = new Bucket(-1, -1, new TreeSet<>());
+
+  /** The bucket containing each pending timer. */
+  private final Map<TimerData, Bucket> buckets = new HashMap<>();
+
+  /**
+   * The position of the wheel, as an unsigned {@link #key}. All timers in the wheel are at or
+   * after the cursor.
+   */
+  private long cursor = 0;
+
+  /** The earliest pending timer, or {@code null} if it needs to be recomputed. */
+  private @Nullable TimerData earliest = null;
+
+  @Override
+  public boolean add(TimerData timer) {
+    if (buckets.containsKey(timer)) {
+      return false;
+    }
+    long key = key(timer);
+    if (buckets.isEmpty()) {
+      // Nothing is pending, so reposition the wheel to keep the timer out of the overdue set.
+      cursor = key;
+    }
+    Bucket bucket = Long.compareUnsigned(key, cursor) < 0 ? overdue : bucketFor(key);
+    bucket.timers.add(timer);
+    buckets.put(timer, bucket);
+    if (earliest != null && timer.compareTo(earliest) < 0) {
+      earliest = timer;
+    } else if (buckets.size() == 1) {
+      earliest = timer;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean remove(TimerData timer) {
+    Bucket bucket = buckets.remove(timer);
+    if (bucket == null) {
+      return false;
+    }
+    bucket.timers.remove(timer);
+    if (bucket.timers.isEmpty() && bucket != overdue) {
+      occupiedSlots[bucket.level] &= ~(1L << bucket.slot);
+    }
+    if (timer.equals(earliest)) {
+      earliest = null;
+    }
+    return true;
+  }
+
+  @Override
+  public @Nullable TimerData peek() {
+    if (earliest == null && !buckets.isEmpty()) {
+      earliest = findEarliest();
+    }
+    return earliest;
+  }
+
+  @Override
+  public @Nullable TimerData poll() {
+    if (buckets.isEmpty()) {
+      return null;
+    }
+    TimerData timer;
+    if (!overdue.timers.isEmpty()) {
+      timer = ((NavigableSet<TimerData>) overdue.timers).first();
+    } else {
+      advance();
+      Bucket bucket = wheel[0][Long.numberOfTrailingZeros(occupiedSlots[0])];
+      timer = ((NavigableSet<TimerData>) bucket.timers).first();
+    }
+    remove(timer);
+    return timer;
+  }
+
+  @Override
+  public int size() {
+    return buckets.size();
+  }
+
+  @Override
+  public String toString() {
+    return new TreeSet<>(buckets.keySet()).toString();
+  }
+
+  /** Returns the earliest pending timer without moving the wheel. */
+  private TimerData findEarliest() {
+    if (!overdue.timers.isEmpty()) {
+      return ((NavigableSet<TimerData>) overdue.timers).first();
+    }
+    int level = lowestOccupiedLevel();
+    Bucket bucket = wheel[level][Long.numberOfTrailingZeros(occupiedSlots[level])];
+    if (level == 0) {
+      return ((NavigableSet<TimerData>) bucket.timers).first();
+    }
+    return Collections.min(bucket.timers);
+  }
+
+  /**
+   * Moves the cursor forward until the lowest level contains the earliest timer of the wheel,
+   * redistributing the buckets it passes onto the lower levels.
+   */
+  private void advance() {
+    while (occupiedSlots[0] == 0) {
+      int level = lowestOccupiedLevel();
+      int slot = Long.numberOfTrailingZeros(occupiedSlots[level]);
+      int shift = level * SLOT_BITS;
+      long higherDigits =
+          shift + SLOT_BITS >= Long.SIZE ? 0 : cursor & (-1L << (shift + SLOT_BITS));
+      cursor = higherDigits | ((long) slot << shift);
+
+      Bucket bucket = wheel[level][slot];
+      occupiedSlots[level] &= ~(1L << slot);
+      List<TimerData> timers = new ArrayList<>(bucket.timers);
+      bucket.timers.clear();
+      for (TimerData timer : timers) {
+        Bucket target = bucketFor(key(timer));
+        target.timers.add(timer);
+        buckets.put(timer, target);
+      }
+    }
+  }
+
+  private int lowestOccupiedLevel() {
+    for (int level = 0; level < LEVELS; ++level) {
+      if (occupiedSlots[level] != 0) {
+        return level;
+      }
+    }
+    throw new IllegalStateException("Timing wheel is empty.");
+  }
+
+  /** Returns the bucket for a key at or after the cursor, marking its slot as occupied. */
+  private Bucket bucketFor(long key) {
+    long difference = key ^ cursor;
+    int level =
+        difference == 0 ? 0 : (Long.SIZE - 1 - Long.numberOfLeadingZeros(difference)) / SLOT_BITS;
+    int slot = (int) (key >>> (level * SLOT_BITS)) & (SLOTS - 1);
+    Bucket bucket = wheel[level][slot];
+    if (bucket == null) {
+      // Timers on the lowest level share a timestamp, but must still fire in TimerData order.
+      bucket = new Bucket(level, slot, level == 0 ? new TreeSet<>() : new HashSet<>());
+      wheel[level][slot] = bucket;
+    }
+    occupiedSlots[level] |= 1L << slot;
+    return bucket;
+  }
+
+  /** Maps the timestamp of a timer to a key whose unsigned ordering matches timestamp ordering. */
+  private static long key(TimerData timer) {
+    return timer.getTimestamp().getMillis() ^ Long.MIN_VALUE;
+  }
+
+  private static class Bucket {
+    private final int level;
+    private final int slot;
+    private final Set<TimerData> timers;
+
+    private Bucket(int level, int slot, Set<TimerData> timers) {
+      this.level = level;
+      this.slot = slot;
+      this.timers = timers;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core;
+
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/** A {@link TimerQueue} backed by a {@link TreeSet}. */
+class TreeSetTimerQueue implements TimerQueue {
+
+  private final NavigableSet<TimerData> timers = new TreeSet<>();
+
+  @Override
+  public boolean add(TimerData timer) {
+    return timers.add(timer);
+  }
+
+  @Override
+  public boolean remove(TimerData timer) {
+    return timers.remove(timer);
+  }
+
+  @Override
+  public @Nullable TimerData peek() {
+    return timers.isEmpty() ? null : timers.first();
+  }
+
+  @Override
+  public @Nullable TimerData poll() {
+    return timers.pollFirst();
+  }
+
+  @Override
+  public int size() {
+    return timers.size();
+  }
+
+  @Override
+  public String toString() {
+    return timers.toString();
+  }
+}
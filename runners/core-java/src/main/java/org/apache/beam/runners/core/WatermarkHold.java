@@ -108,6 +108,34 @@ class WatermarkHold<W extends BoundedWindow> implements Serializable {
     return hold;
   }
 
+  /**
+   * Add holds for elements with the given timestamps which are all in the window of {@code
+   * context}. This is equivalent to calling {@link #addHolds(ReduceFn.ProcessValueContext)} for
+   * each of the elements, but combines their element holds so that at most one element hold and
+   * one garbage collection hold is added to state.
+   */
+  public void addHolds(ReduceFn<?, ?, ?, W>.Context context, Iterable<Instant> timestamps) {
+    TimestampCombiner timestampCombiner = windowingStrategy.getTimestampCombiner();
+    @Nullable Instant combinedElementHold = null;
+    boolean anyTooLate = false;
+    for (Instant timestamp : timestamps) {
+      Instant elementHold = elementHoldIfOnTime(timestamp, context);
+      if (elementHold == null) {
+        anyTooLate = true;
+      } else if (combinedElementHold == null) {
+        combinedElementHold = elementHold;
+      } else {
+        combinedElementHold = timestampCombiner.combine(combinedElementHold, elementHold);
+      }
+    }
+    if (combinedElementHold != null) {
+      context.state().access(elementHoldTag).add(combinedElementHold);
+    }
+    if (anyTooLate) {
+      addGarbageCollectionHold(context, false /*paneIsEmpty*/);
+    }
+  }
+
   /**
    * Return {@code timestamp}, possibly shifted forward in time according to the window strategy's
    * output time function.
@@ -151,6 +179,19 @@ class WatermarkHold<W extends BoundedWindow> implements Serializable {
    */
   private @Nullable Instant addElementHold(
       Instant timestamp, ReduceFn<?, ?, ?, W>.Context context) {
+    Instant elementHold = elementHoldIfOnTime(timestamp, context);
+    if (elementHold != null) {
+      context.state().access(elementHoldTag).add(elementHold);
+    }
+    return elementHold;
+  }
+
+  /**
+   * Return the element hold for an element with the given {@code timestamp}, or {@literal null} if
+   * it is too late to add one, see {@link #addElementHold}.
+   */
+  private @Nullable Instant elementHoldIfOnTime(
+      Instant timestamp, ReduceFn<?, ?, ?, W>.Context context) {
     // Give the window function a chance to move the hold timestamp forward to encourage progress.
     // (A later hold implies less impediment to the output watermark making progress, which in
     // turn encourages end-of-window triggers to fire earlier in following computations.)
@@ -176,7 +217,6 @@ class WatermarkHold<W extends BoundedWindow> implements Serializable {
           !elementHold.isAfter(BoundedWindow.TIMESTAMP_MAX_VALUE),
           "Element hold %s is beyond end-of-time",
           elementHold);
-      context.state().access(elementHoldTag).add(elementHold);
     }
     WindowTracing.trace(
         "WatermarkHold.addHolds: element hold at {} is {} for "
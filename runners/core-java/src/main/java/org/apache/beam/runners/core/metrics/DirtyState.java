@@ -50,13 +50,41 @@ public class DirtyState implements Serializable {
 
   private final AtomicReference<State> dirty = new AtomicReference<>(State.DIRTY);
 
+  /** Invoked whenever a {@code CLEAN} metric is modified, see {@link #setOnDirty}. */
+  private transient @Nullable Runnable onDirty;
+
+  /**
+   * Registers a callback to invoke whenever the metric transitions from clean to dirty. This
+   * allows a container to keep track of its dirty metrics rather than visiting all of them.
+   */
+  void setOnDirty(@Nullable Runnable onDirty) {
+    this.onDirty = onDirty;
+  }
+
+  /** Returns whether the metric is {@code CLEAN}, that is unchanged since the last commit. */
+  boolean isClean() {
+    return dirty.get() == State.CLEAN;
+  }
+
+  /** Returns whether a commit of the metric is in progress and it is unchanged since. */
+  boolean isCommitting() {
+    return dirty.get() == State.COMMITTING;
+  }
+
   /**
    * Indicate that changes have been made to the metric being tracked by this {@link DirtyState}.
    *
    * <p>Should be called <b>after</b> modification of the value.
    */
   public void afterModification() {
-    dirty.set(State.DIRTY);
+    // Metrics are usually modified repeatedly between commits, so avoid contending on writes to
+    // the state once it is already dirty.
+    if (dirty.get() != State.DIRTY && dirty.getAndSet(State.DIRTY) == State.CLEAN) {
+      Runnable onDirty = this.onDirty;
+      if (onDirty != null) {
+        onDirty.run();
+      }
+    }
   }
 
   /**
@@ -88,9 +116,12 @@ public class DirtyState implements Serializable {
    * Mark any changes up to the most recently call to {@link #beforeCommit()}} as committed. The
    * next call to {@link #beforeCommit()} will return {@code false} unless there have been changes
    * made since the previous call to {@link #beforeCommit()}.
+   *
+   * @return {@code true} if the metric is now clean, or {@code false} if it was modified since the
+   *     previous call to {@link #beforeCommit()}.
    */
-  public void afterCommit() {
-    dirty.compareAndSet(State.COMMITTING, State.CLEAN);
+  public boolean afterCommit() {
+    return dirty.compareAndSet(State.COMMITTING, State.CLEAN);
   }
 
   @Override
@@ -20,7 +20,7 @@ package org.apache.beam.runners.core.metrics;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.Closeable;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -28,19 +28,50 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import javax.annotation.concurrent.GuardedBy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.DateTimeUtils.MillisProvider;
 
-/** Monitors the execution of one or more execution threads. */
+/**
+ * Monitors the execution of one or more execution threads.
+ *
+ * <p>Active trackers are registered in a ring of slots which is only ever appended to, so that
+ * registering and unregistering a tracker does not block on the sampling thread or on the
+ * registration of trackers for other execution threads. Each tracker remembers its slot, which
+ * the sampling thread checks while holding the tracker's lock so that a tracker is never sampled
+ * after it has been removed.
+ */
 public class ExecutionStateSampler {
 
-  // We use a synchronized data structure (as opposed to a concurrent one) since synchronization
-  // is necessary to prevent races between tracker removal and the sampling thread iteration.
-  @GuardedBy("this")
-  private final HashSet<ExecutionStateTracker> activeTrackers = new HashSet<>();
+  /** The number of slots in each segment of the ring, as a power of two. */
+  private static final int SEGMENT_BITS = 6;
+
+  private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+  /**
+   * The largest fraction of the sampling period that a sampling pass may take before the period is
+   * lengthened, as a divisor.
+   */
+  private static final long MAX_OVERHEAD_DIVISOR = 20;
+
+  /** The factor by which the configured sampling period may be lengthened at most. */
+  private static final long MAX_PERIOD_MULTIPLIER = 10;
+
+  /** A fixed size segment of tracker slots. Segments never move once they have been created. */
+  private static class Segment extends AtomicReferenceArray<ExecutionStateTracker> {
+    Segment() {
+      super(SEGMENT_SIZE);
+    }
+  }
+
+  /** The segments of the ring of slots, replaced (but never shrunk) whenever the ring grows. */
+  private volatile Segment[] segments = new Segment[] {new Segment()};
+
+  /** Where the next search for a free slot starts. */
+  private final AtomicInteger nextFreeSlot = new AtomicInteger();
 
   private static final MillisProvider SYSTEM_MILLIS_PROVIDER = System::currentTimeMillis;
 
@@ -120,9 +151,12 @@ public class ExecutionStateSampler {
                   }
                 } else {
                   // Call doSampling if more than PERIOD_MS have passed.
+                  long passStartNanos = System.nanoTime();
                   doSampling(currentTimeMillis - lastSampleTimeMillis);
+                  long passNanos = System.nanoTime() - passStartNanos;
                   lastSampleTimeMillis = currentTimeMillis;
-                  targetTimeMillis = lastSampleTimeMillis + periodMs;
+                  targetTimeMillis =
+                      lastSampleTimeMillis + adaptivePeriodMillis(periodMs, passNanos);
                 }
               }
               return null;
@@ -149,23 +183,66 @@ public class ExecutionStateSampler {
     }
   }
 
-  /** Add the tracker to the sampling set. */
-  synchronized void addTracker(ExecutionStateTracker tracker) {
-    this.activeTrackers.add(tracker);
+  /**
+   * Returns the sampling period to use after a sampling pass which took {@code passNanos}.
+   *
+   * <p>Sampling many trackers can take a noticeable amount of time, so the period is lengthened
+   * to keep the sampling overhead bounded. Since each pass attributes the actual time elapsed since
+   * the previous pass, a longer period only reduces the resolution of the samples.
+   */
+  @VisibleForTesting
+  static long adaptivePeriodMillis(long periodMs, long passNanos) {
+    long overheadBoundMillis = TimeUnit.NANOSECONDS.toMillis(passNanos * MAX_OVERHEAD_DIVISOR);
+    return Math.max(periodMs, Math.min(overheadBoundMillis, periodMs * MAX_PERIOD_MULTIPLIER));
   }
 
-  /** Remove the tracker from the sampling set. */
+  /**
+   * Add the tracker to the sampling set. Must be called while holding the lock of the tracker.
+   */
+  void addTracker(ExecutionStateTracker tracker) {
+    while (true) {
+      Segment[] currentSegments = segments;
+      int capacity = currentSegments.length << SEGMENT_BITS;
+      int start = Math.floorMod(nextFreeSlot.get(), capacity);
+      for (int i = 0; i < capacity; i++) {
+        int slot = (start + i) % capacity;
+        if (currentSegments[slot >>> SEGMENT_BITS].compareAndSet(
+            slot & (SEGMENT_SIZE - 1), null, tracker)) {
+          tracker.samplerSlot = slot;
+          nextFreeSlot.set(slot + 1);
+          return;
+        }
+      }
+      grow(currentSegments);
+    }
+  }
+
+  /** Appends a segment to the ring unless another thread has already done so. */
+  private synchronized void grow(Segment[] fullSegments) {
+    if (segments == fullSegments) {
+      Segment[] grown = Arrays.copyOf(fullSegments, fullSegments.length + 1);
+      grown[fullSegments.length] = new Segment();
+      segments = grown;
+    }
+  }
+
+  /**
+   * Remove the tracker from the sampling set. Must be called while holding the lock of the
+   * tracker.
+   */
   void removeTracker(ExecutionStateTracker tracker) {
-    synchronized (this) {
-      activeTrackers.remove(tracker);
+    int slot = tracker.samplerSlot;
+    if (slot >= 0) {
+      segments[slot >>> SEGMENT_BITS].compareAndSet(slot & (SEGMENT_SIZE - 1), tracker, null);
+      tracker.samplerSlot = -1;
     }
 
     // Attribute any remaining time since the last sampling while removing the tracker.
     //
     // There is a race condition here; if sampling happens in the time between when we remove the
-    // tracker from activeTrackers and read the lastSampleTicks value, the sampling time will
-    // be lost for the tracker being removed. This is acceptable as sampling is already an
-    // approximation of actual execution time.
+    // tracker from its slot and read the lastSampleTicks value, the sampling time will be lost for
+    // the tracker being removed. This is acceptable as sampling is already an approximation of
+    // actual execution time.
     long millisSinceLastSample = clock.getMillis() - this.lastSampleTimeMillis;
     if (millisSinceLastSample > 0) {
       tracker.takeSample(millisSinceLastSample);
@@ -174,9 +251,22 @@ public class ExecutionStateSampler {
 
   /** Attributing sampling time to trackers. */
   @VisibleForTesting
-  public synchronized void doSampling(long millisSinceLastSample) {
-    for (ExecutionStateTracker tracker : activeTrackers) {
-      tracker.takeSample(millisSinceLastSample);
+  public void doSampling(long millisSinceLastSample) {
+    Segment[] currentSegments = segments;
+    for (int i = 0; i < currentSegments.length; i++) {
+      Segment segment = currentSegments[i];
+      for (int j = 0; j < SEGMENT_SIZE; j++) {
+        ExecutionStateTracker tracker = segment.get(j);
+        if (tracker != null) {
+          tracker.takeSampleIfInSlot((i << SEGMENT_BITS) | j, millisSinceLastSample);
+        }
+      }
     }
   }
+
+  /** Returns the number of slots available to trackers without growing the ring. */
+  @VisibleForTesting
+  int getSlotCapacity() {
+    return segments.length << SEGMENT_BITS;
+  }
 }
@@ -21,6 +21,7 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.Closeable;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -136,6 +137,22 @@ public class ExecutionStateTracker implements Comparable<ExecutionStateTracker>
   private long transitionsAtLastSample = 0;
   private long nextLullReportMs = LULL_REPORT_MS;
 
+  /**
+   * The slot of this tracker within the {@link ExecutionStateSampler}, or {@code -1} if it is not
+   * registered with the sampler. Guarded by the lock of this tracker.
+   */
+  int samplerSlot = -1;
+
+  /**
+   * The {@link Closeable Closeables} returned by {@link #enterState}, indexed by the depth of the
+   * state they exit. They are reused since states are always exited in the reverse order in which
+   * they were entered. Only accessed by the execution thread.
+   */
+  private StateTransition[] transitions = new StateTransition[8];
+
+  /** The number of states that have been entered but not yet exited. */
+  private int depth = 0;
+
   public ExecutionStateTracker(ExecutionStateSampler sampler) {
     this.sampler = sampler;
   }
@@ -151,6 +168,7 @@ public class ExecutionStateTracker implements Comparable<ExecutionStateTracker>
     millisSinceLastTransition = 0;
     transitionsAtLastSample = 0;
     nextLullReportMs = LULL_REPORT_MS;
+    depth = 0;
   }
 
   @VisibleForTesting
@@ -260,13 +278,38 @@ public class ExecutionStateTracker implements Comparable<ExecutionStateTracker>
     currentState = newState;
     newState.onActivate(true);
     incTransitions();
-    return () -> {
+    if (depth == transitions.length) {
+      transitions = Arrays.copyOf(transitions, depth * 2);
+    }
+    StateTransition transition = transitions[depth];
+    if (transition == null) {
+      transition = new StateTransition(depth);
+      transitions[depth] = transition;
+    }
+    transition.previous = previous;
+    depth++;
+    return transition;
+  }
+
+  /** Returns the execution thread to {@link #previous} when closed. */
+  private class StateTransition implements Closeable {
+    private final int depth;
+    private @Nullable ExecutionState previous;
+
+    private StateTransition(int depth) {
+      this.depth = depth;
+    }
+
+    @Override
+    public void close() {
+      ExecutionState previous = this.previous;
       currentState = previous;
       incTransitions();
+      ExecutionStateTracker.this.depth = depth;
       if (previous != null) {
         previous.onActivate(false);
       }
-    };
+    }
   }
 
   @SuppressWarnings("NonAtomicVolatileUpdate")
@@ -298,6 +341,16 @@ public class ExecutionStateTracker implements Comparable<ExecutionStateTracker>
     return nextLullReportMs;
   }
 
+  /**
+   * Takes a sample if this tracker is still registered in the given slot of the sampler. Called
+   * by the sampling thread, which may have observed the slot before this tracker was removed.
+   */
+  synchronized void takeSampleIfInSlot(int slot, long millisSinceLastSample) {
+    if (samplerSlot == slot) {
+      takeSample(millisSinceLastSample);
+    }
+  }
+
   protected void takeSample(long millisSinceLastSample) {
     // These variables are read by Sampler thread, and written by Execution and Progress Reporting
     // threads.
@@ -27,14 +27,21 @@ import static org.apache.beam.runners.core.metrics.MonitoringInfoEncodings.encod
 import static org.apache.beam.runners.core.metrics.MonitoringInfoEncodings.encodeInt64Distribution;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfo;
 import org.apache.beam.runners.core.metrics.MetricUpdates.MetricUpdate;
@@ -49,6 +56,7 @@ import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableSet;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +73,13 @@ import org.slf4j.LoggerFactory;
  *
  * <p>For consistency, all threads that update metrics should finish before getting the final
  * cumulative values/updates.
+ *
+ * <p>The container keeps track of which counters, distributions and gauges have been modified since
+ * updates were last committed, so extracting updates only visits those cells. The number of cells
+ * for metrics named by a {@link MonitoringInfoMetricName}, such as those with per-request labels
+ * created by {@link LabeledMetrics}, is bounded per metric type. Once the bound is reached, updates
+ * to new labeled metrics are aggregated into an overflow cell per URN, see {@link
+ * #setMaxMonitoringInfoMetricCells}.
  */
 @SuppressWarnings({
   "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
@@ -72,16 +87,45 @@ import org.slf4j.LoggerFactory;
 public class MetricsContainerImpl implements Serializable, MetricsContainer {
   private static final Logger LOG = LoggerFactory.getLogger(MetricsContainerImpl.class);
 
+  /** The label value used for labels which are dropped from overflowing metric names. */
+  @VisibleForTesting static final String OVERFLOW_LABEL_VALUE = "overflow";
+
+  /** Labels which are kept by overflow cells, so that they are still attributed to a step. */
+  private static final Set<String> OVERFLOW_PRESERVED_LABELS =
+      ImmutableSet.of(
+          MonitoringInfoConstants.Labels.PTRANSFORM, MonitoringInfoConstants.Labels.PCOLLECTION);
+
+  // The maximum can be changed with setMaxMonitoringInfoMetricCells and applies to containers
+  // created afterwards.
+  private static volatile int defaultMaxMonitoringInfoMetricCells = 10_000;
+
   protected final @Nullable String stepName;
 
   private final boolean isProcessWide;
 
-  private MetricsMap<MetricName, CounterCell> counters = new MetricsMap<>(CounterCell::new);
+  private final int maxMonitoringInfoMetricCells = defaultMaxMonitoringInfoMetricCells;
+
+  private volatile boolean loggedOverflow = false;
+
+  // The cells which may have been modified since updates were last committed. These are rebuilt
+  // from the cells when deserializing.
+  private transient Queue<Entry<MetricName, CounterCell>> dirtyCounters =
+      new ConcurrentLinkedQueue<>();
+
+  private transient Queue<Entry<MetricName, DistributionCell>> dirtyDistributions =
+      new ConcurrentLinkedQueue<>();
+
+  private transient Queue<Entry<MetricName, GaugeCell>> dirtyGauges =
+      new ConcurrentLinkedQueue<>();
+
+  private MetricsMap<MetricName, CounterCell> counters =
+      new MetricsMap<>(name -> trackDirty(name, new CounterCell(name), dirtyCounters));
 
   private MetricsMap<MetricName, DistributionCell> distributions =
-      new MetricsMap<>(DistributionCell::new);
+      new MetricsMap<>(name -> trackDirty(name, new DistributionCell(name), dirtyDistributions));
 
-  private MetricsMap<MetricName, GaugeCell> gauges = new MetricsMap<>(GaugeCell::new);
+  private MetricsMap<MetricName, GaugeCell> gauges =
+      new MetricsMap<>(name -> trackDirty(name, new GaugeCell(name), dirtyGauges));
 
   private MetricsMap<KV<MetricName, HistogramData.BucketType>, HistogramCell> histograms =
       new MetricsMap<>(HistogramCell::new);
@@ -107,6 +151,80 @@ public class MetricsContainerImpl implements Serializable, MetricsContainer {
     return new MetricsContainerImpl(null, true);
   }
 
+  /**
+   * Set the maximum number of cells per metric type for metrics named by a {@link
+   * MonitoringInfoMetricName} in containers created afterwards. Beyond this, updates are aggregated
+   * into an overflow cell which keeps the URN and the {@code PTRANSFORM} and {@code PCOLLECTION}
+   * labels, and has all other label values replaced by {@code "overflow"}.
+   */
+  public static void setMaxMonitoringInfoMetricCells(int maxCells) {
+    defaultMaxMonitoringInfoMetricCells = maxCells;
+  }
+
+  /**
+   * Registers {@code cell} to be added to {@code dirtyCells} whenever it becomes dirty, and adds it
+   * immediately if it is dirty already, as newly created cells are.
+   */
+  private static <CellT extends MetricCell<?>> CellT trackDirty(
+      MetricName name, CellT cell, Queue<Entry<MetricName, CellT>> dirtyCells) {
+    Entry<MetricName, CellT> entry = new SimpleImmutableEntry<>(name, cell);
+    cell.getDirty().setOnDirty(() -> dirtyCells.add(entry));
+    if (!cell.getDirty().isClean()) {
+      dirtyCells.add(entry);
+    }
+    return cell;
+  }
+
+  private static <CellT extends MetricCell<?>> Queue<Entry<MetricName, CellT>> trackDirty(
+      MetricsMap<MetricName, CellT> cells) {
+    Queue<Entry<MetricName, CellT>> dirtyCells = new ConcurrentLinkedQueue<>();
+    for (Entry<MetricName, CellT> cell : cells.entries()) {
+      trackDirty(cell.getKey(), cell.getValue(), dirtyCells);
+    }
+    return dirtyCells;
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    dirtyCounters = trackDirty(counters);
+    dirtyDistributions = trackDirty(distributions);
+    dirtyGauges = trackDirty(gauges);
+  }
+
+  /**
+   * Returns the name of the cell to use for a new metric named {@code metricName}, which is an
+   * overflow cell if the bound on labeled metric cells has been reached.
+   */
+  private MetricName boundCardinality(MetricName metricName, MetricsMap<MetricName, ?> cells) {
+    if (!(metricName instanceof MonitoringInfoMetricName)
+        || cells.size() < maxMonitoringInfoMetricCells) {
+      return metricName;
+    }
+    if (!loggedOverflow) {
+      loggedOverflow = true;
+      LOG.warn(
+          "More than {} cells per metric type in the metrics container for step {}, aggregating "
+              + "updates to new labeled metrics such as {} into overflow cells.",
+          maxMonitoringInfoMetricCells,
+          stepName,
+          metricName);
+    }
+    return overflowName((MonitoringInfoMetricName) metricName);
+  }
+
+  @VisibleForTesting
+  static MonitoringInfoMetricName overflowName(MonitoringInfoMetricName metricName) {
+    Map<String, String> labels = new HashMap<>();
+    for (Entry<String, String> label : metricName.getLabels().entrySet()) {
+      labels.put(
+          label.getKey(),
+          OVERFLOW_PRESERVED_LABELS.contains(label.getKey())
+              ? label.getValue()
+              : OVERFLOW_LABEL_VALUE);
+    }
+    return MonitoringInfoMetricName.named(metricName.getUrn(), labels);
+  }
+
   @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
       justification = "No bug",
       value = "SE_BAD_FIELD")
@@ -135,7 +253,8 @@ public class MetricsContainerImpl implements Serializable, MetricsContainer {
    */
   @Override
   public CounterCell getCounter(MetricName metricName) {
-    return counters.get(metricName);
+    CounterCell cell = counters.tryGet(metricName);
+    return cell != null ? cell : counters.get(boundCardinality(metricName, counters));
   }
 
   /**
@@ -152,7 +271,8 @@ public class MetricsContainerImpl implements Serializable, MetricsContainer {
    */
   @Override
   public DistributionCell getDistribution(MetricName metricName) {
-    return distributions.get(metricName);
+    DistributionCell cell = distributions.tryGet(metricName);
+    return cell != null ? cell : distributions.get(boundCardinality(metricName, distributions));
   }
 
   /**
@@ -187,7 +307,8 @@ public class MetricsContainerImpl implements Serializable, MetricsContainer {
    */
   @Override
   public GaugeCell getGauge(MetricName metricName) {
-    return gauges.get(metricName);
+    GaugeCell cell = gauges.tryGet(metricName);
+    return cell != null ? cell : gauges.get(boundCardinality(metricName, gauges));
   }
 
   /**
@@ -198,9 +319,10 @@ public class MetricsContainerImpl implements Serializable, MetricsContainer {
   }
 
   private <UpdateT, CellT extends MetricCell<UpdateT>>
-      ImmutableList<MetricUpdate<UpdateT>> extractUpdates(MetricsMap<MetricName, CellT> cells) {
+      ImmutableList<MetricUpdate<UpdateT>> extractUpdates(
+          Queue<Entry<MetricName, CellT>> dirtyCells) {
     ImmutableList.Builder<MetricUpdate<UpdateT>> updates = ImmutableList.builder();
-    for (Map.Entry<MetricName, CellT> cell : cells.entries()) {
+    for (Map.Entry<MetricName, CellT> cell : dirtyCells) {
       if (cell.getValue().getDirty().beforeCommit()) {
         updates.add(
             MetricUpdate.create(
@@ -216,7 +338,9 @@ public class MetricsContainerImpl implements Serializable, MetricsContainer {
    */
   public MetricUpdates getUpdates() {
     return MetricUpdates.create(
-        extractUpdates(counters), extractUpdates(distributions), extractUpdates(gauges));
+        extractUpdates(dirtyCounters),
+        extractUpdates(dirtyDistributions),
+        extractUpdates(dirtyGauges));
   }
 
   /** @return The MonitoringInfo metadata from the metric. */
@@ -355,9 +479,20 @@ public class MetricsContainerImpl implements Serializable, MetricsContainer {
     return shortId.orElse(null);
   }
 
-  private void commitUpdates(MetricsMap<MetricName, ? extends MetricCell<?>> cells) {
-    for (MetricCell<?> cell : cells.values()) {
-      cell.getDirty().afterCommit();
+  private <CellT extends MetricCell<?>> void commitUpdates(
+      Queue<Entry<MetricName, CellT>> dirtyCells) {
+    Iterator<Entry<MetricName, CellT>> iterator = dirtyCells.iterator();
+    while (iterator.hasNext()) {
+      Entry<MetricName, CellT> cell = iterator.next();
+      DirtyState dirty = cell.getValue().getDirty();
+      if (dirty.isCommitting()) {
+        // Stop tracking the cell before it becomes clean, so that it is tracked again once it is
+        // modified. If it was modified since the updates were extracted, it is still dirty.
+        iterator.remove();
+        if (!dirty.afterCommit()) {
+          dirtyCells.add(cell);
+        }
+      }
     }
   }
 
@@ -366,9 +501,9 @@ public class MetricsContainerImpl implements Serializable, MetricsContainer {
    * committed.
    */
   public void commitUpdates() {
-    commitUpdates(counters);
-    commitUpdates(distributions);
-    commitUpdates(gauges);
+    commitUpdates(dirtyCounters);
+    commitUpdates(dirtyDistributions);
+    commitUpdates(dirtyGauges);
   }
 
   private <UserT extends Metric, UpdateT, CellT extends MetricCell<UpdateT>>
@@ -22,7 +22,6 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.MoreObjects;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -52,12 +51,14 @@ public class MetricsMap<K, T> implements Serializable {
     this.factory = factory;
   }
 
-  /** Get or create the value associated with the given key. */
+  /**
+   * Get or create the value associated with the given key. The factory is invoked at most once per
+   * key, so values may register themselves elsewhere when created.
+   */
   public T get(K key) {
     T metric = metrics.get(key);
     if (metric == null) {
-      metric = factory.createInstance(key);
-      metric = MoreObjects.firstNonNull(metrics.putIfAbsent(key, metric), metric);
+      metric = metrics.computeIfAbsent(key, factory::createInstance);
     }
     return metric;
   }
@@ -72,6 +73,11 @@ public class MetricsMap<K, T> implements Serializable {
     return Iterables.unmodifiableIterable(metrics.entrySet());
   }
 
+  /** Return the number of entries in the current {@link MetricsMap}. */
+  public int size() {
+    return metrics.size();
+  }
+
   /** Return an iterable over the values in the current {@link MetricsMap}. */
   public Iterable<T> values() {
     return Iterables.unmodifiableIterable(metrics.values());
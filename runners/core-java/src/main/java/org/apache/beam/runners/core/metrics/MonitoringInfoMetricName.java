@@ -41,6 +41,12 @@ public class MonitoringInfoMetricName extends MetricName {
   private String urn;
   private Map<String, String> labels = new HashMap<String, String>();
 
+  /**
+   * The cached hash code, or {@code 0} if it has not been computed yet. Names are used as map keys
+   * for every metric update, so avoid hashing all labels each time.
+   */
+  private transient int hashCode;
+
   private MonitoringInfoMetricName(String urn, Map<String, String> labels) {
     checkArgument(!Strings.isNullOrEmpty(urn), "MonitoringInfoMetricName urn must be non-empty");
     checkArgument(labels != null, "MonitoringInfoMetricName labels must be non-null");
@@ -98,7 +104,12 @@ public class MonitoringInfoMetricName extends MetricName {
   @Override
   public int hashCode() {
     // Don't include name and namespace, since they are lazily set.
-    return Objects.hash(urn, labels);
+    int hash = hashCode;
+    if (hash == 0) {
+      hash = Objects.hash(urn, labels);
+      hashCode = hash;
+    }
+    return hash;
   }
 
   @Override
@@ -63,6 +63,7 @@ public class TriggerStateMachineRunner<W extends BoundedWindow> {
 
   private final ExecutableTriggerStateMachine rootTrigger;
   private final TriggerStateMachineContextFactory<W> contextFactory;
+  private final boolean isFinishedSetNeeded;
 
   public TriggerStateMachineRunner(
       ExecutableTriggerStateMachine rootTrigger,
@@ -70,6 +71,9 @@ public class TriggerStateMachineRunner<W extends BoundedWindow> {
     checkState(rootTrigger.getTriggerIndex() == 0);
     this.rootTrigger = rootTrigger;
     this.contextFactory = contextFactory;
+    // TODO: If we know that no trigger in the tree will ever finish, we don't need to do the
+    // lookup. Right now, we special case this for the DefaultTrigger.
+    this.isFinishedSetNeeded = !(rootTrigger.getSpec() instanceof DefaultTriggerStateMachine);
   }
 
   private FinishedTriggersBitSet readFinishedBits(ValueState<BitSet> state) {
@@ -118,12 +122,34 @@ public class TriggerStateMachineRunner<W extends BoundedWindow> {
   /** Run the trigger logic to deal with a new value. */
   public void processValue(W window, Instant timestamp, Timers timers, StateAccessor<?> state)
       throws Exception {
+    ValueState<BitSet> finishedSetState = state.access(FINISHED_BITS_TAG);
+    FinishedTriggersBitSet original = readFinishedBits(finishedSetState);
     // Clone so that we can detect changes and so that changes here don't pollute merging.
-    FinishedTriggersBitSet finishedSet = readFinishedBits(state.access(FINISHED_BITS_TAG)).copy();
+    FinishedTriggersBitSet finishedSet = original.copy();
     TriggerStateMachine.OnElementContext triggerContext =
         contextFactory.createOnElementContext(window, timers, timestamp, rootTrigger, finishedSet);
     rootTrigger.invokeOnElement(triggerContext);
-    persistFinishedSet(state, finishedSet);
+    persistFinishedSet(finishedSetState, original, finishedSet);
+  }
+
+  /**
+   * Run the trigger logic to deal with new values with the given timestamps, all in the same
+   * window. This is equivalent to calling {@link #processValue} for each of the timestamps, but
+   * reads and persists the finished bits only once for the whole batch.
+   */
+  public void processValues(
+      W window, Iterable<Instant> timestamps, Timers timers, StateAccessor<?> state)
+      throws Exception {
+    ValueState<BitSet> finishedSetState = state.access(FINISHED_BITS_TAG);
+    FinishedTriggersBitSet original = readFinishedBits(finishedSetState);
+    // Clone so that we can detect changes and so that changes here don't pollute merging.
+    FinishedTriggersBitSet finishedSet = original.copy();
+    for (Instant timestamp : timestamps) {
+      rootTrigger.invokeOnElement(
+          contextFactory.createOnElementContext(
+              window, timers, timestamp, rootTrigger, finishedSet));
+    }
+    persistFinishedSet(finishedSetState, original, finishedSet);
   }
 
   public void prefetchForMerge(
@@ -139,8 +165,9 @@ public class TriggerStateMachineRunner<W extends BoundedWindow> {
 
   /** Run the trigger merging logic as part of executing the specified merge. */
   public void onMerge(W window, Timers timers, MergingStateAccessor<?, W> state) throws Exception {
+    ValueState<BitSet> finishedSetState = state.access(FINISHED_BITS_TAG);
     // Clone so that we can detect changes and so that changes here don't pollute merging.
-    FinishedTriggersBitSet finishedSet = readFinishedBits(state.access(FINISHED_BITS_TAG)).copy();
+    FinishedTriggersBitSet finishedSet = readFinishedBits(finishedSetState).copy();
 
     // And read the finished bits in each merging window.
     ImmutableMap.Builder<W, FinishedTriggers> builder = ImmutableMap.builder();
@@ -160,7 +187,9 @@ public class TriggerStateMachineRunner<W extends BoundedWindow> {
     // Run the merge from the trigger
     rootTrigger.invokeOnMerge(mergeContext);
 
-    persistFinishedSet(state, finishedSet);
+    // The merge result may be one of the merging windows, whose finished bits were cleared above,
+    // so always persist them.
+    persistFinishedSet(finishedSetState, null, finishedSet);
   }
 
   public boolean shouldFire(W window, Timers timers, StateAccessor<?> state) throws Exception {
@@ -173,21 +202,33 @@ public class TriggerStateMachineRunner<W extends BoundedWindow> {
   public void onFire(W window, Timers timers, StateAccessor<?> state) throws Exception {
     // shouldFire should be false.
     // However it is too expensive to assert.
-    FinishedTriggersBitSet finishedSet = readFinishedBits(state.access(FINISHED_BITS_TAG)).copy();
+    ValueState<BitSet> finishedSetState = state.access(FINISHED_BITS_TAG);
+    FinishedTriggersBitSet original = readFinishedBits(finishedSetState);
+    FinishedTriggersBitSet finishedSet = original.copy();
     TriggerStateMachine.TriggerContext context =
         contextFactory.base(window, timers, rootTrigger, finishedSet);
     rootTrigger.invokeOnFire(context);
-    persistFinishedSet(state, finishedSet);
+    persistFinishedSet(finishedSetState, original, finishedSet);
   }
 
+  /**
+   * Persists {@code modifiedFinishedSet} if it differs from {@code originalFinishedSet}, the bits
+   * which were read from {@code finishedSetState} before running the trigger, or unconditionally
+   * if {@code originalFinishedSet} is null.
+   *
+   * <p>Most invocations of a trigger do not finish any subtriggers, so skipping the write avoids a
+   * state mutation per element and window.
+   */
   private void persistFinishedSet(
-      StateAccessor<?> state, FinishedTriggersBitSet modifiedFinishedSet) {
+      ValueState<BitSet> finishedSetState,
+      @Nullable FinishedTriggersBitSet originalFinishedSet,
+      FinishedTriggersBitSet modifiedFinishedSet) {
     if (!isFinishedSetNeeded()) {
       return;
     }
 
-    ValueState<BitSet> finishedSetState = state.access(FINISHED_BITS_TAG);
-    if (!readFinishedBits(finishedSetState).equals(modifiedFinishedSet)) {
+    if (originalFinishedSet == null
+        || !originalFinishedSet.getBitSet().equals(modifiedFinishedSet.getBitSet())) {
       if (modifiedFinishedSet.getBitSet().isEmpty()) {
         finishedSetState.clear();
       } else {
@@ -212,8 +253,6 @@ public class TriggerStateMachineRunner<W extends BoundedWindow> {
   }
 
   private boolean isFinishedSetNeeded() {
-    // TODO: If we know that no trigger in the tree will ever finish, we don't need to do the
-    // lookup. Right now, we special case this for the DefaultTrigger.
-    return !(rootTrigger.getSpec() instanceof DefaultTriggerStateMachine);
+    return isFinishedSetNeeded;
   }
 }
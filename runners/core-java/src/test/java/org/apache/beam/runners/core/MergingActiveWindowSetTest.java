@@ -21,6 +21,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import java.util.HashMap;
 import java.util.List;
@@ -223,6 +224,31 @@ public class MergingActiveWindowSetTest {
     assertTrue(set.getActiveAndNewWindows().isEmpty());
   }
 
+  @Test
+  public void testMergeWithManyActiveSessions() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      set.addActiveForTesting(window(i * 20, 10));
+    }
+    cleanup();
+
+    // NEW windows bridging two ACTIVE sessions merge with just those, and a NEW window away from
+    // all sessions is left alone.
+    add(8, 15, 30000);
+    List<IntervalWindow> toBeMerged =
+        ImmutableList.of(window(0, 10), window(8, 10), window(15, 10), window(20, 10));
+    set.merge(callback);
+    verify(callback).prefetchOnMerge(toBeMerged, window(0, 30));
+    verify(callback).onMerge(toBeMerged, window(0, 30));
+    verifyNoMoreInteractions(callback);
+
+    activate(new HashMap<>(), 30000);
+    assertEquals(1000, set.getActiveAndNewWindows().size());
+    assertEquals(ImmutableSet.of(window(0, 10)), set.readStateAddresses(window(0, 30)));
+    assertTrue(set.isActive(window(40, 10)));
+    assertTrue(set.isActive(window(30000, 10)));
+    cleanup();
+  }
+
   @Test
   public void testLegacyState() {
     // Pre 1.4 we merged window state lazily.
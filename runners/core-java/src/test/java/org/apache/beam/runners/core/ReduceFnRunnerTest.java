@@ -725,6 +725,52 @@ public class ReduceFnRunnerTest {
             isSingleWindowedValue(equalTo(6 + 7 + secondWindowSideInput), 7, 6, 8)));
   }
 
+  /**
+   * Tests that elements of a bundle which fall into several overlapping windows are processed per
+   * window, including holds, trigger state and dropping for closed windows.
+   */
+  @Test
+  public void testBundleInOverlappingWindows() throws Exception {
+    MetricsContainerImpl container = new MetricsContainerImpl("any");
+    MetricsEnvironment.setCurrentContainer(container);
+    WindowingStrategy<?, IntervalWindow> strategy =
+        WindowingStrategy.of(
+                (WindowFn<?, IntervalWindow>)
+                    SlidingWindows.of(Duration.millis(10)).every(Duration.millis(5)))
+            .withTrigger(AfterPane.elementCountAtLeast(3))
+            .withTimestampCombiner(TimestampCombiner.EARLIEST)
+            .withMode(AccumulationMode.DISCARDING_FIRED_PANES)
+            .withAllowedLateness(Duration.millis(100));
+    ReduceFnTester<Integer, Iterable<Integer>, IntervalWindow> tester =
+        ReduceFnTester.nonCombining(strategy);
+
+    tester.injectElements(
+        TimestampedValue.of(1, new Instant(1)),
+        TimestampedValue.of(6, new Instant(6)),
+        TimestampedValue.of(2, new Instant(2)),
+        TimestampedValue.of(7, new Instant(7)));
+    assertThat(
+        tester.extractOutput(),
+        contains(isSingleWindowedValue(containsInAnyOrder(1, 2, 6, 7), 1, 0, 10)));
+    // The windows [-5, 5) and [5, 15) still hold the watermark at their earliest elements.
+    assertEquals(new Instant(1), tester.getWatermarkHold());
+
+    tester.injectElements(
+        TimestampedValue.of(3, new Instant(3)), TimestampedValue.of(4, new Instant(4)));
+    assertThat(
+        tester.extractOutput(),
+        contains(isSingleWindowedValue(containsInAnyOrder(1, 2, 3, 4), 1, -5, 5)));
+    assertEquals(new Instant(6), tester.getWatermarkHold());
+
+    // Both elements were dropped from the closed window [0, 10).
+    long droppedElements =
+        container
+            .getCounter(
+                MetricName.named(ReduceFnRunner.class, ReduceFnRunner.DROPPED_DUE_TO_CLOSED_WINDOW))
+            .getCumulative();
+    assertEquals(2, droppedElements);
+  }
+
   @Test
   public void testWatermarkHoldAndLateData() throws Exception {
     MetricsContainerImpl container = new MetricsContainerImpl("any");
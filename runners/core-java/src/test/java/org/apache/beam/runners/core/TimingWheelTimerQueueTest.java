@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.joda.time.Instant;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TimingWheelTimerQueue}. */
+@RunWith(JUnit4.class)
+public class TimingWheelTimerQueueTest {
+
+  private static final StateNamespace NS1 = new StateNamespaceForTest("NS1");
+  private static final StateNamespace NS2 = new StateNamespaceForTest("NS2");
+
+  @Test
+  public void testFiresInTimerOrder() {
+    TimerQueue queue = TimerQueue.timingWheel();
+    TimerData late = timer("a", NS1, BoundedWindow.TIMESTAMP_MAX_VALUE);
+    TimerData early = timer("a", NS1, BoundedWindow.TIMESTAMP_MIN_VALUE);
+    TimerData middle = timer("a", NS1, new Instant(1L << (3 * TimingWheelTimerQueue.SLOT_BITS)));
+    TimerData tiedFirst = timer("a", NS2, new Instant(7));
+    TimerData tiedSecond = timer("b", NS1, new Instant(7));
+
+    assertThat(queue.add(late), equalTo(true));
+    assertThat(queue.add(middle), equalTo(true));
+    assertThat(queue.add(tiedSecond), equalTo(true));
+    assertThat(queue.add(tiedFirst), equalTo(true));
+    assertThat(queue.add(early), equalTo(true));
+    assertThat(queue.add(early), equalTo(false));
+    assertThat(queue.size(), equalTo(5));
+
+    assertThat(queue.peek(), equalTo(early));
+    assertThat(queue.poll(), equalTo(early));
+    assertThat(queue.poll(), equalTo(tiedFirst));
+    assertThat(queue.poll(), equalTo(tiedSecond));
+    assertThat(queue.poll(), equalTo(middle));
+    assertThat(queue.poll(), equalTo(late));
+    assertThat(queue.peek(), nullValue());
+    assertThat(queue.poll(), nullValue());
+  }
+
+  @Test
+  public void testRemove() {
+    TimerQueue queue = TimerQueue.timingWheel();
+    TimerData first = timer("a", NS1, new Instant(10));
+    TimerData second = timer("b", NS1, new Instant(100_000));
+    queue.add(first);
+    queue.add(second);
+
+    assertThat(queue.peek(), equalTo(first));
+    assertThat(queue.remove(first), equalTo(true));
+    assertThat(queue.remove(first), equalTo(false));
+    assertThat(queue.peek(), equalTo(second));
+    assertThat(queue.remove(second), equalTo(true));
+    assertThat(queue.isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void testTimerSetBeforeFiredTimer() {
+    TimerQueue queue = TimerQueue.timingWheel();
+    TimerData fired = timer("a", NS1, new Instant(1000));
+    TimerData pending = timer("b", NS1, new Instant(5000));
+    queue.add(fired);
+    queue.add(pending);
+    assertThat(queue.poll(), equalTo(fired));
+
+    TimerData earlier = timer("c", NS1, new Instant(500));
+    queue.add(earlier);
+    assertThat(queue.peek(), equalTo(earlier));
+    assertThat(queue.poll(), equalTo(earlier));
+    assertThat(queue.poll(), equalTo(pending));
+  }
+
+  @Test
+  public void testMatchesOrderedQueue() {
+    Random random = new Random(17);
+    TimerQueue wheel = TimerQueue.timingWheel();
+    TimerQueue ordered = TimerQueue.ordered();
+    List<TimerData> added = new ArrayList<>();
+    long base = 0;
+    for (int i = 0; i < 20_000; ++i) {
+      int operation = random.nextInt(10);
+      if (operation < 5) {
+        TimerData timer =
+            timer(
+                "id" + random.nextInt(10),
+                random.nextBoolean() ? NS1 : NS2,
+                new Instant(base + random.nextInt(1 << (random.nextInt(20) + 1))));
+        assertThat(wheel.add(timer), equalTo(ordered.add(timer)));
+        added.add(timer);
+      } else if (operation < 7) {
+        TimerData timer = added.get(random.nextInt(added.size()));
+        assertThat(wheel.remove(timer), equalTo(ordered.remove(timer)));
+      } else if (operation < 8) {
+        assertThat(wheel.peek(), equalTo(ordered.peek()));
+      } else {
+        TimerData timer = ordered.poll();
+        assertThat(wheel.poll(), equalTo(timer));
+        if (timer != null) {
+          // Keep most new timers after the fired timers, as the watermark does.
+          base = timer.getTimestamp().getMillis() - 100;
+        }
+      }
+      assertThat(wheel.size(), equalTo(ordered.size()));
+    }
+    while (!ordered.isEmpty()) {
+      assertThat(wheel.poll(), equalTo(ordered.poll()));
+    }
+    assertThat(wheel.isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void testInMemoryTimerInternals() throws Exception {
+    InMemoryTimerInternals timerInternals = new InMemoryTimerInternals(TimerQueue::timingWheel);
+    TimerData timer1 = timer("a", NS1, new Instant(19));
+    TimerData timer2 = timer("b", NS1, new Instant(29));
+    timerInternals.setTimer(timer2);
+    timerInternals.setTimer(timer1);
+    assertThat(timerInternals.getNextTimer(TimeDomain.EVENT_TIME), equalTo(new Instant(19)));
+
+    timerInternals.advanceInputWatermark(new Instant(30));
+    assertThat(timerInternals.removeNextEventTimer(), equalTo(timer1));
+    assertThat(timerInternals.removeNextEventTimer(), equalTo(timer2));
+    assertThat(timerInternals.removeNextEventTimer(), nullValue());
+    assertThat(timerInternals.getNextTimer(TimeDomain.EVENT_TIME), nullValue());
+  }
+
+  private static TimerData timer(String id, StateNamespace namespace, Instant timestamp) {
+    return TimerData.of(id, namespace, timestamp, timestamp, TimeDomain.EVENT_TIME);
+  }
+}
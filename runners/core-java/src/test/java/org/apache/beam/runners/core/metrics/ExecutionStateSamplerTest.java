@@ -22,6 +22,8 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Mockito.mock;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.apache.beam.runners.core.metrics.ExecutionStateTracker.ExecutionState;
 import org.joda.time.DateTimeUtils.MillisProvider;
@@ -123,6 +125,69 @@ public class ExecutionStateSamplerTest {
     assertThat(step1act1.lullReported, equalTo(true));
   }
 
+  @Test
+  public void testManyThreadsGrowSlots() throws Exception {
+    int initialCapacity = sampler.getSlotCapacity();
+    List<ExecutionStateTracker> trackers = new ArrayList<>();
+    List<Closeable> activations = new ArrayList<>();
+    for (int i = 0; i < initialCapacity + 1; i++) {
+      ExecutionStateTracker tracker = createTracker();
+      activations.add(tracker.activate(new Thread()));
+      tracker.enterState(step1act1);
+      trackers.add(tracker);
+    }
+    assertThat(sampler.getSlotCapacity(), equalTo(2 * initialCapacity));
+
+    sampler.doSampling(10);
+    assertThat(step1act1.totalMillis, equalTo(10L * (initialCapacity + 1)));
+
+    for (Closeable activation : activations) {
+      activation.close();
+    }
+    sampler.doSampling(10);
+    assertThat(step1act1.totalMillis, equalTo(10L * (initialCapacity + 1)));
+
+    // Slots of removed trackers are reused rather than growing the ring further.
+    activations.clear();
+    for (ExecutionStateTracker tracker : trackers) {
+      activations.add(tracker.activate(new Thread()));
+    }
+    assertThat(sampler.getSlotCapacity(), equalTo(2 * initialCapacity));
+    for (Closeable activation : activations) {
+      activation.close();
+    }
+  }
+
+  @Test
+  public void testReactivatedTrackerIsSampledOnce() throws Exception {
+    ExecutionStateTracker tracker1 = createTracker();
+    ExecutionStateTracker tracker2 = createTracker();
+    Closeable t1 = tracker1.activate(new Thread());
+    try (Closeable t2 = tracker2.activate(new Thread())) {
+      t1.close();
+      try (Closeable t1Again = tracker1.activate(new Thread());
+          Closeable c = tracker1.enterState(step1act1)) {
+        sampler.doSampling(100);
+      }
+    }
+
+    assertThat(step1act1.totalMillis, equalTo(100L));
+  }
+
+  @Test
+  public void testAdaptivePeriod() {
+    assertThat(ExecutionStateSampler.adaptivePeriodMillis(200, 0), equalTo(200L));
+    assertThat(
+        ExecutionStateSampler.adaptivePeriodMillis(200, TimeUnit.MILLISECONDS.toNanos(5)),
+        equalTo(200L));
+    assertThat(
+        ExecutionStateSampler.adaptivePeriodMillis(200, TimeUnit.MILLISECONDS.toNanos(30)),
+        equalTo(600L));
+    assertThat(
+        ExecutionStateSampler.adaptivePeriodMillis(200, TimeUnit.SECONDS.toNanos(10)),
+        equalTo(2000L));
+  }
+
   @Test
   public void testReset() throws Exception {
     sampler.lastSampleTimeMillis = 100L;
@@ -22,6 +22,8 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Mockito.mock;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.apache.beam.runners.core.metrics.ExecutionStateTracker.ExecutionState;
 import org.joda.time.DateTimeUtils.MillisProvider;
@@ -78,6 +80,36 @@ public class ExecutionStateTrackerTest {
     assertThat(tracker.getNextLullReportMs(), equalTo(TimeUnit.MINUTES.toMillis(5)));
   }
 
+  @Test
+  public void testNestedStatesAreRestored() throws Exception {
+    TestExecutionState outer = new TestExecutionState("outer");
+    TestExecutionState inner = new TestExecutionState("inner");
+    ExecutionStateTracker tracker = createTracker();
+    try (Closeable c1 = tracker.activate(new Thread())) {
+      // Enter more states than are initially pooled, repeatedly, to exercise the reuse and growth
+      // of the transitions returned by enterState.
+      for (int round = 0; round < 2; round++) {
+        List<Closeable> transitions = new ArrayList<>();
+        transitions.add(tracker.enterState(outer));
+        for (int i = 0; i < 20; i++) {
+          transitions.add(tracker.enterState(i % 2 == 0 ? inner : testExecutionState));
+        }
+        assertThat(tracker.getCurrentState(), equalTo(testExecutionState));
+        for (int i = transitions.size() - 1; i > 0; i--) {
+          transitions.get(i).close();
+        }
+        assertThat(tracker.getCurrentState(), equalTo(outer));
+        sampler.doSampling(100);
+        transitions.get(0).close();
+        assertThat(tracker.getCurrentState(), equalTo(null));
+      }
+    }
+
+    assertThat(outer.totalMillis, equalTo(200L));
+    assertThat(inner.totalMillis, equalTo(0L));
+    assertThat(tracker.getNumTransitions(), equalTo(84L));
+  }
+
   private ExecutionStateTracker createTracker() {
     return new ExecutionStateTracker(sampler);
   }
@@ -36,6 +36,7 @@ import java.util.Set;
 import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfo;
 import org.apache.beam.sdk.metrics.MetricName;
 import org.apache.beam.sdk.util.HistogramData;
+import org.apache.beam.sdk.util.SerializableUtils;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -85,6 +86,78 @@ public class MetricsContainerImplTest {
     assertEquals(dne, null);
   }
 
+  @Test
+  public void testCounterModifiedWhileCommitting() {
+    MetricsContainerImpl container = new MetricsContainerImpl("step1");
+    CounterCell c1 = container.getCounter(MetricName.named("ns", "name1"));
+    container.getUpdates();
+    container.commitUpdates();
+
+    c1.inc(5L);
+    assertThat(container.getUpdates().counterUpdates(), contains(metricUpdate("name1", 5L)));
+    c1.inc(2L);
+    container.commitUpdates();
+    assertThat(
+        "Modifications after getting updates are not committed",
+        container.getUpdates().counterUpdates(),
+        contains(metricUpdate("name1", 7L)));
+    container.commitUpdates();
+    assertThat(container.getUpdates().counterUpdates(), emptyIterable());
+  }
+
+  @Test
+  public void testDirtyCountersAfterDeserialization() {
+    MetricsContainerImpl container = new MetricsContainerImpl("step1");
+    container.getCounter(MetricName.named("ns", "name1")).inc(1L);
+    container.getCounter(MetricName.named("ns", "name2")).inc(2L);
+    container.getUpdates();
+    container.commitUpdates();
+    container.getCounter(MetricName.named("ns", "name2")).inc(3L);
+
+    MetricsContainerImpl copy = SerializableUtils.clone(container);
+    assertThat(copy.getUpdates().counterUpdates(), contains(metricUpdate("name2", 5L)));
+    copy.commitUpdates();
+    copy.getCounter(MetricName.named("ns", "name1")).inc(4L);
+    assertThat(copy.getUpdates().counterUpdates(), contains(metricUpdate("name1", 5L)));
+  }
+
+  @Test
+  public void testLabeledCountersOverflow() {
+    MetricsContainerImpl.setMaxMonitoringInfoMetricCells(2);
+    MetricsContainerImpl container;
+    try {
+      container = new MetricsContainerImpl("step1");
+    } finally {
+      MetricsContainerImpl.setMaxMonitoringInfoMetricCells(10_000);
+    }
+    for (int i = 0; i < 5; i++) {
+      container.getCounter(resourceCounterName("resource" + i)).inc(i);
+    }
+    // User counters are not bounded.
+    container.getCounter(MetricName.named("ns", "name1")).inc(10L);
+
+    assertEquals(4, container.getUpdates().counterUpdates().size());
+    assertEquals(
+        Long.valueOf(0L),
+        container.tryGetCounter(resourceCounterName("resource0")).getCumulative());
+    assertEquals(
+        Long.valueOf(1L),
+        container.tryGetCounter(resourceCounterName("resource1")).getCumulative());
+    assertEquals(null, container.tryGetCounter(resourceCounterName("resource2")));
+    assertEquals(
+        Long.valueOf(2L + 3L + 4L),
+        container
+            .tryGetCounter(resourceCounterName(MetricsContainerImpl.OVERFLOW_LABEL_VALUE))
+            .getCumulative());
+  }
+
+  private static MetricName resourceCounterName(String resource) {
+    HashMap<String, String> labels = new HashMap<>();
+    labels.put(MonitoringInfoConstants.Labels.PTRANSFORM, "step1");
+    labels.put(MonitoringInfoConstants.Labels.RESOURCE, resource);
+    return MonitoringInfoMetricName.named(MonitoringInfoConstants.Urns.API_REQUEST_COUNT, labels);
+  }
+
   @Test
   public void testCounterCumulatives() {
     MetricsContainerImpl container = new MetricsContainerImpl("step1");
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core.triggers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import org.apache.beam.runners.core.InMemoryStateInternals;
+import org.apache.beam.runners.core.NonMergingActiveWindowSet;
+import org.apache.beam.runners.core.StateAccessor;
+import org.apache.beam.runners.core.StateNamespace;
+import org.apache.beam.runners.core.StateNamespaces;
+import org.apache.beam.runners.core.StateTag;
+import org.apache.beam.sdk.state.State;
+import org.apache.beam.sdk.state.Timers;
+import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.transforms.windowing.FixedWindows;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TriggerStateMachineRunner}. */
+@RunWith(JUnit4.class)
+public class TriggerStateMachineRunnerTest {
+
+  private final InMemoryStateInternals<String> stateInternals =
+      InMemoryStateInternals.forKey("key");
+  private final FixedWindows windowFn = FixedWindows.of(Duration.millis(10));
+  private final IntervalWindow window = new IntervalWindow(new Instant(0), new Instant(10));
+  private final Timers timers = mock(Timers.class);
+
+  private CountingValueState finishedBits;
+  private StateAccessor<String> state;
+
+  /** Counts the mutations of the finished bits. */
+  private static class CountingValueState implements ValueState<BitSet> {
+    private final ValueState<BitSet> delegate;
+    private int mutations = 0;
+
+    CountingValueState(ValueState<BitSet> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public BitSet read() {
+      return delegate.read();
+    }
+
+    @Override
+    public ValueState<BitSet> readLater() {
+      delegate.readLater();
+      return this;
+    }
+
+    @Override
+    public void write(BitSet input) {
+      mutations++;
+      delegate.write(input);
+    }
+
+    @Override
+    public void clear() {
+      mutations++;
+      delegate.clear();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    StateNamespace namespace = StateNamespaces.window(windowFn.windowCoder(), window);
+    finishedBits =
+        new CountingValueState(
+            stateInternals.state(namespace, TriggerStateMachineRunner.FINISHED_BITS_TAG));
+    state =
+        new StateAccessor<String>() {
+          @Override
+          @SuppressWarnings("unchecked")
+          public <StateT extends State> StateT access(StateTag<StateT> address) {
+            if (address.equals(TriggerStateMachineRunner.FINISHED_BITS_TAG)) {
+              return (StateT) finishedBits;
+            }
+            return stateInternals.state(namespace, address);
+          }
+        };
+  }
+
+  private TriggerStateMachineRunner<IntervalWindow> runnerFor(TriggerStateMachine trigger) {
+    return new TriggerStateMachineRunner<>(
+        ExecutableTriggerStateMachine.create(trigger),
+        new TriggerStateMachineContextFactory<>(
+            windowFn, stateInternals, new NonMergingActiveWindowSet<>()));
+  }
+
+  @Test
+  public void testProcessValuesCountsAllElements() throws Exception {
+    TriggerStateMachineRunner<IntervalWindow> runner =
+        runnerFor(AfterPaneStateMachine.elementCountAtLeast(3));
+
+    runner.processValues(window, Arrays.asList(new Instant(1), new Instant(2)), timers, state);
+    assertFalse(runner.shouldFire(window, timers, state));
+    runner.processValues(window, Collections.singletonList(new Instant(3)), timers, state);
+    assertTrue(runner.shouldFire(window, timers, state));
+
+    runner.onFire(window, timers, state);
+    assertTrue(runner.isClosed(state));
+  }
+
+  @Test
+  public void testUnchangedFinishedBitsAreNotPersisted() throws Exception {
+    TriggerStateMachineRunner<IntervalWindow> runner =
+        runnerFor(AfterPaneStateMachine.elementCountAtLeast(2));
+
+    runner.processValue(window, new Instant(1), timers, state);
+    runner.processValues(window, Arrays.asList(new Instant(2), new Instant(3)), timers, state);
+    assertEquals(0, finishedBits.mutations);
+
+    runner.onFire(window, timers, state);
+    assertEquals(1, finishedBits.mutations);
+    assertTrue(runner.isClosed(state));
+  }
+
+  @Test
+  public void testRepeatedTriggerDoesNotPersistFinishedBits() throws Exception {
+    TriggerStateMachineRunner<IntervalWindow> runner =
+        runnerFor(RepeatedlyStateMachine.forever(AfterPaneStateMachine.elementCountAtLeast(1)));
+
+    for (int i = 0; i < 3; i++) {
+      runner.processValue(window, new Instant(i), timers, state);
+      assertTrue(runner.shouldFire(window, timers, state));
+      runner.onFire(window, timers, state);
+    }
+    assertFalse(runner.isClosed(state));
+    assertEquals(0, finishedBits.mutations);
+  }
+}
@@ -135,6 +135,18 @@ class CopyOnAccessInMemoryStateInternals<K> implements StateInternals {
     return Iterables.isEmpty(table.values());
   }
 
+  /**
+   * Returns the {@link StateTable} containing all of the state of this committed {@link
+   * CopyOnAccessInMemoryStateInternals}.
+   */
+  StateTable getCommittedTable() {
+    checkState(
+        table.earliestWatermarkHold.isPresent(),
+        "Can't get the table of a %s before it is committed",
+        getClass().getSimpleName());
+    return table;
+  }
+
   /**
    * A {@link StateTable} that, when a value is retrieved with {@link StateTable#get(StateNamespace,
    * StateTag, StateContext)}, first attempts to obtain a copy of existing {@link State} from an
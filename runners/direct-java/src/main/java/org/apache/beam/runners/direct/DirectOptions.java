@@ -54,6 +54,28 @@ public interface DirectOptions extends PipelineOptions, ApplicationNameOptions {
 
   void setEnforceEncodability(boolean test);
 
+  @Default.Double(1.0)
+  @Description(
+      "The fraction of bundles to which the DirectRunner applies the immutability and "
+          + "encodability enforcements that are enabled. Elements of all other bundles are passed "
+          + "between transforms without being cloned or checked for mutations. Lowering this "
+          + "speeds up pipelines with large inputs at the cost of detecting fewer violations. "
+          + "Must be between 0 and 1.")
+  double getEnforcementSampleRate();
+
+  void setEnforcementSampleRate(double sampleRate);
+
+  @Default.Integer(0)
+  @Description(
+      "The maximum number of keys, over all stateful steps, whose committed state the "
+          + "DirectRunner keeps in memory. The state of the least recently used keys beyond this "
+          + "is encoded with the coders of the state and spilled to a temporary file on local "
+          + "disk, which allows stateful pipelines with more state than fits in memory to run. "
+          + "If not positive, all state is kept in memory.")
+  int getMaxInMemoryStateKeys();
+
+  void setMaxInMemoryStateKeys(int maxInMemoryStateKeys);
+
   @Default.InstanceFactory(AvailableParallelismFactory.class)
   @Description(
       "Controls the amount of target parallelism the DirectRunner will use. Defaults to"
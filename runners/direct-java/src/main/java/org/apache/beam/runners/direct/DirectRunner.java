@@ -17,6 +17,8 @@
  */
 package org.apache.beam.runners.direct;
 
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.util.Collection;
@@ -108,7 +110,8 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
       return Collections.unmodifiableSet(enabled);
     }
 
-    static BundleFactory bundleFactoryFor(Set<Enforcement> enforcements, DirectGraph graph) {
+    static BundleFactory bundleFactoryFor(
+        Set<Enforcement> enforcements, DirectGraph graph, double sampleRate) {
       BundleFactory bundleFactory =
           enforcements.contains(Enforcement.ENCODABILITY)
               ? CloningBundleFactory.create()
@@ -116,17 +119,27 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
       if (enforcements.contains(Enforcement.IMMUTABILITY)) {
         bundleFactory = ImmutabilityCheckingBundleFactory.create(bundleFactory, graph);
       }
+      if (!enforcements.isEmpty() && sampleRate < 1) {
+        bundleFactory =
+            SamplingBundleFactory.create(
+                bundleFactory, ImmutableListBundleFactory.create(), sampleRate);
+      }
       return bundleFactory;
     }
 
     private static Map<String, Collection<ModelEnforcementFactory>> defaultModelEnforcements(
-        Set<Enforcement> enabledEnforcements) {
+        Set<Enforcement> enabledEnforcements, double sampleRate) {
       ImmutableMap.Builder<String, Collection<ModelEnforcementFactory>> enforcements =
           ImmutableMap.builder();
       ImmutableList.Builder<ModelEnforcementFactory> enabledParDoEnforcements =
           ImmutableList.builder();
       if (enabledEnforcements.contains(Enforcement.IMMUTABILITY)) {
-        enabledParDoEnforcements.add(ImmutabilityEnforcementFactory.create());
+        ModelEnforcementFactory immutabilityEnforcement = ImmutabilityEnforcementFactory.create();
+        if (sampleRate < 1) {
+          immutabilityEnforcement =
+              SamplingModelEnforcementFactory.create(immutabilityEnforcement, sampleRate);
+        }
+        enabledParDoEnforcements.add(immutabilityEnforcement);
       }
       Collection<ModelEnforcementFactory> parDoEnforcements = enabledParDoEnforcements.build();
       enforcements.put(PTransformTranslation.PAR_DO_TRANSFORM_URN, parDoEnforcements);
@@ -148,6 +161,10 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
   }
 
   private DirectRunner(DirectOptions options) {
+    checkArgument(
+        options.getEnforcementSampleRate() >= 0 && options.getEnforcementSampleRate() <= 1,
+        "--enforcementSampleRate must be between 0 and 1, got %s",
+        options.getEnforcementSampleRate());
     this.options = options;
     this.enabledEnforcements = Enforcement.enabled(options);
   }
@@ -196,10 +213,12 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
       EvaluationContext context =
           EvaluationContext.create(
               clockSupplier.get(),
-              Enforcement.bundleFactoryFor(enabledEnforcements, graph),
+              Enforcement.bundleFactoryFor(
+                  enabledEnforcements, graph, options.getEnforcementSampleRate()),
               graph,
               keyedPValueVisitor.getKeyedPValues(),
-              metricsPool);
+              metricsPool,
+              options.getMaxInMemoryStateKeys());
 
       TransformEvaluatorRegistry registry =
           TransformEvaluatorRegistry.javaSdkNativeRegistry(context, options);
@@ -207,7 +226,8 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
           ExecutorServiceParallelExecutor.create(
               options.getTargetParallelism(),
               registry,
-              Enforcement.defaultModelEnforcements(enabledEnforcements),
+              Enforcement.defaultModelEnforcements(
+                  enabledEnforcements, options.getEnforcementSampleRate()),
               context,
               metricsPool);
       executor.start(graph, RootProviderRegistry.javaNativeRegistry(context, options));
@@ -19,6 +19,7 @@ package org.apache.beam.runners.direct;
 
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -26,8 +27,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import org.apache.beam.runners.core.InMemoryBundleFinalizer;
 import org.apache.beam.runners.core.ReadyCheckingSideInputReader;
@@ -94,8 +93,7 @@ class EvaluationContext {
   private final WatermarkCallbackExecutor callbackExecutor;
 
   /** The stateInternals of the world, by applied PTransform and key. */
-  private final ConcurrentMap<StepAndKey, CopyOnAccessInMemoryStateInternals>
-      applicationStateInternals;
+  private final SpillableStateStore applicationStateInternals;
 
   private final SideInputContainer sideInputContainer;
 
@@ -109,7 +107,34 @@ class EvaluationContext {
       DirectGraph graph,
       Set<PValue> keyedPValues,
       ExecutorService executorService) {
-    return new EvaluationContext(clock, bundleFactory, graph, keyedPValues, executorService);
+    return new EvaluationContext(
+        clock,
+        bundleFactory,
+        graph,
+        keyedPValues,
+        executorService,
+        SpillableStateStore.inMemory());
+  }
+
+  /**
+   * Creates an {@link EvaluationContext} which keeps the state of at most {@code
+   * maxInMemoryStateKeys} steps and keys on the heap and spills the state of the others to local
+   * disk. All state is kept on the heap if {@code maxInMemoryStateKeys} is not positive.
+   */
+  public static EvaluationContext create(
+      Clock clock,
+      BundleFactory bundleFactory,
+      DirectGraph graph,
+      Set<PValue> keyedPValues,
+      ExecutorService executorService,
+      int maxInMemoryStateKeys) {
+    return new EvaluationContext(
+        clock,
+        bundleFactory,
+        graph,
+        keyedPValues,
+        executorService,
+        SpillableStateStore.withMaxInMemoryKeys(maxInMemoryStateKeys));
   }
 
   private EvaluationContext(
@@ -117,7 +142,8 @@ class EvaluationContext {
       BundleFactory bundleFactory,
       DirectGraph graph,
       Set<PValue> keyedPValues,
-      ExecutorService executorService) {
+      ExecutorService executorService,
+      SpillableStateStore applicationStateInternals) {
     this.clock = clock;
     this.bundleFactory = checkNotNull(bundleFactory);
     this.graph = checkNotNull(graph);
@@ -126,7 +152,7 @@ class EvaluationContext {
     this.watermarkManager = WatermarkManager.create(clock, graph, AppliedPTransform::getFullName);
     this.sideInputContainer = SideInputContainer.create(this, graph.getViews());
 
-    this.applicationStateInternals = new ConcurrentHashMap<>();
+    this.applicationStateInternals = applicationStateInternals;
     this.metrics = new DirectMetrics(executorService);
 
     this.callbackExecutor = WatermarkCallbackExecutor.create(MoreExecutors.directExecutor());
@@ -346,10 +372,15 @@ class EvaluationContext {
     return new DirectExecutionContext(
         clock,
         key,
-        (CopyOnAccessInMemoryStateInternals) applicationStateInternals.get(stepAndKey),
+        applicationStateInternals.get(stepAndKey),
         watermarkManager.getWatermarks(application));
   }
 
+  /** Releases the state of all steps and keys, including any state spilled to local disk. */
+  void cleanupState() throws IOException {
+    applicationStateInternals.close();
+  }
+
   /** Get the Step Name for the provided application. */
   String getStepName(AppliedPTransform<?, ?, ?> application) {
     return graph.getStepName(application);
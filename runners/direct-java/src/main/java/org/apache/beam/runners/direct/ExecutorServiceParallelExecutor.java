@@ -335,6 +335,11 @@ final class ExecutorServiceParallelExecutor
     } catch (final Exception e) {
       errors.add(e);
     }
+    try {
+      evaluationContext.cleanupState();
+    } catch (final Exception e) {
+      errors.add(e);
+    }
     pipelineState.compareAndSet(State.RUNNING, newState); // ensure we hit a terminal node
     if (!errors.isEmpty()) {
       final IllegalStateException exception =
@@ -19,6 +19,8 @@ package org.apache.beam.runners.direct;
 
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.beam.runners.direct.DirectRunner.Enforcement;
 import org.apache.beam.runners.local.StructuralKey;
 import org.apache.beam.sdk.coders.Coder;
@@ -59,6 +61,12 @@ class ImmutabilityCheckingBundleFactory implements BundleFactory {
   private final BundleFactory underlying;
   private final DirectGraph graph;
 
+  /**
+   * Whether immutability is enforced on each {@link PCollection}, cached as finding out traverses
+   * the pipeline.
+   */
+  private final Map<PCollection<?>, Boolean> enforcedCollections = new ConcurrentHashMap<>();
+
   private ImmutabilityCheckingBundleFactory(BundleFactory underlying, DirectGraph graph) {
     this.underlying = checkNotNull(underlying);
     this.graph = graph;
@@ -77,7 +85,7 @@ class ImmutabilityCheckingBundleFactory implements BundleFactory {
 
   @Override
   public <T> UncommittedBundle<T> createBundle(PCollection<T> output) {
-    if (Enforcement.IMMUTABILITY.appliesTo(output, graph)) {
+    if (isEnforced(output)) {
       return new ImmutabilityEnforcingBundle<>(underlying.createBundle(output));
     }
     return underlying.createBundle(output);
@@ -86,12 +94,17 @@ class ImmutabilityCheckingBundleFactory implements BundleFactory {
   @Override
   public <K, T> UncommittedBundle<T> createKeyedBundle(
       StructuralKey<K> key, PCollection<T> output) {
-    if (Enforcement.IMMUTABILITY.appliesTo(output, graph)) {
+    if (isEnforced(output)) {
       return new ImmutabilityEnforcingBundle<>(underlying.createKeyedBundle(key, output));
     }
     return underlying.createKeyedBundle(key, output);
   }
 
+  private boolean isEnforced(PCollection<?> output) {
+    return enforcedCollections.computeIfAbsent(
+        output, collection -> Enforcement.IMMUTABILITY.appliesTo(collection, graph));
+  }
+
   private class ImmutabilityEnforcingBundle<T> implements UncommittedBundle<T> {
     private final UncommittedBundle<T> underlying;
     private final SetMultimap<WindowedValue<T>, MutationDetector> mutationDetectors;
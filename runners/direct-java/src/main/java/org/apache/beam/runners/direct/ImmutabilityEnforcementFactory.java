@@ -19,6 +19,7 @@ package org.apache.beam.runners.direct;
 
 import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.beam.sdk.Pipeline.PipelineVisitor;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.CoderException;
@@ -45,10 +46,14 @@ class ImmutabilityEnforcementFactory implements ModelEnforcementFactory {
     return new ImmutabilityEnforcementFactory();
   }
 
+  /** Whether each consumer is part of a Read, cached as finding out traverses the pipeline. */
+  private final Map<AppliedPTransform<?, ?, ?>, Boolean> readTransforms =
+      new ConcurrentHashMap<>();
+
   @Override
   public <T> ModelEnforcement<T> forBundle(
       CommittedBundle<T> input, AppliedPTransform<?, ?, ?> consumer) {
-    if (isReadTransform(consumer)) {
+    if (readTransforms.computeIfAbsent(consumer, ImmutabilityEnforcementFactory::isReadTransform)) {
       return NoopReadEnforcement.INSTANCE;
     }
     return new ImmutabilityCheckingEnforcement<>(input, consumer);
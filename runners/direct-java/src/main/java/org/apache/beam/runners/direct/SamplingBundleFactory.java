@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.beam.runners.local.StructuralKey;
+import org.apache.beam.sdk.values.PCollection;
+
+/**
+ * A {@link BundleFactory} which creates a random sample of bundles with an enforcing {@link
+ * BundleFactory}, such as a {@link CloningBundleFactory} or an {@link
+ * ImmutabilityCheckingBundleFactory}, and all other bundles with a {@link BundleFactory} which
+ * passes elements through unchanged.
+ *
+ * <p>Root bundles are always created by the pass-through factory, as the enforcing factories do not
+ * apply to them.
+ */
+class SamplingBundleFactory implements BundleFactory {
+  /**
+   * Create a new {@link SamplingBundleFactory} which creates the given fraction of bundles with
+   * {@code sampled}, and all other bundles with {@code unsampled}.
+   */
+  public static SamplingBundleFactory create(
+      BundleFactory sampled, BundleFactory unsampled, double sampleRate) {
+    checkArgument(
+        sampleRate >= 0 && sampleRate <= 1,
+        "Sample rate must be between 0 and 1, got %s",
+        sampleRate);
+    return new SamplingBundleFactory(sampled, unsampled, sampleRate);
+  }
+
+  private final BundleFactory sampled;
+  private final BundleFactory unsampled;
+  private final double sampleRate;
+
+  private SamplingBundleFactory(BundleFactory sampled, BundleFactory unsampled, double sampleRate) {
+    this.sampled = sampled;
+    this.unsampled = unsampled;
+    this.sampleRate = sampleRate;
+  }
+
+  @Override
+  public <T> UncommittedBundle<T> createRootBundle() {
+    return unsampled.createRootBundle();
+  }
+
+  @Override
+  public <T> UncommittedBundle<T> createBundle(PCollection<T> output) {
+    return nextFactory().createBundle(output);
+  }
+
+  @Override
+  public <K, T> UncommittedBundle<T> createKeyedBundle(
+      StructuralKey<K> key, PCollection<T> output) {
+    return nextFactory().createKeyedBundle(key, output);
+  }
+
+  private BundleFactory nextFactory() {
+    return ThreadLocalRandom.current().nextDouble() < sampleRate ? sampled : unsampled;
+  }
+}
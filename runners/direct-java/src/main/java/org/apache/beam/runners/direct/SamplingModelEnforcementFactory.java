@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.beam.sdk.runners.AppliedPTransform;
+
+/**
+ * A {@link ModelEnforcementFactory} which applies the {@link ModelEnforcement} of an underlying
+ * {@link ModelEnforcementFactory} to a random sample of input bundles, and does not enforce
+ * anything on all other bundles.
+ */
+class SamplingModelEnforcementFactory implements ModelEnforcementFactory {
+  /**
+   * Create a new {@link SamplingModelEnforcementFactory} which applies the enforcement of {@code
+   * underlying} to the given fraction of bundles.
+   */
+  public static ModelEnforcementFactory create(
+      ModelEnforcementFactory underlying, double sampleRate) {
+    checkArgument(
+        sampleRate >= 0 && sampleRate <= 1,
+        "Sample rate must be between 0 and 1, got %s",
+        sampleRate);
+    return new SamplingModelEnforcementFactory(underlying, sampleRate);
+  }
+
+  private final ModelEnforcementFactory underlying;
+  private final double sampleRate;
+
+  private SamplingModelEnforcementFactory(ModelEnforcementFactory underlying, double sampleRate) {
+    this.underlying = underlying;
+    this.sampleRate = sampleRate;
+  }
+
+  @Override
+  public <T> ModelEnforcement<T> forBundle(
+      CommittedBundle<T> input, AppliedPTransform<?, ?, ?> consumer) {
+    if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+      return underlying.forBundle(input, consumer);
+    }
+    return new UnsampledEnforcement<>();
+  }
+
+  private static class UnsampledEnforcement<T> extends AbstractModelEnforcement<T> {}
+}
@@ -0,0 +1,516 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.beam.runners.core.InMemoryStateInternals.InMemoryState;
+import org.apache.beam.runners.core.StateNamespace;
+import org.apache.beam.runners.core.StateTable;
+import org.apache.beam.runners.core.StateTag;
+import org.apache.beam.runners.core.StateTag.StateBinder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.InstantCoder;
+import org.apache.beam.sdk.coders.IterableCoder;
+import org.apache.beam.sdk.coders.MapCoder;
+import org.apache.beam.sdk.coders.NullableCoder;
+import org.apache.beam.sdk.state.BagState;
+import org.apache.beam.sdk.state.CombiningState;
+import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
+import org.apache.beam.sdk.state.SetState;
+import org.apache.beam.sdk.state.State;
+import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.state.WatermarkHoldState;
+import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.CombineWithContext.CombineFnWithContext;
+import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.apache.beam.sdk.values.TimestampedValue.TimestampedValueCoder;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.Instant;
+
+/**
+ * The committed {@link CopyOnAccessInMemoryStateInternals} of every step and key.
+ *
+ * <p>At most {@code maxInMemoryKeys} states are kept on the heap. When more are stored, the least
+ * recently used states are encoded with the {@link Coder Coders} of their {@link StateTag
+ * StateTags} and appended to a temporary spill file. A spilled state is decoded into a new
+ * committed {@link CopyOnAccessInMemoryStateInternals} the next time it is accessed. Committed
+ * state is never modified, so a spilled state is never written back. Once the spill file holds more
+ * bytes of states which have since been restored or removed than of spilled states, the spilled
+ * states are copied to a new spill file, so the spill file is at most twice the size of the spilled
+ * states.
+ *
+ * <p>A store which keeps all state on the heap is backed by a {@link ConcurrentHashMap} and is
+ * never locked.
+ */
+@SuppressWarnings({
+  "rawtypes", // TODO(https://issues.apache.org/jira/browse/BEAM-10556)
+  "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
+})
+class SpillableStateStore {
+  private final int maxInMemoryKeys;
+
+  /**
+   * States on the heap. If the store spills, this is guarded by {@code this} and in least recently
+   * used order.
+   */
+  private final Map<StepAndKey, CopyOnAccessInMemoryStateInternals> inMemory;
+
+  private final Map<StepAndKey, SpilledState> spilled;
+
+  private @Nullable File spillFile;
+  private @Nullable RandomAccessFile spillChannel;
+
+  /** The number of bytes of the spill file which belong to a state in {@link #spilled}. */
+  private long liveSpilledBytes;
+
+  /** Returns a store which keeps all state on the heap. */
+  public static SpillableStateStore inMemory() {
+    return new SpillableStateStore(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns a store which keeps at most {@code maxInMemoryKeys} states on the heap, or all of them
+   * if {@code maxInMemoryKeys} is not positive.
+   */
+  public static SpillableStateStore withMaxInMemoryKeys(int maxInMemoryKeys) {
+    return new SpillableStateStore(maxInMemoryKeys > 0 ? maxInMemoryKeys : Integer.MAX_VALUE);
+  }
+
+  private SpillableStateStore(int maxInMemoryKeys) {
+    this.maxInMemoryKeys = maxInMemoryKeys;
+    this.inMemory = spills() ? new LinkedHashMap<>(16, 0.75f, true) : new ConcurrentHashMap<>();
+    this.spilled = new HashMap<>();
+  }
+
+  private boolean spills() {
+    return maxInMemoryKeys < Integer.MAX_VALUE;
+  }
+
+  /** Returns the committed state of the step and key, or null if there is none. */
+  public @Nullable CopyOnAccessInMemoryStateInternals get(StepAndKey stepAndKey) {
+    if (!spills()) {
+      return inMemory.get(stepAndKey);
+    }
+    synchronized (this) {
+      CopyOnAccessInMemoryStateInternals state = inMemory.get(stepAndKey);
+      if (state != null) {
+        return state;
+      }
+      SpilledState spilledState = removeSpilled(stepAndKey);
+      if (spilledState == null) {
+        return null;
+      }
+      try {
+        state = restore(spilledState);
+      } catch (IOException e) {
+        throw new RuntimeException(
+            String.format("Failed to read spilled state of %s from %s", stepAndKey, spillFile), e);
+      }
+      put(stepAndKey, state);
+      return state;
+    }
+  }
+
+  /** Stores the committed state of the step and key. */
+  public void put(StepAndKey stepAndKey, CopyOnAccessInMemoryStateInternals state) {
+    if (!spills()) {
+      inMemory.put(stepAndKey, state);
+      return;
+    }
+    synchronized (this) {
+      removeSpilled(stepAndKey);
+      inMemory.put(stepAndKey, state);
+      while (inMemory.size() > maxInMemoryKeys) {
+        Map.Entry<StepAndKey, CopyOnAccessInMemoryStateInternals> eldest =
+            inMemory.entrySet().iterator().next();
+        try {
+          SpilledState spilledState = spill(eldest.getValue());
+          spilled.put(eldest.getKey(), spilledState);
+          liveSpilledBytes += spilledState.length;
+        } catch (IOException e) {
+          throw new RuntimeException(
+              String.format("Failed to spill state of %s to %s", eldest.getKey(), spillFile), e);
+        }
+        inMemory.remove(eldest.getKey());
+      }
+      compactIfMostlyDead();
+    }
+  }
+
+  /** Removes the committed state of the step and key. */
+  public void remove(StepAndKey stepAndKey) {
+    if (!spills()) {
+      inMemory.remove(stepAndKey);
+      return;
+    }
+    synchronized (this) {
+      inMemory.remove(stepAndKey);
+      removeSpilled(stepAndKey);
+      compactIfMostlyDead();
+    }
+  }
+
+  /** Discards all state and deletes the spill file, if any. */
+  public synchronized void close() throws IOException {
+    inMemory.clear();
+    spilled.clear();
+    liveSpilledBytes = 0;
+    if (spillChannel != null) {
+      spillChannel.close();
+      spillChannel = null;
+    }
+    if (spillFile != null) {
+      spillFile.delete();
+      spillFile = null;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int getSpilledCount() {
+    return spilled.size();
+  }
+
+  @VisibleForTesting
+  synchronized long getSpillFileLength() throws IOException {
+    return spillChannel == null ? 0 : spillChannel.length();
+  }
+
+  private @Nullable SpilledState removeSpilled(StepAndKey stepAndKey) {
+    SpilledState spilledState = spilled.remove(stepAndKey);
+    if (spilledState != null) {
+      liveSpilledBytes -= spilledState.length;
+    }
+    return spilledState;
+  }
+
+  /**
+   * Copies the spilled states to a new spill file once the spill file holds more bytes of states
+   * which are no longer spilled than of spilled states. Since at least as many bytes must have
+   * been discarded since the previous compaction, each byte spilled is copied at most once on
+   * average.
+   */
+  private void compactIfMostlyDead() {
+    if (spillChannel == null) {
+      return;
+    }
+    try {
+      long deadBytes = spillChannel.length() - liveSpilledBytes;
+      if (deadBytes <= liveSpilledBytes) {
+        return;
+      }
+      if (spilled.isEmpty()) {
+        spillChannel.setLength(0);
+        return;
+      }
+      File compactedFile = File.createTempFile("beam-direct-state-", ".spill");
+      compactedFile.deleteOnExit();
+      RandomAccessFile compactedChannel = new RandomAccessFile(compactedFile, "rw");
+      Map<StepAndKey, SpilledState> compacted = new HashMap<>();
+      try {
+        for (Map.Entry<StepAndKey, SpilledState> entry : spilled.entrySet()) {
+          SpilledState spilledState = entry.getValue();
+          long offset = compactedChannel.getFilePointer();
+          compactedChannel.write(read(spilledState));
+          compacted.put(entry.getKey(), spilledState.withOffset(offset));
+        }
+      } catch (IOException e) {
+        compactedChannel.close();
+        compactedFile.delete();
+        throw e;
+      }
+      spillChannel.close();
+      spillFile.delete();
+      spillFile = compactedFile;
+      spillChannel = compactedChannel;
+      spilled.putAll(compacted);
+    } catch (IOException e) {
+      throw new RuntimeException(String.format("Failed to compact spill file %s", spillFile), e);
+    }
+  }
+
+  private SpilledState spill(CopyOnAccessInMemoryStateInternals<?> state) throws IOException {
+    StateTable table = state.getCommittedTable();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    List<SpilledCell> cells = new ArrayList<>();
+    for (StateNamespace namespace : table.getNamespacesInUse()) {
+      for (Map.Entry<StateTag, State> cell : table.getTagsInUse(namespace).entrySet()) {
+        if (((InMemoryState<?>) cell.getValue()).isCleared()) {
+          continue;
+        }
+        cell.getKey().bind(new EncodingBinder(cell.getValue(), bytes));
+        cells.add(new SpilledCell(namespace, cell.getKey()));
+      }
+    }
+    if (spillChannel == null) {
+      spillFile = File.createTempFile("beam-direct-state-", ".spill");
+      spillFile.deleteOnExit();
+      spillChannel = new RandomAccessFile(spillFile, "rw");
+    }
+    long offset = spillChannel.length();
+    spillChannel.seek(offset);
+    spillChannel.write(bytes.toByteArray());
+    return new SpilledState(state.getKey(), cells, offset, bytes.size());
+  }
+
+  private byte[] read(SpilledState spilledState) throws IOException {
+    byte[] bytes = new byte[spilledState.length];
+    spillChannel.seek(spilledState.offset);
+    spillChannel.readFully(bytes);
+    return bytes;
+  }
+
+  private CopyOnAccessInMemoryStateInternals restore(SpilledState spilledState)
+      throws IOException {
+    InputStream input = new ByteArrayInputStream(read(spilledState));
+    CopyOnAccessInMemoryStateInternals<?> state =
+        CopyOnAccessInMemoryStateInternals.withUnderlying(spilledState.key, null);
+    for (SpilledCell cell : spilledState.cells) {
+      cell.tag.bind(new DecodingBinder(state, cell.namespace, input));
+    }
+    return state.commit();
+  }
+
+  /** The location of a spilled state and the addresses of its cells, in encoding order. */
+  private static class SpilledState {
+    private final Object key;
+    private final List<SpilledCell> cells;
+    private final long offset;
+    private final int length;
+
+    private SpilledState(Object key, List<SpilledCell> cells, long offset, int length) {
+      this.key = key;
+      this.cells = cells;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    private SpilledState withOffset(long offset) {
+      return new SpilledState(key, cells, offset, length);
+    }
+  }
+
+  private static class SpilledCell {
+    private final StateNamespace namespace;
+    private final StateTag tag;
+
+    private SpilledCell(StateNamespace namespace, StateTag tag) {
+      this.namespace = namespace;
+      this.tag = tag;
+    }
+  }
+
+  /** Writes the contents of an existing {@link State} using the coders of its {@link StateTag}. */
+  private static class EncodingBinder implements StateBinder {
+    private final State existing;
+    private final OutputStream output;
+
+    private EncodingBinder(State existing, OutputStream output) {
+      this.existing = existing;
+      this.output = output;
+    }
+
+    private <T, StateT> StateT encode(Coder<T> coder, T value) {
+      try {
+        coder.encode(value, output);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      return (StateT) existing;
+    }
+
+    @Override
+    public <T> ValueState<T> bindValue(StateTag<ValueState<T>> address, Coder<T> coder) {
+      return encode(NullableCoder.of(coder), ((ValueState<T>) existing).read());
+    }
+
+    @Override
+    public <T> BagState<T> bindBag(StateTag<BagState<T>> address, Coder<T> elemCoder) {
+      return encode(IterableCoder.of(elemCoder), ((BagState<T>) existing).read());
+    }
+
+    @Override
+    public <T> SetState<T> bindSet(StateTag<SetState<T>> address, Coder<T> elemCoder) {
+      return encode(IterableCoder.of(elemCoder), ((SetState<T>) existing).read());
+    }
+
+    @Override
+    public <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
+        StateTag<MapState<KeyT, ValueT>> address,
+        Coder<KeyT> mapKeyCoder,
+        Coder<ValueT> mapValueCoder) {
+      Map<KeyT, ValueT> entries = new LinkedHashMap<>();
+      for (Map.Entry<KeyT, ValueT> entry :
+          ((MapState<KeyT, ValueT>) existing).entries().read()) {
+        entries.put(entry.getKey(), entry.getValue());
+      }
+      return encode(MapCoder.of(mapKeyCoder, NullableCoder.of(mapValueCoder)), entries);
+    }
+
+    @Override
+    public <T> OrderedListState<T> bindOrderedList(
+        StateTag<OrderedListState<T>> address, Coder<T> elemCoder) {
+      return encode(
+          IterableCoder.of(TimestampedValueCoder.of(elemCoder)),
+          ((OrderedListState<T>) existing).read());
+    }
+
+    @Override
+    public <InputT, AccumT, OutputT> CombiningState<InputT, AccumT, OutputT> bindCombiningValue(
+        StateTag<CombiningState<InputT, AccumT, OutputT>> address,
+        Coder<AccumT> accumCoder,
+        CombineFn<InputT, AccumT, OutputT> combineFn) {
+      return encode(accumCoder, ((CombiningState<InputT, AccumT, OutputT>) existing).getAccum());
+    }
+
+    @Override
+    public <InputT, AccumT, OutputT>
+        CombiningState<InputT, AccumT, OutputT> bindCombiningValueWithContext(
+            StateTag<CombiningState<InputT, AccumT, OutputT>> address,
+            Coder<AccumT> accumCoder,
+            CombineFnWithContext<InputT, AccumT, OutputT> combineFn) {
+      return encode(accumCoder, ((CombiningState<InputT, AccumT, OutputT>) existing).getAccum());
+    }
+
+    @Override
+    public WatermarkHoldState bindWatermark(
+        StateTag<WatermarkHoldState> address, TimestampCombiner timestampCombiner) {
+      return encode(NullableCoder.of(InstantCoder.of()), ((WatermarkHoldState) existing).read());
+    }
+  }
+
+  /**
+   * Reads the contents written by an {@link EncodingBinder} into the corresponding, newly bound
+   * {@link State} of a {@link CopyOnAccessInMemoryStateInternals}.
+   */
+  private static class DecodingBinder implements StateBinder {
+    private final CopyOnAccessInMemoryStateInternals<?> state;
+    private final StateNamespace namespace;
+    private final InputStream input;
+
+    private DecodingBinder(
+        CopyOnAccessInMemoryStateInternals<?> state, StateNamespace namespace, InputStream input) {
+      this.state = state;
+      this.namespace = namespace;
+      this.input = input;
+    }
+
+    private <T> T decode(Coder<T> coder) {
+      try {
+        return coder.decode(input);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public <T> ValueState<T> bindValue(StateTag<ValueState<T>> address, Coder<T> coder) {
+      ValueState<T> value = state.state(namespace, address);
+      value.write(decode(NullableCoder.of(coder)));
+      return value;
+    }
+
+    @Override
+    public <T> BagState<T> bindBag(StateTag<BagState<T>> address, Coder<T> elemCoder) {
+      BagState<T> bag = state.state(namespace, address);
+      for (T element : decode(IterableCoder.of(elemCoder))) {
+        bag.add(element);
+      }
+      return bag;
+    }
+
+    @Override
+    public <T> SetState<T> bindSet(StateTag<SetState<T>> address, Coder<T> elemCoder) {
+      SetState<T> set = state.state(namespace, address);
+      for (T element : decode(IterableCoder.of(elemCoder))) {
+        set.add(element);
+      }
+      return set;
+    }
+
+    @Override
+    public <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
+        StateTag<MapState<KeyT, ValueT>> address,
+        Coder<KeyT> mapKeyCoder,
+        Coder<ValueT> mapValueCoder) {
+      MapState<KeyT, ValueT> map = state.state(namespace, address);
+      for (Map.Entry<KeyT, ValueT> entry :
+          decode(MapCoder.of(mapKeyCoder, NullableCoder.of(mapValueCoder))).entrySet()) {
+        map.put(entry.getKey(), entry.getValue());
+      }
+      return map;
+    }
+
+    @Override
+    public <T> OrderedListState<T> bindOrderedList(
+        StateTag<OrderedListState<T>> address, Coder<T> elemCoder) {
+      OrderedListState<T> orderedList = state.state(namespace, address);
+      for (TimestampedValue<T> element :
+          decode(IterableCoder.of(TimestampedValueCoder.of(elemCoder)))) {
+        orderedList.add(element);
+      }
+      return orderedList;
+    }
+
+    @Override
+    public <InputT, AccumT, OutputT> CombiningState<InputT, AccumT, OutputT> bindCombiningValue(
+        StateTag<CombiningState<InputT, AccumT, OutputT>> address,
+        Coder<AccumT> accumCoder,
+        CombineFn<InputT, AccumT, OutputT> combineFn) {
+      CombiningState<InputT, AccumT, OutputT> combining = state.state(namespace, address);
+      combining.addAccum(decode(accumCoder));
+      return combining;
+    }
+
+    @Override
+    public <InputT, AccumT, OutputT>
+        CombiningState<InputT, AccumT, OutputT> bindCombiningValueWithContext(
+            StateTag<CombiningState<InputT, AccumT, OutputT>> address,
+            Coder<AccumT> accumCoder,
+            CombineFnWithContext<InputT, AccumT, OutputT> combineFn) {
+      CombiningState<InputT, AccumT, OutputT> combining = state.state(namespace, address);
+      combining.addAccum(decode(accumCoder));
+      return combining;
+    }
+
+    @Override
+    public WatermarkHoldState bindWatermark(
+        StateTag<WatermarkHoldState> address, TimestampCombiner timestampCombiner) {
+      WatermarkHoldState hold = state.state(namespace, address);
+      Instant timestamp = decode(NullableCoder.of(InstantCoder.of()));
+      if (timestamp != null) {
+        hold.add(timestamp);
+      }
+      return hold;
+    }
+  }
+}
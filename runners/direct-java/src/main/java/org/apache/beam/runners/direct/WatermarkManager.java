@@ -37,9 +37,11 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -231,12 +233,19 @@ class WatermarkManager<ExecutableT, CollectionT> {
     private final String name;
 
     private final Collection<? extends Watermark> inputWatermarks;
-    private final SortedMultiset<Bundle<?, ?>> pendingElements;
+    private final PendingBundles pendingElements;
 
     // This tracks only the quantity of timers at each timestamp, for quickly getting the cross-key
     // minimum
     private final SortedMultiset<TimerData> pendingTimers;
 
+    // The output timestamps of pendingTimers, which are not ordered by the timer timestamp.
+    private final SortedMultiset<Instant> pendingTimerOutputTimestamps;
+
+    // The timers within objectTimers across all keys, for quickly determining whether any timer
+    // can fire without visiting every key.
+    private final SortedMultiset<TimerData> unfiredTimers;
+
     // Entries in this table represent the authoritative timestamp for which
     // a per-key-and-StateNamespace timer is set.
     private final Map<StructuralKey<?>, Table<StateNamespace, String, TimerData>> existingTimers;
@@ -256,15 +265,10 @@ class WatermarkManager<ExecutableT, CollectionT> {
       this.name = name;
       this.inputWatermarks = inputWatermarks;
 
-      // The ordering must order elements by timestamp, and must not compare two distinct elements
-      // as equal. This is built on the assumption that any element added as a pending element will
-      // be consumed without modifications.
-      //
-      // The same logic is applied for pending timers
-      Ordering<Bundle<?, ?>> pendingBundleComparator =
-          new BundleByElementTimestampComparator().compound(Ordering.arbitrary());
-      this.pendingElements = TreeMultiset.create(pendingBundleComparator);
+      this.pendingElements = new PendingBundles();
       this.pendingTimers = TreeMultiset.create();
+      this.pendingTimerOutputTimestamps = TreeMultiset.create();
+      this.unfiredTimers = TreeMultiset.create();
       this.objectTimers = new HashMap<>();
       this.existingTimers = new HashMap<>();
       this.currentWatermark = new AtomicReference<>(BoundedWindow.TIMESTAMP_MIN_VALUE);
@@ -297,46 +301,59 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * </ul>
      */
     @Override
-    public synchronized WatermarkUpdate refresh() {
-      Instant oldWatermark = currentWatermark.get();
+    public WatermarkUpdate refresh() {
       Instant minInputWatermark = BoundedWindow.TIMESTAMP_MAX_VALUE;
       for (Watermark inputWatermark : inputWatermarks) {
         minInputWatermark = INSTANT_ORDERING.min(minInputWatermark, inputWatermark.get());
       }
-      if (!pendingElements.isEmpty()) {
-        minInputWatermark =
-            INSTANT_ORDERING.min(
-                minInputWatermark, pendingElements.firstEntry().getElement().getMinimumTimestamp());
-      }
-      Instant newWatermark = INSTANT_ORDERING.max(oldWatermark, minInputWatermark);
-      currentWatermark.set(newWatermark);
-      return updateAndTrace(getName(), oldWatermark, newWatermark);
+      minInputWatermark =
+          INSTANT_ORDERING.min(minInputWatermark, pendingElements.getMinimumTimestamp());
+      Instant oldWatermark = currentWatermark.getAndAccumulate(minInputWatermark, INSTANT_MAX);
+      return updateAndTrace(getName(), oldWatermark, currentWatermark.get());
     }
 
-    private synchronized void addPending(Bundle<?, ?> newPending) {
+    private void addPending(Bundle<?, ?> newPending) {
       pendingElements.add(newPending);
     }
 
-    private synchronized void removePending(Bundle<?, ?> completed) {
+    private void removePending(Bundle<?, ?> completed) {
       pendingElements.remove(completed);
     }
 
     @VisibleForTesting
     synchronized Instant getEarliestTimerTimestamp() {
-      if (pendingTimers.isEmpty()) {
+      if (pendingTimerOutputTimestamps.isEmpty()) {
         return BoundedWindow.TIMESTAMP_MAX_VALUE;
       } else {
-        return getMinimumOutputTimestamp(pendingTimers);
+        return pendingTimerOutputTimestamps.firstEntry().getElement();
       }
     }
 
-    private Instant getMinimumOutputTimestamp(SortedMultiset<TimerData> timers) {
-      Instant minimumOutputTimestamp = timers.firstEntry().getElement().getOutputTimestamp();
-      for (TimerData timerData : timers) {
-        minimumOutputTimestamp =
-            INSTANT_ORDERING.min(timerData.getOutputTimestamp(), minimumOutputTimestamp);
+    @GuardedBy("this")
+    private void addPendingTimer(TimerData timer) {
+      pendingTimers.add(timer);
+      pendingTimerOutputTimestamps.add(timer.getOutputTimestamp());
+    }
+
+    @GuardedBy("this")
+    private void removePendingTimer(TimerData timer) {
+      if (pendingTimers.remove(timer)) {
+        pendingTimerOutputTimestamps.remove(timer.getOutputTimestamp());
+      }
+    }
+
+    @GuardedBy("this")
+    private void addKeyTimer(NavigableSet<TimerData> keyTimers, TimerData timer) {
+      if (keyTimers.add(timer)) {
+        unfiredTimers.add(timer);
+      }
+    }
+
+    @GuardedBy("this")
+    private void removeKeyTimer(NavigableSet<TimerData> keyTimers, TimerData timer) {
+      if (keyTimers.remove(timer)) {
+        unfiredTimers.remove(timer);
       }
-      return minimumOutputTimestamp;
     }
 
     @VisibleForTesting
@@ -354,16 +371,16 @@ class WatermarkManager<ExecutableT, CollectionT> {
                   timer.getNamespace(), timer.getTimerId() + '+' + timer.getTimerFamilyId());
 
           if (existingTimer == null) {
-            pendingTimers.add(timer);
-            keyTimers.add(timer);
+            addPendingTimer(timer);
+            addKeyTimer(keyTimers, timer);
           } else {
             // reinitialize the timer even if identical,
             // because it might be removed from objectTimers
             // by timer push back
-            pendingTimers.remove(existingTimer);
-            keyTimers.remove(existingTimer);
-            pendingTimers.add(timer);
-            keyTimers.add(timer);
+            removePendingTimer(existingTimer);
+            removeKeyTimer(keyTimers, existingTimer);
+            addPendingTimer(timer);
+            addKeyTimer(keyTimers, timer);
           }
 
           existingTimersForKey.put(
@@ -379,8 +396,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
                   timer.getNamespace(), timer.getTimerId() + '+' + timer.getTimerFamilyId());
 
           if (existingTimer != null) {
-            pendingTimers.remove(existingTimer);
-            keyTimers.remove(existingTimer);
+            removePendingTimer(existingTimer);
+            removeKeyTimer(keyTimers, existingTimer);
             existingTimersForKey.remove(
                 existingTimer.getNamespace(),
                 existingTimer.getTimerId() + '+' + existingTimer.getTimerFamilyId());
@@ -390,8 +407,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
       for (TimerData timer : update.getCompletedTimers()) {
         if (TimeDomain.EVENT_TIME.equals(timer.getDomain())) {
-          keyTimers.remove(timer);
-          pendingTimers.remove(timer);
+          removeKeyTimer(keyTimers, timer);
+          removePendingTimer(timer);
         }
       }
 
@@ -405,7 +422,20 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
     @VisibleForTesting
     synchronized Map<StructuralKey<?>, List<TimerData>> extractFiredEventTimeTimers() {
-      return extractFiredTimers(currentWatermark.get(), objectTimers);
+      Instant watermark = currentWatermark.get();
+      if (unfiredTimers.isEmpty()
+          || !unfiredTimers.firstEntry().getElement().getTimestamp().isBefore(watermark)) {
+        // Avoid visiting every key when no timer can fire.
+        return Collections.emptyMap();
+      }
+      Map<StructuralKey<?>, List<TimerData>> firedTimers =
+          extractFiredTimers(watermark, objectTimers);
+      for (List<TimerData> keyFiredTimers : firedTimers.values()) {
+        for (TimerData timer : keyFiredTimers) {
+          unfiredTimers.remove(timer);
+        }
+      }
+      return firedTimers;
     }
 
     @Override
@@ -516,7 +546,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
     private final String name;
 
     private final Collection<? extends Watermark> inputWms;
-    private final Collection<Bundle<?, ?>> pendingBundles;
+    private final Set<Bundle<?, ?>> pendingBundles;
     private final Map<StructuralKey<?>, NavigableSet<TimerData>> processingTimers;
     private final Map<StructuralKey<?>, NavigableSet<TimerData>> synchronizedProcessingTimers;
     private final Map<StructuralKey<?>, Table<StateNamespace, String, TimerData>> existingTimers;
@@ -534,7 +564,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
       this.name = name;
       this.inputWms = inputWms;
-      this.pendingBundles = new HashSet<>();
+      this.pendingBundles = ConcurrentHashMap.newKeySet();
       this.processingTimers = new HashMap<>();
       this.synchronizedProcessingTimers = new HashMap<>();
       this.existingTimers = new HashMap<>();
@@ -588,11 +618,11 @@ class WatermarkManager<ExecutableT, CollectionT> {
       return updateAndTrace(getName(), oldHold, minTime);
     }
 
-    public synchronized void addPending(Bundle<?, ?> bundle) {
+    public void addPending(Bundle<?, ?> bundle) {
       pendingBundles.add(bundle);
     }
 
-    public synchronized void removePending(Bundle<?, ?> bundle) {
+    public void removePending(Bundle<?, ?> bundle) {
       pendingBundles.remove(bundle);
     }
 
@@ -846,6 +876,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
   private static final Ordering<Instant> INSTANT_ORDERING = Ordering.natural();
 
+  private static final BinaryOperator<Instant> INSTANT_MAX = INSTANT_ORDERING::max;
+
   /**
    * For each (Object, NavigableSet) pair in the provided map, remove each Timer that is before the
    * latestTime argument and put in in the result with the same key, then remove all of the keys
@@ -1213,7 +1245,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
    * Refresh the watermarks contained within this {@link WatermarkManager}, causing all watermarks
    * to be advanced as far as possible.
    */
-  public synchronized void refreshAll() {
+  public void refreshAll() {
     refreshLock.lock();
     try {
       applyAllPendingUpdates();
@@ -1404,8 +1436,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
     private final SynchronizedProcessingTimeInputWatermark synchronizedProcessingInputWatermark;
     private final SynchronizedProcessingTimeOutputWatermark synchronizedProcessingOutputWatermark;
 
-    private Instant latestSynchronizedInputWm;
-    private Instant latestSynchronizedOutputWm;
+    private final AtomicReference<Instant> latestSynchronizedInputWm;
+    private final AtomicReference<Instant> latestSynchronizedOutputWm;
 
     private TransformWatermarks(
         ExecutableT executable,
@@ -1419,8 +1451,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
       this.synchronizedProcessingInputWatermark = inputSynchProcessingWatermark;
       this.synchronizedProcessingOutputWatermark = outputSynchProcessingWatermark;
-      this.latestSynchronizedInputWm = BoundedWindow.TIMESTAMP_MIN_VALUE;
-      this.latestSynchronizedOutputWm = BoundedWindow.TIMESTAMP_MIN_VALUE;
+      this.latestSynchronizedInputWm = new AtomicReference<>(BoundedWindow.TIMESTAMP_MIN_VALUE);
+      this.latestSynchronizedOutputWm = new AtomicReference<>(BoundedWindow.TIMESTAMP_MIN_VALUE);
     }
 
     /** Returns the input watermark of the {@link AppliedPTransform}. */
@@ -1439,12 +1471,10 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * <p>The returned value is guaranteed to be monotonically increasing, and outside of the
      * presence of holds, will increase as the system time progresses.
      */
-    public synchronized Instant getSynchronizedProcessingInputTime() {
-      latestSynchronizedInputWm =
-          INSTANT_ORDERING.max(
-              latestSynchronizedInputWm,
-              INSTANT_ORDERING.min(clock.now(), synchronizedProcessingInputWatermark.get()));
-      return latestSynchronizedInputWm;
+    public Instant getSynchronizedProcessingInputTime() {
+      return latestSynchronizedInputWm.accumulateAndGet(
+          INSTANT_ORDERING.min(clock.now(), synchronizedProcessingInputWatermark.get()),
+          INSTANT_MAX);
     }
 
     /**
@@ -1453,12 +1483,10 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * <p>The returned value is guaranteed to be monotonically increasing, and outside of the
      * presence of holds, will increase as the system time progresses.
      */
-    public synchronized Instant getSynchronizedProcessingOutputTime() {
-      latestSynchronizedOutputWm =
-          INSTANT_ORDERING.max(
-              latestSynchronizedOutputWm,
-              INSTANT_ORDERING.min(clock.now(), synchronizedProcessingOutputWatermark.get()));
-      return latestSynchronizedOutputWm;
+    public Instant getSynchronizedProcessingOutputTime() {
+      return latestSynchronizedOutputWm.accumulateAndGet(
+          INSTANT_ORDERING.min(clock.now(), synchronizedProcessingOutputWatermark.get()),
+          INSTANT_MAX);
     }
 
     private WatermarkUpdate refresh() {
@@ -1812,6 +1840,38 @@ class WatermarkManager<ExecutableT, CollectionT> {
     }
   }
 
+  /**
+   * A lock-free multiset of pending {@link Bundle Bundles} ordered by the timestamp of their
+   * earliest element.
+   */
+  private static class PendingBundles {
+    // The ordering must order elements by timestamp, and must not compare two distinct elements
+    // as equal. This is built on the assumption that any element added as a pending element will
+    // be consumed without modifications.
+    private final ConcurrentSkipListMap<Bundle<?, ?>, Integer> counts =
+        new ConcurrentSkipListMap<>(
+            new BundleByElementTimestampComparator().compound(Ordering.arbitrary()));
+
+    private void add(Bundle<?, ?> bundle) {
+      counts.merge(bundle, 1, Integer::sum);
+    }
+
+    private void remove(Bundle<?, ?> bundle) {
+      counts.computeIfPresent(bundle, (ignored, count) -> count == 1 ? null : count - 1);
+    }
+
+    /** Returns the earliest element timestamp, or the end of time if there are no bundles. */
+    private Instant getMinimumTimestamp() {
+      Map.Entry<Bundle<?, ?>, Integer> first = counts.firstEntry();
+      return first == null ? THE_END_OF_TIME.get() : first.getKey().getMinimumTimestamp();
+    }
+
+    @Override
+    public String toString() {
+      return counts.keySet().toString();
+    }
+  }
+
   private static class BundleByElementTimestampComparator extends Ordering<Bundle<?, ?>>
       implements Serializable {
 
@@ -450,6 +450,45 @@ public class DirectRunnerTest implements Serializable {
     pipeline.run();
   }
 
+  @Test
+  public void testInvalidEnforcementSampleRateFails() {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options.as(DirectOptions.class).setEnforcementSampleRate(1.5);
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("enforcementSampleRate");
+    DirectRunner.fromOptions(options);
+  }
+
+  /**
+   * Tests that a {@link DoFn} that mutates an output succeeds in the {@link DirectRunner} when no
+   * bundles are sampled for enforcement.
+   */
+  @Test
+  public void testMutatingOutputWithZeroEnforcementSampleRateSucceeds() throws Exception {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options.setRunner(DirectRunner.class);
+    options.as(DirectOptions.class).setEnforcementSampleRate(0);
+    Pipeline pipeline = Pipeline.create(options);
+
+    PCollection<List<Integer>> mutated =
+        pipeline
+            .apply(Create.of(42))
+            .apply(
+                ParDo.of(
+                    new DoFn<Integer, List<Integer>>() {
+                      @ProcessElement
+                      public void processElement(ProcessContext c) {
+                        List<Integer> outputList = Arrays.asList(1, 2, 3, 4);
+                        c.output(outputList);
+                        outputList.set(0, 37);
+                      }
+                    }));
+    PAssert.that(mutated).containsInAnyOrder(Arrays.asList(37, 2, 3, 4));
+
+    pipeline.run();
+  }
+
   /**
    * Tests that a {@link DoFn} that mutates an output with a good equals() fails in the {@link
    * DirectRunner}.
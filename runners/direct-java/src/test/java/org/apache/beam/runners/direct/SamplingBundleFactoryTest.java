@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.theInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.beam.sdk.coders.ListCoder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.joda.time.Instant;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SamplingBundleFactory}. */
+@RunWith(JUnit4.class)
+public class SamplingBundleFactoryTest {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+  @Rule public final TestPipeline p = TestPipeline.create().enableAbandonedNodeEnforcement(false);
+
+  private PCollection<List<Integer>> pcollection;
+
+  @Before
+  public void setup() {
+    pcollection =
+        p.apply(Create.of(Arrays.asList(1, 2)).withCoder(ListCoder.of(VarIntCoder.of())));
+  }
+
+  @Test
+  public void allBundlesSampledClonesElements() {
+    BundleFactory factory =
+        SamplingBundleFactory.create(
+            CloningBundleFactory.create(), ImmutableListBundleFactory.create(), 1.0);
+    WindowedValue<List<Integer>> element =
+        WindowedValue.valueInGlobalWindow(new ArrayList<>(Arrays.asList(1, 2)));
+
+    CommittedBundle<List<Integer>> bundle =
+        factory.createBundle(pcollection).add(element).commit(Instant.now());
+
+    WindowedValue<List<Integer>> committed = Iterables.getOnlyElement(bundle.getElements());
+    assertThat(committed, equalTo(element));
+    assertThat(committed.getValue(), not(theInstance(element.getValue())));
+  }
+
+  @Test
+  public void noBundlesSampledPassesElementsThrough() {
+    BundleFactory factory =
+        SamplingBundleFactory.create(
+            CloningBundleFactory.create(), ImmutableListBundleFactory.create(), 0.0);
+    WindowedValue<List<Integer>> element =
+        WindowedValue.valueInGlobalWindow(new ArrayList<>(Arrays.asList(1, 2)));
+
+    CommittedBundle<List<Integer>> bundle =
+        factory.createBundle(pcollection).add(element).commit(Instant.now());
+
+    assertThat(bundle.getElements(), contains(theInstance(element)));
+  }
+
+  @Test
+  public void rootBundlesNotSampled() {
+    BundleFactory factory =
+        SamplingBundleFactory.create(
+            CloningBundleFactory.create(), ImmutableListBundleFactory.create(), 1.0);
+    WindowedValue<Object> element = WindowedValue.valueInGlobalWindow(new Object());
+
+    CommittedBundle<Object> bundle =
+        factory.<Object>createRootBundle().add(element).commit(Instant.now());
+
+    assertThat(bundle.getElements(), contains(theInstance(element)));
+  }
+
+  @Test
+  public void invalidSampleRateThrows() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Sample rate");
+    SamplingBundleFactory.create(
+        CloningBundleFactory.create(), ImmutableListBundleFactory.create(), 1.5);
+  }
+}
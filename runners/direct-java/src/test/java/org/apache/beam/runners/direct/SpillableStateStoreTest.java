@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.theInstance;
+
+import org.apache.beam.runners.core.StateNamespace;
+import org.apache.beam.runners.core.StateNamespaceForTest;
+import org.apache.beam.runners.core.StateTag;
+import org.apache.beam.runners.core.StateTags;
+import org.apache.beam.runners.local.StructuralKey;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.state.BagState;
+import org.apache.beam.sdk.state.CombiningState;
+import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.state.WatermarkHoldState;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.Sum;
+import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
+import org.apache.beam.sdk.values.PCollection;
+import org.joda.time.Instant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SpillableStateStore}. */
+@RunWith(JUnit4.class)
+public class SpillableStateStoreTest {
+  @Rule public final TestPipeline p = TestPipeline.create().enableAbandonedNodeEnforcement(false);
+
+  private final StateNamespace namespace = new StateNamespaceForTest("foo");
+  private final StateTag<BagState<String>> bagTag = StateTags.bag("bag", StringUtf8Coder.of());
+  private final StateTag<ValueState<String>> valueTag =
+      StateTags.value("value", StringUtf8Coder.of());
+  private final StateTag<MapState<String, Integer>> mapTag =
+      StateTags.map("map", StringUtf8Coder.of(), VarIntCoder.of());
+  private final StateTag<CombiningState<Integer, int[], Integer>> sumTag =
+      StateTags.combiningValueFromInputInternal("sum", VarIntCoder.of(), Sum.ofIntegers());
+  private final StateTag<WatermarkHoldState> holdTag =
+      StateTags.watermarkStateInternal("hold", TimestampCombiner.EARLIEST);
+
+  private AppliedPTransform<?, ?, ?> step;
+  private SpillableStateStore store;
+
+  @Before
+  public void setup() {
+    PCollection<Integer> created = p.apply(Create.of(1, 2, 3));
+    step = DirectGraphs.getProducer(created);
+    store = SpillableStateStore.withMaxInMemoryKeys(1);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    store.close();
+  }
+
+  @Test
+  public void testSpillAndRestore() {
+    StepAndKey foo = stepAndKey("foo");
+    StepAndKey bar = stepAndKey("bar");
+    CopyOnAccessInMemoryStateInternals<String> fooState = committedState("foo", 1);
+    store.put(foo, fooState);
+    assertThat(store.get(foo), theInstance(fooState));
+
+    store.put(bar, committedState("bar", 2));
+    assertThat(store.getSpilledCount(), equalTo(1));
+
+    CopyOnAccessInMemoryStateInternals restored = store.get(foo);
+    assertThat(store.getSpilledCount(), equalTo(1));
+    assertThat(restored.getKey(), equalTo("foo"));
+    assertThat(restored.state(namespace, bagTag).read(), containsInAnyOrder("foo-1", "foo-2"));
+    assertThat(restored.state(namespace, valueTag).read(), equalTo("foo"));
+    assertThat(restored.state(namespace, mapTag).get("foo").read(), equalTo(1));
+    assertThat(restored.state(namespace, sumTag).read(), equalTo(3));
+    assertThat(restored.state(namespace, holdTag).read(), equalTo(new Instant(1)));
+    assertThat(restored.getEarliestWatermarkHold(), equalTo(new Instant(1)));
+
+    assertThat(store.get(bar).state(namespace, valueTag).read(), equalTo("bar"));
+  }
+
+  @Test
+  public void testRemoveSpilled() {
+    store.put(stepAndKey("foo"), committedState("foo", 1));
+    store.put(stepAndKey("bar"), committedState("bar", 2));
+    store.remove(stepAndKey("foo"));
+
+    assertThat(store.getSpilledCount(), equalTo(0));
+    assertThat(store.get(stepAndKey("foo")), nullValue());
+  }
+
+  @Test
+  public void testCompactsSpillFile() throws Exception {
+    StepAndKey foo = stepAndKey("foo");
+    StepAndKey bar = stepAndKey("bar");
+    store.put(foo, committedState("foo", 1));
+    store.put(bar, committedState("bar", 2));
+    long spilledLength = store.getSpillFileLength();
+
+    // Each access restores one state and spills the other.
+    for (int i = 0; i < 100; i++) {
+      assertThat(store.get(i % 2 == 0 ? foo : bar), notNullValue());
+    }
+    assertThat(store.getSpillFileLength(), lessThanOrEqualTo(2 * spilledLength));
+    assertThat(store.get(foo).state(namespace, valueTag).read(), equalTo("foo"));
+    assertThat(store.get(bar).state(namespace, valueTag).read(), equalTo("bar"));
+
+    store.remove(foo);
+    store.remove(bar);
+    assertThat(store.getSpillFileLength(), equalTo(0L));
+  }
+
+  @Test
+  public void testInMemoryNeverSpills() {
+    store = SpillableStateStore.inMemory();
+    for (int i = 0; i < 100; i++) {
+      store.put(stepAndKey("key" + i), committedState("key" + i, i));
+    }
+    assertThat(store.getSpilledCount(), equalTo(0));
+  }
+
+  private StepAndKey stepAndKey(String key) {
+    return StepAndKey.of(step, StructuralKey.of(key, StringUtf8Coder.of()));
+  }
+
+  private CopyOnAccessInMemoryStateInternals<String> committedState(String key, long hold) {
+    CopyOnAccessInMemoryStateInternals<String> state =
+        CopyOnAccessInMemoryStateInternals.withUnderlying(key, null);
+    state.state(namespace, bagTag).add(key + "-1");
+    state.state(namespace, bagTag).add(key + "-2");
+    state.state(namespace, valueTag).write(key);
+    state.state(namespace, mapTag).put(key, 1);
+    state.state(namespace, sumTag).add(1);
+    state.state(namespace, sumTag).add(2);
+    state.state(namespace, holdTag).add(new Instant(hold));
+    return state.commit();
+  }
+}
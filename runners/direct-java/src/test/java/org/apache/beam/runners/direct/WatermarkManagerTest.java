@@ -1650,6 +1650,59 @@ public class WatermarkManagerTest implements Serializable {
     assertThat(fired.entrySet(), empty());
   }
 
+  @Test
+  public void inputWatermarkTracksTimersAcrossKeys() {
+    Watermark mockWatermark = Mockito.mock(Watermark.class);
+    when(mockWatermark.get()).thenReturn(new Instant(0));
+
+    AppliedPTransformInputWatermark underTest =
+        new AppliedPTransformInputWatermark(
+            "underTest", ImmutableList.of(mockWatermark), update -> {});
+    underTest.refresh();
+
+    StructuralKey<String> firstKey = StructuralKey.of("first", StringUtf8Coder.of());
+    StructuralKey<String> secondKey = StructuralKey.of("second", StringUtf8Coder.of());
+    // The output timestamps are not ordered by the firing timestamps.
+    TimerData early =
+        TimerData.of(
+            "early",
+            StateNamespaces.global(),
+            new Instant(100),
+            new Instant(90),
+            TimeDomain.EVENT_TIME);
+    TimerData late =
+        TimerData.of(
+            "late",
+            StateNamespaces.global(),
+            new Instant(500),
+            new Instant(50),
+            TimeDomain.EVENT_TIME);
+    underTest.updateTimers(TimerUpdate.builder(firstKey).setTimer(early).build());
+    underTest.updateTimers(TimerUpdate.builder(secondKey).setTimer(late).build());
+    assertEquals(new Instant(50), underTest.getEarliestTimerTimestamp());
+
+    // No timer can fire before the watermark passes its timestamp.
+    assertThat(underTest.extractFiredEventTimeTimers().entrySet(), empty());
+
+    when(mockWatermark.get()).thenReturn(new Instant(200));
+    underTest.refresh();
+    Map<StructuralKey<?>, List<TimerData>> fired = underTest.extractFiredEventTimeTimers();
+    assertThat(fired.keySet(), contains(firstKey));
+    assertThat(fired.get(firstKey), contains(early));
+    // Fired timers hold the watermark until they are completed.
+    assertEquals(new Instant(50), underTest.getEarliestTimerTimestamp());
+
+    underTest.updateTimers(TimerUpdate.builder(secondKey).deletedTimer(late).build());
+    assertEquals(new Instant(90), underTest.getEarliestTimerTimestamp());
+    underTest.updateTimers(
+        TimerUpdate.builder(firstKey).withCompletedTimers(fired.get(firstKey)).build());
+    assertEquals(BoundedWindow.TIMESTAMP_MAX_VALUE, underTest.getEarliestTimerTimestamp());
+
+    when(mockWatermark.get()).thenReturn(new Instant(1000));
+    underTest.refresh();
+    assertThat(underTest.extractFiredEventTimeTimers().entrySet(), empty());
+  }
+
   @Test
   public void timerUpdateBuilderBuildAddsAllAddedTimers() {
     TimerData set =
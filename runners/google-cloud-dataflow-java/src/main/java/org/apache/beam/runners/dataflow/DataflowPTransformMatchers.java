@@ -20,12 +20,18 @@ package org.apache.beam.runners.dataflow;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.MoreObjects.toStringHelper;
 
 import java.util.ArrayDeque;
+import org.apache.beam.runners.core.construction.PTransformReplacements;
 import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.coders.CannotProvideCoderException;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.VoidCoder;
 import org.apache.beam.sdk.runners.AppliedPTransform;
 import org.apache.beam.sdk.runners.PTransformMatcher;
 import org.apache.beam.sdk.runners.TransformHierarchy;
 import org.apache.beam.sdk.transforms.Combine;
 import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.values.PCollection;
 
 /**
  * A set of {@link PTransformMatcher PTransformMatchers} that are used in the Dataflow Runner and
@@ -37,6 +43,87 @@ import org.apache.beam.sdk.transforms.PTransform;
 class DataflowPTransformMatchers {
   private DataflowPTransformMatchers() {}
 
+  /**
+   * Matches {@link PTransform}s of class {@link Combine.PerKey} which can be expanded using {@link
+   * Combine.PerKey#withHotKeyFanout(int)}. That is, they have no side inputs, use a {@link
+   * Combine.CombineFn} with a known accumulator coder, are not keyed by {@link Void}, which is how
+   * {@link Combine.Globally} is implemented, and are not already part of the expansion of a {@link
+   * Combine.PerKeyWithHotKeyFanout}.
+   */
+  static class CombinePerKeyWithHotKeyFanoutPTransformMatcher implements PTransformMatcher {
+
+    @Override
+    public boolean matches(AppliedPTransform<?, ?, ?> application) {
+      if (!application.getTransform().getClass().equals(Combine.PerKey.class)) {
+        return false;
+      }
+      Combine.PerKey<?, ?, ?> combine = (Combine.PerKey<?, ?, ?>) application.getTransform();
+      if (!combine.getSideInputs().isEmpty() || !(combine.getFn() instanceof Combine.CombineFn)) {
+        return false;
+      }
+      Coder<?> inputCoder =
+          PTransformReplacements.getSingletonMainInput(
+                  (AppliedPTransform<PCollection<?>, ?, ?>) application)
+              .getCoder();
+      if (!(inputCoder instanceof KvCoder)
+          || ((KvCoder<?, ?>) inputCoder).getKeyCoder() instanceof VoidCoder) {
+        return false;
+      }
+      return hasAccumulatorCoder(
+              (Combine.CombineFn<?, ?, ?>) combine.getFn(),
+              ((KvCoder<?, ?>) inputCoder).getValueCoder(),
+              application.getPipeline())
+          && !isWithinHotKeyFanout(application);
+    }
+
+    /**
+     * Returns whether the transform is nested within a {@link Combine.PerKeyWithHotKeyFanout},
+     * whose expansion itself contains {@link Combine.PerKey} transforms.
+     */
+    private static boolean isWithinHotKeyFanout(AppliedPTransform<?, ?, ?> application) {
+      final String prefix = application.getFullName() + "/";
+      final boolean[] nested = new boolean[1];
+      application
+          .getPipeline()
+          .traverseTopologically(
+              new Pipeline.PipelineVisitor.Defaults() {
+                @Override
+                public CompositeBehavior enterCompositeTransform(TransformHierarchy.Node node) {
+                  if (node.isRootNode()) {
+                    return CompositeBehavior.ENTER_TRANSFORM;
+                  }
+                  String nodePrefix = node.getFullName() + "/";
+                  if (!prefix.startsWith(nodePrefix) || prefix.equals(nodePrefix)) {
+                    // Only the strict ancestors of the transform need to be visited.
+                    return CompositeBehavior.DO_NOT_ENTER_TRANSFORM;
+                  }
+                  if (node.getTransform() instanceof Combine.PerKeyWithHotKeyFanout) {
+                    nested[0] = true;
+                  }
+                  return CompositeBehavior.ENTER_TRANSFORM;
+                }
+              });
+      return nested[0];
+    }
+
+    private static <InputT> boolean hasAccumulatorCoder(
+        Combine.CombineFn<InputT, ?, ?> fn, Coder<?> inputCoder, Pipeline pipeline) {
+      try {
+        @SuppressWarnings("unchecked")
+        Coder<InputT> typedInputCoder = (Coder<InputT>) inputCoder;
+        fn.getAccumulatorCoder(pipeline.getCoderRegistry(), typedInputCoder);
+        return true;
+      } catch (CannotProvideCoderException e) {
+        return false;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return toStringHelper(CombinePerKeyWithHotKeyFanoutPTransformMatcher.class).toString();
+    }
+  }
+
   /**
    * Matches {@link PTransform}s of class {@link Combine.GroupedValues} that have no side inputs.
    */
@@ -503,6 +503,13 @@ public class DataflowRunner extends PipelineRunner<DataflowPipelineJob> {
                 new SplittableParDoOverrides.SplittableParDoOverrideFactory()));
 
     if (streaming) {
+      if (options.getHotKeyFanout() > 1) {
+        // Must precede the replacement of Combine.GroupedValues which is applied by Combine.PerKey.
+        overridesBuilder.add(
+            PTransformOverride.of(
+                new DataflowPTransformMatchers.CombinePerKeyWithHotKeyFanoutPTransformMatcher(),
+                new CombinePerKeyWithHotKeyFanoutOverrideFactory(options.getHotKeyFanout())));
+      }
       if (!hasExperiment(options, "enable_custom_pubsub_source")) {
         overridesBuilder.add(
             PTransformOverride.of(
@@ -2129,6 +2136,42 @@ public class DataflowRunner extends PipelineRunner<DataflowPipelineJob> {
     }
   }
 
+  /**
+   * Replaces a {@link Combine.PerKey} with {@link Combine.PerKey#withHotKeyFanout(int)} so that the
+   * values of each key are partially combined across several sub-keys before the final combine.
+   */
+  private static class CombinePerKeyWithHotKeyFanoutOverrideFactory<K, InputT, OutputT>
+      implements PTransformOverrideFactory<
+          PCollection<KV<K, InputT>>,
+          PCollection<KV<K, OutputT>>,
+          Combine.PerKey<K, InputT, OutputT>> {
+
+    private final int hotKeyFanout;
+
+    private CombinePerKeyWithHotKeyFanoutOverrideFactory(int hotKeyFanout) {
+      this.hotKeyFanout = hotKeyFanout;
+    }
+
+    @Override
+    public PTransformReplacement<PCollection<KV<K, InputT>>, PCollection<KV<K, OutputT>>>
+        getReplacementTransform(
+            AppliedPTransform<
+                    PCollection<KV<K, InputT>>,
+                    PCollection<KV<K, OutputT>>,
+                    Combine.PerKey<K, InputT, OutputT>>
+                transform) {
+      return PTransformReplacement.of(
+          PTransformReplacements.getSingletonMainInput(transform),
+          transform.getTransform().withHotKeyFanout(hotKeyFanout));
+    }
+
+    @Override
+    public Map<PCollection<?>, ReplacementOutput> mapOutputs(
+        Map<TupleTag<?>, PCollection<?>> outputs, PCollection<KV<K, OutputT>> newOutput) {
+      return ReplacementOutputs.singleton(outputs, newOutput);
+    }
+  }
+
   private static class StreamingPubsubIOWriteOverrideFactory
       implements PTransformOverrideFactory<PCollection<PubsubMessage>, PDone, PubsubUnboundedSink> {
 
@@ -217,4 +217,19 @@ public interface DataflowPipelineOptions
   boolean isHotKeyLoggingEnabled();
 
   void setHotKeyLoggingEnabled(boolean value);
+
+  /**
+   * If greater than one, each combiner-based GroupByKey of a streaming pipeline first combines the
+   * values of every key across this many intermediate sub-keys so that a single hot key does not
+   * bound the throughput of the pipeline. See {@link
+   * org.apache.beam.sdk.transforms.Combine.PerKey#withHotKeyFanout(int)}.
+   */
+  @Description(
+      "If greater than one, each combiner-based GroupByKey of a streaming pipeline first combines "
+          + "the values of every key across this many intermediate sub-keys so that a single hot "
+          + "key does not bound the throughput of the pipeline.")
+  @Default.Integer(0)
+  int getHotKeyFanout();
+
+  void setHotKeyFanout(int value);
 }
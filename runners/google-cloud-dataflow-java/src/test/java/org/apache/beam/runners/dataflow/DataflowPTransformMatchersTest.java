@@ -116,6 +116,41 @@ public class DataflowPTransformMatchersTest {
     assertThat(matcher.matches(groupedValues), is(false));
   }
 
+  /**
+   * Test the cases that the matcher should successfully match against. In this case, it should
+   * match against a {@link Combine.PerKey} without side inputs.
+   */
+  @Test
+  public void combinePerKeyWithHotKeyFanoutSuccessfulMatches() {
+    PTransformMatcher matcher =
+        new DataflowPTransformMatchers.CombinePerKeyWithHotKeyFanoutPTransformMatcher();
+
+    AppliedPTransform<?, ?, ?> combinePerKey =
+        getTransformFrom(createCombinePerKeyPipeline(), Combine.PerKey.class);
+    assertThat(matcher.matches(combinePerKey), is(true));
+  }
+
+  /**
+   * Test significant cases that the matcher should not match against. In this case, this tests that
+   * a {@link Combine.PerKey} with side inputs and the {@link Combine.PerKey} used to implement
+   * {@link Combine.Globally} will not match.
+   */
+  @Test
+  public void combinePerKeyWithHotKeyFanoutSkipsNonmatching() {
+    PTransformMatcher matcher =
+        new DataflowPTransformMatchers.CombinePerKeyWithHotKeyFanoutPTransformMatcher();
+    AppliedPTransform<?, ?, ?> combinePerKey;
+
+    combinePerKey =
+        getTransformFrom(createCombinePerKeyWithSideInputsPipeline(), Combine.PerKey.class);
+    assertThat(matcher.matches(combinePerKey), is(false));
+
+    TestPipeline pipeline = TestPipeline.create().enableAbandonedNodeEnforcement(false);
+    pipeline.apply(Create.of(1, 2, 3)).apply(Combine.globally(new SumCombineFn()));
+    combinePerKey = getTransformFrom(pipeline, Combine.PerKey.class);
+    assertThat(matcher.matches(combinePerKey), is(false));
+  }
+
   /** Creates a simple pipeline with a {@link Combine.PerKey}. */
   private static TestPipeline createCombinePerKeyPipeline() {
     TestPipeline pipeline = TestPipeline.create().enableAbandonedNodeEnforcement(false);
@@ -178,6 +213,12 @@ public class DataflowPTransformMatchersTest {
 
   /** Traverse the pipeline and return the first {@link Combine.GroupedValues} found. */
   private static AppliedPTransform<?, ?, ?> getCombineGroupedValuesFrom(TestPipeline pipeline) {
+    return getTransformFrom(pipeline, Combine.GroupedValues.class);
+  }
+
+  /** Traverse the pipeline and return the first composite transform of the given class found. */
+  private static AppliedPTransform<?, ?, ?> getTransformFrom(
+      TestPipeline pipeline, Class<?> transformClass) {
     final AppliedPTransform<?, ?, ?>[] transform = new AppliedPTransform<?, ?, ?>[1];
     pipeline.traverseTopologically(
         new Pipeline.PipelineVisitor.Defaults() {
@@ -187,7 +228,7 @@ public class DataflowPTransformMatchersTest {
                 && node.toAppliedPTransform(getPipeline())
                     .getTransform()
                     .getClass()
-                    .equals(Combine.GroupedValues.class)) {
+                    .equals(transformClass)) {
               transform[0] = node.toAppliedPTransform(getPipeline());
               return CompositeBehavior.DO_NOT_ENTER_TRANSFORM;
             }
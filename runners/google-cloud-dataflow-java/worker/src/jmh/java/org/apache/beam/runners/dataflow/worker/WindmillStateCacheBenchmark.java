@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.dataflow.worker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.beam.runners.core.StateNamespace;
+import org.apache.beam.runners.core.StateNamespaces;
+import org.apache.beam.runners.core.StateTag;
+import org.apache.beam.runners.core.StateTags;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Benchmarks {@link WindmillStateCache} by replaying a trace of state accesses, each of which looks
+ * up the state of one key, state family and window as a work item would, caches it on a miss and
+ * persists it.
+ *
+ * <p>The trace is read from the file given by the {@code tracePath} parameter, with one access per
+ * line of the form {@code <computation> <key> <state family> <window start millis> <weight>}. If no
+ * file is given, a synthetic trace is generated in which a skewed set of recurring keys is mixed
+ * with keys that are accessed only once. Each thread replays the trace for its own copy of the
+ * keys, so use JMH's {@code -t} option to measure contention between processing threads.
+ *
+ * <p>Specify {@code -Pbenchmark=WindmillStateCacheBenchmark} to run only these benchmarks.
+ */
+public class WindmillStateCacheBenchmark {
+
+  private static final StateTag<ValueState<Integer>> TAG =
+      StateTags.value("benchmark", VarIntCoder.of());
+
+  /** A single access of the trace. */
+  private static class Access {
+    final String computation;
+    final ByteString key;
+    final String stateFamily;
+    final StateNamespace namespace;
+    final long weight;
+
+    Access(String computation, String key, String stateFamily, long windowStart, long weight) {
+      this.computation = computation;
+      this.key = ByteString.copyFromUtf8(key);
+      this.stateFamily = stateFamily;
+      this.namespace =
+          StateNamespaces.window(
+              IntervalWindow.getCoder(),
+              new IntervalWindow(new Instant(windowStart), new Instant(windowStart + 60_000)));
+      this.weight = weight;
+    }
+  }
+
+  /** The cache shared by all threads and the trace they replay. */
+  @State(Scope.Benchmark)
+  public static class Trace {
+    @Param({""})
+    public String tracePath;
+
+    @Param({"100"})
+    public int cacheMb;
+
+    @Param({"0"})
+    public int cacheMbPerComputation;
+
+    WindmillStateCache cache;
+    List<Access> accesses;
+
+    @Setup
+    public void setup() throws IOException {
+      cache = new WindmillStateCache(cacheMb, cacheMbPerComputation);
+      accesses = tracePath.isEmpty() ? syntheticTrace() : readTrace(tracePath);
+    }
+
+    private static List<Access> readTrace(String path) throws IOException {
+      List<Access> accesses = new ArrayList<>();
+      try (BufferedReader reader =
+          Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] fields = line.trim().split("\\s+");
+          if (fields.length != 5) {
+            continue;
+          }
+          accesses.add(
+              new Access(
+                  fields[0],
+                  fields[1],
+                  fields[2],
+                  Long.parseLong(fields[3]),
+                  Long.parseLong(fields[4])));
+        }
+      }
+      return accesses;
+    }
+
+    /**
+     * Generates a trace of 100k accesses in which two thirds go to 10k recurring keys with a skewed
+     * distribution and the rest to keys which are never seen again.
+     */
+    private static List<Access> syntheticTrace() {
+      Random random = new Random(0);
+      List<Access> accesses = new ArrayList<>();
+      for (int i = 0; i < 100_000; i++) {
+        String key;
+        if (random.nextInt(3) == 0) {
+          key = "once" + i;
+        } else {
+          // Squaring a uniform value skews the accesses towards the lower numbered keys.
+          double uniform = random.nextDouble();
+          key = "key" + (int) (uniform * uniform * 10_000);
+        }
+        String computation = "computation" + (key.hashCode() & 3);
+        long windowStart = (i / 10_000) * 60_000L;
+        long weight = 2_000 + random.nextInt(8_000);
+        accesses.add(new Access(computation, key, "family", windowStart, weight));
+      }
+      return accesses;
+    }
+  }
+
+  /** State of a single replaying thread. */
+  @State(Scope.Thread)
+  public static class Replayer {
+    // Keys are prefixed per thread, as each key may only be processed by one thread at a time.
+    ByteString keyPrefix;
+    long workToken;
+
+    @Setup
+    public void setup(ThreadParams threadParams) {
+      keyPrefix = ByteString.copyFromUtf8("thread" + threadParams.getThreadIndex() + "/");
+    }
+  }
+
+  /** Replays the whole trace, returning the number of accesses which hit the cache. */
+  @Benchmark
+  public long replayTrace(Trace trace, Replayer replayer) {
+    long hits = 0;
+    for (Access access : trace.accesses) {
+      WindmillStateCache.ForKeyAndFamily keyCache =
+          trace
+              .cache
+              .forComputation(access.computation)
+              .forKey(
+                  WindmillComputationKey.create(
+                      access.computation, replayer.keyPrefix.concat(access.key), 0L),
+                  0L,
+                  ++replayer.workToken)
+              .forFamily(access.stateFamily);
+      if (keyCache.get(access.namespace, TAG) != null) {
+        hits++;
+      } else {
+        keyCache.put(access.namespace, TAG, new CachedValue(), access.weight);
+      }
+      keyCache.persist();
+    }
+    return hits;
+  }
+
+  /** A cached value, whose contents do not matter to the cache. */
+  private static class CachedValue implements ValueState<Integer> {
+    @Override
+    public void write(Integer input) {}
+
+    @Override
+    public Integer read() {
+      return 0;
+    }
+
+    @Override
+    public ValueState<Integer> readLater() {
+      return this;
+    }
+
+    @Override
+    public void clear() {}
+  }
+}
@@ -30,6 +30,20 @@ public class DataflowSystemMetrics {
 
   // TODO: Provide an utility in SDK 'ThrottlingReporter' to update throttling time.
 
+  /**
+   * Distribution of the share of the recently processed elements of a streaming stage, in
+   * thousandths, which belong to its hottest key. Reported against the first step of the stage.
+   */
+  public static final MetricName HOT_KEY_MAX_SHARE_PERMILLE_METRIC_NAME =
+      MetricName.named("dataflow-hot-key-metrics", "hot-key-max-share-permille");
+
+  /**
+   * Distribution of the number of keys which each account for a large share of the recently
+   * processed elements of a streaming stage. Reported against the first step of the stage.
+   */
+  public static final MetricName HOT_KEY_COUNT_METRIC_NAME =
+      MetricName.named("dataflow-hot-key-metrics", "hot-key-count");
+
   /** System counters populated by streaming dataflow workers. */
   public enum StreamingSystemCounterNames {
     WINDMILL_SHUFFLE_BYTES_READ("WindmillShuffleBytesRead"),
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.dataflow.worker;
+
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
+
+/**
+ * Estimates how often keys have recently been seen, so that {@link WindmillStateCache} can decide
+ * whether a new entry is worth admitting once the cache is full.
+ *
+ * <p>This is a count-min sketch of small saturating counters in the style of TinyLFU. Each key
+ * increments one counter in each of {@link #ROWS} rows and its frequency is estimated as the
+ * minimum of those counters. After as many increments as there are counters in a row every counter
+ * is halved, so the estimates reflect recent accesses rather than all history. The
+ * sketch is split into independently locked stripes chosen by key hash, which keeps contention low
+ * when many threads update it.
+ */
+class FrequencySketch {
+  private static final int ROWS = 4;
+  private static final int MAX_COUNT = 15;
+  private static final int MIN_WIDTH = 64;
+  private static final int MAX_WIDTH = 1 << 16;
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+
+  private final Stripe[] stripes;
+  private final int stripeMask;
+
+  /**
+   * Creates a sketch sized for about {@code expectedKeys} distinct keys, split into {@code
+   * numStripes} stripes, which must be a power of two.
+   */
+  FrequencySketch(long expectedKeys, int numStripes) {
+    Preconditions.checkArgument(
+        numStripes > 0 && Integer.bitCount(numStripes) == 1,
+        "Number of stripes must be a positive power of two, but was %s",
+        numStripes);
+    long keysPerStripe = Math.max(MIN_WIDTH, Math.min(MAX_WIDTH, expectedKeys / numStripes));
+    int width = Integer.highestOneBit((int) keysPerStripe);
+    this.stripes = new Stripe[numStripes];
+    for (int i = 0; i < numStripes; i++) {
+      stripes[i] = new Stripe(width);
+    }
+    this.stripeMask = numStripes - 1;
+  }
+
+  /** Records an access to the key with the given hash. */
+  void increment(int hash) {
+    int spread = spread(hash);
+    stripes[spread & stripeMask].increment(spread);
+  }
+
+  /** Returns the estimated number of recent accesses to the key with the given hash. */
+  int frequency(int hash) {
+    int spread = spread(hash);
+    return stripes[spread & stripeMask].frequency(spread);
+  }
+
+  /** Applies a supplemental hash so that keys with similar hash codes are spread out. */
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+
+  private static class Stripe {
+    private final byte[][] counters;
+    private final int indexMask;
+    private final int sampleSize;
+    private int additions;
+
+    Stripe(int width) {
+      this.counters = new byte[ROWS][width];
+      this.indexMask = width - 1;
+      // Aging once there have been as many increments as counters in a row keeps most counters of
+      // keys which were not seen recently at zero, so that a frequency of two or more is rare for
+      // a key which was seen only once.
+      this.sampleSize = width;
+    }
+
+    synchronized void increment(int spread) {
+      boolean added = false;
+      for (int row = 0; row < ROWS; row++) {
+        int index = indexOf(spread, row);
+        if (counters[row][index] < MAX_COUNT) {
+          counters[row][index]++;
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        age();
+      }
+    }
+
+    synchronized int frequency(int spread) {
+      int frequency = MAX_COUNT;
+      for (int row = 0; row < ROWS; row++) {
+        frequency = Math.min(frequency, counters[row][indexOf(spread, row)]);
+      }
+      return frequency;
+    }
+
+    private int indexOf(int spread, int row) {
+      // Use the high bits of the product, as the low bits of spread select the stripe.
+      long hash = (spread + SEEDS[row]) * SEEDS[row];
+      return (int) (hash >>> 32) & indexMask;
+    }
+
+    private void age() {
+      for (byte[] row : counters) {
+        for (int i = 0; i < row.length; i++) {
+          row[i] >>= 1;
+        }
+      }
+      additions /= 2;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.dataflow.worker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
+
+/**
+ * Tracks the keys which account for the largest share of the elements recently processed by a
+ * computation, so that a hot key shows up in the worker's metrics rather than only as growing
+ * backlog.
+ *
+ * <p>This is a space-saving sketch holding at most {@code capacity} keys. When a key which is not
+ * tracked is recorded and the sketch is full, it replaces the key with the smallest count and
+ * inherits that count as its error. Any key with more than {@code 1 / capacity} of the elements is
+ * therefore always tracked, and the count of a tracked key minus its error is a lower bound of its
+ * true count. All counts are halved by {@link #decay()} so that the shares reflect recent
+ * processing.
+ */
+class HotKeyTracker {
+
+  /** A tracked key together with the share of the recorded elements it is known to account for. */
+  static class HotKey {
+    private final ByteString key;
+    private final long count;
+    private final double share;
+
+    private HotKey(ByteString key, long count, double share) {
+      this.key = key;
+      this.count = count;
+      this.share = share;
+    }
+
+    ByteString getKey() {
+      return key;
+    }
+
+    /** Returns a lower bound of the number of recorded elements with this key. */
+    long getCount() {
+      return count;
+    }
+
+    /** Returns a lower bound of the fraction of recorded elements with this key. */
+    double getShare() {
+      return share;
+    }
+  }
+
+  private static class Entry {
+    long count;
+    long error;
+
+    Entry(long count, long error) {
+      this.count = count;
+      this.error = error;
+    }
+  }
+
+  private final int capacity;
+  private final Map<ByteString, Entry> entries;
+  private long total;
+
+  HotKeyTracker(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Capacity must be positive, but was %s", capacity);
+    this.capacity = capacity;
+    this.entries = new HashMap<>(capacity * 2);
+  }
+
+  /** Records that {@code elements} elements were processed for {@code key}. */
+  synchronized void record(ByteString key, long elements) {
+    total += elements;
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      entry.count += elements;
+      return;
+    }
+    if (entries.size() < capacity) {
+      entries.put(key, new Entry(elements, 0));
+      return;
+    }
+    // Replace the key with the smallest count. A linear scan is cheap for the small capacities
+    // used to track hot keys.
+    ByteString minKey = key;
+    long minCount = Long.MAX_VALUE;
+    for (Map.Entry<ByteString, Entry> candidate : entries.entrySet()) {
+      if (candidate.getValue().count < minCount) {
+        minKey = candidate.getKey();
+        minCount = candidate.getValue().count;
+      }
+    }
+    entries.remove(minKey);
+    entries.put(key, new Entry(minCount + elements, minCount));
+  }
+
+  /** Returns the number of elements recorded since the counts were last decayed. */
+  synchronized long getTotal() {
+    return total;
+  }
+
+  /**
+   * Returns the tracked keys known to account for at least {@code minShare} of the recorded
+   * elements, hottest first.
+   */
+  synchronized List<HotKey> getHotKeys(double minShare) {
+    List<HotKey> hotKeys = new ArrayList<>();
+    if (total == 0) {
+      return hotKeys;
+    }
+    for (Map.Entry<ByteString, Entry> entry : entries.entrySet()) {
+      long count = entry.getValue().count - entry.getValue().error;
+      double share = (double) count / total;
+      if (count > 0 && share >= minShare) {
+        hotKeys.add(new HotKey(entry.getKey(), count, share));
+      }
+    }
+    hotKeys.sort(Comparator.comparingLong(HotKey::getCount).reversed());
+    return hotKeys;
+  }
+
+  /** Halves all counts, dropping keys whose count reaches zero. */
+  synchronized void decay() {
+    total /= 2;
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      entry.count /= 2;
+      entry.error /= 2;
+      if (entry.count == 0) {
+        iterator.remove();
+      }
+    }
+  }
+}
@@ -27,9 +27,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -95,6 +99,14 @@ public class IsmReaderImpl<V> extends IsmReader<V> {
 
   static final int MAX_SHARD_INDEX_AND_FOOTER_SIZE = 1024 * 1024;
 
+  /**
+   * The maximum size of a single memory mapped region of a local file. Larger files are mapped as
+   * several consecutive regions since a {@link ByteBuffer} is indexed by an {@code int}.
+   */
+  static final int MAPPED_REGION_SIZE = 1 << 30;
+
+  private static final String LOCAL_FILE_SCHEME = "file";
+
   private final ResourceId resourceId;
   private final IsmRecordCoder<V> coder;
 
@@ -117,6 +129,12 @@ public class IsmReaderImpl<V> extends IsmReader<V> {
 
   ScalableBloomFilter bloomFilter;
 
+  /**
+   * Lazily initialized read only memory mapping of the file if it is on the local file system. The
+   * mapping is shared by all channels opened by this reader.
+   */
+  private volatile ByteBuffer @Nullable [] mappedRegions;
+
   /**
    * A cache instance which if set on this reader is used to cache blocks of data that are read.
    * Each value represents the decoded form of a block.
@@ -1068,8 +1086,15 @@ public class IsmReaderImpl<V> extends IsmReader<V> {
     return open();
   }
 
-  /** Opens a new channel. */
+  /**
+   * Opens a new channel. Files on the local file system are read through a shared memory mapping,
+   * so repeated block reads do not issue a system call or copy the file into an intermediate
+   * buffer. Other files are opened using {@link FileSystems}.
+   */
   private SeekableByteChannel open() throws IOException {
+    if (LOCAL_FILE_SCHEME.equals(resourceId.getScheme())) {
+      return new MappedSeekableByteChannel(getMappedRegions(), MAPPED_REGION_SIZE);
+    }
     ReadableByteChannel channel = FileSystems.open(resourceId);
     Preconditions.checkArgument(
         channel instanceof SeekableByteChannel,
@@ -1079,11 +1104,52 @@ public class IsmReaderImpl<V> extends IsmReader<V> {
     return (SeekableByteChannel) channel;
   }
 
+  /** Returns the memory mapped regions of the local file, mapping it on first use. */
+  private ByteBuffer[] getMappedRegions() throws IOException {
+    ByteBuffer[] regions = mappedRegions;
+    if (regions == null) {
+      synchronized (this) {
+        regions = mappedRegions;
+        if (regions == null) {
+          regions = mapRegions(Paths.get(resourceId.toString()), MAPPED_REGION_SIZE);
+          mappedRegions = regions;
+        }
+      }
+    }
+    return regions;
+  }
+
+  /**
+   * Memory maps the file at {@code path} read only as consecutive regions of at most {@code
+   * regionSize} bytes. The mapping remains valid after the underlying file channel is closed.
+   */
+  @VisibleForTesting
+  static ByteBuffer[] mapRegions(Path path, int regionSize) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer[] regions = new ByteBuffer[Ints.checkedCast((size + regionSize - 1) / regionSize)];
+      for (int i = 0; i < regions.length; ++i) {
+        long regionOffset = (long) i * regionSize;
+        regions[i] =
+            channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                regionOffset,
+                Math.min(regionSize, size - regionOffset));
+      }
+      return regions;
+    }
+  }
+
   /**
    * Seeks into the channel intelligently by either resetting the position or reading and discarding
    * bytes.
    */
   private static void position(SeekableByteChannel inChannel, long newPosition) throws IOException {
+    if (inChannel instanceof MappedSeekableByteChannel) {
+      // Seeking within a memory mapped file is free.
+      inChannel.position(newPosition);
+      return;
+    }
     long currentPosition = inChannel.position();
     // If just doing a read is cheaper discarding the bytes lets just do the read
     if (currentPosition < newPosition && newPosition - currentPosition <= SEEK_VS_READ) {
@@ -1165,4 +1231,85 @@ public class IsmReaderImpl<V> extends IsmReader<V> {
       throw new NonWritableChannelException();
     }
   }
+
+  /**
+   * A read only {@link SeekableByteChannel} over the memory mapped regions of a file. Each channel
+   * has its own position so that the regions can be shared by channels used on different threads.
+   * Closing this channel does not unmap the file.
+   */
+  static class MappedSeekableByteChannel implements SeekableByteChannel {
+    private final ByteBuffer[] regions;
+    private final int regionSize;
+    private final long size;
+    private long position;
+    private boolean open = true;
+
+    MappedSeekableByteChannel(ByteBuffer[] regions, int regionSize) {
+      checkArgument(regionSize > 0, "Region size must be positive.");
+      this.regions = checkNotNull(regions, "Mapped regions must not be null.");
+      this.regionSize = regionSize;
+      long size = 0;
+      for (ByteBuffer region : regions) {
+        size += region.limit();
+      }
+      this.size = size;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+      open = false;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      if (position >= size) {
+        return -1;
+      }
+      int bytesRead = 0;
+      while (dst.hasRemaining() && position < size) {
+        int regionOffset = (int) (position % regionSize);
+        // Use a view of the shared region so that its position is not mutated.
+        ByteBuffer src = regions[(int) (position / regionSize)].duplicate();
+        src.position(regionOffset);
+        int length = Math.min(dst.remaining(), src.remaining());
+        src.limit(regionOffset + length);
+        dst.put(src);
+        position += length;
+        bytesRead += length;
+      }
+      return bytesRead;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+      return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+      checkArgument(newPosition >= 0, "Cannot seek to negative position %s.", newPosition);
+      position = newPosition;
+      return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+      return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) throws IOException {
+      throw new NonWritableChannelException();
+    }
+  }
 }
@@ -23,6 +23,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.concurrent.GuardedBy;
 import org.apache.beam.runners.dataflow.worker.util.MemoryMonitor;
@@ -30,7 +36,11 @@ import org.apache.beam.runners.dataflow.worker.windmill.Windmill;
 import org.apache.beam.runners.dataflow.worker.windmill.Windmill.KeyedGetDataRequest;
 import org.apache.beam.runners.dataflow.worker.windmill.WindmillServerStub;
 import org.apache.beam.runners.dataflow.worker.windmill.WindmillServerStub.GetDataStream;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.AbstractFuture;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ListenableFuture;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.SettableFuture;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Duration;
 
@@ -40,7 +50,10 @@ import org.joda.time.Duration;
  *
  * <p>External API: individual worker threads request state for their computation via {@link
  * #getStateData}. However, requests are either issued using a pool of streaming rpcs or possibly
- * batched requests.
+ * batched requests. {@link #getStateDataAsync} issues the same requests without blocking the
+ * calling thread, so that fetching state can overlap with processing. Asynchronous reads are issued
+ * by a bounded pool of threads, so a read which is still queued can be cancelled and issued with
+ * {@link #getStateData} instead by a thread which needs the result right away.
  */
 @SuppressWarnings({
   "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
@@ -53,6 +66,9 @@ public class MetricTrackingWindmillServerStub {
   private final WindmillServerStub server;
   private final MemoryMonitor gcThrashingMonitor;
   private final boolean useStreamingRequests;
+  // Issues asynchronous state reads. Each read parks its thread until the response arrives, so
+  // the pool is bounded like the synchronous read threads and further reads queue behind it.
+  private final ExecutorService asyncReadExecutor;
 
   private static final class ReadBatch {
     ArrayList<QueueEntry> reads = new ArrayList<>();
@@ -69,6 +85,7 @@ public class MetricTrackingWindmillServerStub {
 
   private static final int MAX_READS_PER_BATCH = 60;
   private static final int MAX_ACTIVE_READS = 10;
+  @VisibleForTesting static final int MAX_ASYNC_READ_THREADS = MAX_ACTIVE_READS;
   private static final int NUM_STREAMS = 1;
   private static final Duration STREAM_TIMEOUT = Duration.standardSeconds(30);
 
@@ -95,6 +112,19 @@ public class MetricTrackingWindmillServerStub {
     // This is used as a queue but is expected to be less than 10 batches.
     this.pendingReadBatches = new ArrayList<>();
     this.useStreamingRequests = useStreamingRequests;
+    ThreadPoolExecutor asyncReadThreads =
+        new ThreadPoolExecutor(
+            MAX_ASYNC_READ_THREADS,
+            MAX_ASYNC_READ_THREADS,
+            1,
+            TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("WindmillAsyncStateRead-%d")
+                .build());
+    asyncReadThreads.allowCoreThreadTimeOut(true);
+    this.asyncReadExecutor = asyncReadThreads;
   }
 
   public void start() {
@@ -208,6 +238,17 @@ public class MetricTrackingWindmillServerStub {
     }
   }
 
+  /** Stops issuing asynchronous state reads; pending ones are cancelled. */
+  public void stop() {
+    for (Runnable pending : asyncReadExecutor.shutdownNow()) {
+      // The queued tasks are the futures handed out by getStateDataAsync; fail them rather than
+      // leaving their readers waiting forever.
+      if (pending instanceof Future) {
+        ((Future<?>) pending).cancel(false);
+      }
+    }
+  }
+
   public Windmill.KeyedGetDataResponse getStateData(
       String computation, Windmill.KeyedGetDataRequest request) {
     gcThrashingMonitor.waitForResources("GetStateData");
@@ -236,6 +277,51 @@ public class MetricTrackingWindmillServerStub {
     }
   }
 
+  /**
+   * Like {@link #getStateData} but returns immediately; the response is delivered through the
+   * returned future, which fails if the read fails.
+   *
+   * <p>The returned future can only be cancelled while the read is still queued for a thread. A
+   * successful {@link Future#cancel} guarantees that the read is never sent to Windmill.
+   */
+  public ListenableFuture<Windmill.KeyedGetDataResponse> getStateDataAsync(
+      String computation, Windmill.KeyedGetDataRequest request) {
+    AsyncStateRead read = new AsyncStateRead(computation, request);
+    asyncReadExecutor.execute(read);
+    return read;
+  }
+
+  /** An asynchronous state read which can be cancelled until a thread starts issuing it. */
+  private final class AsyncStateRead extends AbstractFuture<Windmill.KeyedGetDataResponse>
+      implements Runnable {
+    private final String computation;
+    private final Windmill.KeyedGetDataRequest request;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    AsyncStateRead(String computation, Windmill.KeyedGetDataRequest request) {
+      this.computation = computation;
+      this.request = request;
+    }
+
+    @Override
+    public void run() {
+      if (!started.compareAndSet(false, true)) {
+        // Cancelled while it was queued.
+        return;
+      }
+      try {
+        set(getStateData(computation, request));
+      } catch (Throwable t) {
+        setException(t);
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return started.compareAndSet(false, true) && super.cancel(false);
+    }
+  }
+
   public Windmill.GlobalData getSideInputData(Windmill.GlobalDataRequest request) {
     gcThrashingMonitor.waitForResources("GetSideInputData");
     activeSideInputs.getAndIncrement();
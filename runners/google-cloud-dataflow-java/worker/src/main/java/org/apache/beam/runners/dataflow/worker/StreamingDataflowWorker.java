@@ -19,6 +19,8 @@ package org.apache.beam.runners.dataflow.worker;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.beam.runners.dataflow.DataflowRunner.hasExperiment;
+import static org.apache.beam.runners.dataflow.worker.DataflowSystemMetrics.HOT_KEY_COUNT_METRIC_NAME;
+import static org.apache.beam.runners.dataflow.worker.DataflowSystemMetrics.HOT_KEY_MAX_SHARE_PERMILLE_METRIC_NAME;
 import static org.apache.beam.runners.dataflow.worker.DataflowSystemMetrics.THROTTLING_MSECS_METRIC_NAME;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
 
@@ -195,6 +197,9 @@ public class StreamingDataflowWorker {
   // retrieving extra work from Windmill without working on it, leading to better
   // prioritization / utilization.
   static final int MAX_WORK_UNITS_QUEUED = 100;
+  // Maximum total size of the work items which are queued or being processed. Limiting this
+  // rather than just the number of work units keeps a few large work items from exhausting memory.
+  static final long MAX_WORK_BYTES_OUTSTANDING = 500L << 20; // 500MB
   static final long TARGET_COMMIT_BUNDLE_BYTES = 32 << 20;
   static final int MAX_COMMIT_QUEUE_BYTES = 500 << 20; // 500MB
   static final int NUM_COMMIT_STREAMS = 1;
@@ -216,6 +221,15 @@ public class StreamingDataflowWorker {
   /** Maximum number of failure stacktraces to report in each update sent to backend. */
   private static final int MAX_FAILURES_TO_REPORT_IN_UPDATE = 1000;
 
+  /** Number of keys whose share of the processed elements is tracked for each stage. */
+  private static final int HOT_KEY_TRACKER_CAPACITY = 32;
+
+  /** Fraction of the recently processed elements of a stage above which a key is reported hot. */
+  private static final double HOT_KEY_MIN_SHARE = 0.1;
+
+  /** Minimum number of recently processed elements of a stage before hot keys are reported. */
+  private static final long HOT_KEY_MIN_ELEMENTS = 1000;
+
   // TODO(BEAM-7863): Update throttling counters to use generic throttling-msecs metric.
   public static final MetricName BIGQUERY_STREAMING_INSERT_THROTTLE_TIME =
       MetricName.named(
@@ -512,10 +526,17 @@ public class StreamingDataflowWorker {
     final Counter<Long, Long> throttledMsecs;
     final Counter<Long, Long> totalProcessingMsecs;
     final Counter<Long, Long> timerProcessingMsecs;
-
-    StageInfo(String stageName, String systemName, StreamingDataflowWorker worker) {
+    final HotKeyTracker hotKeyTracker;
+    final String hotKeyStepName;
+
+    StageInfo(
+        String stageName,
+        String systemName,
+        String hotKeyStepName,
+        StreamingDataflowWorker worker) {
       this.stageName = stageName;
       this.systemName = systemName;
+      this.hotKeyStepName = hotKeyStepName;
       metricsContainerRegistry = StreamingStepMetricsContainer.createRegistry();
       executionStateRegistry = new StreamingModeExecutionStateRegistry(worker);
       NameContext nameContext = NameContext.create(stageName, null, systemName, null);
@@ -529,9 +550,11 @@ public class StreamingDataflowWorker {
       timerProcessingMsecs =
           deltaCounters.longSum(
               StreamingPerStageSystemCounterNames.TIMER_PROCESSING_MSECS.counterName(nameContext));
+      hotKeyTracker = new HotKeyTracker(HOT_KEY_TRACKER_CAPACITY);
     }
 
     List<CounterUpdate> extractCounterUpdates() {
+      updateHotKeyMetrics();
       List<CounterUpdate> counterUpdates = new ArrayList<>();
       Iterables.addAll(
           counterUpdates,
@@ -545,6 +568,25 @@ public class StreamingDataflowWorker {
       return counterUpdates;
     }
 
+    /**
+     * Reports the share of the hottest key and the number of hot keys seen since the previous
+     * report as metrics of the first step of the stage, then decays the tracked counts so that
+     * older elements gradually stop counting.
+     */
+    private void updateHotKeyMetrics() {
+      if (hotKeyTracker.getTotal() >= HOT_KEY_MIN_ELEMENTS) {
+        List<HotKeyTracker.HotKey> hotKeys = hotKeyTracker.getHotKeys(0);
+        long count = hotKeys.stream().filter(k -> k.getShare() >= HOT_KEY_MIN_SHARE).count();
+        StreamingStepMetricsContainer container =
+            metricsContainerRegistry.getContainer(hotKeyStepName);
+        container
+            .getDistribution(HOT_KEY_MAX_SHARE_PERMILLE_METRIC_NAME)
+            .update(hotKeys.isEmpty() ? 0L : Math.round(hotKeys.get(0).getShare() * 1000));
+        container.getDistribution(HOT_KEY_COUNT_METRIC_NAME).update(count);
+      }
+      hotKeyTracker.decay();
+    }
+
     // Checks if the step counter affects any per-stage counters. Currently 'throttled_millis'
     // is the only counter updated.
     private void translateKnownStepCounters(CounterUpdate stepCounterUpdate) {
@@ -610,7 +652,9 @@ public class StreamingDataflowWorker {
       boolean publishCounters,
       HotKeyLogger hotKeyLogger)
       throws IOException {
-    this.stateCache = new WindmillStateCache(options.getWorkerCacheMb());
+    this.stateCache =
+        new WindmillStateCache(
+            options.getWorkerCacheMb(), options.getWorkerCacheMbPerComputation());
     this.readerCache =
         new ReaderCache(
             Duration.standardSeconds(options.getReaderCacheTimeoutSec()),
@@ -667,6 +711,7 @@ public class StreamingDataflowWorker {
             THREAD_EXPIRATION_TIME_SEC,
             TimeUnit.SECONDS,
             MAX_WORK_UNITS_QUEUED,
+            MAX_WORK_BYTES_OUTSTANDING,
             threadFactory);
 
     maxSinkBytes =
@@ -952,6 +997,7 @@ public class StreamingDataflowWorker {
       if (!workUnitExecutor.awaitTermination(5, TimeUnit.MINUTES)) {
         throw new RuntimeException("Work executor did not terminate within 5 minutes");
       }
+      metricTrackingWindmillServer.stop();
       for (ComputationState state : computationMap.values()) {
         state.close();
       }
@@ -1290,7 +1336,13 @@ public class StreamingDataflowWorker {
 
     StageInfo stageInfo =
         stageInfoMap.computeIfAbsent(
-            mapTask.getStageName(), s -> new StageInfo(s, mapTask.getSystemName(), this));
+            mapTask.getStageName(),
+            s ->
+                new StageInfo(
+                    s,
+                    mapTask.getSystemName(),
+                    mapTask.getInstructions().get(0).getOriginalName(),
+                    this));
 
     ExecutionState executionState = null;
 
@@ -1407,6 +1459,8 @@ public class StreamingDataflowWorker {
       Object executionKey =
           keyCoder == null ? null : keyCoder.decode(key.newInput(), Coder.Context.OUTER);
 
+      stageInfo.hotKeyTracker.record(key, countElements(workItem));
+
       if (workItem.hasHotKeyInfo()) {
         Windmill.HotKeyInfo hotKeyInfo = workItem.getHotKeyInfo();
         Duration hotKeyAge = Duration.millis(hotKeyInfo.getHotKeyAgeUsec() / 1000);
@@ -1548,7 +1602,7 @@ public class StreamingDataflowWorker {
       if (retryLocally) {
         // Try again after some delay and at the end of the queue to avoid a tight loop.
         sleep(retryLocallyDelayMs);
-        workUnitExecutor.forceExecute(work);
+        workUnitExecutor.forceExecute(work, computationId, workItem.getSerializedSize());
       } else {
         // Consider the item invalid. It will eventually be retried by Windmill if it still needs to
         // be processed.
@@ -1576,6 +1630,15 @@ public class StreamingDataflowWorker {
     }
   }
 
+  /** Returns the number of messages and timers in the work item, which is at least one. */
+  private static long countElements(Windmill.WorkItem workItem) {
+    long elements = workItem.getTimers().getTimersCount();
+    for (Windmill.InputMessageBundle bundle : workItem.getMessageBundlesList()) {
+      elements += bundle.getMessagesCount();
+    }
+    return Math.max(1, elements);
+  }
+
   private WorkItemCommitRequest buildWorkItemTruncationRequest(
       final ByteString key, final Windmill.WorkItem workItem, final int estimatedCommitSize) {
     Windmill.WorkItemCommitRequest.Builder outputBuilder = initializeOutputBuilder(key, workItem);
@@ -2285,7 +2348,7 @@ public class StreamingDataflowWorker {
           // Fall through to execute without the lock held.
         }
       }
-      executor.execute(work);
+      executor.execute(work, computationId, work.getWorkItem().getSerializedSize());
       return true;
     }
 
@@ -2327,7 +2390,8 @@ public class StreamingDataflowWorker {
         }
       }
       if (nextWork != null) {
-        executor.forceExecute(nextWork);
+        executor.forceExecute(
+            nextWork, computationId, nextWork.getWorkItem().getSerializedSize());
       }
     }
 
@@ -2527,6 +2591,19 @@ public class StreamingDataflowWorker {
               + "/"
               + MAX_WORK_UNITS_QUEUED
               + "<br>");
+      writer.print("Work Queue Bytes Outstanding: ");
+      appendHumanizedBytes(workUnitExecutor.getBytesOutstanding(), writer);
+      writer.print("/");
+      appendHumanizedBytes(workUnitExecutor.getMaximumBytesOutstanding(), writer);
+      writer.println("<br>");
+      writer.println(
+          "Work Queueing Delay: "
+              + workUnitExecutor.getAverageQueueingDelayMillis()
+              + "ms average, "
+              + workUnitExecutor.getMaxQueueingDelayMillis()
+              + "ms max<br>");
+      writer.println(
+          "Queued Work By Computation: " + workUnitExecutor.getQueuedCountByGroup() + "<br>");
       writer.print("Commit Queue: ");
       appendHumanizedBytes(commitQueue.weight(), writer);
       writer.print(", ");
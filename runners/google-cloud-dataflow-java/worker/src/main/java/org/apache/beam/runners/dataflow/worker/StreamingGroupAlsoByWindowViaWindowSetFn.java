@@ -93,6 +93,13 @@ public class StreamingGroupAlsoByWindowViaWindowSetFn<K, InputT, OutputT, W exte
             reduceFn,
             options);
 
+    // Windmill state is fixed for the duration of the work item, so the state needed for the
+    // timers can be fetched while the elements are processed rather than after.
+    reduceFnRunner.prefetchOnTimers(keyedWorkItem.timersIterable());
+    if (stateInternals instanceof WindmillStateInternals) {
+      ((WindmillStateInternals<?>) stateInternals).startPrefetch();
+    }
+
     reduceFnRunner.processElements(keyedWorkItem.elementsIterable());
     reduceFnRunner.onTimers(keyedWorkItem.timersIterable());
     reduceFnRunner.persist();
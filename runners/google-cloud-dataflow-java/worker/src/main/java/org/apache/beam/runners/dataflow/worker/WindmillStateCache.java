@@ -20,9 +20,15 @@ package org.apache.beam.runners.dataflow.worker;
 import com.google.common.base.Preconditions;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -38,6 +44,8 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Equivalence
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.Cache;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheBuilder;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheStats;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.RemovalCause;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.RemovalNotification;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.Weigher;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.MapMaker;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -50,6 +58,14 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  * * processing key * state_family * namespace) by a single thread at a time. {@link
  * StreamingDataflowWorker} ensures that a single computation * processing key is executing on one
  * thread at a time, so this is safe.
+ *
+ * <p>The cache is split into more segments as its size grows, so that large caches shared by many
+ * processing threads contend less on the locks taken for eviction. Once the cache is full, entries
+ * for new keys are only admitted if they have been accessed recently, as estimated by a {@link
+ * FrequencySketch}. This keeps keys that are seen only once from evicting entries which are reused.
+ * The bytes cached for each computation may additionally be bounded, in which case no new entries
+ * are admitted for a computation that has reached its budget. Hits, misses, evictions and rejected
+ * admissions are tracked per state family.
  */
 public class WindmillStateCache implements StatusDataProvider {
   // Convert Megabytes to bytes
@@ -63,6 +79,16 @@ public class WindmillStateCache implements StatusDataProvider {
   // Overhead of each StateCacheEntry.  One long, plus a hash table.
   private static final int PER_CACHE_ENTRY_OVERHEAD =
       8 + HASH_MAP_ENTRY_OVERHEAD * INITIAL_HASH_MAP_CAPACITY;
+  // Each segment of the cache evicts independently within an equal share of the total weight, so
+  // keep segments large enough to hold a full page of a bag.
+  private static final long MIN_SEGMENT_BYTES = 16 * MEGABYTES;
+  private static final int MIN_SEGMENTS = 4;
+  private static final int MAX_SEGMENTS = 64;
+  // Rough average weight of an entry, used to size the frequency sketch.
+  private static final long EXPECTED_ENTRY_BYTES = 1024;
+  // New entries are admitted into a full cache only if they have been accessed this many times
+  // recently.
+  private static final int MIN_ADMISSION_FREQUENCY = 2;
 
   private final Cache<StateId, StateCacheEntry> stateCache;
   // Contains the current valid ForKey object. Entries in the cache are keyed by ForKey with pointer
@@ -71,19 +97,107 @@ public class WindmillStateCache implements StatusDataProvider {
   private final ConcurrentMap<WindmillComputationKey, ForKey> keyIndex =
       new MapMaker().weakValues().concurrencyLevel(4).makeMap();
   private final long workerCacheBytes; // Copy workerCacheMb and convert to bytes.
+  private final long maxComputationCacheBytes; // Zero if computations are not bounded.
+  private final FrequencySketch admissionSketch;
+  // Approximate weight of the entries in the cache, in total and per computation. These are
+  // maintained as entries are persisted and removed, so they may drift slightly when an entry is
+  // evicted while it is being persisted.
+  private final AtomicLong cachedWeight = new AtomicLong();
+  private final ConcurrentHashMap<String, AtomicLong> computationWeights =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, StateFamilyStats> stateFamilyStats =
+      new ConcurrentHashMap<>();
 
   public WindmillStateCache(long workerCacheMb) {
+    this(workerCacheMb, 0);
+  }
+
+  /**
+   * Creates a cache of {@code workerCacheMb} megabytes, in which the state of each computation may
+   * use at most {@code maxComputationCacheMb} megabytes. If {@code maxComputationCacheMb} is not
+   * positive, computations are only bounded by the size of the cache.
+   */
+  public WindmillStateCache(long workerCacheMb, long maxComputationCacheMb) {
     final Weigher<Weighted, Weighted> weigher = Weighers.weightedKeysAndValues();
     workerCacheBytes = workerCacheMb * MEGABYTES;
+    maxComputationCacheBytes = Math.max(0, maxComputationCacheMb * MEGABYTES);
+    int numSegments = numSegments(workerCacheBytes);
+    admissionSketch = new FrequencySketch(workerCacheBytes / EXPECTED_ENTRY_BYTES, numSegments);
     stateCache =
         CacheBuilder.newBuilder()
             .maximumWeight(workerCacheBytes)
             .recordStats()
             .weigher(weigher)
-            .concurrencyLevel(4)
+            .concurrencyLevel(numSegments)
+            .removalListener(this::onRemoval)
             .build();
   }
 
+  private static int numSegments(long cacheBytes) {
+    long segments = Math.max(MIN_SEGMENTS, Math.min(MAX_SEGMENTS, cacheBytes / MIN_SEGMENT_BYTES));
+    return Integer.highestOneBit((int) segments);
+  }
+
+  /** Hit, miss, eviction and admission counts for the cached state of one state family. */
+  public static class StateFamilyStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public long getHitCount() {
+      return hits.sum();
+    }
+
+    public long getMissCount() {
+      return misses.sum();
+    }
+
+    /** The number of entries removed from the cache to make room for others. */
+    public long getEvictionCount() {
+      return evictions.sum();
+    }
+
+    /** The number of entries which were not admitted into the cache. */
+    public long getRejectionCount() {
+      return rejections.sum();
+    }
+  }
+
+  private StateFamilyStats statsFor(String stateFamily) {
+    return stateFamilyStats.computeIfAbsent(stateFamily, f -> new StateFamilyStats());
+  }
+
+  private AtomicLong weightFor(String computation) {
+    return computationWeights.computeIfAbsent(computation, c -> new AtomicLong());
+  }
+
+  private void onRemoval(RemovalNotification<StateId, StateCacheEntry> notification) {
+    // The entry replacing a value is always the same object, whose weight is updated by persist.
+    if (notification.getCause() == RemovalCause.REPLACED) {
+      return;
+    }
+    StateId id = notification.getKey();
+    StateCacheEntry entry = notification.getValue();
+    long weight = entry.cachedWeight.getAndSet(0);
+    cachedWeight.addAndGet(-weight);
+    weightFor(id.forKey.computationKey.computationId()).addAndGet(-weight);
+    if (notification.wasEvicted()) {
+      statsFor(id.stateFamily).evictions.increment();
+    }
+  }
+
+  /** Whether an entry of the given weight which is not in the cache should be added to it. */
+  private boolean admit(StateId id, long weight) {
+    if (maxComputationCacheBytes > 0
+        && weightFor(id.forKey.computationKey.computationId()).get() + weight
+            > maxComputationCacheBytes) {
+      return false;
+    }
+    return cachedWeight.get() + weight <= workerCacheBytes
+        || admissionSketch.frequency(id.admissionHash) >= MIN_ADMISSION_FREQUENCY;
+  }
+
   private static class EntryStats {
     long entries;
     long idWeight;
@@ -119,6 +233,17 @@ public class WindmillStateCache implements StatusDataProvider {
     return stateCache.stats();
   }
 
+  /** Returns the statistics of the cached state of each state family. */
+  public Map<String, StateFamilyStats> getStateFamilyStats() {
+    return Collections.unmodifiableMap(stateFamilyStats);
+  }
+
+  /** Returns the approximate weight of the entries cached for the given computation. */
+  public long getComputationWeight(String computation) {
+    AtomicLong weight = computationWeights.get(computation);
+    return weight == null ? 0 : weight.get();
+  }
+
   /** Per-computation view of the state cache. */
   public class ForComputation {
 
@@ -216,10 +341,21 @@ public class WindmillStateCache implements StatusDataProvider {
       StateId id = new StateId(forKey, stateFamily, namespace);
       @SuppressWarnings("nullness") // Unsure how to annotate lambda return allowing null.
       @Nullable
-      StateCacheEntry entry = localCache.computeIfAbsent(id, key -> stateCache.getIfPresent(key));
+      StateCacheEntry entry = localCache.computeIfAbsent(id, this::lookup);
       return entry == null ? null : entry.get(namespace, address);
     }
 
+    private @Nullable StateCacheEntry lookup(StateId id) {
+      @Nullable StateCacheEntry entry = stateCache.getIfPresent(id);
+      StateFamilyStats stats = statsFor(stateFamily);
+      if (entry == null) {
+        stats.misses.increment();
+      } else {
+        stats.hits.increment();
+      }
+      return entry;
+    }
+
     public <T extends State> void put(
         StateNamespace namespace, StateTag<T> address, T value, long weight) {
       StateId id = new StateId(forKey, stateFamily, namespace);
@@ -236,7 +372,20 @@ public class WindmillStateCache implements StatusDataProvider {
     }
 
     public void persist() {
-      localCache.forEach((id, entry) -> stateCache.put(id, entry));
+      localCache.forEach(
+          (id, entry) -> {
+            admissionSketch.increment(id.admissionHash);
+            long weight = id.getWeight() + entry.getWeight();
+            // Entries already in the cache are always updated, new entries must be admitted.
+            if (entry.cachedWeight.get() == 0 && !admit(id, weight)) {
+              statsFor(stateFamily).rejections.increment();
+              return;
+            }
+            long delta = weight - entry.cachedWeight.getAndSet(weight);
+            cachedWeight.addAndGet(delta);
+            weightFor(forKey.computationKey.computationId()).addAndGet(delta);
+            stateCache.put(id, entry);
+          });
     }
   }
 
@@ -253,12 +402,16 @@ public class WindmillStateCache implements StatusDataProvider {
     private final String stateFamily;
     private final Object namespaceKey;
     private final int hashCode;
+    // Unlike hashCode, this is the same for every ForKey instance of a key, so that accesses are
+    // counted across work items for the admission policy.
+    private final int admissionHash;
 
     public StateId(ForKey forKey, String stateFamily, StateNamespace namespace) {
       this.forKey = forKey;
       this.stateFamily = stateFamily;
       this.namespaceKey = namespace.getCacheKey();
       this.hashCode = Objects.hash(forKey, stateFamily, namespaceKey);
+      this.admissionHash = Objects.hash(forKey.computationKey, stateFamily, namespaceKey);
     }
 
     @Override
@@ -291,6 +444,8 @@ public class WindmillStateCache implements StatusDataProvider {
   private static class StateCacheEntry implements Weighted {
     private final HashMap<NamespacedTag<?>, WeightedValue<?>> values;
     private long weight;
+    // The weight of this entry and its id when last put in the cache, or zero if it is not cached.
+    private final AtomicLong cachedWeight = new AtomicLong();
 
     public StateCacheEntry() {
       this.values = new HashMap<>(INITIAL_HASH_MAP_CAPACITY);
@@ -388,6 +543,27 @@ public class WindmillStateCache implements StatusDataProvider {
     response.println("<td>" + getMaxWeight() / MEGABYTES + "MB</td>");
     response.println("<td>" + keyIndex.size() + "</td>");
     response.println("</tr></table><br>");
+
+    response.println("State Family Stats: <br><table>");
+    response.println(
+        "<tr><th>State Family</th><th>Hits</th><th>Misses</th><th>Evictions</th>"
+            + "<th>Rejected Admissions</th></tr>");
+    for (Map.Entry<String, StateFamilyStats> entry : new TreeMap<>(stateFamilyStats).entrySet()) {
+      StateFamilyStats stats = entry.getValue();
+      response.println(
+          "<tr><td>"
+              + entry.getKey()
+              + "</td><td>"
+              + stats.getHitCount()
+              + "</td><td>"
+              + stats.getMissCount()
+              + "</td><td>"
+              + stats.getEvictionCount()
+              + "</td><td>"
+              + stats.getRejectionCount()
+              + "</td></tr>");
+    }
+    response.println("</table><br>");
   }
 
   public BaseStatusServlet statusServlet() {
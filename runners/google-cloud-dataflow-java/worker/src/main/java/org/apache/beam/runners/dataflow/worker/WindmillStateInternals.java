@@ -267,6 +267,7 @@ class WindmillStateInternals<K> implements StateInternals {
   }
 
   private WindmillStateCache.ForKeyAndFamily cache;
+  private final WindmillStateReader reader;
   Supplier<Closeable> scopedReadStateSupplier;
   private StateTable workItemState;
   private StateTable workItemDerivedState;
@@ -280,6 +281,7 @@ class WindmillStateInternals<K> implements StateInternals {
       Supplier<Closeable> scopedReadStateSupplier) {
     this.key = key;
     this.cache = cache;
+    this.reader = reader;
     this.scopedReadStateSupplier = scopedReadStateSupplier;
     this.workItemDerivedState =
         new CachingStateTable<>(
@@ -296,6 +298,14 @@ class WindmillStateInternals<K> implements StateInternals {
             workItemDerivedState);
   }
 
+  /**
+   * Starts reading all state for which {@code readLater} has been called without waiting for it,
+   * so that the read overlaps with the processing that follows.
+   */
+  public void startPrefetch() {
+    reader.startBatch();
+  }
+
   private void persist(List<Future<WorkItemCommitRequest>> commitsToMerge, StateTable stateTable) {
     for (State location : stateTable.values()) {
       if (!(location instanceof WindmillState)) {
@@ -32,12 +32,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.beam.runners.dataflow.worker.WindmillStateReader.StateTag.Kind;
@@ -62,7 +64,10 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Forwardi
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Range;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Sets;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ForwardingFuture;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.FutureCallback;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.Futures;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ListenableFuture;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.MoreExecutors;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.SettableFuture;
 import org.joda.time.Instant;
 
@@ -71,6 +76,11 @@ import org.joda.time.Instant;
  * has been read. Will not initiate a read until {@link Future#get} is called, at which point all
  * the pending futures will be read.
  *
+ * <p>Alternatively {@link #startBatch} issues a read for all pending futures without waiting for
+ * the response, so that the read overlaps with the processing that follows it. Futures whose read
+ * is in flight block in {@link Future#get} until the response has been consumed, while reads that
+ * are still queued for an asynchronous read thread are taken back and read by the blocking thread.
+ *
  * <p>CAUTION Watch out for escaping references to the reader ending up inside {@link
  * WindmillStateCache}.
  */
@@ -198,7 +208,9 @@ class WindmillStateReader {
 
   private final MetricTrackingWindmillServerStub server;
 
-  private long bytesRead = 0L;
+  // Updated by the thread consuming responses, which is not the processing thread for reads
+  // started with startBatch.
+  private final AtomicLong bytesRead = new AtomicLong();
 
   public WindmillStateReader(
       MetricTrackingWindmillServerStub server,
@@ -361,7 +373,11 @@ class WindmillStateReader {
     @Override
     public T get() throws InterruptedException, ExecutionException {
       if (!delegate().isDone() && reader != null) {
-        // Only one thread per reader, so no race here.
+        // Only the processing thread starts batches. Asynchronous batches started by
+        // startBatch() which are still queued are taken back and fetched with the remaining
+        // lookups, rather than waiting behind the reads of other work items. A batch already in
+        // flight completes the delegate itself.
+        reader.reclaimQueuedBatches();
         reader.startBatchAndBlock();
       }
       reader = null;
@@ -372,7 +388,11 @@ class WindmillStateReader {
     public T get(long timeout, TimeUnit unit)
         throws InterruptedException, ExecutionException, TimeoutException {
       if (!delegate().isDone() && reader != null) {
-        // Only one thread per reader, so no race here.
+        // Only the processing thread starts batches. Asynchronous batches started by
+        // startBatch() which are still queued are taken back and fetched with the remaining
+        // lookups, rather than waiting behind the reads of other work items. A batch already in
+        // flight completes the delegate itself.
+        reader.reclaimQueuedBatches();
         reader.startBatchAndBlock();
       }
       reader = null;
@@ -450,8 +470,8 @@ class WindmillStateReader {
     return Futures.lazyTransform(future, toIterable);
   }
 
-  public void startBatchAndBlock() {
-    // First, drain work out of the pending lookups into a set. These will be the items we fetch.
+  /** Drains the pending lookups into a set. These will be the items we fetch. */
+  private HashSet<StateTag<?>> drainPendingLookups() {
     HashSet<StateTag<?>> toFetch = Sets.newHashSet();
     while (!pendingLookups.isEmpty()) {
       StateTag<?> stateTag = pendingLookups.poll();
@@ -463,6 +483,103 @@ class WindmillStateReader {
         throw new IllegalStateException("Duplicate tags being fetched.");
       }
     }
+    return toFetch;
+  }
+
+  /** A GetData request issued by {@link #startBatch}. */
+  private static final class AsyncBatch {
+    private final HashSet<StateTag<?>> toFetch;
+    private final ListenableFuture<Windmill.KeyedGetDataResponse> read;
+    // Set before the processing thread takes the read back, so its cancellation fails no futures.
+    private volatile boolean reclaimed = false;
+
+    private AsyncBatch(
+        HashSet<StateTag<?>> toFetch, ListenableFuture<Windmill.KeyedGetDataResponse> read) {
+      this.toFetch = toFetch;
+      this.read = read;
+    }
+  }
+
+  // The batches started by startBatch which may still be queued. Only used by the processing
+  // thread.
+  private final List<AsyncBatch> asyncBatches = new ArrayList<>();
+
+  /**
+   * Issues a GetData request for all the pending futures without waiting for the response. The
+   * futures are completed, or failed, once the response arrives.
+   */
+  public void startBatch() {
+    asyncBatches.removeIf(asyncBatch -> asyncBatch.read.isDone());
+    HashSet<StateTag<?>> toFetch = drainPendingLookups();
+    if (toFetch.isEmpty()) {
+      return;
+    }
+
+    // Capture the futures of this batch now. Once the response has been consumed, a tag may be
+    // requested again with a new future that this batch must not fail.
+    List<CoderAndFuture<?>> batchFutures = new ArrayList<>(toFetch.size());
+    for (StateTag<?> stateTag : toFetch) {
+      batchFutures.add(getWaiting(stateTag, false));
+    }
+
+    Windmill.KeyedGetDataRequest request = createRequest(toFetch);
+    AsyncBatch batch = new AsyncBatch(toFetch, server.getStateDataAsync(computation, request));
+    asyncBatches.add(batch);
+    Futures.addCallback(
+        batch.read,
+        new FutureCallback<Windmill.KeyedGetDataResponse>() {
+          @Override
+          public void onSuccess(Windmill.KeyedGetDataResponse response) {
+            try {
+              if (response == null) {
+                throw new RuntimeException(
+                    "Windmill unexpectedly returned null for request " + request);
+              }
+              consumeResponse(response, Sets.newHashSet(toFetch));
+            } catch (RuntimeException e) {
+              onFailure(e);
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            if (t instanceof CancellationException && batch.reclaimed) {
+              // The read was never sent; the processing thread fetches these tags itself.
+              return;
+            }
+            // Nobody else is going to complete these futures, so fail the ones not yet completed
+            // rather than leaving the processing thread blocked on them. Futures which were
+            // already completed by the response are unaffected.
+            for (CoderAndFuture<?> coderAndFuture : batchFutures) {
+              coderAndFuture.future.setException(t);
+            }
+          }
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Takes back the batches started by {@link #startBatch} whose read has not been sent yet, so
+   * that their lookups are fetched by the next {@link #startBatchAndBlock}.
+   */
+  private void reclaimQueuedBatches() {
+    for (AsyncBatch batch : asyncBatches) {
+      batch.reclaimed = true;
+      // The read may also have been cancelled because the asynchronous reads were stopped.
+      if (batch.read.cancel(false) || batch.read.isCancelled()) {
+        for (StateTag<?> stateTag : batch.toFetch) {
+          // Futures which were already failed by stopping the reads stay failed.
+          if (!getWaiting(stateTag, false).future.isDone()) {
+            pendingLookups.add(stateTag);
+          }
+        }
+      }
+    }
+    asyncBatches.clear();
+  }
+
+  public void startBatchAndBlock() {
+    HashSet<StateTag<?>> toFetch = drainPendingLookups();
 
     // If we failed to drain anything, some other thread pulled it off the queue. We have no work
     // to do.
@@ -480,7 +597,7 @@ class WindmillStateReader {
   }
 
   public long getBytesRead() {
-    return bytesRead;
+    return bytesRead.get();
   }
 
   private Windmill.KeyedGetDataRequest createRequest(Iterable<StateTag<?>> toFetch) {
@@ -575,7 +692,7 @@ class WindmillStateReader {
   }
 
   private void consumeResponse(Windmill.KeyedGetDataResponse response, Set<StateTag<?>> toFetch) {
-    bytesRead += response.getSerializedSize();
+    bytesRead.addAndGet(response.getSerializedSize());
 
     if (response.getFailed()) {
       // Set up all the futures for this key to throw an exception:
@@ -121,6 +121,14 @@ public interface StreamingDataflowWorkerOptions extends DataflowWorkerHarnessOpt
 
   void setWindmillServiceStreamingRpcHealthCheckPeriodMs(int value);
 
+  @Description(
+      "If positive, the maximum size in megabytes of the state cache used by a single "
+          + "computation. State for new keys of a computation which has reached it is not cached.")
+  @Default.Integer(0)
+  int getWorkerCacheMbPerComputation();
+
+  void setWorkerCacheMbPerComputation(int value);
+
   /**
    * Factory for creating local Windmill address. Reads from system propery 'windmill.hostport' for
    * backwards compatibility.
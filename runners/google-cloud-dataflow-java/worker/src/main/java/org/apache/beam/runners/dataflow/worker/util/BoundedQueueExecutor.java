@@ -17,13 +17,33 @@
  */
 package org.apache.beam.runners.dataflow.worker.util;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
-/** Executor that blocks on execute() if its queue is full. */
+/**
+ * Executor that blocks on execute() if its queue is full, or if the total size of the work which is
+ * queued or running exceeds its limit.
+ *
+ * <p>Work is executed with {@link #execute(Runnable, Object, long)} on behalf of a group, such as a
+ * computation. Queued work is taken from the groups in turn, so that a group with a long backlog
+ * does not delay the work of other groups queued behind it.
+ */
 @SuppressWarnings({
   "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
 })
@@ -39,41 +59,364 @@ public class BoundedQueueExecutor extends ThreadPoolExecutor {
     }
   }
 
+  /** The group of work executed without one. */
+  private static final Object DEFAULT_GROUP = "default";
+
   private ReducableSemaphore semaphore;
 
+  private final long maximumBytesOutstanding;
+  private final Object bytesLock = new Object();
+  // Guarded by bytesLock.
+  private long bytesOutstanding;
+
+  private final LongAdder totalQueueingDelayNanos = new LongAdder();
+  private final LongAdder executedCount = new LongAdder();
+  private final AtomicLong maxQueueingDelayNanos = new AtomicLong();
+
+  public BoundedQueueExecutor(
+      int maximumPoolSize,
+      long keepAliveTime,
+      TimeUnit unit,
+      int maximumQueueSize,
+      ThreadFactory threadFactory) {
+    this(maximumPoolSize, keepAliveTime, unit, maximumQueueSize, Long.MAX_VALUE, threadFactory);
+  }
+
   public BoundedQueueExecutor(
       int maximumPoolSize,
       long keepAliveTime,
       TimeUnit unit,
       int maximumQueueSize,
+      long maximumBytesOutstanding,
       ThreadFactory threadFactory) {
-    super(
-        maximumPoolSize,
-        maximumPoolSize,
-        keepAliveTime,
-        unit,
-        new LinkedBlockingQueue<Runnable>(),
-        threadFactory);
+    super(maximumPoolSize, maximumPoolSize, keepAliveTime, unit, new FairQueue(), threadFactory);
     this.semaphore = new ReducableSemaphore(maximumQueueSize);
+    this.maximumBytesOutstanding = maximumBytesOutstanding;
     allowCoreThreadTimeOut(true);
   }
 
   // Before adding a Runnable to the queue, acquire the semaphore.
   @Override
   public void execute(Runnable r) {
+    execute(r, DEFAULT_GROUP, 0);
+  }
+
+  /**
+   * Executes {@code r} on behalf of {@code group}, blocking while the queue is full or while the
+   * work which is queued or running is larger than the limit. Work is always admitted if no other
+   * work is outstanding, however large it is.
+   */
+  public void execute(Runnable r, Object group, long bytes) {
     semaphore.acquireUninterruptibly();
-    super.execute(r);
+    acquireBytes(bytes);
+    super.execute(new QueuedWork(r, group, bytes));
   }
 
   // Forcibly add something to the queue, ignoring the length limit.
   public void forceExecute(Runnable r) {
+    forceExecute(r, DEFAULT_GROUP, 0);
+  }
+
+  /** Executes {@code r} on behalf of {@code group}, ignoring the length and size limits. */
+  public void forceExecute(Runnable r, Object group, long bytes) {
     semaphore.reducePermits(1);
-    super.execute(r);
+    synchronized (bytesLock) {
+      bytesOutstanding += bytes;
+    }
+    super.execute(new QueuedWork(r, group, bytes));
   }
 
   // Release the semaphore after taking a Runnable off the queue.
   @Override
   public void beforeExecute(Thread t, Runnable r) {
     semaphore.release();
+    if (r instanceof QueuedWork) {
+      long delayNanos = System.nanoTime() - ((QueuedWork) r).queuedNanos;
+      totalQueueingDelayNanos.add(delayNanos);
+      executedCount.increment();
+      maxQueueingDelayNanos.accumulateAndGet(delayNanos, Math::max);
+    }
+  }
+
+  // Release the bytes of the Runnable once it has completed.
+  @Override
+  protected void afterExecute(Runnable r, Throwable t) {
+    if (r instanceof QueuedWork && ((QueuedWork) r).bytes > 0) {
+      synchronized (bytesLock) {
+        bytesOutstanding -= ((QueuedWork) r).bytes;
+        bytesLock.notifyAll();
+      }
+    }
+  }
+
+  private void acquireBytes(long bytes) {
+    boolean interrupted = false;
+    synchronized (bytesLock) {
+      while (bytesOutstanding > 0 && bytesOutstanding + bytes > maximumBytesOutstanding) {
+        try {
+          bytesLock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      bytesOutstanding += bytes;
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Returns the total size of the work which is queued or running. */
+  public long getBytesOutstanding() {
+    synchronized (bytesLock) {
+      return bytesOutstanding;
+    }
+  }
+
+  public long getMaximumBytesOutstanding() {
+    return maximumBytesOutstanding;
+  }
+
+  /** Returns the average time work has spent in the queue before it started, in milliseconds. */
+  public long getAverageQueueingDelayMillis() {
+    long count = executedCount.sum();
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalQueueingDelayNanos.sum() / count);
+  }
+
+  /** Returns the longest time work has spent in the queue before it started, in milliseconds. */
+  public long getMaxQueueingDelayMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxQueueingDelayNanos.get());
+  }
+
+  /** Returns the number of queued work items of each group with queued work. */
+  public Map<Object, Integer> getQueuedCountByGroup() {
+    return ((FairQueue) getQueue()).countByGroup();
+  }
+
+  /** A Runnable with the group it was executed for, its size and the time it was queued. */
+  private static class QueuedWork implements Runnable {
+    private final Runnable delegate;
+    private final Object group;
+    private final long bytes;
+    private final long queuedNanos;
+
+    private QueuedWork(Runnable delegate, Object group, long bytes) {
+      this.delegate = delegate;
+      this.group = group;
+      this.bytes = bytes;
+      this.queuedNanos = System.nanoTime();
+    }
+
+    @Override
+    public void run() {
+      delegate.run();
+    }
+  }
+
+  /**
+   * An unbounded {@link BlockingQueue} which holds a FIFO queue per group and takes from the groups
+   * in round-robin order.
+   */
+  private static class FairQueue extends AbstractQueue<Runnable>
+      implements BlockingQueue<Runnable> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    // The groups with queued work, in the order in which they are served. Guarded by lock.
+    private final LinkedHashMap<Object, ArrayDeque<Runnable>> groups = new LinkedHashMap<>();
+    // Guarded by lock.
+    private int size;
+
+    private static Object groupOf(Runnable r) {
+      return r instanceof QueuedWork ? ((QueuedWork) r).group : DEFAULT_GROUP;
+    }
+
+    @Override
+    public boolean offer(Runnable r) {
+      lock.lock();
+      try {
+        groups.computeIfAbsent(groupOf(r), group -> new ArrayDeque<>()).addLast(r);
+        size++;
+        notEmpty.signal();
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void put(Runnable r) {
+      offer(r);
+    }
+
+    @Override
+    public boolean offer(Runnable r, long timeout, TimeUnit unit) {
+      return offer(r);
+    }
+
+    /** Removes the head of the first group and moves the group to the back if work remains. */
+    private Runnable dequeue() {
+      Iterator<Map.Entry<Object, ArrayDeque<Runnable>>> iterator = groups.entrySet().iterator();
+      Map.Entry<Object, ArrayDeque<Runnable>> first = iterator.next();
+      Runnable r = first.getValue().pollFirst();
+      iterator.remove();
+      if (!first.getValue().isEmpty()) {
+        groups.put(first.getKey(), first.getValue());
+      }
+      size--;
+      return r;
+    }
+
+    @Override
+    public Runnable poll() {
+      lock.lock();
+      try {
+        return size == 0 ? null : dequeue();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+      lock.lockInterruptibly();
+      try {
+        while (size == 0) {
+          notEmpty.await();
+        }
+        return dequeue();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+      long nanos = unit.toNanos(timeout);
+      lock.lockInterruptibly();
+      try {
+        while (size == 0) {
+          if (nanos <= 0) {
+            return null;
+          }
+          nanos = notEmpty.awaitNanos(nanos);
+        }
+        return dequeue();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public Runnable peek() {
+      lock.lock();
+      try {
+        return size == 0 ? null : groups.values().iterator().next().peekFirst();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public int size() {
+      lock.lock();
+      try {
+        return size;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public int remainingCapacity() {
+      return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      lock.lock();
+      try {
+        Iterator<ArrayDeque<Runnable>> iterator = groups.values().iterator();
+        while (iterator.hasNext()) {
+          ArrayDeque<Runnable> queue = iterator.next();
+          if (queue.remove(o)) {
+            if (queue.isEmpty()) {
+              iterator.remove();
+            }
+            size--;
+            return true;
+          }
+        }
+        return false;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+      return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+      lock.lock();
+      try {
+        int drained = 0;
+        while (drained < maxElements && size > 0) {
+          c.add(dequeue());
+          drained++;
+        }
+        return drained;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Returns an iterator over a snapshot of the queued work. */
+    @Override
+    public Iterator<Runnable> iterator() {
+      List<Runnable> snapshot = new ArrayList<>();
+      lock.lock();
+      try {
+        for (ArrayDeque<Runnable> queue : groups.values()) {
+          snapshot.addAll(queue);
+        }
+      } finally {
+        lock.unlock();
+      }
+      Iterator<Runnable> iterator = snapshot.iterator();
+      return new Iterator<Runnable>() {
+        private Runnable last;
+
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public Runnable next() {
+          last = iterator.next();
+          return last;
+        }
+
+        @Override
+        public void remove() {
+          FairQueue.this.remove(last);
+        }
+      };
+    }
+
+    private Map<Object, Integer> countByGroup() {
+      lock.lock();
+      try {
+        Map<Object, Integer> counts = new HashMap<>();
+        for (Map.Entry<Object, ArrayDeque<Runnable>> entry : groups.entrySet()) {
+          counts.put(entry.getKey(), entry.getValue().size());
+        }
+        return counts;
+      } finally {
+        lock.unlock();
+      }
+    }
   }
 }
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.dataflow.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HotKeyTracker}. */
+@RunWith(JUnit4.class)
+public class HotKeyTrackerTest {
+
+  private static ByteString key(int i) {
+    return ByteString.copyFromUtf8("key" + i);
+  }
+
+  @Test
+  public void testHotKeyIsTrackedAmongManyColdKeys() {
+    HotKeyTracker tracker = new HotKeyTracker(8);
+    for (int i = 0; i < 10000; i++) {
+      tracker.record(key(i), 1);
+      if (i % 2 == 0) {
+        tracker.record(key(-1), 1);
+      }
+    }
+    assertEquals(15000, tracker.getTotal());
+
+    List<HotKeyTracker.HotKey> hotKeys = tracker.getHotKeys(0.1);
+    assertEquals(1, hotKeys.size());
+    assertEquals(key(-1), hotKeys.get(0).getKey());
+    // The count of the hot key is a lower bound of its true count of 5000.
+    assertTrue(hotKeys.get(0).getCount() <= 5000);
+    assertTrue(hotKeys.get(0).getShare() >= 0.3);
+  }
+
+  @Test
+  public void testHotKeysAreOrdered() {
+    HotKeyTracker tracker = new HotKeyTracker(4);
+    tracker.record(key(1), 10);
+    tracker.record(key(2), 30);
+    tracker.record(key(3), 60);
+
+    List<HotKeyTracker.HotKey> hotKeys = tracker.getHotKeys(0.2);
+    assertEquals(2, hotKeys.size());
+    assertEquals(key(3), hotKeys.get(0).getKey());
+    assertEquals(60, hotKeys.get(0).getCount());
+    assertEquals(0.6, hotKeys.get(0).getShare(), 1e-9);
+    assertEquals(key(2), hotKeys.get(1).getKey());
+  }
+
+  @Test
+  public void testDecay() {
+    HotKeyTracker tracker = new HotKeyTracker(4);
+    tracker.record(key(1), 1);
+    tracker.record(key(2), 8);
+    tracker.decay();
+
+    assertEquals(4, tracker.getTotal());
+    List<HotKeyTracker.HotKey> hotKeys = tracker.getHotKeys(0);
+    assertEquals(1, hotKeys.size());
+    assertEquals(key(2), hotKeys.get(0).getKey());
+    assertEquals(4, hotKeys.get(0).getCount());
+
+    // Recent elements outweigh decayed ones.
+    tracker.record(key(1), 6);
+    assertEquals(key(1), tracker.getHotKeys(0).get(0).getKey());
+  }
+}
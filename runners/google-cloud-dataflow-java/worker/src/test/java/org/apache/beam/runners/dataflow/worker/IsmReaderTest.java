@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -57,6 +58,7 @@ import org.apache.beam.runners.dataflow.util.RandomAccessData;
 import org.apache.beam.runners.dataflow.worker.DataflowOperationContext.DataflowExecutionState;
 import org.apache.beam.runners.dataflow.worker.IsmReaderImpl.CachedTailSeekableByteChannel;
 import org.apache.beam.runners.dataflow.worker.IsmReaderImpl.IsmShardKey;
+import org.apache.beam.runners.dataflow.worker.IsmReaderImpl.MappedSeekableByteChannel;
 import org.apache.beam.runners.dataflow.worker.profiler.ScopedProfiler.NoopProfileScope;
 import org.apache.beam.runners.dataflow.worker.util.ValueInEmptyWindows;
 import org.apache.beam.runners.dataflow.worker.util.common.worker.ExecutorTestUtils.TestReaderObserver;
@@ -773,6 +775,51 @@ public class IsmReaderTest {
     }
   }
 
+  @Test
+  public void testMappedSeekableByteChannelThrowsOnWrite() throws Exception {
+    try (SeekableByteChannel channel =
+        new MappedSeekableByteChannel(new ByteBuffer[0], IsmReaderImpl.MAPPED_REGION_SIZE)) {
+      expectedException.expect(NonWritableChannelException.class);
+      channel.write(ByteBuffer.wrap(new byte[0]));
+    }
+  }
+
+  @Test
+  public void testMappedSeekableByteChannelReadAcrossRegions() throws Exception {
+    File tmpFile = tmpFolder.newFile();
+    byte[] data = new byte[10];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = (byte) i;
+    }
+    Files.write(tmpFile.toPath(), data);
+
+    // Map the file as regions of 4, 4 and 2 bytes.
+    ByteBuffer[] regions = IsmReaderImpl.mapRegions(tmpFile.toPath(), 4);
+    assertEquals(3, regions.length);
+    try (SeekableByteChannel channel = new MappedSeekableByteChannel(regions, 4)) {
+      assertEquals(data.length, channel.size());
+
+      ByteBuffer buffer = ByteBuffer.allocate(6);
+      channel.position(3);
+      assertEquals(6, channel.read(buffer));
+      assertArrayEquals(Arrays.copyOfRange(data, 3, 9), buffer.array());
+      assertEquals(9, channel.position());
+      buffer.clear();
+
+      assertEquals(1, channel.read(buffer));
+      assertEquals(9, buffer.get(0));
+      assertEquals(-1, channel.read(buffer));
+
+      // Channels sharing the same regions have independent positions.
+      try (SeekableByteChannel other = new MappedSeekableByteChannel(regions, 4)) {
+        buffer.clear();
+        assertEquals(6, other.read(buffer));
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 6), buffer.array());
+        assertEquals(10, channel.position());
+      }
+    }
+  }
+
   @Test
   public void testCachedTailSeekableByteChannelSeekBeforeBounds() throws Exception {
     try (SeekableByteChannel channel = new CachedTailSeekableByteChannel(1, new byte[0])) {
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.dataflow.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.beam.runners.dataflow.worker.util.MemoryMonitor;
+import org.apache.beam.runners.dataflow.worker.windmill.Windmill;
+import org.apache.beam.runners.dataflow.worker.windmill.Windmill.KeyedGetDataRequest;
+import org.apache.beam.runners.dataflow.worker.windmill.Windmill.KeyedGetDataResponse;
+import org.apache.beam.runners.dataflow.worker.windmill.WindmillServerStub;
+import org.apache.beam.runners.dataflow.worker.windmill.WindmillServerStub.GetDataStream;
+import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ListenableFuture;
+import org.joda.time.Instant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+/** Tests for {@link MetricTrackingWindmillServerStub}. */
+@RunWith(JUnit4.class)
+public class MetricTrackingWindmillServerStubTest {
+  private static final String COMPUTATION = "computation";
+  private static final ByteString BLOCKED_KEY = ByteString.copyFromUtf8("BLOCKED_KEY");
+  private static final ByteString DATA_KEY = ByteString.copyFromUtf8("DATA_KEY");
+  private static final ByteString STATE_KEY = ByteString.copyFromUtf8("key");
+  private static final String STATE_FAMILY = "family";
+
+  @Mock private WindmillServerStub mockServer;
+  @Mock private MemoryMonitor mockMemoryMonitor;
+  @Mock private GetDataStream mockStream;
+
+  // Reads of BLOCKED_KEY park their thread until released.
+  private final Semaphore blockedReads = new Semaphore(0);
+  private final CountDownLatch releaseBlockedReads = new CountDownLatch(1);
+
+  private MetricTrackingWindmillServerStub underTest;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    Mockito.when(mockServer.getDataStream()).thenReturn(mockStream);
+    Mockito.when(mockStream.startTime()).thenReturn(Instant.now());
+    Mockito.when(
+            mockStream.requestKeyedData(
+                Mockito.eq(COMPUTATION), Mockito.any(KeyedGetDataRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              KeyedGetDataRequest request = invocation.getArgument(1, KeyedGetDataRequest.class);
+              if (BLOCKED_KEY.equals(request.getKey())) {
+                blockedReads.release();
+                releaseBlockedReads.await();
+              }
+              KeyedGetDataResponse.Builder response =
+                  KeyedGetDataResponse.newBuilder().setKey(request.getKey());
+              for (Windmill.WatermarkHold hold : request.getWatermarkHoldsToFetchList()) {
+                response.addWatermarkHolds(hold.toBuilder().addTimestamps(5000));
+              }
+              return response.build();
+            });
+    underTest = new MetricTrackingWindmillServerStub(mockServer, mockMemoryMonitor, true);
+    underTest.start();
+  }
+
+  @After
+  public void tearDown() {
+    releaseBlockedReads.countDown();
+    underTest.stop();
+  }
+
+  /** Occupies every asynchronous read thread with a read which only returns once released. */
+  private List<ListenableFuture<KeyedGetDataResponse>> saturateAsyncReads() throws Exception {
+    List<ListenableFuture<KeyedGetDataResponse>> reads = new ArrayList<>();
+    for (int i = 0; i < MetricTrackingWindmillServerStub.MAX_ASYNC_READ_THREADS; i++) {
+      reads.add(
+          underTest.getStateDataAsync(
+              COMPUTATION, KeyedGetDataRequest.newBuilder().setKey(BLOCKED_KEY).build()));
+    }
+    assertTrue(
+        blockedReads.tryAcquire(
+            MetricTrackingWindmillServerStub.MAX_ASYNC_READ_THREADS, 1, TimeUnit.MINUTES));
+    return reads;
+  }
+
+  @Test
+  public void testCancelQueuedAsyncRead() throws Exception {
+    List<ListenableFuture<KeyedGetDataResponse>> blocked = saturateAsyncReads();
+    ListenableFuture<KeyedGetDataResponse> queued =
+        underTest.getStateDataAsync(
+            COMPUTATION, KeyedGetDataRequest.newBuilder().setKey(DATA_KEY).build());
+
+    assertTrue(queued.cancel(false));
+    // A read which has been sent cannot be cancelled.
+    assertFalse(blocked.get(0).cancel(false));
+
+    releaseBlockedReads.countDown();
+    for (ListenableFuture<KeyedGetDataResponse> read : blocked) {
+      assertEquals(BLOCKED_KEY, read.get(1, TimeUnit.MINUTES).getKey());
+    }
+    // The cancelled read was never sent.
+    Mockito.verify(
+            mockStream, Mockito.times(MetricTrackingWindmillServerStub.MAX_ASYNC_READ_THREADS))
+        .requestKeyedData(Mockito.eq(COMPUTATION), Mockito.any(KeyedGetDataRequest.class));
+  }
+
+  @Test
+  public void testStateReaderDoesNotWaitForSaturatedAsyncReads() throws Exception {
+    saturateAsyncReads();
+    WindmillStateReader reader =
+        new WindmillStateReader(underTest, COMPUTATION, DATA_KEY, 17L, 5043L);
+    Future<Instant> watermark = reader.watermarkFuture(STATE_KEY, STATE_FAMILY);
+    reader.startBatch();
+
+    // The prefetch is queued behind the blocked reads of other keys, so reading the state takes it
+    // back and reads it on this thread instead of waiting for them.
+    assertEquals(new Instant(5), watermark.get());
+    Mockito.verify(mockStream)
+        .requestKeyedData(
+            Mockito.eq(COMPUTATION),
+            Mockito.argThat(request -> request != null && DATA_KEY.equals(request.getKey())));
+  }
+}
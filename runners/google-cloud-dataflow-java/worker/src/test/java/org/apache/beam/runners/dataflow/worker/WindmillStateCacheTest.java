@@ -502,6 +502,98 @@ public class WindmillStateCacheTest {
     }
   }
 
+  /** Verifies that hits and misses are counted per state family. */
+  @Test
+  public void testStateFamilyStats() throws Exception {
+    WindmillStateCache.ForKey forKey =
+        cache.forComputation(COMPUTATION).forKey(COMPUTATION_KEY, 0L, 1L);
+    WindmillStateCache.ForKeyAndFamily keyCache = forKey.forFamily(STATE_FAMILY);
+    assertNull(keyCache.get(StateNamespaces.global(), new TestStateTag("tag1")));
+    keyCache.put(StateNamespaces.global(), new TestStateTag("tag1"), new TestState("g1"), 2);
+    keyCache.persist();
+    assertNull(forKey.forFamily("other").get(StateNamespaces.global(), new TestStateTag("tag1")));
+
+    keyCache =
+        cache.forComputation(COMPUTATION).forKey(COMPUTATION_KEY, 0L, 2L).forFamily(STATE_FAMILY);
+    assertEquals(
+        new TestState("g1"), keyCache.get(StateNamespaces.global(), new TestStateTag("tag1")));
+
+    WindmillStateCache.StateFamilyStats stats = cache.getStateFamilyStats().get(STATE_FAMILY);
+    assertEquals(1, stats.getHitCount());
+    assertEquals(1, stats.getMissCount());
+    assertEquals(0, stats.getEvictionCount());
+    assertEquals(0, stats.getRejectionCount());
+    WindmillStateCache.StateFamilyStats otherStats = cache.getStateFamilyStats().get("other");
+    assertEquals(0, otherStats.getHitCount());
+    assertEquals(1, otherStats.getMissCount());
+  }
+
+  /**
+   * Verifies that an entry for a new key is only admitted into a full cache once it has been seen
+   * before.
+   */
+  @Test
+  public void testAdmission() throws Exception {
+    TestStateTag tag = new TestStateTag("tag1");
+    WindmillStateCache.ForKeyAndFamily keyCache =
+        cache.forComputation(COMPUTATION).forKey(COMPUTATION_KEY, 0L, 1L).forFamily(STATE_FAMILY);
+    keyCache.put(StateNamespaces.global(), tag, new TestState("g1"), 500 * MEGABYTES);
+    keyCache.persist();
+    assertEquals(0, cache.getWeight());
+
+    WindmillStateCache.StateFamilyStats stats = cache.getStateFamilyStats().get(STATE_FAMILY);
+    assertEquals(1, stats.getRejectionCount());
+    assertEquals(0, stats.getEvictionCount());
+
+    // The second time the entry is admitted, but it is too large for the cache and evicted.
+    keyCache =
+        cache.forComputation(COMPUTATION).forKey(COMPUTATION_KEY, 0L, 2L).forFamily(STATE_FAMILY);
+    assertNull(keyCache.get(StateNamespaces.global(), tag));
+    keyCache.put(StateNamespaces.global(), tag, new TestState("g1"), 500 * MEGABYTES);
+    keyCache.persist();
+    assertEquals(0, cache.getWeight());
+    assertEquals(1, stats.getRejectionCount());
+    assertEquals(1, stats.getEvictionCount());
+    assertEquals(0, cache.getComputationWeight(COMPUTATION));
+  }
+
+  /** Verifies that new entries are not admitted for a computation over its budget. */
+  @Test
+  public void testComputationBudget() throws Exception {
+    cache = new WindmillStateCache(400, 1);
+    WindmillStateCache.ForKeyAndFamily keyCache =
+        cache.forComputation(COMPUTATION).forKey(COMPUTATION_KEY, 0L, 1L).forFamily(STATE_FAMILY);
+    keyCache.put(StateNamespaces.global(), new TestStateTag("tag1"), new TestState("g1"), 900000);
+    keyCache.persist();
+    long weight = cache.getComputationWeight(COMPUTATION);
+    assertEquals(cache.getWeight(), weight);
+
+    // Further entries for the same key are still updated.
+    keyCache =
+        cache.forComputation(COMPUTATION).forKey(COMPUTATION_KEY, 0L, 2L).forFamily(STATE_FAMILY);
+    keyCache.put(StateNamespaces.global(), new TestStateTag("tag2"), new TestState("g2"), 10);
+    keyCache.persist();
+    assertEquals(weight + 10 + 16, cache.getComputationWeight(COMPUTATION));
+
+    WindmillComputationKey otherKey = computationKey(COMPUTATION, "other", SHARDING_KEY);
+    keyCache = cache.forComputation(COMPUTATION).forKey(otherKey, 0L, 1L).forFamily(STATE_FAMILY);
+    keyCache.put(StateNamespaces.global(), new TestStateTag("tag1"), new TestState("o1"), 200000);
+    keyCache.persist();
+    keyCache = cache.forComputation(COMPUTATION).forKey(otherKey, 0L, 2L).forFamily(STATE_FAMILY);
+    assertNull(keyCache.get(StateNamespaces.global(), new TestStateTag("tag1")));
+    assertEquals(1, cache.getStateFamilyStats().get(STATE_FAMILY).getRejectionCount());
+
+    // Other computations have their own budget.
+    keyCache =
+        cache
+            .forComputation("other")
+            .forKey(computationKey("other", "other", SHARDING_KEY), 0L, 1L)
+            .forFamily(STATE_FAMILY);
+    keyCache.put(StateNamespaces.global(), new TestStateTag("tag1"), new TestState("o1"), 200000);
+    keyCache.persist();
+    assertEquals(cache.getWeight(), weight + 10 + 16 + cache.getComputationWeight("other"));
+  }
+
   /**
    * Verifies that caching works properly even when the StateTag does not properly implement
    * equals() and hashCode()
@@ -19,12 +19,14 @@ package org.apache.beam.runners.dataflow.worker;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import org.apache.beam.runners.dataflow.worker.windmill.Windmill;
 import org.apache.beam.runners.dataflow.worker.windmill.Windmill.KeyedGetDataRequest;
@@ -38,6 +40,7 @@ import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString.Output;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Charsets;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Range;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.SettableFuture;
 import org.hamcrest.Matchers;
 import org.joda.time.Instant;
 import org.junit.Before;
@@ -634,6 +637,77 @@ public class WindmillStateReaderTest {
     assertNoReader(future);
   }
 
+  @Test
+  public void testStartBatch() throws Exception {
+    Future<Integer> future = underTest.valueFuture(STATE_KEY_1, STATE_FAMILY, INT_CODER);
+    Mockito.verifyNoMoreInteractions(mockWindmill);
+
+    Windmill.KeyedGetDataRequest.Builder expectedRequest =
+        Windmill.KeyedGetDataRequest.newBuilder()
+            .setKey(DATA_KEY)
+            .setShardingKey(SHARDING_KEY)
+            .setWorkToken(WORK_TOKEN)
+            .setMaxBytes(WindmillStateReader.MAX_KEY_BYTES)
+            .addValuesToFetch(
+                Windmill.TagValue.newBuilder()
+                    .setTag(STATE_KEY_1)
+                    .setStateFamily(STATE_FAMILY)
+                    .build());
+    Windmill.KeyedGetDataResponse.Builder response =
+        Windmill.KeyedGetDataResponse.newBuilder()
+            .setKey(DATA_KEY)
+            .addValues(
+                Windmill.TagValue.newBuilder()
+                    .setTag(STATE_KEY_1)
+                    .setStateFamily(STATE_FAMILY)
+                    .setValue(intValue(8)));
+
+    SettableFuture<Windmill.KeyedGetDataResponse> asyncResponse = SettableFuture.create();
+    Mockito.when(mockWindmill.getStateDataAsync(COMPUTATION, expectedRequest.build()))
+        .thenReturn(asyncResponse);
+
+    underTest.startBatch();
+    Mockito.verify(mockWindmill).getStateDataAsync(COMPUTATION, expectedRequest.build());
+    assertFalse(future.isDone());
+
+    // A second batch with nothing pending issues no request.
+    underTest.startBatch();
+
+    asyncResponse.set(response.build());
+    assertTrue(future.isDone());
+    assertThat(future.get(), Matchers.equalTo(8));
+    Mockito.verifyNoMoreInteractions(mockWindmill);
+    assertNoReader(future);
+  }
+
+  @Test
+  public void testStartBatchFailure() throws Exception {
+    Future<Integer> future = underTest.valueFuture(STATE_KEY_1, STATE_FAMILY, INT_CODER);
+    Future<Instant> watermarkFuture = underTest.watermarkFuture(STATE_KEY_2, STATE_FAMILY);
+
+    SettableFuture<Windmill.KeyedGetDataResponse> asyncResponse = SettableFuture.create();
+    Mockito.when(
+            mockWindmill.getStateDataAsync(
+                Mockito.eq(COMPUTATION), Mockito.any(Windmill.KeyedGetDataRequest.class)))
+        .thenReturn(asyncResponse);
+
+    underTest.startBatch();
+    asyncResponse.setException(new RuntimeException("expected"));
+
+    for (Future<?> failed : new Future<?>[] {future, watermarkFuture}) {
+      try {
+        failed.get();
+        fail("Expected the read to fail");
+      } catch (ExecutionException e) {
+        assertEquals("expected", e.getCause().getMessage());
+      }
+    }
+    Mockito.verify(mockWindmill)
+        .getStateDataAsync(
+            Mockito.eq(COMPUTATION), Mockito.any(Windmill.KeyedGetDataRequest.class));
+    Mockito.verifyNoMoreInteractions(mockWindmill);
+  }
+
   @Test
   public void testReadWatermark() throws Exception {
     Future<Instant> future = underTest.watermarkFuture(STATE_KEY_1, STATE_FAMILY);
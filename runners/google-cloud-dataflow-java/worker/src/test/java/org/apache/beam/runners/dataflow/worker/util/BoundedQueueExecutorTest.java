@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.dataflow.worker.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link BoundedQueueExecutor}. */
+@RunWith(JUnit4.class)
+public class BoundedQueueExecutorTest {
+  private final CountDownLatch blocker = new CountDownLatch(1);
+  private BoundedQueueExecutor executor;
+
+  @After
+  public void tearDown() throws Exception {
+    blocker.countDown();
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  private Runnable blockingWork() {
+    return () -> {
+      try {
+        blocker.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+
+  @Test
+  public void testQueuedWorkIsTakenFromGroupsInTurn() throws Exception {
+    executor = new BoundedQueueExecutor(1, 60, TimeUnit.SECONDS, 100, Thread::new);
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    executor.execute(blockingWork(), "slow", 0);
+    for (int i = 0; i < 3; i++) {
+      String name = "slow" + i;
+      executor.execute(() -> executed.add(name), "slow", 0);
+    }
+    executor.execute(() -> executed.add("fast0"), "fast", 0);
+    executor.execute(() -> executed.add("fast1"), "fast", 0);
+    assertThat(executor.getQueuedCountByGroup(), equalTo(ImmutableMap.of("slow", 3, "fast", 2)));
+
+    blocker.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertThat(executed, contains("slow0", "fast0", "slow1", "fast1", "slow2"));
+  }
+
+  @Test
+  public void testExecuteBlocksWhileBytesOutstandingExceedLimit() throws Exception {
+    executor = new BoundedQueueExecutor(2, 60, TimeUnit.SECONDS, 100, 100, Thread::new);
+    // Work is admitted while nothing is outstanding, however large it is.
+    executor.execute(blockingWork(), "computation", 150);
+    assertThat(executor.getBytesOutstanding(), equalTo(150L));
+
+    CountDownLatch admitted = new CountDownLatch(1);
+    Thread producer =
+        new Thread(
+            () -> {
+              executor.execute(() -> {}, "computation", 10);
+              admitted.countDown();
+            });
+    producer.start();
+    assertFalse(admitted.await(100, TimeUnit.MILLISECONDS));
+
+    blocker.countDown();
+    assertTrue(admitted.await(10, TimeUnit.SECONDS));
+    producer.join();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertThat(executor.getBytesOutstanding(), equalTo(0L));
+  }
+
+  @Test
+  public void testForceExecuteIgnoresBytesLimit() throws Exception {
+    executor = new BoundedQueueExecutor(1, 60, TimeUnit.SECONDS, 100, 100, Thread::new);
+    executor.execute(blockingWork(), "computation", 100);
+    executor.forceExecute(() -> {}, "computation", 100);
+    assertThat(executor.getBytesOutstanding(), equalTo(200L));
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.coders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for encoding, decoding and estimating the size of values with {@link VarIntCoder},
+ * {@link StringUtf8Coder}, {@link KvCoder} and {@link IterableLikeCoder}.
+ *
+ * <p>Specify {@code -Pbenchmark=CoderBenchmark} to run only these benchmarks. Allocation rates can
+ * be reported by additionally passing {@code -prof gc} to JMH.
+ */
+public class CoderBenchmark {
+
+  /** A small, medium and large varint. */
+  @State(Scope.Thread)
+  public static class VarIntState extends CoderBenchmarkState<Integer> {
+    @Param({"1", "100000", "2147483647"})
+    public int value;
+
+    @Override
+    protected Coder<Integer> createCoder() {
+      return VarIntCoder.of();
+    }
+
+    @Override
+    protected Integer createValue() {
+      return value;
+    }
+  }
+
+  /** An ASCII string of the given length. */
+  @State(Scope.Thread)
+  public static class StringUtf8State extends CoderBenchmarkState<String> {
+    @Param({"10", "1000"})
+    public int length;
+
+    @Override
+    protected Coder<String> createCoder() {
+      return StringUtf8Coder.of();
+    }
+
+    @Override
+    protected String createValue() {
+      return Strings.repeat("a", length);
+    }
+  }
+
+  /** A typical keyed element. */
+  @State(Scope.Thread)
+  public static class KvState extends CoderBenchmarkState<KV<String, Long>> {
+    @Override
+    protected Coder<KV<String, Long>> createCoder() {
+      return KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of());
+    }
+
+    @Override
+    protected KV<String, Long> createValue() {
+      return KV.of("some key of moderate length", 1234567890L);
+    }
+  }
+
+  /** An iterable of random longs of the given size. */
+  @State(Scope.Thread)
+  public static class IterableState extends CoderBenchmarkState<Iterable<Long>> {
+    @Param({"10", "10000"})
+    public int size;
+
+    @Override
+    protected Coder<Iterable<Long>> createCoder() {
+      return IterableCoder.of(VarLongCoder.of());
+    }
+
+    @Override
+    protected Iterable<Long> createValue() {
+      Random random = new Random(0);
+      List<Long> values = new ArrayList<>(size);
+      for (int i = 0; i < size; ++i) {
+        values.add(random.nextLong());
+      }
+      return values;
+    }
+  }
+
+  @Benchmark
+  public long encodeVarInt(VarIntState state) throws Exception {
+    return state.encode();
+  }
+
+  @Benchmark
+  public Integer decodeVarInt(VarIntState state) throws Exception {
+    return state.decode();
+  }
+
+  @Benchmark
+  public long estimateSizeVarInt(VarIntState state) throws Exception {
+    return state.estimateSize();
+  }
+
+  @Benchmark
+  public long encodeStringUtf8(StringUtf8State state) throws Exception {
+    return state.encode();
+  }
+
+  @Benchmark
+  public String decodeStringUtf8(StringUtf8State state) throws Exception {
+    return state.decode();
+  }
+
+  @Benchmark
+  public long estimateSizeStringUtf8(StringUtf8State state) throws Exception {
+    return state.estimateSize();
+  }
+
+  @Benchmark
+  public long encodeKv(KvState state) throws Exception {
+    return state.encode();
+  }
+
+  @Benchmark
+  public KV<String, Long> decodeKv(KvState state) throws Exception {
+    return state.decode();
+  }
+
+  @Benchmark
+  public long estimateSizeKv(KvState state) throws Exception {
+    return state.estimateSize();
+  }
+
+  @Benchmark
+  public long encodeIterable(IterableState state) throws Exception {
+    return state.encode();
+  }
+
+  @Benchmark
+  public Iterable<Long> decodeIterable(IterableState state) throws Exception {
+    return state.decode();
+  }
+
+  @Benchmark
+  public long estimateSizeIterable(IterableState state) throws Exception {
+    return state.estimateSize();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.coders;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Holds a {@link Coder}, a value and its encoding for benchmarking encode, decode and size
+ * estimation throughput.
+ *
+ * <p>Subclasses are annotated with {@link org.openjdk.jmh.annotations.State} and provide the coder
+ * and value from {@link #createCoder()} and {@link #createValue()}, which may depend on
+ * {@link org.openjdk.jmh.annotations.Param} fields.
+ */
+public abstract class CoderBenchmarkState<T> {
+  private Coder<T> coder;
+  private T value;
+  private byte[] encoded;
+  private final ByteCountingOutputStream output = new ByteCountingOutputStream();
+  private final CountingElementByteSizeObserver observer = new CountingElementByteSizeObserver();
+
+  protected abstract Coder<T> createCoder() throws Exception;
+
+  protected abstract T createValue() throws Exception;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    coder = createCoder();
+    value = createValue();
+    // Encode the same way as encode() so that decode() reads the format which is benchmarked.
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    coder.encode(value, bytes);
+    encoded = bytes.toByteArray();
+    checkState(
+        coder.structuralValue(decode()).equals(coder.structuralValue(value)),
+        "%s did not decode to the encoded value %s",
+        coder,
+        value);
+  }
+
+  /** Encodes the value discarding the output, returning the number of bytes written. */
+  public long encode() throws IOException {
+    output.reset();
+    coder.encode(value, output);
+    return output.getCount();
+  }
+
+  public T decode() throws IOException {
+    return coder.decode(new ByteArrayInputStream(encoded));
+  }
+
+  /** Returns the size of the value as estimated by {@link Coder#registerByteSizeObserver}. */
+  public long estimateSize() throws Exception {
+    coder.registerByteSizeObserver(value, observer);
+    observer.advance();
+    return observer.size;
+  }
+
+  /** An {@link OutputStream} which discards the bytes written to it. */
+  private static class ByteCountingOutputStream extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count += 1;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+
+    void reset() {
+      count = 0;
+    }
+
+    long getCount() {
+      return count;
+    }
+  }
+
+  private static class CountingElementByteSizeObserver extends ElementByteSizeObserver {
+    private long size;
+
+    @Override
+    protected void reportElementSize(long elementByteSize) {
+      size = elementByteSize;
+    }
+  }
+}
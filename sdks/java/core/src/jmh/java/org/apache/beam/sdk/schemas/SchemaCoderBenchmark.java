@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.schemas;
+
+import java.util.Arrays;
+import java.util.List;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderBenchmarkState;
+import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.schemas.annotations.DefaultSchema;
+import org.apache.beam.sdk.values.Row;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for encoding, decoding and estimating the size of values with {@link RowCoder}, whose
+ * encoding is implemented by the code generated by {@link RowCoderGenerator}, and with a {@link
+ * SchemaCoder} for a POJO.
+ *
+ * <p>Specify {@code -Pbenchmark=SchemaCoderBenchmark} to run only these benchmarks. Allocation
+ * rates can be reported by additionally passing {@code -prof gc} to JMH.
+ */
+public class SchemaCoderBenchmark {
+
+  private static final Schema SCHEMA =
+      Schema.builder()
+          .addStringField("name")
+          .addInt32Field("count")
+          .addInt64Field("total")
+          .addDoubleField("ratio")
+          .addBooleanField("valid")
+          .addNullableField("comment", Schema.FieldType.STRING)
+          .addArrayField("tags", Schema.FieldType.STRING)
+          .build();
+
+  /** A POJO with the same fields as {@link #SCHEMA}. */
+  @DefaultSchema(JavaFieldSchema.class)
+  public static class Pojo {
+    public String name;
+    public int count;
+    public long total;
+    public double ratio;
+    public boolean valid;
+    public @Nullable String comment;
+    public List<String> tags;
+  }
+
+  /** A {@link Row} with several fields of common types. */
+  @State(Scope.Thread)
+  public static class RowState extends CoderBenchmarkState<Row> {
+    @Override
+    protected Coder<Row> createCoder() {
+      return RowCoder.of(SCHEMA);
+    }
+
+    @Override
+    protected Row createValue() {
+      return Row.withSchema(SCHEMA)
+          .addValues(
+              "some name",
+              42,
+              1234567890L,
+              0.5,
+              true,
+              null,
+              Arrays.asList("first", "second", "third"))
+          .build();
+    }
+  }
+
+  /** A {@link Pojo} whose coder converts it to and from a {@link Row}. */
+  @State(Scope.Thread)
+  public static class PojoState extends CoderBenchmarkState<Pojo> {
+    @Override
+    protected Coder<Pojo> createCoder() throws Exception {
+      return SchemaRegistry.createDefault().getSchemaCoder(Pojo.class);
+    }
+
+    @Override
+    protected Pojo createValue() {
+      Pojo pojo = new Pojo();
+      pojo.name = "some name";
+      pojo.count = 42;
+      pojo.total = 1234567890L;
+      pojo.ratio = 0.5;
+      pojo.valid = true;
+      pojo.tags = Arrays.asList("first", "second", "third");
+      return pojo;
+    }
+  }
+
+  @Benchmark
+  public long encodeRow(RowState state) throws Exception {
+    return state.encode();
+  }
+
+  @Benchmark
+  public Row decodeRow(RowState state) throws Exception {
+    return state.decode();
+  }
+
+  @Benchmark
+  public long estimateSizeRow(RowState state) throws Exception {
+    return state.estimateSize();
+  }
+
+  @Benchmark
+  public long encodePojo(PojoState state) throws Exception {
+    return state.encode();
+  }
+
+  @Benchmark
+  public Pojo decodePojo(PojoState state) throws Exception {
+    return state.decode();
+  }
+
+  @Benchmark
+  public long estimateSizePojo(PojoState state) throws Exception {
+    return state.estimateSize();
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.util;
+
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderBenchmarkState;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.util.WindowedValue.FullWindowedValueCoder;
+import org.apache.beam.sdk.values.KV;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for encoding, decoding and estimating the size of values with {@link
+ * FullWindowedValueCoder}, in the global window and in an {@link IntervalWindow}.
+ *
+ * <p>Specify {@code -Pbenchmark=WindowedValueCoderBenchmark} to run only these benchmarks.
+ * Allocation rates can be reported by additionally passing {@code -prof gc} to JMH.
+ */
+public class WindowedValueCoderBenchmark {
+
+  private static final Coder<KV<String, Long>> VALUE_CODER =
+      KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of());
+
+  /** A keyed element in the global window. */
+  @State(Scope.Thread)
+  public static class GlobalWindowState
+      extends CoderBenchmarkState<WindowedValue<KV<String, Long>>> {
+    @Override
+    protected Coder<WindowedValue<KV<String, Long>>> createCoder() {
+      return FullWindowedValueCoder.of(VALUE_CODER, GlobalWindow.Coder.INSTANCE);
+    }
+
+    @Override
+    protected WindowedValue<KV<String, Long>> createValue() {
+      return WindowedValue.valueInGlobalWindow(KV.of("some key", 1234567890L));
+    }
+  }
+
+  /** A keyed element in an interval window with a non-default timestamp and pane. */
+  @State(Scope.Thread)
+  public static class IntervalWindowState
+      extends CoderBenchmarkState<WindowedValue<KV<String, Long>>> {
+    @Override
+    protected Coder<WindowedValue<KV<String, Long>>> createCoder() {
+      return FullWindowedValueCoder.of(VALUE_CODER, IntervalWindow.getCoder());
+    }
+
+    @Override
+    protected WindowedValue<KV<String, Long>> createValue() {
+      return WindowedValue.of(
+          KV.of("some key", 1234567890L),
+          new Instant(1500),
+          new IntervalWindow(new Instant(1000), new Instant(2000)),
+          PaneInfo.ON_TIME_AND_ONLY_FIRING);
+    }
+  }
+
+  @Benchmark
+  public long encodeGlobalWindow(GlobalWindowState state) throws Exception {
+    return state.encode();
+  }
+
+  @Benchmark
+  public WindowedValue<KV<String, Long>> decodeGlobalWindow(GlobalWindowState state)
+      throws Exception {
+    return state.decode();
+  }
+
+  @Benchmark
+  public long estimateSizeGlobalWindow(GlobalWindowState state) throws Exception {
+    return state.estimateSize();
+  }
+
+  @Benchmark
+  public long encodeIntervalWindow(IntervalWindowState state) throws Exception {
+    return state.encode();
+  }
+
+  @Benchmark
+  public WindowedValue<KV<String, Long>> decodeIntervalWindow(IntervalWindowState state)
+      throws Exception {
+    return state.decode();
+  }
+
+  @Benchmark
+  public long estimateSizeIntervalWindow(IntervalWindowState state) throws Exception {
+    return state.estimateSize();
+  }
+}
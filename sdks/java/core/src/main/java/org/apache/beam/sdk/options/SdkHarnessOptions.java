@@ -27,6 +27,7 @@ import org.apache.beam.sdk.annotations.Experimental;
 import org.apache.beam.sdk.annotations.Experimental.Kind;
 import org.apache.beam.sdk.util.InstanceBuilder;
 import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** Options that are used to control configuration of the SDK harness. */
 @Experimental(Kind.PORTABILITY)
@@ -98,6 +99,64 @@ public interface SdkHarnessOptions extends PipelineOptions {
 
   void setGroupingTableMaxSizeMb(int value);
 
+  /**
+   * Whether grouping tables used to pre-combine elements spill sorted runs of encoded keys and
+   * accumulators to local disk when full instead of outputting them. The runs are merged and
+   * combined at the end of each bundle.
+   */
+  @Description(
+      "Whether grouping tables used to pre-combine elements before shuffling spill to local disk "
+          + "when full instead of outputting partially combined values. Spilled values are merged "
+          + "at the end of each bundle, which may reduce the amount of data shuffled.")
+  @Default.Boolean(false)
+  boolean getGroupingTableSpillToDisk();
+
+  void setGroupingTableSpillToDisk(boolean value);
+
+  /**
+   * The local directory used by grouping tables to spill to disk. Defaults to {@code
+   * java.io.tmpdir}.
+   */
+  @Description(
+      "The local directory used by grouping tables to spill to disk. Defaults to java.io.tmpdir.")
+  @Nullable
+  String getGroupingTableSpillDirectory();
+
+  void setGroupingTableSpillDirectory(@Nullable String value);
+
+  /**
+   * The number of pages of a paginated state read, such as a large iterable of grouped values or a
+   * side input, to fetch ahead of the consumer. Larger values hide more of the round trip latency
+   * of each page at the cost of buffering more pages in memory.
+   */
+  @Description(
+      "The number of pages of large iterables and side inputs read over the state API to fetch "
+          + "ahead of the consumer. Larger values reduce the time spent waiting on state reads but "
+          + "buffer more data in memory.")
+  @Default.Integer(1)
+  int getStateReadAheadPages();
+
+  void setStateReadAheadPages(int value);
+
+  /**
+   * The maximum size (in MB) of the off-heap index materialized for each window of a multimap side
+   * input. When positive and the runner supplies a cache token for the side input, all keys and
+   * values are read once per worker into an index which answers lookups locally and is shared
+   * across bundles. Side inputs which exceed this size fall back to a state request per key. A
+   * value of 0 disables indexing.
+   *
+   * <p>The indexes are held in the process wide cache and count towards {@link
+   * #getMaxCacheMemoryUsageMb()} although their memory is off-heap.
+   */
+  @Description(
+      "The maximum size (in MB) of the off-heap index built for each window of a multimap side "
+          + "input so that lookups are answered locally and shared across bundles. Larger side "
+          + "inputs are looked up per key using the state API. 0 disables indexing.")
+  @Default.Integer(0)
+  int getMaxMultimapSideInputIndexSizeMb();
+
+  void setMaxMultimapSideInputIndexSizeMb(int value);
+
   /**
    * Size (in MB) for the process wide cache within the SDK harness. The cache is responsible for
    * storing all values which are cached within a bundle and across bundles such as side inputs and
@@ -168,6 +227,24 @@ public interface SdkHarnessOptions extends PipelineOptions {
     }
   }
 
+  /**
+   * Size (in MB) for an optional off-heap cache within the SDK harness. The cache stores encoded
+   * pages of side inputs and user state in direct memory and decodes them lazily on access. A value
+   * of 0 disables the off-heap cache.
+   *
+   * <p>CAUTION: The JVM limit on direct memory ({@code -XX:MaxDirectMemorySize}) must be large
+   * enough to hold the cache.
+   */
+  @Description(
+      "The size (in MB) for an optional off-heap cache within the SDK harness which stores encoded "
+          + "pages of side inputs and user state in direct memory. A value of 0 disables the off-heap "
+          + "cache. CAUTION: -XX:MaxDirectMemorySize must be large enough to hold the cache.")
+  @Default.Integer(0)
+  @NonNegative
+  int getMaxOffHeapCacheMemoryUsageMb();
+
+  void setMaxOffHeapCacheMemoryUsageMb(@NonNegative int value);
+
   /**
    * Defines a log level override for a specific class, package, or name.
    *
@@ -24,6 +24,8 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Collection;
+import java.util.List;
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.annotations.Experimental;
 import org.apache.beam.sdk.annotations.Experimental.Kind;
@@ -746,6 +748,57 @@ public abstract class DoFn<InputT extends @Nullable Object, OutputT extends @Nul
   @Target(ElementType.METHOD)
   public @interface ProcessElement {}
 
+  /**
+   * Annotation for an optional method which processes a batch of elements in a single invocation.
+   *
+   * <p>A {@link DoFn} with a {@link ProcessBatch} method must still define an equivalent {@link
+   * ProcessElement} method. Runners which support batched processing may choose to invoke the
+   * {@link ProcessBatch} method with batches of elements of a runner chosen size instead of
+   * invoking the {@link ProcessElement} method once per element, avoiding the per element dispatch
+   * overhead for work which is more efficient over many elements at once such as model inference
+   * or columnar conversion. Runners fall back to the {@link ProcessElement} method for {@link DoFn
+   * DoFns} which are splittable, use state, timers or side inputs.
+   *
+   * <p>The method annotated with this must satisfy the following constraints:
+   *
+   * <ul>
+   *   <li>It must return {@code void}.
+   *   <li>It must have a single parameter of type {@link ElementBatch ElementBatch&lt;InputT,
+   *       OutputT&gt;}.
+   * </ul>
+   */
+  @Documented
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.METHOD)
+  @Experimental(Kind.UNSPECIFIED)
+  public @interface ProcessBatch {}
+
+  /**
+   * A batch of elements passed to a {@link ProcessBatch} method along with their timestamps,
+   * windows and panes.
+   *
+   * <p>Outputs are associated with the element at the given index, inheriting its timestamp,
+   * windows and pane. The batch is only valid during the invocation of the {@link ProcessBatch}
+   * method.
+   */
+  @Experimental(Kind.UNSPECIFIED)
+  public interface ElementBatch<InputT, OutputT> {
+    /** Returns the elements of this batch. */
+    List<InputT> elements();
+
+    /** Returns the timestamp of the element at the given index. */
+    Instant timestamp(int index);
+
+    /** Returns the windows of the element at the given index. */
+    Collection<? extends BoundedWindow> windows(int index);
+
+    /** Returns the pane of the element at the given index. */
+    PaneInfo pane(int index);
+
+    /** Outputs a value to the main output for the element at the given index. */
+    void output(int index, OutputT output);
+  }
+
   /**
    * Parameter annotation for the input element for {@link ProcessElement}, {@link
    * GetInitialRestriction}, {@link GetSize}, {@link SplitRestriction}, {@link
@@ -75,6 +75,9 @@ public abstract class DoFnSignature {
   /** Details about this {@link DoFn}'s {@link DoFn.ProcessElement} method. */
   public abstract ProcessElementMethod processElement();
 
+  /** Details about this {@link DoFn}'s {@link DoFn.ProcessBatch} method, if any. */
+  public abstract @Nullable ProcessBatchMethod processBatch();
+
   /** Details about the state cells that this {@link DoFn} declares. Immutable. */
   public abstract Map<String, StateDeclaration> stateDeclarations();
 
@@ -164,6 +167,8 @@ public abstract class DoFnSignature {
 
     abstract Builder setProcessElement(ProcessElementMethod processElement);
 
+    abstract Builder setProcessBatch(ProcessBatchMethod processBatch);
+
     abstract Builder setStartBundle(BundleMethod startBundle);
 
     abstract Builder setFinishBundle(BundleMethod finishBundle);
@@ -1035,6 +1040,18 @@ public abstract class DoFnSignature {
     }
   }
 
+  /** Describes a {@link DoFn.ProcessBatch} method. */
+  @AutoValue
+  public abstract static class ProcessBatchMethod implements DoFnMethod {
+    /** The annotated method itself. */
+    @Override
+    public abstract Method targetMethod();
+
+    static ProcessBatchMethod create(Method targetMethod) {
+      return new AutoValue_DoFnSignature_ProcessBatchMethod(targetMethod);
+    }
+  }
+
   /** Describes a {@link DoFn.OnTimer} method. */
   @AutoValue
   public abstract static class OnTimerMethod implements MethodWithExtraParameters {
@@ -530,6 +530,8 @@ public class DoFnSignatures {
 
     Method processElementMethod =
         findAnnotatedMethod(errors, DoFn.ProcessElement.class, fnClass, true);
+    Method processBatchMethod =
+        findAnnotatedMethod(errors, DoFn.ProcessBatch.class, fnClass, false);
     Method startBundleMethod = findAnnotatedMethod(errors, DoFn.StartBundle.class, fnClass, false);
     Method finishBundleMethod =
         findAnnotatedMethod(errors, DoFn.FinishBundle.class, fnClass, false);
@@ -639,6 +641,16 @@ public class DoFnSignatures {
             processElementErrors, fnT, processElementMethod, inputT, outputT, fnContext);
     signatureBuilder.setProcessElement(processElement);
 
+    if (processBatchMethod != null) {
+      signatureBuilder.setProcessBatch(
+          analyzeProcessBatchMethod(
+              errors.forMethod(DoFn.ProcessBatch.class, processBatchMethod),
+              fnT,
+              processBatchMethod,
+              inputT,
+              outputT));
+    }
+
     if (startBundleMethod != null) {
       ErrorReporter startBundleErrors = errors.forMethod(DoFn.StartBundle.class, startBundleMethod);
       signatureBuilder.setStartBundle(
@@ -1783,6 +1795,39 @@ public class DoFnSignatures {
         m, fnT.resolveType(m.getGenericReturnType()), windowT, methodContext.extraParameters);
   }
 
+  @VisibleForTesting
+  static DoFnSignature.ProcessBatchMethod analyzeProcessBatchMethod(
+      ErrorReporter errors,
+      TypeDescriptor<? extends DoFn<?, ?>> fnClass,
+      Method m,
+      TypeDescriptor<?> inputT,
+      TypeDescriptor<?> outputT) {
+    // Method is of the form:
+    // @ProcessBatch
+    // void processBatch(ElementBatch<InputT, OutputT> batch);
+    errors.checkArgument(void.class.equals(m.getReturnType()), "Must return void");
+    Type[] params = m.getGenericParameterTypes();
+    errors.checkArgument(params.length == 1, "Must take a single argument");
+    TypeDescriptor<?> expectedBatchT = elementBatchTypeOf(inputT, outputT);
+    errors.checkArgument(
+        fnClass.resolveType(params[0]).equals(expectedBatchT),
+        "Must take a single argument of type %s",
+        format(expectedBatchT));
+    return DoFnSignature.ProcessBatchMethod.create(m);
+  }
+
+  /**
+   * Generates a {@link TypeDescriptor} for {@code DoFn.ElementBatch<InputT, OutputT>} given {@code
+   * InputT} and {@code OutputT}.
+   */
+  private static <InputT, OutputT>
+      TypeDescriptor<DoFn.ElementBatch<InputT, OutputT>> elementBatchTypeOf(
+          TypeDescriptor<InputT> inputT, TypeDescriptor<OutputT> outputT) {
+    return new TypeDescriptor<DoFn.ElementBatch<InputT, OutputT>>() {}.where(
+            new TypeParameter<InputT>() {}, inputT)
+        .where(new TypeParameter<OutputT>() {}, outputT);
+  }
+
   /**
    * Generates a {@link TypeDescriptor} for {@code DoFn.OutputReceiver<OutputT>} given {@code
    * OutputT}.
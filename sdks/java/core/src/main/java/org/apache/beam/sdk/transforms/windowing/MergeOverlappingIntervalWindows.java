@@ -17,10 +17,8 @@
  */
 package org.apache.beam.sdk.transforms.windowing;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.Collection;
 import org.apache.beam.sdk.annotations.Internal;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -38,62 +36,39 @@ public class MergeOverlappingIntervalWindows {
   /** Merge overlapping {@link IntervalWindow}s. */
   public static void mergeWindows(WindowFn<?, IntervalWindow>.MergeContext c) throws Exception {
     // Merge any overlapping windows into a single window.
-    // Sort the list of existing windows so we only have to
-    // traverse the list once rather than considering all
-    // O(n^2) window pairs.
-    List<IntervalWindow> sortedWindows = new ArrayList<>();
-    for (IntervalWindow window : c.windows()) {
-      sortedWindows.add(window);
-    }
-    Collections.sort(sortedWindows);
-    List<MergeCandidate> merges = new ArrayList<>();
-    MergeCandidate current = new MergeCandidate();
-    for (IntervalWindow window : sortedWindows) {
-      if (current.intersects(window)) {
-        current.add(window);
+    // Sort the existing windows so we only have to
+    // traverse them once rather than considering all
+    // O(n^2) window pairs. Runs of overlapping windows are
+    // tracked as ranges of the sorted array, so that keys with
+    // many disjoint windows do not allocate per window.
+    Collection<IntervalWindow> windows = c.windows();
+    IntervalWindow[] sortedWindows = windows.toArray(new IntervalWindow[windows.size()]);
+    Arrays.sort(sortedWindows);
+    int runStart = 0;
+    IntervalWindow union = null;
+    for (int i = 0; i < sortedWindows.length; i++) {
+      IntervalWindow window = sortedWindows[i];
+      if (union != null && union.intersects(window)) {
+        union = union.span(window);
       } else {
-        merges.add(current);
-        current = new MergeCandidate(window);
+        apply(c, sortedWindows, runStart, i, union);
+        runStart = i;
+        union = window;
       }
     }
-    merges.add(current);
-    for (MergeCandidate merge : merges) {
-      merge.apply(c);
-    }
+    apply(c, sortedWindows, runStart, sortedWindows.length, union);
   }
 
-  private static class MergeCandidate {
-    private @Nullable IntervalWindow union;
-    private final List<IntervalWindow> parts;
-
-    public MergeCandidate() {
-      union = null;
-      parts = new ArrayList<>();
-    }
-
-    public MergeCandidate(IntervalWindow window) {
-      union = window;
-      parts = new ArrayList<>(Arrays.asList(window));
-    }
-
-    public boolean intersects(IntervalWindow window) {
-      return union == null || union.intersects(window);
-    }
-
-    public void add(IntervalWindow window) {
-      union = union == null ? window : union.span(window);
-      parts.add(window);
-    }
-
-    public void apply(WindowFn<?, IntervalWindow>.MergeContext c) throws Exception {
-      if (parts.size() > 1) {
-        c.merge(parts, union);
-      }
-    }
-
-    @Override
-    public String toString() {
-      return "MergeCandidate[union=" + union + ", parts=" + parts + "]";
+  /** Merges {@code sortedWindows[from, to)} into {@code union} if there is more than one. */
+  private static void apply(
+      WindowFn<?, IntervalWindow>.MergeContext c,
+      IntervalWindow[] sortedWindows,
+      int from,
+      int to,
+      @Nullable IntervalWindow union)
+      throws Exception {
+    if (to - from > 1) {
+      c.merge(Arrays.asList(sortedWindows).subList(from, to), union);
     }
   }
 }
@@ -197,6 +197,35 @@ public class DoFnSignaturesTest {
         }.getClass());
   }
 
+  @Test
+  public void testProcessBatch() throws Exception {
+    DoFnSignature sig =
+        DoFnSignatures.getSignature(
+            new DoFn<String, Integer>() {
+              @ProcessElement
+              public void process(ProcessContext c) {}
+
+              @ProcessBatch
+              public void processBatch(ElementBatch<String, Integer> batch) {}
+            }.getClass());
+
+    assertThat(sig.processBatch().targetMethod().getName(), equalTo("processBatch"));
+  }
+
+  @Test
+  public void testWrongProcessBatchType() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Must take a single argument of type");
+    DoFnSignatures.getSignature(
+        new DoFn<String, Integer>() {
+          @ProcessElement
+          public void process(ProcessContext c) {}
+
+          @ProcessBatch
+          public void processBatch(ElementBatch<String, String> batch) {}
+        }.getClass());
+  }
+
   @Test
   public void testRowParameterWithoutFieldAccess() {
     DoFnSignature sig =
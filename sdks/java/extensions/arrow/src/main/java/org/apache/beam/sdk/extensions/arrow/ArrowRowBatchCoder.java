@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.WriteChannel;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.coders.CustomCoder;
+import org.apache.beam.sdk.extensions.arrow.ArrowConversion.RecordBatchRowIterator;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.Schema.Field;
+import org.apache.beam.sdk.schemas.Schema.FieldType;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.sdk.values.Row;
+import org.joda.time.ReadableInstant;
+
+/**
+ * A {@link org.apache.beam.sdk.coders.Coder} which encodes a batch of {@link Row Rows} as a single
+ * columnar Arrow record batch.
+ *
+ * <p>Values are written column by column into Arrow vectors which are serialized using the Arrow
+ * IPC format, so each column of the batch is stored contiguously rather than interleaved per row
+ * as with {@link org.apache.beam.sdk.coders.RowCoder}. Batching rows, for example with {@link
+ * org.apache.beam.sdk.transforms.GroupIntoBatches}, and encoding them with this coder reduces the
+ * per-row encoding overhead when shipping schema'd data across the data plane and shuffle.
+ *
+ * <p>Only schemas whose fields are of the primitive types {@link FieldType#BYTE}, {@link
+ * FieldType#INT16}, {@link FieldType#INT32}, {@link FieldType#INT64}, {@link FieldType#FLOAT},
+ * {@link FieldType#DOUBLE}, {@link FieldType#BOOLEAN}, {@link FieldType#STRING}, {@link
+ * FieldType#BYTES} and {@link FieldType#DATETIME} are supported. An Arrow memory implementation,
+ * such as {@code arrow-memory-netty}, must be available at runtime.
+ */
+@Experimental(Experimental.Kind.SCHEMAS)
+@SuppressWarnings({
+  "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
+})
+public class ArrowRowBatchCoder extends CustomCoder<List<Row>> {
+
+  private static final String TIMEZONE = "UTC";
+
+  private final Schema schema;
+  private transient @Nullable org.apache.arrow.vector.types.pojo.Schema arrowSchema;
+
+  /**
+   * Returns a coder for batches of {@link Row Rows} with the given {@link Schema}.
+   *
+   * @throws IllegalArgumentException if the schema contains an unsupported field type
+   */
+  public static ArrowRowBatchCoder of(Schema schema) {
+    // Validate eagerly so that unsupported schemas fail at pipeline construction time.
+    toArrowSchema(schema);
+    return new ArrowRowBatchCoder(schema);
+  }
+
+  private ArrowRowBatchCoder(Schema schema) {
+    this.schema = schema;
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  @Override
+  public void encode(List<Row> rows, OutputStream outStream) throws IOException {
+    ByteArrayOutputStream batchBytes = new ByteArrayOutputStream();
+    try (BufferAllocator allocator = newAllocator();
+        VectorSchemaRoot root = VectorSchemaRoot.create(getArrowSchema(), allocator)) {
+      root.allocateNew();
+      for (int i = 0; i < schema.getFieldCount(); ++i) {
+        writeColumn(schema.getField(i).getType(), root.getVector(i), rows, i);
+      }
+      root.setRowCount(rows.size());
+      try (ArrowRecordBatch batch = new VectorUnloader(root).getRecordBatch()) {
+        MessageSerializer.serialize(new WriteChannel(Channels.newChannel(batchBytes)), batch);
+      }
+    }
+    // Length prefix the record batch so that it can be decoded within a nested context.
+    VarInt.encode(batchBytes.size(), outStream);
+    batchBytes.writeTo(outStream);
+  }
+
+  @Override
+  public List<Row> decode(InputStream inStream) throws IOException {
+    byte[] batchBytes = new byte[VarInt.decodeInt(inStream)];
+    new DataInputStream(inStream).readFully(batchBytes);
+    try (BufferAllocator allocator = newAllocator();
+        RecordBatchRowIterator rowIterator =
+            ArrowConversion.rowsFromSerializedRecordBatch(
+                getArrowSchema(), new ByteArrayInputStream(batchBytes), allocator)) {
+      List<Row> rows = new ArrayList<>();
+      while (rowIterator.hasNext()) {
+        // Copy the values out of the vectors since they are released once decoding completes.
+        rows.add(Row.withSchema(schema).addValues(rowIterator.next().getValues()).build());
+      }
+      return rows;
+    }
+  }
+
+  @Override
+  public void verifyDeterministic() throws NonDeterministicException {
+    throw new NonDeterministicException(
+        this, "The Arrow IPC format does not guarantee a deterministic encoding.");
+  }
+
+  @Override
+  public boolean equals(@Nullable Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof ArrowRowBatchCoder)) {
+      return false;
+    }
+    return schema.equals(((ArrowRowBatchCoder) other).schema);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(schema);
+  }
+
+  private org.apache.arrow.vector.types.pojo.Schema getArrowSchema() {
+    if (arrowSchema == null) {
+      arrowSchema = toArrowSchema(schema);
+    }
+    return arrowSchema;
+  }
+
+  private static BufferAllocator newAllocator() {
+    return RootAllocatorHolder.INSTANCE.newChildAllocator(
+        ArrowRowBatchCoder.class.getName(), 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Lazily creates the root allocator so that constructing the coder does not require an Arrow
+   * memory implementation.
+   */
+  private static class RootAllocatorHolder {
+    private static final BufferAllocator INSTANCE = new RootAllocator(Long.MAX_VALUE);
+  }
+
+  /** Writes the values of the field at {@code fieldIndex} of each row into {@code vector}. */
+  private static void writeColumn(
+      FieldType fieldType, FieldVector vector, List<Row> rows, int fieldIndex) {
+    for (int i = 0; i < rows.size(); ++i) {
+      Object value = rows.get(i).getValue(fieldIndex);
+      if (value == null) {
+        setNull(vector, i);
+        continue;
+      }
+      switch (fieldType.getTypeName()) {
+        case BYTE:
+          ((TinyIntVector) vector).setSafe(i, (Byte) value);
+          break;
+        case INT16:
+          ((SmallIntVector) vector).setSafe(i, (Short) value);
+          break;
+        case INT32:
+          ((IntVector) vector).setSafe(i, (Integer) value);
+          break;
+        case INT64:
+          ((BigIntVector) vector).setSafe(i, (Long) value);
+          break;
+        case FLOAT:
+          ((Float4Vector) vector).setSafe(i, (Float) value);
+          break;
+        case DOUBLE:
+          ((Float8Vector) vector).setSafe(i, (Double) value);
+          break;
+        case BOOLEAN:
+          ((BitVector) vector).setSafe(i, ((Boolean) value) ? 1 : 0);
+          break;
+        case STRING:
+          ((VarCharVector) vector).setSafe(i, ((String) value).getBytes(StandardCharsets.UTF_8));
+          break;
+        case BYTES:
+          ((VarBinaryVector) vector).setSafe(i, (byte[]) value);
+          break;
+        case DATETIME:
+          ((TimeStampVector) vector).setSafe(i, ((ReadableInstant) value).getMillis());
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported field type: " + fieldType);
+      }
+    }
+    vector.setValueCount(rows.size());
+  }
+
+  private static void setNull(FieldVector vector, int index) {
+    // setNull is not part of the FieldVector interface but is provided by all supported vectors.
+    if (vector instanceof BaseFixedWidthVector) {
+      ((BaseFixedWidthVector) vector).setNull(index);
+    } else {
+      ((BaseVariableWidthVector) vector).setNull(index);
+    }
+  }
+
+  private static org.apache.arrow.vector.types.pojo.Schema toArrowSchema(Schema schema) {
+    List<org.apache.arrow.vector.types.pojo.Field> fields = new ArrayList<>();
+    for (Field field : schema.getFields()) {
+      fields.add(
+          new org.apache.arrow.vector.types.pojo.Field(
+              field.getName(),
+              new org.apache.arrow.vector.types.pojo.FieldType(
+                  field.getType().getNullable(), toArrowType(field.getType()), null),
+              null));
+    }
+    return new org.apache.arrow.vector.types.pojo.Schema(fields);
+  }
+
+  private static ArrowType toArrowType(FieldType fieldType) {
+    switch (fieldType.getTypeName()) {
+      case BYTE:
+        return new ArrowType.Int(8, true);
+      case INT16:
+        return new ArrowType.Int(16, true);
+      case INT32:
+        return new ArrowType.Int(32, true);
+      case INT64:
+        return new ArrowType.Int(64, true);
+      case FLOAT:
+        return new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE);
+      case DOUBLE:
+        return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+      case BOOLEAN:
+        return ArrowType.Bool.INSTANCE;
+      case STRING:
+        return ArrowType.Utf8.INSTANCE;
+      case BYTES:
+        return ArrowType.Binary.INSTANCE;
+      case DATETIME:
+        return new ArrowType.Timestamp(TimeUnit.MILLISECOND, TIMEZONE);
+      default:
+        throw new IllegalArgumentException(
+            "Field type '" + fieldType + "' is not supported by " + ArrowRowBatchCoder.class);
+    }
+  }
+}
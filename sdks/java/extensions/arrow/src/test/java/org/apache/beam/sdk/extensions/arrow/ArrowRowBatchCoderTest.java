@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.Schema.FieldType;
+import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.values.Row;
+import org.joda.time.Instant;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ArrowRowBatchCoder}. */
+@RunWith(JUnit4.class)
+public class ArrowRowBatchCoderTest {
+
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private static final Schema SCHEMA =
+      Schema.builder()
+          .addByteField("byte")
+          .addInt16Field("int16")
+          .addInt32Field("int32")
+          .addInt64Field("int64")
+          .addFloatField("float")
+          .addDoubleField("double")
+          .addBooleanField("boolean")
+          .addStringField("string")
+          .addByteArrayField("bytes")
+          .addDateTimeField("datetime")
+          .addNullableField("nullableString", FieldType.STRING)
+          .addNullableField("nullableInt64", FieldType.INT64)
+          .build();
+
+  private static List<Row> rows(int count) {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      rows.add(
+          Row.withSchema(SCHEMA)
+              .addValues(
+                  (byte) i,
+                  (short) (i * 2),
+                  i * 3,
+                  i * 4L,
+                  i * 0.5f,
+                  i * 0.25,
+                  i % 2 == 0,
+                  "string" + i,
+                  ("bytes" + i).getBytes(StandardCharsets.UTF_8),
+                  new Instant(1000L * i),
+                  i % 3 == 0 ? null : "nullable" + i,
+                  i % 4 == 0 ? null : (long) i)
+              .build());
+    }
+    return rows;
+  }
+
+  @Test
+  public void testDecodeEncodeEqual() throws Exception {
+    Coder<List<Row>> coder = ArrowRowBatchCoder.of(SCHEMA);
+    CoderProperties.coderDecodeEncodeEqual(coder, rows(1));
+    CoderProperties.coderDecodeEncodeEqual(coder, rows(100));
+    CoderProperties.coderDecodeEncodeEqual(coder, Collections.emptyList());
+  }
+
+  @Test
+  public void testDecodeEncodeInNestedContext() throws Exception {
+    Coder<List<Row>> coder = ArrowRowBatchCoder.of(SCHEMA);
+    CoderProperties.coderDecodeEncodeEqualInContext(coder, Coder.Context.NESTED, rows(10));
+  }
+
+  @Test
+  public void testCoderSerializable() {
+    CoderProperties.coderSerializable(ArrowRowBatchCoder.of(SCHEMA));
+  }
+
+  @Test
+  public void testDecodedValues() throws Exception {
+    Coder<List<Row>> coder = ArrowRowBatchCoder.of(SCHEMA);
+    List<Row> decoded =
+        CoderUtils.decodeFromByteArray(coder, CoderUtils.encodeToByteArray(coder, rows(4)));
+    assertThat(decoded.size(), equalTo(4));
+    assertThat(decoded.get(3).getString("string"), equalTo("string3"));
+    assertThat(decoded.get(3).getDateTime("datetime").getMillis(), equalTo(3000L));
+    assertThat(decoded.get(0).getString("nullableString"), equalTo(null));
+    assertThat(decoded.get(1).getInt64("nullableInt64"), equalTo(1L));
+  }
+
+  @Test
+  public void testDecodeConsecutiveBatches() throws Exception {
+    ArrowRowBatchCoder coder = ArrowRowBatchCoder.of(SCHEMA);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    coder.encode(rows(3), output);
+    coder.encode(rows(5), output);
+
+    // Each batch is length prefixed, so decoding reads exactly one batch from the stream.
+    InputStream input = new ByteArrayInputStream(output.toByteArray());
+    assertThat(coder.decode(input), equalTo(rows(3)));
+    assertThat(coder.decode(input), equalTo(rows(5)));
+    assertThat(input.read(), equalTo(-1));
+  }
+
+  @Test
+  public void testUnsupportedSchema() {
+    thrown.expect(IllegalArgumentException.class);
+    ArrowRowBatchCoder.of(Schema.builder().addArrayField("array", FieldType.INT32).build());
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.fn.data;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.metrics.Gauge;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.vendor.grpc.v1p36p0.io.grpc.stub.CallStreamObserver;
+import org.apache.beam.vendor.grpc.v1p36p0.io.grpc.stub.StreamObserver;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A buffering outbound {@link FnDataReceiver} for the Beam Fn Data API which adapts its size-based
+ * and time-based buffer thresholds to the observed traffic.
+ *
+ * <p>The configured size and time limits act as upper bounds. After every flush the observer
+ * updates an exponentially weighted moving average of the outbound byte rate and:
+ *
+ * <ul>
+ *   <li>doubles the time limit if the buffer filled up to the size limit before the time limit
+ *       elapsed, or if the outbound stream applied back pressure, either because it reported that
+ *       it is not {@link CallStreamObserver#isReady ready} or because handing the message to it
+ *       blocked for longer than the minimum time limit. Otherwise it halves the time limit.
+ *   <li>sets the size limit to the number of bytes expected to arrive within the time limit.
+ * </ul>
+ *
+ * <p>This lets sparse streams flush small messages frequently keeping latency low, while dense or
+ * back pressured streams batch into larger messages reducing per-message overhead. The periodic
+ * flush is scheduled at the current time limit after the last flush. The chosen limits are reported
+ * as the {@link #SIZE_LIMIT_GAUGE} and {@link #TIME_LIMIT_GAUGE} gauges.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
+})
+public class BeamFnDataAdaptiveBufferingOutboundObserver<T>
+    extends BeamFnDataTimeBasedBufferingOutboundObserver<T> {
+
+  public static final String SIZE_LIMIT_GAUGE = "dataBufferSizeLimitBytes";
+  public static final String TIME_LIMIT_GAUGE = "dataBufferTimeLimitMs";
+
+  /** The ratio between the configured upper bounds and the smallest limits that are chosen. */
+  @VisibleForTesting static final int MIN_LIMIT_RATIO = 64;
+
+  /** The weight given to the most recent sample within the moving average of the byte rate. */
+  private static final double RATE_SMOOTHING_FACTOR = 0.2;
+
+  private final StreamObserver<BeamFnApi.Elements> outboundObserver;
+  private final int minSizeLimit;
+  private final int maxSizeLimit;
+  private final long minTimeLimitNanos;
+  private final long maxTimeLimitNanos;
+
+  // Only primitive fields are accessed by periodicFlush since it may be invoked by the flushing
+  // thread before the constructor of this class has completed.
+  private volatile int currentSizeLimit;
+  private volatile long currentTimeLimitNanos;
+  private long lastFlushNanos;
+  private double bytesPerNano;
+
+  BeamFnDataAdaptiveBufferingOutboundObserver(
+      int maxSizeLimit,
+      long maxTimeLimitMs,
+      LogicalEndpoint outputLocation,
+      Coder<T> coder,
+      StreamObserver<BeamFnApi.Elements> outboundObserver) {
+    super(
+        maxSizeLimit,
+        Math.max(1L, maxTimeLimitMs / MIN_LIMIT_RATIO),
+        outputLocation,
+        coder,
+        outboundObserver);
+    this.outboundObserver = outboundObserver;
+    this.maxSizeLimit = maxSizeLimit;
+    this.minSizeLimit = Math.max(1, maxSizeLimit / MIN_LIMIT_RATIO);
+    this.maxTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(maxTimeLimitMs);
+    this.minTimeLimitNanos =
+        TimeUnit.MILLISECONDS.toNanos(Math.max(1L, maxTimeLimitMs / MIN_LIMIT_RATIO));
+    this.currentSizeLimit = minSizeLimit;
+    this.currentTimeLimitNanos = minTimeLimitNanos;
+    this.lastFlushNanos = System.nanoTime();
+  }
+
+  @Override
+  public void accept(T t) throws IOException {
+    int previousSizeLimit = currentSizeLimit;
+    long previousTimeLimitNanos = currentTimeLimitNanos;
+    super.accept(t);
+    // Gauges are only updated on the thread processing the bundle since it is the thread with
+    // an associated metrics container.
+    if (previousSizeLimit != currentSizeLimit || previousTimeLimitNanos != currentTimeLimitNanos) {
+      reportMetrics();
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    reportMetrics();
+    super.close();
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    int bytes = getBufferedSize();
+    if (bytes == 0) {
+      return;
+    }
+    boolean filled = bytes >= currentSizeLimit;
+    boolean ready =
+        !(outboundObserver instanceof CallStreamObserver)
+            || ((CallStreamObserver<?>) outboundObserver).isReady();
+    long startNanos = System.nanoTime();
+    super.flush();
+    long endNanos = System.nanoTime();
+    adapt(bytes, startNanos, endNanos, filled, ready);
+  }
+
+  @Override
+  protected void periodicFlush() {
+    synchronized (this) {
+      if (System.nanoTime() - lastFlushNanos < currentTimeLimitNanos) {
+        // Flushed since this periodic flush was scheduled; the next one is rescheduled relative to
+        // that flush.
+        return;
+      }
+    }
+    super.periodicFlush();
+  }
+
+  @Override
+  protected synchronized long getPeriodicFlushDelayNanos() {
+    long remainingNanos = lastFlushNanos + currentTimeLimitNanos - System.nanoTime();
+    // Nothing was buffered when the previous periodic flush was due, so wait a full time limit.
+    return remainingNanos > 0 ? remainingNanos : currentTimeLimitNanos;
+  }
+
+  @Override
+  protected int getCurrentSizeLimit() {
+    return currentSizeLimit;
+  }
+
+  /** Returns the current time limit in milliseconds. */
+  @VisibleForTesting
+  long getCurrentTimeLimitMs() {
+    return TimeUnit.NANOSECONDS.toMillis(currentTimeLimitNanos);
+  }
+
+  private synchronized void adapt(
+      int bytes, long startNanos, long endNanos, boolean filled, boolean ready) {
+    double rate = (double) bytes / Math.max(1L, endNanos - lastFlushNanos);
+    bytesPerNano =
+        bytesPerNano == 0
+            ? rate
+            : RATE_SMOOTHING_FACTOR * rate + (1 - RATE_SMOOTHING_FACTOR) * bytesPerNano;
+    lastFlushNanos = endNanos;
+
+    boolean backPressured = !ready || endNanos - startNanos > minTimeLimitNanos;
+    currentTimeLimitNanos =
+        filled || backPressured
+            ? Math.min(maxTimeLimitNanos, currentTimeLimitNanos * 2)
+            : Math.max(minTimeLimitNanos, currentTimeLimitNanos / 2);
+    currentSizeLimit =
+        (int) Math.max(minSizeLimit, Math.min(maxSizeLimit, bytesPerNano * currentTimeLimitNanos));
+  }
+
+  private void reportMetrics() {
+    Gauge sizeLimitGauge =
+        Metrics.gauge(BeamFnDataAdaptiveBufferingOutboundObserver.class, SIZE_LIMIT_GAUGE);
+    sizeLimitGauge.set(currentSizeLimit);
+    Gauge timeLimitGauge =
+        Metrics.gauge(BeamFnDataAdaptiveBufferingOutboundObserver.class, TIME_LIMIT_GAUGE);
+    timeLimitGauge.set(getCurrentTimeLimitMs());
+  }
+}
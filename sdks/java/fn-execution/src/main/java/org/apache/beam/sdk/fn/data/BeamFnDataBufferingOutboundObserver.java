@@ -37,6 +37,10 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.Visi
  *
  * <p>The default time-based buffer threshold can be overridden by specifying the experiment {@code
  * data_buffer_time_limit_ms=<milliseconds>}
+ *
+ * <p>Adaptive buffering can be enabled by specifying the experiment {@code data_buffer_adaptive} in
+ * which case the size and time thresholds above act as upper bounds, see {@link
+ * BeamFnDataAdaptiveBufferingOutboundObserver}.
  */
 public interface BeamFnDataBufferingOutboundObserver<T> extends CloseableFnDataReceiver<T> {
   // TODO: Consider moving this constant out of this interface
@@ -55,6 +59,9 @@ public interface BeamFnDataBufferingOutboundObserver<T> extends CloseableFnDataR
   String DATA_BUFFER_TIME_LIMIT_MS = "data_buffer_time_limit_ms=";
   long DEFAULT_BUFFER_LIMIT_TIME_MS = -1L;
 
+  String DATA_BUFFER_ADAPTIVE = "data_buffer_adaptive";
+  long DEFAULT_ADAPTIVE_BUFFER_LIMIT_TIME_MS = 100L;
+
   static <T> BeamFnDataSizeBasedBufferingOutboundObserver<T> forLocation(
       PipelineOptions options,
       LogicalEndpoint endpoint,
@@ -62,7 +69,14 @@ public interface BeamFnDataBufferingOutboundObserver<T> extends CloseableFnDataR
       StreamObserver<BeamFnApi.Elements> outboundObserver) {
     int sizeLimit = getSizeLimit(options);
     long timeLimit = getTimeLimit(options);
-    if (timeLimit > 0) {
+    if (ExperimentalOptions.hasExperiment(options, DATA_BUFFER_ADAPTIVE)) {
+      return new BeamFnDataAdaptiveBufferingOutboundObserver<>(
+          sizeLimit,
+          timeLimit > 0 ? timeLimit : DEFAULT_ADAPTIVE_BUFFER_LIMIT_TIME_MS,
+          endpoint,
+          coder,
+          outboundObserver);
+    } else if (timeLimit > 0) {
       return new BeamFnDataTimeBasedBufferingOutboundObserver<>(
           sizeLimit, timeLimit, endpoint, coder, outboundObserver);
     } else {
@@ -27,6 +27,7 @@ import org.apache.beam.model.fnexecution.v1.BeamFnApi;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.fn.CancellableQueue;
+import org.apache.beam.sdk.fn.stream.DataStreams;
 
 /**
  * Decodes {@link BeamFnApi.Elements} partitioning them using the provided {@link DataEndpoint}s and
@@ -138,7 +139,7 @@ public class BeamFnDataInboundObserver2 implements CloseableFnDataReceiver<BeamF
                 "Received data after inbound data receiver is done for instruction %s and transform %s.",
                 data.getInstructionId(), data.getTransformId()));
       }
-      InputStream inputStream = data.getData().newInput();
+      InputStream inputStream = DataStreams.inbound(data.getData());
       Coder<Object> coder = (Coder<Object>) endpoint.endpoint.getCoder();
       FnDataReceiver<Object> receiver = (FnDataReceiver<Object>) endpoint.endpoint.getReceiver();
       while (inputStream.available() > 0) {
@@ -172,7 +173,7 @@ public class BeamFnDataInboundObserver2 implements CloseableFnDataReceiver<BeamF
                 "Received timer after inbound timer receiver is done for instruction %s, transform %s, and timer family %s.",
                 timers.getInstructionId(), timers.getTransformId(), timers.getTimerFamilyId()));
       }
-      InputStream inputStream = timers.getTimers().newInput();
+      InputStream inputStream = DataStreams.inbound(timers.getTimers());
       Coder<Object> coder = (Coder<Object>) endpoint.endpoint.getCoder();
       FnDataReceiver<Object> receiver = (FnDataReceiver<Object>) endpoint.endpoint.getReceiver();
       while (inputStream.available() > 0) {
@@ -111,11 +111,21 @@ public class BeamFnDataSizeBasedBufferingOutboundObserver<T>
     }
     coder.encode(t, bufferedElements);
     counter += 1;
-    if (bufferedElements.size() >= sizeLimit) {
+    if (bufferedElements.size() >= getCurrentSizeLimit()) {
       flush();
     }
   }
 
+  /** Returns the number of buffered bytes which triggers a flush. */
+  protected int getCurrentSizeLimit() {
+    return sizeLimit;
+  }
+
+  /** Returns the number of bytes buffered but not yet flushed. */
+  protected int getBufferedSize() {
+    return bufferedElements.size();
+  }
+
   private BeamFnApi.Elements.Builder convertBufferForTransmission() {
     BeamFnApi.Elements.Builder elements = BeamFnApi.Elements.newBuilder();
     if (bufferedElements.size() == 0) {
@@ -21,8 +21,10 @@ import java.io.IOException;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.vendor.grpc.v1p36p0.io.grpc.stub.StreamObserver;
@@ -39,7 +41,14 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.
 public class BeamFnDataTimeBasedBufferingOutboundObserver<T>
     extends BeamFnDataSizeBasedBufferingOutboundObserver<T> {
 
-  @VisibleForTesting final ScheduledFuture<?> flushFuture;
+  private final long timeLimit;
+  private final ScheduledExecutorService flushExecutor;
+
+  // The pending or running periodic flush, which schedules the next one when it completes.
+  @VisibleForTesting volatile ScheduledFuture<?> flushFuture;
+
+  @GuardedBy("this")
+  private boolean closed;
 
   BeamFnDataTimeBasedBufferingOutboundObserver(
       int sizeLimit,
@@ -48,21 +57,29 @@ public class BeamFnDataTimeBasedBufferingOutboundObserver<T>
       Coder<T> coder,
       StreamObserver<BeamFnApi.Elements> outboundObserver) {
     super(sizeLimit, outputLocation, coder, outboundObserver);
-    this.flushFuture =
+    this.timeLimit = timeLimit;
+    this.flushExecutor =
         Executors.newSingleThreadScheduledExecutor(
-                new ThreadFactoryBuilder()
-                    .setDaemon(true)
-                    .setNameFormat("DataBufferOutboundFlusher-thread")
-                    .build())
-            .scheduleAtFixedRate(this::periodicFlush, timeLimit, timeLimit, TimeUnit.MILLISECONDS);
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("DataBufferOutboundFlusher-thread")
+                .build());
+    this.flushFuture =
+        flushExecutor.schedule(this::runPeriodicFlush, timeLimit, TimeUnit.MILLISECONDS);
   }
 
   @Override
   public void close() throws Exception {
     checkFlushThreadException();
-    flushFuture.cancel(false);
+    ScheduledFuture<?> lastFlushFuture;
+    synchronized (this) {
+      closed = true;
+      lastFlushFuture = flushFuture;
+    }
+    lastFlushFuture.cancel(false);
+    flushExecutor.shutdown();
     try {
-      flushFuture.get();
+      lastFlushFuture.get();
     } catch (ExecutionException ee) {
       unwrapExecutionException(ee);
     } catch (CancellationException ce) {
@@ -82,7 +99,11 @@ public class BeamFnDataTimeBasedBufferingOutboundObserver<T>
     super.accept(t);
   }
 
-  private void periodicFlush() {
+  /**
+   * Invoked by the flushing thread once the {@link #getPeriodicFlushDelayNanos delay} after the
+   * previous periodic flush has elapsed.
+   */
+  protected void periodicFlush() {
     try {
       flush();
     } catch (Throwable t) {
@@ -90,6 +111,27 @@ public class BeamFnDataTimeBasedBufferingOutboundObserver<T>
     }
   }
 
+  /**
+   * Returns the delay until the next periodic flush, which is {@code timeLimit} milliseconds
+   * unless overridden.
+   */
+  protected long getPeriodicFlushDelayNanos() {
+    return TimeUnit.MILLISECONDS.toNanos(timeLimit);
+  }
+
+  private void runPeriodicFlush() {
+    // An exception fails the flush future without scheduling another one, which is reported by
+    // the next call to accept or close.
+    periodicFlush();
+    synchronized (this) {
+      if (!closed) {
+        flushFuture =
+            flushExecutor.schedule(
+                this::runPeriodicFlush, getPeriodicFlushDelayNanos(), TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
   /** Check if the flush thread failed with an exception. */
   private void checkFlushThreadException() throws IOException {
     if (flushFuture.isDone()) {
@@ -22,7 +22,9 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
@@ -30,7 +32,8 @@ import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
 /**
  * {@link DataStreamDecoder} treats multiple {@link ByteString}s as a single input stream decoding
  * values with the supplied iterator. {@link #outbound(OutputChunkConsumer)} treats a single {@link
- * OutputStream} as multiple {@link ByteString}s.
+ * OutputStream} as multiple {@link ByteString}s. {@link #inbound(ByteString)} reads a single {@link
+ * ByteString} without copying it.
  */
 @SuppressWarnings({
   "rawtypes", // TODO(https://issues.apache.org/jira/browse/BEAM-10556)
@@ -154,6 +157,95 @@ public class DataStreams {
     void read(T chunk) throws IOException;
   }
 
+  /**
+   * Returns an {@link InputStream} which reads the contents of the {@link ByteString} directly from
+   * its {@link ByteString#asReadOnlyByteBufferList() underlying buffers}.
+   *
+   * <p>Unlike {@link ByteString#newInput()}, the returned stream is not synchronized and reads
+   * directly from the buffers backing the {@link ByteString} without materializing intermediate
+   * copies. {@link InputStream#available()} is guaranteed to return the number of bytes remaining.
+   */
+  public static ByteStringInputStream inbound(ByteString bytes) {
+    return new ByteStringInputStream(bytes.asReadOnlyByteBufferList());
+  }
+
+  /**
+   * An {@link InputStream} over the read-only {@link ByteBuffer}s backing a {@link ByteString}.
+   *
+   * <p>Note that this stream is not thread safe and closing it has no effect.
+   */
+  public static final class ByteStringInputStream extends InputStream {
+    private final List<ByteBuffer> buffers;
+    private int nextBufferIndex;
+    private ByteBuffer current;
+    private int available;
+
+    private ByteStringInputStream(List<ByteBuffer> buffers) {
+      this.buffers = buffers;
+      for (ByteBuffer buffer : buffers) {
+        available += buffer.remaining();
+      }
+      this.current = buffers.isEmpty() ? EMPTY_BUFFER : buffers.get(0);
+      this.nextBufferIndex = 1;
+    }
+
+    /** Advances to the next buffer with unread bytes, returning false if none remain. */
+    private boolean advance() {
+      while (!current.hasRemaining()) {
+        if (nextBufferIndex >= buffers.size()) {
+          return false;
+        }
+        current = buffers.get(nextBufferIndex++);
+      }
+      return true;
+    }
+
+    @Override
+    public int read() {
+      if (!advance()) {
+        return -1;
+      }
+      available -= 1;
+      return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      int remainingLen = len;
+      while (remainingLen > 0 && advance()) {
+        int toRead = Math.min(remainingLen, current.remaining());
+        current.get(b, off + len - remainingLen, toRead);
+        remainingLen -= toRead;
+      }
+      int bytesRead = len - remainingLen;
+      available -= bytesRead;
+      return bytesRead > 0 ? bytesRead : -1;
+    }
+
+    @Override
+    public long skip(long n) {
+      long toSkip = Math.min(Math.max(n, 0), available);
+      long remaining = toSkip;
+      while (remaining > 0 && advance()) {
+        int skipped = (int) Math.min(remaining, current.remaining());
+        current.position(current.position() + skipped);
+        remaining -= skipped;
+      }
+      available -= toSkip - remaining;
+      return toSkip - remaining;
+    }
+
+    @Override
+    public int available() {
+      return available;
+    }
+  }
+
+  private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
   /**
    * An adapter which converts an {@link InputStream} to a {@link PrefetchableIterator} of {@code T}
    * values using the specified {@link Coder}.
@@ -245,7 +337,7 @@ public class DataStreams {
       }
 
       public boolean isReady() throws IOException {
-        // Note that ByteString#newInput is guaranteed to return the length of the entire ByteString
+        // Note that DataStreams#inbound is guaranteed to return the length of the entire ByteString
         // minus the number of bytes that have been read so far and can be reliably used to tell
         // us whether we are at the end of the stream.
         while (currentStream.available() == 0) {
@@ -255,20 +347,20 @@ public class DataStreams {
           if (!inputByteStrings.hasNext()) {
             return true;
           }
-          currentStream = inputByteStrings.next().newInput();
+          currentStream = inbound(inputByteStrings.next());
         }
         return true;
       }
 
       public boolean isEof() throws IOException {
-        // Note that ByteString#newInput is guaranteed to return the length of the entire ByteString
+        // Note that DataStreams#inbound is guaranteed to return the length of the entire ByteString
         // minus the number of bytes that have been read so far and can be reliably used to tell
         // us whether we are at the end of the stream.
         while (currentStream.available() == 0) {
           if (!inputByteStrings.hasNext()) {
             return true;
           }
-          currentStream = inputByteStrings.next().newInput();
+          currentStream = inbound(inputByteStrings.next());
         }
         return false;
       }
@@ -281,7 +373,7 @@ public class DataStreams {
           if (!inputByteStrings.hasNext()) {
             return -1;
           }
-          currentStream = inputByteStrings.next().newInput();
+          currentStream = inbound(inputByteStrings.next());
         }
         position += 1;
         return read;
@@ -292,7 +384,7 @@ public class DataStreams {
         int remainingLen = len;
         while (remainingLen > 0) {
           int read;
-          // Move on to the next stream if this stream is done. Note that ByteString.newInput
+          // Move on to the next stream if this stream is done. Note that DataStreams#inbound
           // guarantees that read will consume the entire ByteString if the passed in length is
           // greater than or equal to the remaining amount.
           while ((read = currentStream.read(b, off + len - remainingLen, remainingLen)) == -1) {
@@ -301,7 +393,7 @@ public class DataStreams {
               position += bytesRead;
               return bytesRead > 0 ? bytesRead : -1;
             }
-            currentStream = inputByteStrings.next().newInput();
+            currentStream = inbound(inputByteStrings.next());
           }
           remainingLen -= read;
         }
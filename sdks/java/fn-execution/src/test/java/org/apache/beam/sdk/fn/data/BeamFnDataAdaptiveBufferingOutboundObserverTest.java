@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.fn.data;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.LengthPrefixCoder;
+import org.apache.beam.sdk.fn.test.TestStreams;
+import org.apache.beam.sdk.options.ExperimentalOptions;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link BeamFnDataAdaptiveBufferingOutboundObserver}. */
+@RunWith(JUnit4.class)
+public class BeamFnDataAdaptiveBufferingOutboundObserverTest {
+  private static final LogicalEndpoint OUTPUT_LOCATION = LogicalEndpoint.data("777L", "555L");
+  private static final Coder<byte[]> CODER = LengthPrefixCoder.of(ByteArrayCoder.of());
+  private static final int MAX_SIZE_LIMIT = 6400;
+  private static final long MAX_TIME_LIMIT_MS = 64000L;
+  // Encodes to exactly the minimum size limit with the length prefix.
+  private static final byte[] ELEMENT = new byte[99];
+
+  private BeamFnDataAdaptiveBufferingOutboundObserver<byte[]> create(
+      List<Elements> values, AtomicBoolean isReady) {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(
+            Arrays.asList(
+                "data_buffer_adaptive",
+                "data_buffer_size_limit=" + MAX_SIZE_LIMIT,
+                "data_buffer_time_limit_ms=" + MAX_TIME_LIMIT_MS));
+    CloseableFnDataReceiver<byte[]> consumer =
+        BeamFnDataBufferingOutboundObserver.forLocation(
+            options,
+            OUTPUT_LOCATION,
+            CODER,
+            TestStreams.withOnNext((Consumer<Elements>) values::add)
+                .withIsReady(isReady::get)
+                .build());
+    assertThat(consumer, instanceOf(BeamFnDataAdaptiveBufferingOutboundObserver.class));
+    return (BeamFnDataAdaptiveBufferingOutboundObserver<byte[]>) consumer;
+  }
+
+  @Test
+  public void testStartsWithMinimumLimits() throws Exception {
+    List<Elements> values = new ArrayList<>();
+    BeamFnDataAdaptiveBufferingOutboundObserver<byte[]> consumer =
+        create(values, new AtomicBoolean(true));
+
+    assertEquals(MAX_SIZE_LIMIT / 64, consumer.getCurrentSizeLimit());
+    assertEquals(MAX_TIME_LIMIT_MS / 64, consumer.getCurrentTimeLimitMs());
+
+    // A single element fills the minimum sized buffer.
+    consumer.accept(ELEMENT);
+    assertEquals(1, values.size());
+    consumer.close();
+  }
+
+  @Test
+  public void testBackPressureIncreasesLimits() throws Exception {
+    List<Elements> values = new ArrayList<>();
+    AtomicBoolean isReady = new AtomicBoolean(false);
+    BeamFnDataAdaptiveBufferingOutboundObserver<byte[]> consumer = create(values, isReady);
+
+    consumer.accept(ELEMENT);
+    assertEquals(2 * MAX_TIME_LIMIT_MS / 64, consumer.getCurrentTimeLimitMs());
+    assertTrue(consumer.getCurrentSizeLimit() > MAX_SIZE_LIMIT / 64);
+
+    // Keep flushing while back pressured until the upper bounds are reached.
+    for (int i = 0; i < 10; ++i) {
+      consumer.accept(ELEMENT);
+      consumer.flush();
+    }
+    assertEquals(MAX_TIME_LIMIT_MS, consumer.getCurrentTimeLimitMs());
+    assertEquals(MAX_SIZE_LIMIT, consumer.getCurrentSizeLimit());
+
+    // Once the stream is ready again the time limit decreases.
+    isReady.set(true);
+    consumer.accept(ELEMENT);
+    consumer.flush();
+    assertEquals(MAX_TIME_LIMIT_MS / 2, consumer.getCurrentTimeLimitMs());
+    consumer.close();
+  }
+
+  @Test
+  public void testFillingBufferIncreasesLimits() throws Exception {
+    List<Elements> values = new ArrayList<>();
+    BeamFnDataAdaptiveBufferingOutboundObserver<byte[]> consumer =
+        create(values, new AtomicBoolean(true));
+
+    // The stream is never back pressured but each buffer fills up long before the time limit.
+    for (int i = 0; i < 1000; ++i) {
+      consumer.accept(ELEMENT);
+    }
+    assertEquals(MAX_TIME_LIMIT_MS, consumer.getCurrentTimeLimitMs());
+    assertEquals(MAX_SIZE_LIMIT, consumer.getCurrentSizeLimit());
+    consumer.close();
+  }
+
+  @Test
+  public void testCloseFlushesBufferedData() throws Exception {
+    List<Elements> values = new ArrayList<>();
+    AtomicBoolean isReady = new AtomicBoolean(false);
+    BeamFnDataAdaptiveBufferingOutboundObserver<byte[]> consumer = create(values, isReady);
+
+    // Grow the size limit so that elements are buffered.
+    for (int i = 0; i < 10; ++i) {
+      consumer.accept(ELEMENT);
+      consumer.flush();
+    }
+    values.clear();
+
+    consumer.accept(new byte[1]);
+    assertEquals(0, values.size());
+    consumer.close();
+    assertEquals(1, values.size());
+    assertEquals(2, values.get(0).getDataCount());
+    assertEquals(2, values.get(0).getData(0).getData().size());
+    assertTrue(values.get(0).getData(1).getIsLast());
+  }
+}
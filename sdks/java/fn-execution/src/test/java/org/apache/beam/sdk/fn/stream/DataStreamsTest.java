@@ -34,6 +34,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.fn.stream.DataStreams.ByteStringInputStream;
 import org.apache.beam.sdk.fn.stream.DataStreams.DataStreamDecoder;
 import org.apache.beam.sdk.fn.stream.DataStreams.ElementDelimitedOutputStream;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
@@ -202,4 +203,82 @@ public class DataStreamsTest {
               ByteString.copyFrom(new byte[] {0x07, 0x08, 0x09})));
     }
   }
+
+  /** Tests for {@link DataStreams#inbound(ByteString)}. */
+  @RunWith(JUnit4.class)
+  public static class ByteStringInputStreamTest {
+    // Pieces are large enough to prevent ByteString#concat from flattening them into one buffer.
+    private static final int PIECE_SIZE = 200;
+    private static final ByteString ROPE =
+        piece(0).concat(ByteString.EMPTY).concat(piece(1)).concat(piece(2));
+
+    private static ByteString piece(int index) {
+      byte[] bytes = new byte[PIECE_SIZE];
+      Arrays.fill(bytes, (byte) index);
+      return ByteString.copyFrom(bytes);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+      ByteStringInputStream inputStream = DataStreams.inbound(ByteString.EMPTY);
+      assertEquals(0, inputStream.available());
+      assertEquals(-1, inputStream.read());
+      assertEquals(-1, inputStream.read(new byte[1], 0, 1));
+      assertEquals(0, inputStream.skip(1));
+    }
+
+    @Test
+    public void testReadAcrossBuffers() throws Exception {
+      assertEquals(3, ROPE.asReadOnlyByteBufferList().size());
+      ByteStringInputStream inputStream = DataStreams.inbound(ROPE);
+      assertEquals(3 * PIECE_SIZE, inputStream.available());
+      assertEquals(0, inputStream.read());
+      assertEquals(3 * PIECE_SIZE - 1, inputStream.available());
+
+      byte[] bytes = new byte[PIECE_SIZE + 1];
+      assertEquals(PIECE_SIZE, inputStream.read(bytes, 1, PIECE_SIZE));
+      assertEquals(0, bytes[PIECE_SIZE - 1]);
+      assertEquals(1, bytes[PIECE_SIZE]);
+      assertEquals(2 * PIECE_SIZE - 1, inputStream.available());
+
+      assertEquals(2 * PIECE_SIZE - 1, ByteStreams.toByteArray(inputStream).length);
+      assertEquals(0, inputStream.available());
+      assertEquals(-1, inputStream.read());
+      assertEquals(-1, inputStream.read(bytes, 0, 1));
+    }
+
+    @Test
+    public void testSkipAcrossBuffers() throws Exception {
+      ByteStringInputStream inputStream = DataStreams.inbound(ROPE);
+      assertEquals(2 * PIECE_SIZE, inputStream.skip(2 * PIECE_SIZE));
+      assertEquals(PIECE_SIZE, inputStream.available());
+      assertEquals(2, inputStream.read());
+      assertEquals(PIECE_SIZE - 1, inputStream.skip(10 * PIECE_SIZE));
+      assertEquals(0, inputStream.available());
+    }
+
+    @Test
+    public void testDecodingElementsSpanningBuffers() throws Exception {
+      String value = new String(new char[PIECE_SIZE]).replace('\0', 'a');
+      ByteString.Output first = ByteString.newOutput();
+      StringUtf8Coder.of().encode(value, first);
+      ByteString.Output second = ByteString.newOutput();
+      StringUtf8Coder.of().encode(value, second);
+      StringUtf8Coder.of().encode("", second);
+      // Split the first encoding so that the first element spans two buffers.
+      ByteString encoded = first.toByteString();
+      encoded =
+          encoded
+              .substring(0, PIECE_SIZE / 2)
+              .concat(encoded.substring(PIECE_SIZE / 2))
+              .concat(second.toByteString());
+
+      ByteStringInputStream inputStream = DataStreams.inbound(encoded);
+      List<String> decoded = new ArrayList<>();
+      while (inputStream.available() > 0) {
+        decoded.add(StringUtf8Coder.of().decode(inputStream));
+      }
+      assertThat(decoded, contains(value, value, ""));
+    }
+  }
 }
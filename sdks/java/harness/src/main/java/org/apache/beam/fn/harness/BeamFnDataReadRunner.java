@@ -45,6 +45,7 @@ import org.apache.beam.runners.core.metrics.SimpleMonitoringInfoBuilder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.fn.data.FnDataReceiver;
 import org.apache.beam.sdk.fn.data.RemoteGrpcPortRead;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
@@ -92,6 +93,7 @@ public class BeamFnDataReadRunner<OutputT> {
               context.getProcessBundleInstructionIdSupplier(),
               context.getCoders(),
               context.getBeamFnStateClient(),
+              context.getPipelineOptions().as(SdkHarnessOptions.class).getStateReadAheadPages(),
               context::addProgressRequestCallback,
               consumer);
       context.addIncomingDataEndpoint(
@@ -122,6 +124,7 @@ public class BeamFnDataReadRunner<OutputT> {
       Supplier<String> processBundleInstructionIdSupplier,
       Map<String, RunnerApi.Coder> coders,
       BeamFnStateClient beamFnStateClient,
+      int stateReadAheadPages,
       Consumer<PTransformRunnerFactory.ProgressRequestCallback> addProgressRequestCallback,
       FnDataReceiver<WindowedValue<OutputT>> consumer)
       throws IOException {
@@ -153,6 +156,11 @@ public class BeamFnDataReadRunner<OutputT> {
                   public Supplier<String> getCurrentInstructionId() {
                     return processBundleInstructionIdSupplier;
                   }
+
+                  @Override
+                  public int getStateReadAheadPages() {
+                    return stateReadAheadPages;
+                  }
                 });
 
     addProgressRequestCallback.accept(
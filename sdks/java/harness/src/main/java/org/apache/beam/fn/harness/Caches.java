@@ -23,6 +23,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.SdkHarnessOptions;
+import org.apache.beam.sdk.util.Weighted;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
@@ -83,6 +84,11 @@ public final class Caches {
                   @Override
                   public int weigh(CompositeKey key, Object value) {
                     long size = memoryMeter.measureDeep(key) + memoryMeter.measureDeep(value);
+                    if (value instanceof Weighted) {
+                      // Memory which is not measured, such as direct memory, is reported by the
+                      // value itself.
+                      size += ((Weighted) value).getWeight();
+                    }
                     return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
                   }
                 })
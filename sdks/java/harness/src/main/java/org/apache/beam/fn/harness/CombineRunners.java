@@ -30,7 +30,9 @@ import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.fn.data.FnDataReceiver;
 import org.apache.beam.sdk.function.ThrowingFunction;
 import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
 import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.util.SerializableUtils;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.util.WindowedValue.WindowedValueCoder;
@@ -74,24 +76,43 @@ public class CombineRunners {
     private Coder<KeyT> keyCoder;
     private GroupingTable<WindowedValue<KeyT>, InputT, AccumT> groupingTable;
     private Coder<AccumT> accumCoder;
+    private Coder<? extends BoundedWindow> windowCoder;
 
     PrecombineRunner(
         PipelineOptions options,
         CombineFn<InputT, AccumT, ?> combineFn,
         FnDataReceiver<WindowedValue<KV<KeyT, AccumT>>> output,
         Coder<KeyT> keyCoder,
-        Coder<AccumT> accumCoder) {
+        Coder<AccumT> accumCoder,
+        Coder<? extends BoundedWindow> windowCoder) {
       this.options = options;
       this.combineFn = combineFn;
       this.output = output;
       this.keyCoder = keyCoder;
       this.accumCoder = accumCoder;
+      this.windowCoder = windowCoder;
     }
 
     void startBundle() {
-      groupingTable =
-          PrecombineGroupingTable.combiningAndSampling(
-              options, combineFn, keyCoder, accumCoder, 0.001 /*sizeEstimatorSampleRate*/);
+      if (options.as(SdkHarnessOptions.class).getGroupingTableSpillToDisk()) {
+        groupingTable =
+            PrecombineGroupingTable.combiningAndSpilling(
+                options,
+                combineFn,
+                keyCoder,
+                accumCoder,
+                windowCoder,
+                0.001 /*sizeEstimatorSampleRate*/);
+      } else {
+        groupingTable =
+            PrimitivePrecombineGroupingTable.combiningIfSupported(
+                options, combineFn, keyCoder, windowCoder);
+        if (groupingTable == null) {
+          groupingTable =
+              PrecombineGroupingTable.combiningAndSampling(
+                  options, combineFn, keyCoder, accumCoder, 0.001 /*sizeEstimatorSampleRate*/);
+        }
+      }
     }
 
     void processElement(WindowedValue<KV<KeyT, InputT>> elem) throws Exception {
@@ -103,6 +124,13 @@ public class CombineRunners {
       groupingTable.flush(
           (Object outputElem) -> output.accept((WindowedValue<KV<KeyT, AccumT>>) outputElem));
     }
+
+    void tearDown() {
+      // Releases what a failed bundle left behind, such as runs spilled to disk.
+      if (groupingTable != null) {
+        groupingTable.discard();
+      }
+    }
   }
 
   /** A factory for {@link PrecombineRunner}s. */
@@ -146,6 +174,11 @@ public class CombineRunners {
                   combinePayload.getCombineFn().getPayload().toByteArray(), "CombineFn");
       Coder<AccumT> accumCoder =
           (Coder<AccumT>) rehydratedComponents.getCoder(combinePayload.getAccumulatorCoderId());
+      Coder<? extends BoundedWindow> windowCoder =
+          rehydratedComponents
+              .getWindowingStrategy(mainInput.getWindowingStrategyId())
+              .getWindowFn()
+              .windowCoder();
 
       FnDataReceiver<WindowedValue<KV<KeyT, AccumT>>> consumer =
           (FnDataReceiver)
@@ -154,7 +187,12 @@ public class CombineRunners {
 
       PrecombineRunner<KeyT, InputT, AccumT> runner =
           new PrecombineRunner<>(
-              context.getPipelineOptions(), combineFn, consumer, keyCoder, accumCoder);
+              context.getPipelineOptions(),
+              combineFn,
+              consumer,
+              keyCoder,
+              accumCoder,
+              windowCoder);
 
       // Register the appropriate handlers.
       context.addStartBundleFunction(runner::startBundle);
@@ -163,6 +201,7 @@ public class CombineRunners {
           (FnDataReceiver) (FnDataReceiver<WindowedValue<KV<KeyT, InputT>>>) runner::processElement,
           inputCoder);
       context.addFinishBundleFunction(runner::finishBundle);
+      context.addTearDownFunction(runner::tearDown);
 
       return runner;
     }
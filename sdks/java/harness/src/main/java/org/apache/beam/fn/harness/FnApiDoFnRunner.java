@@ -24,6 +24,9 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import com.google.auto.service.AutoService;
 import com.google.auto.value.AutoValue;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -239,6 +242,12 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
   private final OnTimerContext<?> onTimerContext;
   private final FinishBundleArgumentProvider finishBundleArgumentProvider;
 
+  /**
+   * Buffers elements for the {@link DoFn.ProcessBatch} method, null if elements are processed one
+   * at a time.
+   */
+  private final @Nullable BufferedElementBatch elementBatch;
+
   /**
    * Used to guarantee a consistent view of this {@link FnApiDoFnRunner} while setting up for {@link
    * DoFnInvoker#invokeProcessElement} since {@link #trySplitForElementAndRestriction} may access
@@ -473,6 +482,11 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
     this.doFnSchemaInformation = ParDoTranslation.getSchemaInformation(parDoPayload);
     this.sideInputMapping = ParDoTranslation.getSideInputMapping(parDoPayload);
     this.doFnInvoker = DoFnInvokers.tryInvokeSetupFor(doFn, pipelineOptions);
+    this.elementBatch =
+        PTransformTranslation.PAR_DO_TRANSFORM_URN.equals(pTransform.getSpec().getUrn())
+                && supportsBatchProcessing(doFnSignature, sideInputMapping)
+            ? new BufferedElementBatch(doFnSignature.processBatch().targetMethod())
+            : null;
 
     this.startBundleArgumentProvider = new StartBundleArgumentProvider();
     // Register the appropriate handlers.
@@ -500,7 +514,11 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
     final FnDataReceiver<WindowedValue> mainInputConsumer;
     switch (pTransform.getSpec().getUrn()) {
       case PTransformTranslation.PAR_DO_TRANSFORM_URN:
-        if (doFnSignature.processElement().observesWindow() || !sideInputMapping.isEmpty()) {
+        if (elementBatch != null) {
+          mainInputConsumer = elementBatch::add;
+          this.processContext = new NonWindowObservingProcessBundleContext();
+        } else if (doFnSignature.processElement().observesWindow()
+            || !sideInputMapping.isEmpty()) {
           mainInputConsumer = this::processElementForWindowObservingParDo;
           this.processContext = new WindowObservingProcessBundleContext();
         } else {
@@ -754,6 +772,20 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
     doFnInvoker.invokeStartBundle(startBundleArgumentProvider);
   }
 
+  /**
+   * Returns whether elements may be passed to the {@link DoFn.ProcessBatch} method. Only {@link
+   * DoFn DoFns} whose elements are independent of each other are processed in batches.
+   */
+  private static boolean supportsBatchProcessing(
+      DoFnSignature doFnSignature, Map<String, PCollectionView<?>> sideInputMapping) {
+    return doFnSignature.processBatch() != null
+        && !doFnSignature.processElement().isSplittable()
+        && !doFnSignature.usesState()
+        && !doFnSignature.usesTimers()
+        && doFnSignature.onWindowExpiration() == null
+        && sideInputMapping.isEmpty();
+  }
+
   private void processElementForParDo(WindowedValue<InputT> elem) {
     currentElement = elem;
     try {
@@ -1720,6 +1752,9 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
   }
 
   private void finishBundle() throws Exception {
+    if (elementBatch != null) {
+      elementBatch.process();
+    }
     timerBundleTracker.outputTimers(timerFamilyOrId -> outboundTimerReceivers.get(timerFamilyOrId));
     for (CloseableFnDataReceiver<?> outboundTimerReceiver : outboundTimerReceivers.values()) {
       outboundTimerReceiver.close();
@@ -1751,6 +1786,78 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
     }
   }
 
+  /**
+   * Buffers up to {@link #MAX_BATCH_SIZE} elements and passes them to the {@link
+   * DoFn.ProcessBatch} method in a single invocation.
+   */
+  private class BufferedElementBatch implements DoFn.ElementBatch<InputT, OutputT> {
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final MethodHandle processBatchHandle;
+    private final List<WindowedValue<InputT>> windowedElements;
+    private final List<InputT> elements;
+
+    private BufferedElementBatch(Method processBatchMethod) {
+      try {
+        // DoFns are frequently anonymous or non-public classes.
+        processBatchMethod.setAccessible(true);
+        this.processBatchHandle = MethodHandles.lookup().unreflect(processBatchMethod).bindTo(doFn);
+      } catch (IllegalAccessException e) {
+        throw new IllegalArgumentException(
+            String.format("Unable to access %s of %s.", processBatchMethod, doFn), e);
+      }
+      this.windowedElements = new ArrayList<>(MAX_BATCH_SIZE);
+      this.elements = new ArrayList<>(MAX_BATCH_SIZE);
+    }
+
+    private void add(WindowedValue<InputT> elem) {
+      windowedElements.add(elem);
+      elements.add(elem.getValue());
+      if (elements.size() >= MAX_BATCH_SIZE) {
+        process();
+      }
+    }
+
+    private void process() {
+      if (elements.isEmpty()) {
+        return;
+      }
+      try {
+        processBatchHandle.invoke(this);
+      } catch (Throwable t) {
+        throw UserCodeException.wrap(t);
+      } finally {
+        windowedElements.clear();
+        elements.clear();
+      }
+    }
+
+    @Override
+    public List<InputT> elements() {
+      return Collections.unmodifiableList(elements);
+    }
+
+    @Override
+    public Instant timestamp(int index) {
+      return windowedElements.get(index).getTimestamp();
+    }
+
+    @Override
+    public Collection<? extends BoundedWindow> windows(int index) {
+      return windowedElements.get(index).getWindows();
+    }
+
+    @Override
+    public PaneInfo pane(int index) {
+      return windowedElements.get(index).getPane();
+    }
+
+    @Override
+    public void output(int index, OutputT output) {
+      outputTo(mainOutputConsumers, windowedElements.get(index).withValue(output));
+    }
+  }
+
   private class FnApiTimer<K> implements org.apache.beam.sdk.state.Timer {
     private final String timerIdOrFamily;
     private final K userKey;
@@ -31,4 +31,10 @@ public interface GroupingTable<K, InputT, AccumT> {
 
   /** Flushes all entries in this table to output. */
   void flush(Receiver output) throws Exception;
+
+  /**
+   * Drops all entries in this table without output, releasing any resources held. Called when the
+   * bundle fails.
+   */
+  default void discard() {}
 }
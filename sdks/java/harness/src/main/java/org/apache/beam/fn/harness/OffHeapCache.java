@@ -0,0 +1,452 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
+
+/**
+ * A {@link Cache} which stores values in their encoded form within direct (off-heap) memory.
+ *
+ * <p>Values are encoded with the supplied {@link Coder} when inserted and are decoded lazily each
+ * time they are looked up, so the Java heap only holds the keys and a small block table per entry.
+ * This allows the cache to be sized independently of the heap without adding to garbage collection
+ * pressure.
+ *
+ * <p>The direct memory is allocated in slabs of up to {@code 1 MiB} which are divided into
+ * fixed-size blocks. Values are encoded straight into free blocks and the blocks of evicted,
+ * replaced or removed values are reused by later values, so the cache never holds more direct
+ * memory than the configured number of bytes and does not depend on garbage collection to release
+ * it. Entries are evicted in least recently used order whenever a value needs a block and none is
+ * free. Values whose encoding alone exceeds the budget are never stored, although other entries may
+ * have been evicted by the time that is discovered.
+ *
+ * <p>Unlike the caches returned by {@link Caches}, this cache does not support {@link
+ * Caches#subCache sub-caches}; callers are expected to key entries uniquely themselves.
+ */
+@ThreadSafe
+@SuppressWarnings("nullness")
+public class OffHeapCache<K, V> implements Cache<K, V> {
+
+  private static final int DEFAULT_BLOCK_SIZE_IN_BYTES = 512;
+  private static final int MAX_SLAB_SIZE_IN_BYTES = 1 << 20;
+
+  private final Coder<V> valueCoder;
+  private final int blockSizeInBytes;
+  private final int maxBlocks;
+  private final int blocksPerSlab;
+
+  // Lookups hold the write lock since they update the access order, and then decode the value while
+  // holding the read lock so that its blocks are not reused until it has been read.
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  @GuardedBy("lock")
+  private final LinkedHashMap<K, Entry> entries;
+
+  // Allocated on first use and kept for the lifetime of the cache.
+  @GuardedBy("lock")
+  private final ByteBuffer[] slabs;
+
+  // A stack of the allocated blocks which are held neither by an entry nor by an encoding value.
+  @GuardedBy("lock")
+  private int[] freeBlocks;
+
+  @GuardedBy("lock")
+  private int numFreeBlocks;
+
+  @GuardedBy("lock")
+  private int numAllocatedBlocks;
+
+  @GuardedBy("lock")
+  private long weightInBytes;
+
+  public OffHeapCache(Coder<V> valueCoder, long maxWeightInBytes) {
+    this(valueCoder, maxWeightInBytes, DEFAULT_BLOCK_SIZE_IN_BYTES);
+  }
+
+  @VisibleForTesting
+  OffHeapCache(Coder<V> valueCoder, long maxWeightInBytes, int blockSizeInBytes) {
+    Preconditions.checkArgument(
+        blockSizeInBytes > 0 && blockSizeInBytes <= MAX_SLAB_SIZE_IN_BYTES,
+        "Expected block size between 1 and %s bytes but received %s.",
+        MAX_SLAB_SIZE_IN_BYTES,
+        blockSizeInBytes);
+    Preconditions.checkArgument(
+        maxWeightInBytes >= blockSizeInBytes,
+        "Expected weight of at least one block of %s bytes but received %s.",
+        blockSizeInBytes,
+        maxWeightInBytes);
+    Preconditions.checkArgument(
+        maxWeightInBytes / blockSizeInBytes <= Integer.MAX_VALUE,
+        "Expected at most %s blocks of %s bytes but received weight %s.",
+        Integer.MAX_VALUE,
+        blockSizeInBytes,
+        maxWeightInBytes);
+    this.valueCoder = valueCoder;
+    this.blockSizeInBytes = blockSizeInBytes;
+    this.maxBlocks = (int) (maxWeightInBytes / blockSizeInBytes);
+    this.blocksPerSlab = Math.min(maxBlocks, MAX_SLAB_SIZE_IN_BYTES / blockSizeInBytes);
+    this.slabs = new ByteBuffer[(maxBlocks + blocksPerSlab - 1) / blocksPerSlab];
+    this.freeBlocks = new int[Math.min(maxBlocks, 16)];
+    // Use access order so that iteration starts with the least recently used entry.
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  @Override
+  public @Nullable V peek(K key) {
+    Entry entry;
+    lock.writeLock().lock();
+    try {
+      entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      // Downgrade to the read lock so that other lookups may decode concurrently.
+      lock.readLock().lock();
+    } finally {
+      lock.writeLock().unlock();
+    }
+    try {
+      return decode(entry);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public V computeIfAbsent(K key, Function<K, V> loadingFunction) {
+    V value = peek(key);
+    if (value != null) {
+      return value;
+    }
+    // The loading function is invoked without holding the lock allowing it to recursively use
+    // this cache.
+    value = loadingFunction.apply(key);
+    put(key, value);
+    return value;
+  }
+
+  @Override
+  public void put(K key, V value) {
+    // The blocks are owned by the stream until the entry is stored, so encoding only needs the lock
+    // to take each block.
+    BlockOutputStream output = new BlockOutputStream();
+    try {
+      valueCoder.encode(value, output);
+    } catch (IOException e) {
+      output.release();
+      if (!output.exhausted) {
+        throw new IllegalStateException(
+            String.format("Failed to encode value for off-heap cache with %s.", valueCoder), e);
+      }
+      // The value does not fit, don't leave a stale value behind.
+      remove(key);
+      return;
+    } catch (RuntimeException e) {
+      output.release();
+      throw e;
+    }
+    Entry entry = new Entry(Arrays.copyOf(output.blocks, output.numBlocks), output.length);
+    lock.writeLock().lock();
+    try {
+      Entry previous = entries.put(key, entry);
+      if (previous != null) {
+        release(previous);
+      }
+      weightInBytes += weightOf(entry);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void remove(K key) {
+    lock.writeLock().lock();
+    try {
+      Entry previous = entries.remove(key);
+      if (previous != null) {
+        release(previous);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      for (Entry entry : entries.values()) {
+        release(entry);
+      }
+      entries.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Iterable<K> keys() {
+    lock.readLock().lock();
+    try {
+      return new ArrayList<>(entries.keySet());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns the number of bytes of direct memory currently held by encoded values. */
+  @VisibleForTesting
+  long getWeightInBytes() {
+    lock.readLock().lock();
+    try {
+      return weightInBytes;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns the number of bytes of direct memory which have been allocated. */
+  @VisibleForTesting
+  long getAllocatedBytes() {
+    lock.readLock().lock();
+    try {
+      long allocated = 0;
+      for (ByteBuffer slab : slabs) {
+        if (slab != null) {
+          allocated += slab.capacity();
+        }
+      }
+      return allocated;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private long weightOf(Entry entry) {
+    return (long) entry.blocks.length * blockSizeInBytes;
+  }
+
+  /**
+   * Returns a free block, evicting the least recently used entries if necessary, or -1 if all
+   * blocks are held by values which are being encoded.
+   */
+  @GuardedBy("lock")
+  private int allocateBlock() {
+    Iterator<Map.Entry<K, Entry>> iterator = entries.entrySet().iterator();
+    while (numFreeBlocks == 0) {
+      if (numAllocatedBlocks < maxBlocks) {
+        int slab = numAllocatedBlocks / blocksPerSlab;
+        if (slabs[slab] == null) {
+          int slabBlocks = Math.min(blocksPerSlab, maxBlocks - slab * blocksPerSlab);
+          slabs[slab] = ByteBuffer.allocateDirect(slabBlocks * blockSizeInBytes);
+        }
+        return numAllocatedBlocks++;
+      }
+      if (!iterator.hasNext()) {
+        return -1;
+      }
+      Entry evicted = iterator.next().getValue();
+      iterator.remove();
+      release(evicted);
+    }
+    return freeBlocks[--numFreeBlocks];
+  }
+
+  @GuardedBy("lock")
+  private void release(Entry entry) {
+    weightInBytes -= weightOf(entry);
+    releaseBlocks(entry.blocks, entry.blocks.length);
+  }
+
+  @GuardedBy("lock")
+  private void releaseBlocks(int[] blocks, int count) {
+    if (numFreeBlocks + count > freeBlocks.length) {
+      freeBlocks =
+          Arrays.copyOf(
+              freeBlocks, Math.min(maxBlocks, Math.max(numFreeBlocks + count, 2 * numFreeBlocks)));
+    }
+    System.arraycopy(blocks, 0, freeBlocks, numFreeBlocks, count);
+    numFreeBlocks += count;
+  }
+
+  /** Returns a buffer spanning the given allocated block. */
+  @GuardedBy("lock")
+  private ByteBuffer blockBuffer(int block) {
+    ByteBuffer buffer = slabs[block / blocksPerSlab].duplicate();
+    int offset = (block % blocksPerSlab) * blockSizeInBytes;
+    buffer.limit(offset + blockSizeInBytes);
+    buffer.position(offset);
+    return buffer.slice();
+  }
+
+  @GuardedBy("lock")
+  private V decode(Entry entry) {
+    try {
+      return valueCoder.decode(new BlockInputStream(entry));
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          String.format("Failed to decode value from off-heap cache with %s.", valueCoder), e);
+    }
+  }
+
+  /** The blocks holding the encoding of a value, in order. */
+  private static class Entry {
+    private final int[] blocks;
+    private final int length;
+
+    private Entry(int[] blocks, int length) {
+      this.blocks = blocks;
+      this.length = length;
+    }
+  }
+
+  /**
+   * An {@link OutputStream} which writes into blocks taken from the cache as it fills up. It fails
+   * once the value would need more blocks than the cache can hold.
+   */
+  private class BlockOutputStream extends OutputStream {
+    private int[] blocks = new int[1];
+    private int numBlocks;
+    private int length;
+    private boolean exhausted;
+    private @Nullable ByteBuffer current;
+
+    @Override
+    public void write(int b) throws IOException {
+      if (current == null || !current.hasRemaining()) {
+        nextBlock();
+      }
+      current.put((byte) b);
+      length += 1;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (current == null || !current.hasRemaining()) {
+          nextBlock();
+        }
+        int toWrite = Math.min(len, current.remaining());
+        current.put(b, off, toWrite);
+        off += toWrite;
+        len -= toWrite;
+        length += toWrite;
+      }
+    }
+
+    private void nextBlock() throws IOException {
+      if (numBlocks == maxBlocks) {
+        exhausted = true;
+        throw new IOException("Value exceeds the size of the off-heap cache.");
+      }
+      lock.writeLock().lock();
+      try {
+        int block = allocateBlock();
+        if (block < 0) {
+          exhausted = true;
+          throw new IOException("All blocks of the off-heap cache are in use.");
+        }
+        if (numBlocks == blocks.length) {
+          blocks = Arrays.copyOf(blocks, Math.min(maxBlocks, 2 * numBlocks));
+        }
+        blocks[numBlocks++] = block;
+        current = blockBuffer(block);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    /** Returns the blocks taken so far to the cache. */
+    private void release() {
+      lock.writeLock().lock();
+      try {
+        releaseBlocks(blocks, numBlocks);
+      } finally {
+        lock.writeLock().unlock();
+      }
+      numBlocks = 0;
+    }
+  }
+
+  /** An {@link InputStream} which reads the encoded value held by the blocks of an entry. */
+  private class BlockInputStream extends InputStream {
+    private final Entry entry;
+    private int nextBlock;
+    private int remaining;
+    private @Nullable ByteBuffer current;
+
+    private BlockInputStream(Entry entry) {
+      this.entry = entry;
+      this.remaining = entry.length;
+    }
+
+    @Override
+    public int read() {
+      if (remaining == 0) {
+        return -1;
+      }
+      if (current == null || !current.hasRemaining()) {
+        current = blockBuffer(entry.blocks[nextBlock++]);
+      }
+      remaining -= 1;
+      return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (remaining == 0) {
+        return -1;
+      }
+      int read = 0;
+      while (read < len && remaining > 0) {
+        if (current == null || !current.hasRemaining()) {
+          current = blockBuffer(entry.blocks[nextBlock++]);
+        }
+        int toRead = Math.min(len - read, Math.min(remaining, current.remaining()));
+        current.get(b, off + read, toRead);
+        read += toRead;
+        remaining -= toRead;
+      }
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return remaining;
+    }
+  }
+}
@@ -17,9 +17,22 @@
  */
 package org.apache.beam.fn.harness;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Random;
 import org.apache.beam.runners.core.GlobalCombineFnRunner;
 import org.apache.beam.runners.core.GlobalCombineFnRunners;
@@ -30,13 +43,19 @@ import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.SdkHarnessOptions;
 import org.apache.beam.sdk.transforms.Combine.CombineFn;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.util.WindowedValue.FullWindowedValueCoder;
 import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.CountingOutputStream;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.UnsignedBytes;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Instant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /** Static utility methods that provide {@link GroupingTable} implementations. */
 @SuppressWarnings({
@@ -44,6 +63,8 @@ import org.joda.time.Instant;
 })
 public class PrecombineGroupingTable<K, InputT, AccumT>
     implements GroupingTable<K, InputT, AccumT> {
+  private static final Logger LOG = LoggerFactory.getLogger(PrecombineGroupingTable.class);
+
   private static long getGroupingTableSizeBytes(PipelineOptions options) {
     return options.as(SdkHarnessOptions.class).getGroupingTableMaxSizeMb() * 1024L * 1024L;
   }
@@ -77,6 +98,47 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
           Coder<K> keyCoder,
           Coder<? super AccumT> accumulatorCoder,
           double sizeEstimatorSampleRate) {
+    return sampling(options, combineFn, keyCoder, accumulatorCoder, sizeEstimatorSampleRate, null);
+  }
+
+  /**
+   * Returns a {@link GroupingTable} that combines inputs into a accumulator with sampling {@link
+   * SizeEstimator SizeEstimators}, spilling sorted runs of encoded keys and accumulators to local
+   * disk instead of outputting them when the table is full.
+   *
+   * <p>The spilled runs are merged and combined when the table is {@link #flush flushed}.
+   */
+  public static <K, InputT, AccumT>
+      GroupingTable<WindowedValue<K>, InputT, AccumT> combiningAndSpilling(
+          PipelineOptions options,
+          CombineFn<InputT, AccumT, ?> combineFn,
+          Coder<K> keyCoder,
+          Coder<AccumT> accumulatorCoder,
+          Coder<? extends BoundedWindow> windowCoder,
+          double sizeEstimatorSampleRate) {
+    FullWindowedValueCoder<K> windowedKeyCoder =
+        WindowedValue.getFullCoder(keyCoder, windowCoder);
+    return sampling(
+        options,
+        combineFn,
+        keyCoder,
+        accumulatorCoder,
+        sizeEstimatorSampleRate,
+        new SortedRunSpiller<>(
+            getGroupingTableSpillDirectory(options),
+            new WindowingCoderGroupingKeyEncoder<>(windowedKeyCoder),
+            windowedKeyCoder,
+            accumulatorCoder));
+  }
+
+  private static <K, InputT, AccumT>
+      PrecombineGroupingTable<WindowedValue<K>, InputT, AccumT> sampling(
+          PipelineOptions options,
+          CombineFn<InputT, AccumT, ?> combineFn,
+          Coder<K> keyCoder,
+          Coder<? super AccumT> accumulatorCoder,
+          double sizeEstimatorSampleRate,
+          @Nullable SortedRunSpiller<WindowedValue<K>, AccumT> spiller) {
     Combiner<WindowedValue<K>, InputT, AccumT, ?> valueCombiner =
         new ValueCombiner<>(
             GlobalCombineFnRunners.create(combineFn), NullSideInputReader.empty(), options);
@@ -90,7 +152,13 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
             sizeEstimatorSampleRate,
             1.0),
         new SamplingSizeEstimator<>(
-            new CoderSizeEstimator<>(accumulatorCoder), sizeEstimatorSampleRate, 1.0));
+            new CoderSizeEstimator<>(accumulatorCoder), sizeEstimatorSampleRate, 1.0),
+        spiller);
+  }
+
+  private static File getGroupingTableSpillDirectory(PipelineOptions options) {
+    String directory = options.as(SdkHarnessOptions.class).getGroupingTableSpillDirectory();
+    return new File(directory == null ? System.getProperty("java.io.tmpdir") : directory);
   }
 
   /** Provides client-specific operations for grouping keys. */
@@ -119,6 +187,34 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
     }
   }
 
+  /**
+   * Provides client-specific operations for encoding keys such that two keys have the same grouping
+   * key if and only if their encodings are equal.
+   */
+  public interface GroupingKeyEncoder<K> {
+    byte[] encodeGroupingKey(K key) throws Exception;
+  }
+
+  /** Implements Precombine GroupingKeyEncoder via a Coder for windowed keys. */
+  public static class WindowingCoderGroupingKeyEncoder<K>
+      implements GroupingKeyEncoder<WindowedValue<K>> {
+
+    private static final Instant ignored = BoundedWindow.TIMESTAMP_MIN_VALUE;
+
+    private final Coder<WindowedValue<K>> coder;
+
+    WindowingCoderGroupingKeyEncoder(Coder<WindowedValue<K>> coder) {
+      this.coder = coder;
+    }
+
+    @Override
+    public byte[] encodeGroupingKey(WindowedValue<K> key) throws Exception {
+      // Ignore timestamp for grouping purposes, see WindowingCoderGroupingKeyCreator.
+      return CoderUtils.encodeToByteArray(
+          coder, WindowedValue.of(key.getValue(), ignored, key.getWindows(), key.getPane()));
+    }
+  }
+
   /** Provides client-specific operations for size estimates. */
   public interface SizeEstimator<T> {
     long estimateSize(T element) throws Exception;
@@ -294,6 +390,8 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
   private final SizeEstimator<? super K> keySizer;
   private final SizeEstimator<? super AccumT> accumulatorSizer;
 
+  private final @Nullable SortedRunSpiller<K, AccumT> spiller;
+
   private long size = 0;
   private Map<Object, GroupingTableEntry<K, InputT, AccumT>> table;
 
@@ -304,12 +402,24 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
       Combiner<? super K, InputT, AccumT, ?> combineFn,
       SizeEstimator<? super K> keySizer,
       SizeEstimator<? super AccumT> accumulatorSizer) {
+    this(maxSize, groupingKeyCreator, pairInfo, combineFn, keySizer, accumulatorSizer, null);
+  }
+
+  PrecombineGroupingTable(
+      long maxSize,
+      GroupingKeyCreator<? super K> groupingKeyCreator,
+      PairInfo pairInfo,
+      Combiner<? super K, InputT, AccumT, ?> combineFn,
+      SizeEstimator<? super K> keySizer,
+      SizeEstimator<? super AccumT> accumulatorSizer,
+      @Nullable SortedRunSpiller<K, AccumT> spiller) {
     this.maxSize = maxSize;
     this.groupingKeyCreator = groupingKeyCreator;
     this.pairInfo = pairInfo;
     this.combiner = combineFn;
     this.keySizer = keySizer;
     this.accumulatorSizer = accumulatorSizer;
+    this.spiller = spiller;
     this.table = new HashMap<>();
   }
 
@@ -390,7 +500,11 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
     entry.add(value);
     size += entry.getSize();
 
-    if (size >= maxSize) {
+    if (size >= maxSize && spiller != null) {
+      spiller.spill(compactAll());
+      table.clear();
+      size = 0;
+    } else if (size >= maxSize) {
       long targetSize = (long) (TARGET_LOAD * maxSize);
       Iterator<GroupingTableEntry<K, InputT, AccumT>> entries = table.values().iterator();
       while (size >= targetSize) {
@@ -419,6 +533,25 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
   /** Flushes all entries in this table to output. */
   @Override
   public void flush(Receiver output) throws Exception {
+    if (spiller != null && spiller.hasSpilled()) {
+      try {
+        // Spill the remaining entries so that all runs can be merged together.
+        spiller.spill(compactAll());
+        table.clear();
+        size = 0;
+        spiller.mergeRuns(
+            (key, accumulators) -> {
+              AccumT accumulator =
+                  accumulators.size() == 1
+                      ? accumulators.get(0)
+                      : combiner.compact(key, combiner.merge(key, accumulators));
+              output.process(pairInfo.makeOutputPair(key, accumulator));
+            });
+      } finally {
+        spiller.discard();
+      }
+      return;
+    }
     for (GroupingTableEntry<K, InputT, AccumT> entry : table.values()) {
       output(entry, output);
     }
@@ -426,6 +559,26 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
     size = 0;
   }
 
+  /** Drops all entries in this table without output, deleting any runs spilled to disk. */
+  @Override
+  public void discard() {
+    table.clear();
+    size = 0;
+    if (spiller != null) {
+      spiller.discard();
+    }
+  }
+
+  /** Compacts all entries in this table returning them. */
+  private List<GroupingTableEntry<K, InputT, AccumT>> compactAll() throws Exception {
+    List<GroupingTableEntry<K, InputT, AccumT>> entries = new ArrayList<>(table.size());
+    for (GroupingTableEntry<K, InputT, AccumT> entry : table.values()) {
+      entry.compact();
+      entries.add(entry);
+    }
+    return entries;
+  }
+
   @VisibleForTesting
   public void setMaxSize(long maxSize) {
     this.maxSize = maxSize;
@@ -447,6 +600,176 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
     }
   }
 
+  ////////////////////////////////////////////////////////////////////////////
+  // Spilling.
+
+  /**
+   * Writes the entries of a full grouping table to local disk as runs sorted by their encoded
+   * grouping key and merges all runs, combining accumulators of equal keys across runs.
+   *
+   * <p>Each record within a run consists of the length prefixed encoded grouping key, key and
+   * accumulator. Keys are unique within a run since they come from a single table.
+   */
+  @VisibleForTesting
+  static class SortedRunSpiller<K, AccumT> {
+    private static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
+
+    /** Receives each distinct key along with the accumulators of all runs containing it. */
+    interface MergedReceiver<K, AccumT> {
+      void process(K key, List<AccumT> accumulators) throws Exception;
+    }
+
+    private final File directory;
+    private final GroupingKeyEncoder<? super K> groupingKeyEncoder;
+    private final Coder<K> keyCoder;
+    private final Coder<AccumT> accumulatorCoder;
+    private final List<File> runs;
+
+    SortedRunSpiller(
+        File directory,
+        GroupingKeyEncoder<? super K> groupingKeyEncoder,
+        Coder<K> keyCoder,
+        Coder<AccumT> accumulatorCoder) {
+      this.directory = directory;
+      this.groupingKeyEncoder = groupingKeyEncoder;
+      this.keyCoder = keyCoder;
+      this.accumulatorCoder = accumulatorCoder;
+      this.runs = new ArrayList<>();
+    }
+
+    boolean hasSpilled() {
+      return !runs.isEmpty();
+    }
+
+    @VisibleForTesting
+    int getNumRuns() {
+      return runs.size();
+    }
+
+    /** Writes the entries as a new sorted run. */
+    void spill(List<? extends GroupingTableEntry<K, ?, AccumT>> entries) throws Exception {
+      if (entries.isEmpty()) {
+        return;
+      }
+      List<byte[][]> records = new ArrayList<>(entries.size());
+      for (GroupingTableEntry<K, ?, AccumT> entry : entries) {
+        records.add(
+            new byte[][] {
+              groupingKeyEncoder.encodeGroupingKey(entry.getKey()),
+              CoderUtils.encodeToByteArray(keyCoder, entry.getKey()),
+              CoderUtils.encodeToByteArray(accumulatorCoder, entry.getValue())
+            });
+      }
+      records.sort((a, b) -> COMPARATOR.compare(a[0], b[0]));
+
+      File run = File.createTempFile("beam-precombine-", ".run", directory);
+      runs.add(run);
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+        for (byte[][] record : records) {
+          for (byte[] bytes : record) {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+          }
+        }
+      }
+    }
+
+    /** Deletes all runs written so far without merging them. */
+    void discard() {
+      for (File run : runs) {
+        if (!run.delete() && run.exists()) {
+          LOG.warn("Failed to delete spilled run {}", run);
+        }
+      }
+      runs.clear();
+    }
+
+    /** Merges all runs in grouping key order and deletes them. */
+    void mergeRuns(MergedReceiver<K, AccumT> receiver) throws Exception {
+      PriorityQueue<RunReader> readers =
+          new PriorityQueue<>(
+              Math.max(1, runs.size()),
+              (a, b) -> COMPARATOR.compare(a.groupingKey, b.groupingKey));
+      try {
+        for (File run : runs) {
+          RunReader reader = new RunReader(run);
+          if (reader.advance()) {
+            readers.add(reader);
+          } else {
+            reader.close();
+          }
+        }
+        while (!readers.isEmpty()) {
+          RunReader first = readers.poll();
+          byte[] groupingKey = first.groupingKey;
+          K key = CoderUtils.decodeFromByteArray(keyCoder, first.key);
+          List<AccumT> accumulators = new ArrayList<>();
+          accumulators.add(CoderUtils.decodeFromByteArray(accumulatorCoder, first.accumulator));
+          advanceOrClose(first, readers);
+          while (!readers.isEmpty()
+              && COMPARATOR.compare(readers.peek().groupingKey, groupingKey) == 0) {
+            RunReader next = readers.poll();
+            accumulators.add(CoderUtils.decodeFromByteArray(accumulatorCoder, next.accumulator));
+            advanceOrClose(next, readers);
+          }
+          receiver.process(key, accumulators);
+        }
+      } finally {
+        for (RunReader reader : readers) {
+          reader.close();
+        }
+        discard();
+      }
+    }
+
+    private static void advanceOrClose(RunReader reader, PriorityQueue<RunReader> readers)
+        throws IOException {
+      if (reader.advance()) {
+        readers.add(reader);
+      } else {
+        reader.close();
+      }
+    }
+
+    /** Reads the records of a single run. */
+    private static class RunReader implements AutoCloseable {
+      private final DataInputStream in;
+      private byte[] groupingKey;
+      private byte[] key;
+      private byte[] accumulator;
+
+      RunReader(File run) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+      }
+
+      /** Reads the next record returning false if the end of the run has been reached. */
+      boolean advance() throws IOException {
+        int length;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          return false;
+        }
+        groupingKey = readBytes(length);
+        key = readBytes(in.readInt());
+        accumulator = readBytes(in.readInt());
+        return true;
+      }
+
+      private byte[] readBytes(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+      }
+
+      @Override
+      public void close() throws IOException {
+        in.close();
+      }
+    }
+  }
+
   ////////////////////////////////////////////////////////////////////////////
   // Size sampling.
 
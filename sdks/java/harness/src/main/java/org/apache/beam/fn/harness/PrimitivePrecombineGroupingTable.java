@@ -0,0 +1,395 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import org.apache.beam.sdk.coders.CollectionCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.Coder.NonDeterministicException;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
+import org.apache.beam.sdk.transforms.Combine;
+import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.Count;
+import org.apache.beam.sdk.transforms.Max;
+import org.apache.beam.sdk.transforms.Min;
+import org.apache.beam.sdk.transforms.Sum;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableSet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link GroupingTable} for {@link CombineFn}s whose accumulator is a single primitive value,
+ * such as {@code Sum}, {@code Min}, {@code Max} and {@code Count}.
+ *
+ * <p>Accumulators are stored unboxed within a {@code long[]}, doubles using their raw bit
+ * representation, in an open addressing hash table keyed by the encoded key, windows and pane. The
+ * boxed accumulator is only materialized when an entry is output. Unlike {@link
+ * PrecombineGroupingTable}, all entries are output once the table is full.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
+})
+public class PrimitivePrecombineGroupingTable<K, InputT, AccumT>
+    implements GroupingTable<WindowedValue<K>, InputT, AccumT> {
+
+  /**
+   * Returns a {@link GroupingTable} using primitive accumulators if the {@link CombineFn} and key
+   * {@link Coder} are supported, otherwise returns {@code null}.
+   *
+   * <p>The key {@link Coder} must be deterministic since keys are grouped by their encoding.
+   */
+  public static <K, InputT, AccumT>
+      @Nullable GroupingTable<WindowedValue<K>, InputT, AccumT> combiningIfSupported(
+          PipelineOptions options,
+          CombineFn<InputT, AccumT, ?> combineFn,
+          Coder<K> keyCoder,
+          Coder<? extends BoundedWindow> windowCoder) {
+    PrimitiveCombineFn<InputT, AccumT> primitiveCombineFn = forCombineFn(combineFn);
+    if (primitiveCombineFn == null) {
+      return null;
+    }
+    try {
+      keyCoder.verifyDeterministic();
+      windowCoder.verifyDeterministic();
+    } catch (NonDeterministicException e) {
+      return null;
+    }
+    return new PrimitivePrecombineGroupingTable<>(
+        options.as(SdkHarnessOptions.class).getGroupingTableMaxSizeMb() * 1024L * 1024L,
+        primitiveCombineFn,
+        keyCoder,
+        windowCoder);
+  }
+
+  /**
+   * Operations over an accumulator represented as a single {@code long}.
+   *
+   * <p>Note that input values are still boxed since they are decoded by the {@link Coder} of the
+   * input.
+   */
+  @VisibleForTesting
+  interface PrimitiveCombineFn<InputT, AccumT> {
+    long identity();
+
+    long add(long accumulator, InputT input);
+
+    AccumT toAccumulator(long accumulator);
+  }
+
+  @SuppressWarnings("unchecked")
+  @VisibleForTesting
+  static <InputT, AccumT> @Nullable PrimitiveCombineFn<InputT, AccumT> forCombineFn(
+      CombineFn<InputT, AccumT, ?> combineFn) {
+    // Only the SDK's own functions are recognized, since a user subclass of a BinaryCombineFn may
+    // override the other methods of the CombineFn which would be bypassed here.
+    if (!SDK_PRIMITIVE_FN_CLASSES.contains(combineFn.getClass())
+        && !COUNT_FN_CLASS.equals(combineFn.getClass())) {
+      return null;
+    }
+    if (combineFn instanceof Combine.BinaryCombineLongFn) {
+      Combine.BinaryCombineLongFn fn = (Combine.BinaryCombineLongFn) combineFn;
+      return (PrimitiveCombineFn<InputT, AccumT>)
+          new PrimitiveCombineFn<Long, long[]>() {
+            @Override
+            public long identity() {
+              return fn.identity();
+            }
+
+            @Override
+            public long add(long accumulator, Long input) {
+              return fn.apply(accumulator, input);
+            }
+
+            @Override
+            public long[] toAccumulator(long accumulator) {
+              return new long[] {accumulator};
+            }
+          };
+    } else if (combineFn instanceof Combine.BinaryCombineIntegerFn) {
+      Combine.BinaryCombineIntegerFn fn = (Combine.BinaryCombineIntegerFn) combineFn;
+      return (PrimitiveCombineFn<InputT, AccumT>)
+          new PrimitiveCombineFn<Integer, int[]>() {
+            @Override
+            public long identity() {
+              return fn.identity();
+            }
+
+            @Override
+            public long add(long accumulator, Integer input) {
+              return fn.apply((int) accumulator, input);
+            }
+
+            @Override
+            public int[] toAccumulator(long accumulator) {
+              return new int[] {(int) accumulator};
+            }
+          };
+    } else if (combineFn instanceof Combine.BinaryCombineDoubleFn) {
+      Combine.BinaryCombineDoubleFn fn = (Combine.BinaryCombineDoubleFn) combineFn;
+      return (PrimitiveCombineFn<InputT, AccumT>)
+          new PrimitiveCombineFn<Double, double[]>() {
+            @Override
+            public long identity() {
+              return Double.doubleToRawLongBits(fn.identity());
+            }
+
+            @Override
+            public long add(long accumulator, Double input) {
+              return Double.doubleToRawLongBits(
+                  fn.apply(Double.longBitsToDouble(accumulator), input));
+            }
+
+            @Override
+            public double[] toAccumulator(long accumulator) {
+              return new double[] {Double.longBitsToDouble(accumulator)};
+            }
+          };
+    } else {
+      return (PrimitiveCombineFn<InputT, AccumT>)
+          new PrimitiveCombineFn<Object, long[]>() {
+            @Override
+            public long identity() {
+              return 0;
+            }
+
+            @Override
+            public long add(long accumulator, Object input) {
+              return accumulator + 1;
+            }
+
+            @Override
+            public long[] toAccumulator(long accumulator) {
+              return new long[] {accumulator};
+            }
+          };
+    }
+  }
+
+  /** The class of {@link Count#combineFn()} which is not publicly visible. */
+  private static final Class<?> COUNT_FN_CLASS = Count.combineFn().getClass();
+
+  /** The classes of the {@link Sum}, {@link Max} and {@link Min} primitive functions. */
+  private static final Set<Class<?>> SDK_PRIMITIVE_FN_CLASSES =
+      ImmutableSet.of(
+          Sum.ofLongs().getClass(),
+          Sum.ofIntegers().getClass(),
+          Sum.ofDoubles().getClass(),
+          Max.ofLongs().getClass(),
+          Max.ofIntegers().getClass(),
+          Max.ofDoubles().getClass(),
+          Min.ofLongs().getClass(),
+          Min.ofIntegers().getClass(),
+          Min.ofDoubles().getClass());
+
+  /**
+   * The number of bytes of overhead to store an entry in the table ignoring the encoded key: the
+   * slots within the four arrays, the encoded key array header and the windowed key.
+   */
+  private static final int PER_KEY_OVERHEAD = 128;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  // Keep the table at most half full so that probe sequences stay short.
+  private static final double MAX_LOAD = 0.5;
+
+  private final long maxSize;
+  private final PrimitiveCombineFn<InputT, AccumT> combineFn;
+  private final Coder<K> keyCoder;
+  private final Coder<Collection<? extends BoundedWindow>> windowsCoder;
+  private final KeyBuffer keyBuffer;
+
+  private byte[][] keys;
+  private int[] hashes;
+  private long[] accumulators;
+  private WindowedValue<K>[] windowedKeys;
+  private int numEntries;
+  private long size;
+
+  @SuppressWarnings("unchecked")
+  @VisibleForTesting
+  PrimitivePrecombineGroupingTable(
+      long maxSize,
+      PrimitiveCombineFn<InputT, AccumT> combineFn,
+      Coder<K> keyCoder,
+      Coder<? extends BoundedWindow> windowCoder) {
+    this.maxSize = maxSize;
+    this.combineFn = combineFn;
+    this.keyCoder = keyCoder;
+    this.windowsCoder =
+        (Coder<Collection<? extends BoundedWindow>>) (Coder<?>) CollectionCoder.of(windowCoder);
+    this.keyBuffer = new KeyBuffer();
+    allocate(INITIAL_CAPACITY);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void allocate(int capacity) {
+    keys = new byte[capacity][];
+    hashes = new int[capacity];
+    accumulators = new long[capacity];
+    windowedKeys = new WindowedValue[capacity];
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void put(Object pair, Receiver receiver) throws Exception {
+    WindowedValue<KV<K, InputT>> windowedKv = (WindowedValue<KV<K, InputT>>) pair;
+    K key = windowedKv.getValue().getKey();
+
+    // Encode the grouping key ignoring the timestamp, the output will inherit the timestamp of
+    // one of its inputs.
+    keyBuffer.reset();
+    keyCoder.encode(key, keyBuffer);
+    windowsCoder.encode(windowedKv.getWindows(), keyBuffer);
+    PaneInfo.PaneInfoCoder.INSTANCE.encode(windowedKv.getPane(), keyBuffer);
+
+    int hash = keyBuffer.hash();
+    int mask = keys.length - 1;
+    int slot = hash & mask;
+    while (keys[slot] != null) {
+      if (hashes[slot] == hash && keyBuffer.contentEquals(keys[slot])) {
+        accumulators[slot] = combineFn.add(accumulators[slot], windowedKv.getValue().getValue());
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    keys[slot] = keyBuffer.toByteArray();
+    hashes[slot] = hash;
+    windowedKeys[slot] = windowedKv.withValue(key);
+    accumulators[slot] = combineFn.add(combineFn.identity(), windowedKv.getValue().getValue());
+    numEntries += 1;
+    size += keys[slot].length + PER_KEY_OVERHEAD;
+
+    if (size >= maxSize) {
+      flush(receiver);
+    } else if (numEntries > keys.length * MAX_LOAD) {
+      resize(keys.length * 2);
+    }
+  }
+
+  private void resize(int capacity) {
+    byte[][] oldKeys = keys;
+    int[] oldHashes = hashes;
+    long[] oldAccumulators = accumulators;
+    WindowedValue<K>[] oldWindowedKeys = windowedKeys;
+    allocate(capacity);
+    int mask = capacity - 1;
+    for (int i = 0; i < oldKeys.length; ++i) {
+      if (oldKeys[i] == null) {
+        continue;
+      }
+      int slot = oldHashes[i] & mask;
+      while (keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = oldKeys[i];
+      hashes[slot] = oldHashes[i];
+      accumulators[slot] = oldAccumulators[i];
+      windowedKeys[slot] = oldWindowedKeys[i];
+    }
+  }
+
+  /** Flushes all entries in this table to output. */
+  @Override
+  public void flush(Receiver output) throws Exception {
+    for (int i = 0; i < keys.length; ++i) {
+      if (keys[i] == null) {
+        continue;
+      }
+      WindowedValue<K> windowedKey = windowedKeys[i];
+      output.process(
+          windowedKey.withValue(
+              KV.of(windowedKey.getValue(), combineFn.toAccumulator(accumulators[i]))));
+    }
+    if (keys.length > INITIAL_CAPACITY) {
+      allocate(INITIAL_CAPACITY);
+    } else {
+      Arrays.fill(keys, null);
+      Arrays.fill(windowedKeys, null);
+    }
+    numEntries = 0;
+    size = 0;
+  }
+
+  @VisibleForTesting
+  long size() {
+    return size;
+  }
+
+  /** A reusable unsynchronized buffer for encoding grouping keys. */
+  private static class KeyBuffer extends OutputStream {
+    private byte[] buffer = new byte[64];
+    private int count;
+
+    void reset() {
+      count = 0;
+    }
+
+    @Override
+    public void write(int b) {
+      ensureCapacity(count + 1);
+      buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      ensureCapacity(count + len);
+      System.arraycopy(b, off, buffer, count, len);
+      count += len;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+      }
+    }
+
+    int hash() {
+      int hash = 1;
+      for (int i = 0; i < count; ++i) {
+        hash = 31 * hash + buffer[i];
+      }
+      // Spread the bits since the table uses the low bits to find a slot.
+      return hash ^ (hash >>> 16);
+    }
+
+    boolean contentEquals(byte[] other) {
+      if (other.length != count) {
+        return false;
+      }
+      for (int i = 0; i < count; ++i) {
+        if (other[i] != buffer[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, count);
+    }
+  }
+}
@@ -41,6 +41,7 @@ import java.util.function.Supplier;
 import org.apache.beam.fn.harness.BeamFnDataReadRunner;
 import org.apache.beam.fn.harness.Cache;
 import org.apache.beam.fn.harness.Caches;
+import org.apache.beam.fn.harness.OffHeapCache;
 import org.apache.beam.fn.harness.PTransformRunnerFactory;
 import org.apache.beam.fn.harness.PTransformRunnerFactory.Context;
 import org.apache.beam.fn.harness.PTransformRunnerFactory.ProgressRequestCallback;
@@ -85,6 +86,7 @@ import org.apache.beam.sdk.fn.data.TimerEndpoint;
 import org.apache.beam.sdk.function.ThrowingRunnable;
 import org.apache.beam.sdk.options.ExperimentalOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
 import org.apache.beam.sdk.options.StreamingOptions;
 import org.apache.beam.sdk.transforms.DoFn.BundleFinalizer;
 import org.apache.beam.sdk.util.WindowedValue;
@@ -101,6 +103,7 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Immutabl
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.SetMultimap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Sets;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -173,6 +176,8 @@ public class ProcessBundleHandler {
           BeamFnApi.StateKey,
           Map<CachingBeamFnStateClient.StateCacheKey, BeamFnApi.StateGetResponse>>
       stateCache;
+  private final @Nullable Cache<CachingBeamFnStateClient.StatePageKey, BeamFnApi.StateGetResponse>
+      statePageCache;
   private final FinalizeBundleHandler finalizeBundleHandler;
   private final ShortIdMap shortIds;
   private final boolean runnerAcceptsShortIds;
@@ -220,6 +225,14 @@ public class ProcessBundleHandler {
     this.beamFnDataClient = beamFnDataClient;
     this.beamFnStateGrpcClientCache = beamFnStateGrpcClientCache;
     this.stateCache = CacheBuilder.newBuilder().build(stateKeyMapCacheLoader);
+    int maxOffHeapCacheMemoryUsageMb =
+        options.as(SdkHarnessOptions.class).getMaxOffHeapCacheMemoryUsageMb();
+    this.statePageCache =
+        maxOffHeapCacheMemoryUsageMb > 0
+            ? new OffHeapCache<>(
+                CachingBeamFnStateClient.StateGetResponseCoder.of(),
+                maxOffHeapCacheMemoryUsageMb * 1024L * 1024L)
+            : null;
     this.finalizeBundleHandler = finalizeBundleHandler;
     this.shortIds = shortIds;
     this.runnerAcceptsShortIds =
@@ -676,7 +689,10 @@ public class ProcessBundleHandler {
                 options.as(StreamingOptions.class).isStreaming()
                     ? underlyingClient
                     : new CachingBeamFnStateClient(
-                        underlyingClient, stateCache, processBundleRequest.getCacheTokensList()));
+                        underlyingClient,
+                        stateCache,
+                        statePageCache,
+                        processBundleRequest.getCacheTokensList()));
       } else {
         beamFnStateClient = new BlockTillStateCallsFinish(underlyingClient);
       }
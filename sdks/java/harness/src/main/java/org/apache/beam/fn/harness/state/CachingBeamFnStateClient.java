@@ -18,10 +18,14 @@
 package org.apache.beam.fn.harness.state;
 
 import com.google.auto.value.AutoValue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import org.apache.beam.fn.harness.Cache;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleRequest.CacheToken;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateGetResponse;
@@ -31,20 +35,41 @@ import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey.MultimapKeysSideI
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey.MultimapSideInput;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateRequest;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateResponse;
+import org.apache.beam.sdk.coders.AtomicCoder;
+import org.apache.beam.sdk.coders.CoderException;
 import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.LoadingCache;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * Wraps a delegate BeamFnStateClient and stores the result of state requests in cross bundle cache
  * according to the available cache tokens. If there are no cache tokens for the state key requested
  * the request is forwarded to the client and executed normally.
+ *
+ * <p>An optional second tier {@link Cache}, such as an {@link
+ * org.apache.beam.fn.harness.OffHeapCache}, may be supplied to hold all pages except the final page
+ * of each state key. The final page remains in the on-heap cache since it is the only page that is
+ * invalidated when the state is appended to. The on-heap cache records a marker for every page held
+ * by the second tier, and only marked pages are read from it, so clearing a state key invalidates
+ * all of its pages even if the runner reuses continuation tokens.
  */
 public class CachingBeamFnStateClient implements BeamFnStateClient {
 
+  /**
+   * Stored within the on-heap cache in place of a page which is held by the second tier cache. It
+   * has a non-empty continuation token so that it is retained when the state is appended to.
+   */
+  private static final StateGetResponse PAGE_IN_SECOND_TIER =
+      StateGetResponse.newBuilder()
+          .setContinuationToken(
+              ByteString.copyFromUtf8(CachingBeamFnStateClient.class.getName() + "/page"))
+          .build();
+
   private final BeamFnStateClient beamFnStateClient;
   private final LoadingCache<StateKey, Map<StateCacheKey, StateGetResponse>> stateCache;
   private final Map<CacheToken.SideInput, ByteString> sideInputCacheTokens;
   private final ByteString userStateToken;
+  private final @Nullable Cache<StatePageKey, StateGetResponse> pageCache;
 
   /**
    * Creates a CachingBeamFnStateClient that wraps a BeamFnStateClient with a LoadingCache. Cache
@@ -54,8 +79,21 @@ public class CachingBeamFnStateClient implements BeamFnStateClient {
       BeamFnStateClient beamFnStateClient,
       LoadingCache<StateKey, Map<StateCacheKey, StateGetResponse>> stateCache,
       List<CacheToken> cacheTokenList) {
+    this(beamFnStateClient, stateCache, null, cacheTokenList);
+  }
+
+  /**
+   * Creates a CachingBeamFnStateClient that wraps a BeamFnStateClient with a LoadingCache and an
+   * optional second tier cache used to store all but the final page of each state key.
+   */
+  public CachingBeamFnStateClient(
+      BeamFnStateClient beamFnStateClient,
+      LoadingCache<StateKey, Map<StateCacheKey, StateGetResponse>> stateCache,
+      @Nullable Cache<StatePageKey, StateGetResponse> pageCache,
+      List<CacheToken> cacheTokenList) {
     this.beamFnStateClient = beamFnStateClient;
     this.stateCache = stateCache;
+    this.pageCache = pageCache;
     this.sideInputCacheTokens = new HashMap<>();
 
     // Set up cache tokens.
@@ -93,6 +131,10 @@ public class CachingBeamFnStateClient implements BeamFnStateClient {
             StateCacheKey.create(cacheToken, requestBuilder.getGet().getContinuationToken());
         Map<StateCacheKey, StateGetResponse> stateKeyMap = stateCache.getUnchecked(stateKey);
         StateGetResponse cachedPage = stateKeyMap.get(cacheKey);
+        if (pageCache != null && PAGE_IN_SECOND_TIER.equals(cachedPage)) {
+          // May have been evicted from the second tier, in which case it is fetched again.
+          cachedPage = pageCache.peek(StatePageKey.create(stateKey, cacheKey));
+        }
 
         // If data is not cached, add callback to add response to cache on completion.
         // Otherwise, complete the response with the cached data.
@@ -100,8 +142,7 @@ public class CachingBeamFnStateClient implements BeamFnStateClient {
         if (cachedPage == null) {
           response = beamFnStateClient.handle(requestBuilder);
           response.thenAccept(
-              stateResponse ->
-                  stateCache.getUnchecked(stateKey).put(cacheKey, stateResponse.getGet()));
+              stateResponse -> cachePage(stateKey, cacheKey, stateResponse.getGet()));
 
         } else {
           return CompletableFuture.completedFuture(
@@ -123,10 +164,19 @@ public class CachingBeamFnStateClient implements BeamFnStateClient {
       case CLEAR:
         // Remove all state key data and replace with an empty response.
         response = beamFnStateClient.handle(requestBuilder);
+        Map<StateCacheKey, StateGetResponse> previousData = stateCache.getIfPresent(stateKey);
         Map<StateCacheKey, StateGetResponse> clearedData = new HashMap<>();
         StateCacheKey newKey = StateCacheKey.create(cacheToken, ByteString.EMPTY);
         clearedData.put(newKey, StateGetResponse.getDefaultInstance());
         stateCache.put(stateKey, clearedData);
+        // The pages of the second tier are no longer marked and so unreachable, free them eagerly.
+        if (previousData != null && pageCache != null) {
+          for (Map.Entry<StateCacheKey, StateGetResponse> entry : previousData.entrySet()) {
+            if (PAGE_IN_SECOND_TIER.equals(entry.getValue())) {
+              pageCache.remove(StatePageKey.create(stateKey, entry.getKey()));
+            }
+          }
+        }
         return response;
 
       default:
@@ -135,6 +185,16 @@ public class CachingBeamFnStateClient implements BeamFnStateClient {
     }
   }
 
+  private void cachePage(StateKey stateKey, StateCacheKey cacheKey, StateGetResponse page) {
+    // Only the final page is invalidated by appends so it is always kept within the state cache.
+    if (pageCache == null || page.getContinuationToken().isEmpty()) {
+      stateCache.getUnchecked(stateKey).put(cacheKey, page);
+    } else {
+      pageCache.put(StatePageKey.create(stateKey, cacheKey), page);
+      stateCache.getUnchecked(stateKey).put(cacheKey, PAGE_IN_SECOND_TIER);
+    }
+  }
+
   private ByteString getCacheToken(BeamFnApi.StateKey stateKey) {
     if (stateKey.hasBagUserState()) {
       return userStateToken;
@@ -174,4 +234,41 @@ public class CachingBeamFnStateClient implements BeamFnStateClient {
       return new AutoValue_CachingBeamFnStateClient_StateCacheKey(cacheToken, continuationToken);
     }
   }
+
+  /** A key for caching an individual page of a state key within a second tier cache. */
+  @AutoValue
+  public abstract static class StatePageKey {
+    public abstract StateKey getStateKey();
+
+    public abstract StateCacheKey getStateCacheKey();
+
+    static StatePageKey create(StateKey stateKey, StateCacheKey stateCacheKey) {
+      return new AutoValue_CachingBeamFnStateClient_StatePageKey(stateKey, stateCacheKey);
+    }
+  }
+
+  /** A {@link AtomicCoder} for {@link StateGetResponse}s allowing them to be stored encoded. */
+  public static class StateGetResponseCoder extends AtomicCoder<StateGetResponse> {
+    private static final StateGetResponseCoder INSTANCE = new StateGetResponseCoder();
+
+    public static StateGetResponseCoder of() {
+      return INSTANCE;
+    }
+
+    private StateGetResponseCoder() {}
+
+    @Override
+    public void encode(StateGetResponse value, OutputStream outStream) throws IOException {
+      value.writeDelimitedTo(outStream);
+    }
+
+    @Override
+    public StateGetResponse decode(InputStream inStream) throws IOException {
+      StateGetResponse value = StateGetResponse.parseDelimitedFrom(inStream);
+      if (value == null) {
+        throw new CoderException("Unexpected end of stream while decoding StateGetResponse.");
+      }
+      return value;
+    }
+  }
 }
@@ -26,9 +26,11 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import org.apache.beam.fn.harness.Cache;
+import org.apache.beam.fn.harness.Caches;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleRequest.CacheToken;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey;
 import org.apache.beam.runners.core.SideInputReader;
@@ -37,6 +39,7 @@ import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.coders.VoidCoder;
 import org.apache.beam.sdk.function.ThrowingRunnable;
 import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.MapState;
@@ -55,6 +58,7 @@ import org.apache.beam.sdk.transforms.Materializations;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
 import org.apache.beam.sdk.util.CombineFnUtil;
+import org.apache.beam.sdk.util.Weighted;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.apache.beam.sdk.values.TupleTag;
 import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
@@ -75,6 +79,8 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
   private final BeamFnStateClient beamFnStateClient;
   private final String ptransformId;
   private final Supplier<String> processBundleInstructionId;
+  private final Supplier<List<CacheToken>> cacheTokens;
+  private final Cache<?, ?> processWideCache;
   private final Collection<ThrowingRunnable> stateFinalizers;
 
   private final Supplier<BoundedWindow> currentWindowSupplier;
@@ -101,6 +107,8 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
     this.beamFnStateClient = beamFnStateClient;
     this.ptransformId = ptransformId;
     this.processBundleInstructionId = processBundleInstructionId;
+    this.cacheTokens = cacheTokens;
+    this.processWideCache = processWideCache;
     this.stateFinalizers = new ArrayList<>();
     this.currentWindowSupplier = currentWindowSupplier;
     this.encodedCurrentKeySupplier =
@@ -185,7 +193,8 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
                 ptransformId,
                 tag.getId(),
                 encodedWindow,
-                sideInputSpec.getCoder());
+                sideInputSpec.getCoder(),
+                pipelineOptions.as(SdkHarnessOptions.class).getStateReadAheadPages());
         break;
 
       case Materializations.MULTIMAP_MATERIALIZATION_URN:
@@ -200,15 +209,23 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
             .setTransformId(ptransformId)
             .setSideInputId(tag.getId())
             .setWindow(encodedWindow);
-        sideInputAccessor =
-            new MultimapSideInput<>(
-                beamFnStateClient,
-                processBundleInstructionId.get(),
-                ptransformId,
-                tag.getId(),
-                encodedWindow,
-                kvCoder.getKeyCoder(),
-                kvCoder.getValueCoder());
+        Optional<MultimapSideInputIndex> index =
+            getMultimapSideInputIndex(
+                cacheKeyBuilder.build(), tag.getId(), encodedWindow, kvCoder.getKeyCoder());
+        if (index.isPresent()) {
+          sideInputAccessor = index.get().asView(kvCoder.getKeyCoder(), kvCoder.getValueCoder());
+        } else {
+          sideInputAccessor =
+              new MultimapSideInput<>(
+                  beamFnStateClient,
+                  processBundleInstructionId.get(),
+                  ptransformId,
+                  tag.getId(),
+                  encodedWindow,
+                  kvCoder.getKeyCoder(),
+                  kvCoder.getValueCoder(),
+                  pipelineOptions.as(SdkHarnessOptions.class).getStateReadAheadPages());
+        }
         break;
 
       default:
@@ -228,6 +245,67 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
             cacheKeyBuilder.build(), key -> sideInputSpec.getViewFn().apply(sideInputAccessor));
   }
 
+  /**
+   * Returns the process wide index for the multimap side input if indexing is enabled and the
+   * runner supplied a cache token for the side input, materializing the index if necessary.
+   */
+  private Optional<MultimapSideInputIndex> getMultimapSideInputIndex(
+      StateKey stateKey, String sideInputId, ByteString encodedWindow, Coder<?> keyCoder) {
+    long maxSizeInBytes =
+        pipelineOptions.as(SdkHarnessOptions.class).getMaxMultimapSideInputIndexSizeMb()
+            * 1024L
+            * 1024L;
+    if (maxSizeInBytes <= 0) {
+      return Optional.empty();
+    }
+    ByteString cacheToken = null;
+    for (CacheToken token : cacheTokens.get()) {
+      if (token.hasSideInput()
+          && ptransformId.equals(token.getSideInput().getTransformId())
+          && sideInputId.equals(token.getSideInput().getSideInputId())) {
+        cacheToken = token.getToken();
+        break;
+      }
+    }
+    if (cacheToken == null) {
+      // Without a cache token the index could not be reused by later bundles.
+      return Optional.empty();
+    }
+    Cache<StateKey, CachedMultimapSideInputIndex> indexCache =
+        Caches.subCache(processWideCache, MultimapSideInputIndex.class, cacheToken);
+    return indexCache.computeIfAbsent(
+            stateKey,
+            key ->
+                new CachedMultimapSideInputIndex(
+                    MultimapSideInputIndex.materialize(
+                        beamFnStateClient,
+                        processBundleInstructionId.get(),
+                        ptransformId,
+                        sideInputId,
+                        encodedWindow,
+                        keyCoder,
+                        pipelineOptions.as(SdkHarnessOptions.class).getStateReadAheadPages(),
+                        maxSizeInBytes)))
+        .index;
+  }
+
+  /**
+   * The outcome of indexing a multimap side input, which is empty if the side input was too large.
+   * Weighs the direct memory of the index so that the process wide cache accounts for it.
+   */
+  private static class CachedMultimapSideInputIndex implements Weighted {
+    private final Optional<MultimapSideInputIndex> index;
+
+    private CachedMultimapSideInputIndex(Optional<MultimapSideInputIndex> index) {
+      this.index = index;
+    }
+
+    @Override
+    public long getWeight() {
+      return index.map(MultimapSideInputIndex::getWeight).orElse(0L);
+    }
+  }
+
   @Override
   public <T> boolean contains(PCollectionView<T> view) {
     return sideInputSpecMap.containsKey(view.getTagInternal());
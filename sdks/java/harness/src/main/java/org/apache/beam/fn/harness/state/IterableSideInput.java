@@ -37,6 +37,7 @@ public class IterableSideInput<T> implements IterableView<T> {
   private final String ptransformId;
   private final String sideInputId;
   private final ByteString encodedWindow;
+  private final int readAheadPages;
   private final Coder<T> valueCoder;
 
   public IterableSideInput(
@@ -46,12 +47,31 @@ public class IterableSideInput<T> implements IterableView<T> {
       String sideInputId,
       ByteString encodedWindow,
       Coder<T> valueCoder) {
+    this(
+        beamFnStateClient,
+        instructionId,
+        ptransformId,
+        sideInputId,
+        encodedWindow,
+        valueCoder,
+        1);
+  }
+
+  public IterableSideInput(
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      String ptransformId,
+      String sideInputId,
+      ByteString encodedWindow,
+      Coder<T> valueCoder,
+      int readAheadPages) {
     this.beamFnStateClient = beamFnStateClient;
     this.instructionId = instructionId;
     this.ptransformId = ptransformId;
     this.sideInputId = sideInputId;
     this.encodedWindow = encodedWindow;
     this.valueCoder = valueCoder;
+    this.readAheadPages = readAheadPages;
   }
 
   @Override
@@ -66,6 +86,6 @@ public class IterableSideInput<T> implements IterableView<T> {
         .setWindow(encodedWindow);
 
     return StateFetchingIterators.readAllAndDecodeStartingFrom(
-        beamFnStateClient, requestBuilder.build(), valueCoder);
+        beamFnStateClient, requestBuilder.build(), valueCoder, readAheadPages);
   }
 }
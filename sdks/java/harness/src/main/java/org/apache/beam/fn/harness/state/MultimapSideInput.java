@@ -39,6 +39,7 @@ public class MultimapSideInput<K, V> implements MultimapView<K, V> {
   private final String ptransformId;
   private final String sideInputId;
   private final ByteString encodedWindow;
+  private final int readAheadPages;
   private final Coder<K> keyCoder;
   private final Coder<V> valueCoder;
 
@@ -50,6 +51,26 @@ public class MultimapSideInput<K, V> implements MultimapView<K, V> {
       ByteString encodedWindow,
       Coder<K> keyCoder,
       Coder<V> valueCoder) {
+    this(
+        beamFnStateClient,
+        instructionId,
+        ptransformId,
+        sideInputId,
+        encodedWindow,
+        keyCoder,
+        valueCoder,
+        1);
+  }
+
+  public MultimapSideInput(
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      String ptransformId,
+      String sideInputId,
+      ByteString encodedWindow,
+      Coder<K> keyCoder,
+      Coder<V> valueCoder,
+      int readAheadPages) {
     this.beamFnStateClient = beamFnStateClient;
     this.instructionId = instructionId;
     this.ptransformId = ptransformId;
@@ -57,6 +78,7 @@ public class MultimapSideInput<K, V> implements MultimapView<K, V> {
     this.encodedWindow = encodedWindow;
     this.keyCoder = keyCoder;
     this.valueCoder = valueCoder;
+    this.readAheadPages = readAheadPages;
   }
 
   @Override
@@ -71,7 +93,7 @@ public class MultimapSideInput<K, V> implements MultimapView<K, V> {
         .setWindow(encodedWindow);
 
     return StateFetchingIterators.readAllAndDecodeStartingFrom(
-        beamFnStateClient, requestBuilder.build(), keyCoder);
+        beamFnStateClient, requestBuilder.build(), keyCoder, readAheadPages);
   }
 
   @Override
@@ -94,6 +116,6 @@ public class MultimapSideInput<K, V> implements MultimapView<K, V> {
         .setKey(output.toByteString());
 
     return StateFetchingIterators.readAllAndDecodeStartingFrom(
-        beamFnStateClient, requestBuilder.build(), valueCoder);
+        beamFnStateClient, requestBuilder.build(), valueCoder, readAheadPages);
   }
 }
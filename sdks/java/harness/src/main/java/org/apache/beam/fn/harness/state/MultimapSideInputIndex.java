@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateRequest;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.fn.stream.DataStreams.DataStreamDecoder;
+import org.apache.beam.sdk.fn.stream.PrefetchableIterator;
+import org.apache.beam.sdk.fn.stream.PrefetchableIterators;
+import org.apache.beam.sdk.transforms.Materializations.MultimapView;
+import org.apache.beam.sdk.util.Weighted;
+import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.UnsafeByteOperations;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.github.jamm.Unmetered;
+
+/**
+ * An immutable index over all the keys and values of a multimap side input for a single window.
+ *
+ * <p>The index is materialized once by reading every key and its values over the Beam Fn State API
+ * and afterwards answers lookups locally without any state requests. Keys and their values are
+ * stored in their encoded form within direct (off-heap) memory. The Java heap only holds a hash
+ * table and a few primitive arrays describing where each entry is located, so lookups by encoded
+ * key bytes are O(1) and touch a small number of contiguous arrays.
+ *
+ * <p>Since the index is immutable once built it may be shared by all bundles and {@link
+ * org.apache.beam.sdk.transforms.DoFn} instances which use the same side input cache token. Its
+ * {@link #getWeight weight} is the direct memory it holds, so that a cache measuring the heap can
+ * account for it.
+ */
+@ThreadSafe
+@SuppressWarnings({
+  "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
+})
+public class MultimapSideInputIndex implements Weighted {
+
+  // The number of keys whose values are fetched concurrently while materializing the index.
+  private static final int MAX_OUTSTANDING_KEYS = 100;
+  private static final int INITIAL_SEGMENT_SIZE = 1 << 20;
+  private static final int MAX_SEGMENT_SIZE = 64 << 20;
+
+  /**
+   * Reads all the keys and values of the specified multimap side input and indexes them.
+   *
+   * @return the index or {@link Optional#empty()} if the encoded keys and values exceed {@code
+   *     maxSizeInBytes}.
+   */
+  public static <K> Optional<MultimapSideInputIndex> materialize(
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      String ptransformId,
+      String sideInputId,
+      ByteString encodedWindow,
+      Coder<K> keyCoder,
+      int readAheadPages,
+      long maxSizeInBytes) {
+    StateRequest.Builder keysRequest = StateRequest.newBuilder();
+    keysRequest
+        .setInstructionId(instructionId)
+        .getStateKeyBuilder()
+        .getMultimapKeysSideInputBuilder()
+        .setTransformId(ptransformId)
+        .setSideInputId(sideInputId)
+        .setWindow(encodedWindow);
+
+    Iterable<K> keys =
+        StateFetchingIterators.readAllAndDecodeStartingFrom(
+            beamFnStateClient, keysRequest.build(), keyCoder, readAheadPages);
+
+    Builder builder = new Builder(sideInputId, maxSizeInBytes);
+    // Fetch the values for several keys at once so that the round trips overlap.
+    Deque<ByteString> outstandingKeys = new ArrayDeque<>();
+    Deque<PrefetchableIterator<ByteString>> outstandingValues = new ArrayDeque<>();
+    for (K key : keys) {
+      ByteString encodedKey = encodeKey(keyCoder, key, sideInputId);
+      StateRequest.Builder valuesRequest = StateRequest.newBuilder();
+      valuesRequest
+          .setInstructionId(instructionId)
+          .getStateKeyBuilder()
+          .getMultimapSideInputBuilder()
+          .setTransformId(ptransformId)
+          .setSideInputId(sideInputId)
+          .setWindow(encodedWindow)
+          .setKey(encodedKey);
+      PrefetchableIterator<ByteString> values =
+          StateFetchingIterators.readAllStartingFrom(
+              beamFnStateClient, valuesRequest.build(), readAheadPages);
+      values.prefetch();
+      outstandingKeys.addLast(encodedKey);
+      outstandingValues.addLast(values);
+
+      if (outstandingKeys.size() >= MAX_OUTSTANDING_KEYS
+          && !builder.add(outstandingKeys.removeFirst(), outstandingValues.removeFirst())) {
+        return Optional.empty();
+      }
+    }
+    while (!outstandingKeys.isEmpty()) {
+      if (!builder.add(outstandingKeys.removeFirst(), outstandingValues.removeFirst())) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(builder.build());
+  }
+
+  private static <K> ByteString encodeKey(Coder<K> keyCoder, K key, String sideInputId) {
+    ByteString.Output output = ByteString.newOutput();
+    try {
+      keyCoder.encode(key, output);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          String.format("Failed to encode key %s for side input id %s.", key, sideInputId), e);
+    }
+    return output.toByteString();
+  }
+
+  // Direct buffers holding the encoded key followed by the concatenated encoded values of each
+  // entry. An entry never spans segments. They are not measured when weighing cache entries since
+  // the memory is off-heap and is reported by getWeight() instead.
+  @Unmetered private final ByteBuffer[] segments;
+  private final long directMemoryBytes;
+  // Per entry columns, indexed by the entry number in the order the keys were read.
+  private final int[] hashes;
+  private final int[] entrySegments;
+  private final int[] offsets;
+  private final int[] keyLengths;
+  private final int[] valuesLengths;
+  // An open addressing hash table with linear probing storing the entry number plus one.
+  private final int[] table;
+  private final long sizeInBytes;
+  private final String sideInputId;
+
+  private MultimapSideInputIndex(
+      String sideInputId,
+      ByteBuffer[] segments,
+      int[] hashes,
+      int[] entrySegments,
+      int[] offsets,
+      int[] keyLengths,
+      int[] valuesLengths,
+      int[] table,
+      long sizeInBytes) {
+    this.sideInputId = sideInputId;
+    this.segments = segments;
+    long directMemoryBytes = 0;
+    for (ByteBuffer segment : segments) {
+      directMemoryBytes += segment.capacity();
+    }
+    this.directMemoryBytes = directMemoryBytes;
+    this.hashes = hashes;
+    this.entrySegments = entrySegments;
+    this.offsets = offsets;
+    this.keyLengths = keyLengths;
+    this.valuesLengths = valuesLengths;
+    this.table = table;
+    this.sizeInBytes = sizeInBytes;
+  }
+
+  /** Returns the number of keys within the index. */
+  public int size() {
+    return hashes.length;
+  }
+
+  /** Returns the number of bytes of direct memory used by the encoded keys and values. */
+  public long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /** Returns the number of bytes of direct memory allocated by this index. */
+  @Override
+  public long getWeight() {
+    return directMemoryBytes;
+  }
+
+  /** Returns the concatenated encoded values for the encoded key or {@code null} if absent. */
+  @VisibleForTesting
+  ByteString getEncodedValues(ByteString encodedKey) {
+    int entry = find(encodedKey);
+    if (entry < 0) {
+      return null;
+    }
+    return slice(entry, keyLengths[entry], valuesLengths[entry]);
+  }
+
+  /** Returns a {@link MultimapView} which decodes keys and values from this index. */
+  public <K, V> MultimapView<K, V> asView(Coder<K> keyCoder, Coder<V> valueCoder) {
+    return new View<>(keyCoder, valueCoder);
+  }
+
+  private int find(ByteString encodedKey) {
+    int hash = hash(encodedKey);
+    int mask = table.length - 1;
+    for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+      int entry = table[slot] - 1;
+      if (hashes[entry] == hash
+          && keyLengths[entry] == encodedKey.size()
+          && slice(entry, 0, keyLengths[entry]).equals(encodedKey)) {
+        return entry;
+      }
+    }
+    return -1;
+  }
+
+  /** Wraps a region of an entry without copying it out of direct memory. */
+  private ByteString slice(int entry, int position, int length) {
+    ByteBuffer buffer = segments[entrySegments[entry]].duplicate();
+    buffer.position(offsets[entry] + position);
+    buffer.limit(offsets[entry] + position + length);
+    return UnsafeByteOperations.unsafeWrap(buffer.slice());
+  }
+
+  private static int hash(ByteString encodedKey) {
+    // Spread the bits since the table size is a power of two.
+    int hash = encodedKey.hashCode() * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private class View<K, V> implements MultimapView<K, V> {
+    private final Coder<K> keyCoder;
+    private final Coder<V> valueCoder;
+
+    private View(Coder<K> keyCoder, Coder<V> valueCoder) {
+      this.keyCoder = keyCoder;
+      this.valueCoder = valueCoder;
+    }
+
+    @Override
+    public Iterable<K> get() {
+      return () -> new DataStreamDecoder<>(keyCoder, new EncodedKeyIterator());
+    }
+
+    @Override
+    public Iterable<V> get(K k) {
+      ByteString encodedValues = getEncodedValues(encodeKey(keyCoder, k, sideInputId));
+      if (encodedValues == null) {
+        return Collections.emptyList();
+      }
+      return () ->
+          new DataStreamDecoder<>(valueCoder, PrefetchableIterators.fromArray(encodedValues));
+    }
+  }
+
+  /** Iterates over the encoded keys of all entries in the order they were read. */
+  private class EncodedKeyIterator implements PrefetchableIterator<ByteString> {
+    private int entry;
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void prefetch() {}
+
+    @Override
+    public boolean hasNext() {
+      return entry < size();
+    }
+
+    @Override
+    public ByteString next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int current = entry++;
+      return slice(current, 0, keyLengths[current]);
+    }
+  }
+
+  /** Accumulates entries into direct memory segments and the per entry columns. */
+  private static class Builder {
+    private final String sideInputId;
+    private final long maxSizeInBytes;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer currentSegment;
+    private int[] hashes = new int[16];
+    private int[] entrySegments = new int[16];
+    private int[] offsets = new int[16];
+    private int[] keyLengths = new int[16];
+    private int[] valuesLengths = new int[16];
+    private int numEntries;
+    private long sizeInBytes;
+
+    private Builder(String sideInputId, long maxSizeInBytes) {
+      this.sideInputId = sideInputId;
+      this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /** Adds the entry returning {@code false} if the index would exceed its maximum size. */
+    private boolean add(ByteString encodedKey, Iterator<ByteString> encodedValues) {
+      List<ByteString> pages = new ArrayList<>();
+      long entrySize = encodedKey.size();
+      while (encodedValues.hasNext()) {
+        ByteString page = encodedValues.next();
+        pages.add(page);
+        entrySize += page.size();
+      }
+      sizeInBytes += entrySize;
+      if (sizeInBytes > maxSizeInBytes || entrySize > Integer.MAX_VALUE) {
+        return false;
+      }
+
+      if (currentSegment == null || currentSegment.remaining() < entrySize) {
+        long segmentSize =
+            currentSegment == null
+                ? INITIAL_SEGMENT_SIZE
+                : Math.min(MAX_SEGMENT_SIZE, currentSegment.capacity() * 2L);
+        // Avoid reserving more direct memory than the whole index may use.
+        segmentSize = Math.max(Math.min(segmentSize, maxSizeInBytes - sizeInBytes), 0) + entrySize;
+        currentSegment = ByteBuffer.allocateDirect((int) Math.min(segmentSize, Integer.MAX_VALUE));
+        segments.add(currentSegment);
+      }
+
+      if (numEntries == hashes.length) {
+        int newLength = hashes.length * 2;
+        hashes = Arrays.copyOf(hashes, newLength);
+        entrySegments = Arrays.copyOf(entrySegments, newLength);
+        offsets = Arrays.copyOf(offsets, newLength);
+        keyLengths = Arrays.copyOf(keyLengths, newLength);
+        valuesLengths = Arrays.copyOf(valuesLengths, newLength);
+      }
+      hashes[numEntries] = hash(encodedKey);
+      entrySegments[numEntries] = segments.size() - 1;
+      offsets[numEntries] = currentSegment.position();
+      keyLengths[numEntries] = encodedKey.size();
+      valuesLengths[numEntries] = (int) entrySize - encodedKey.size();
+      numEntries += 1;
+
+      encodedKey.copyTo(currentSegment);
+      for (ByteString page : pages) {
+        page.copyTo(currentSegment);
+      }
+      return true;
+    }
+
+    private MultimapSideInputIndex build() {
+      // Keep the load factor at or below one half.
+      int tableSize = Integer.highestOneBit(Math.max(1, numEntries) * 2 - 1) << 1;
+      int[] table = new int[tableSize];
+      int mask = tableSize - 1;
+      for (int entry = 0; entry < numEntries; ++entry) {
+        int slot = hashes[entry] & mask;
+        while (table[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = entry + 1;
+      }
+      return new MultimapSideInputIndex(
+          sideInputId,
+          segments.toArray(new ByteBuffer[0]),
+          Arrays.copyOf(hashes, numEntries),
+          Arrays.copyOf(entrySegments, numEntries),
+          Arrays.copyOf(offsets, numEntries),
+          Arrays.copyOf(keyLengths, numEntries),
+          Arrays.copyOf(valuesLengths, numEntries),
+          table,
+          sizeInBytes);
+    }
+  }
+}
@@ -64,6 +64,7 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
 
   private final transient BeamFnStateClient beamFnStateClient;
   private final org.apache.beam.sdk.coders.Coder<T> elemCoder;
+  private final int readAheadPages;
   @VisibleForTesting final StateRequest request;
   @VisibleForTesting final List<T> prefix;
 
@@ -73,8 +74,19 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
       ByteString runnerKey,
       org.apache.beam.sdk.coders.Coder<T> elemCoder,
       List<T> prefix) {
+    this(beamFnStateClient, instructionId, runnerKey, elemCoder, prefix, 1);
+  }
+
+  public StateBackedIterable(
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      ByteString runnerKey,
+      org.apache.beam.sdk.coders.Coder<T> elemCoder,
+      List<T> prefix,
+      int readAheadPages) {
     this.beamFnStateClient = beamFnStateClient;
     this.elemCoder = elemCoder;
+    this.readAheadPages = readAheadPages;
 
     StateRequest.Builder requestBuilder = StateRequest.newBuilder();
     requestBuilder
@@ -91,7 +103,9 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
     return Iterators.concat(
         prefix.iterator(),
         new DataStreams.DataStreamDecoder(
-            elemCoder, StateFetchingIterators.readAllStartingFrom(beamFnStateClient, request)));
+            elemCoder,
+            StateFetchingIterators.readAllStartingFrom(
+                beamFnStateClient, request, readAheadPages)));
   }
 
   protected Object writeReplace() throws ObjectStreamException {
@@ -107,14 +121,24 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
 
     private final BeamFnStateClient beamFnStateClient;
     private final Supplier<String> instructionId;
+    private final int readAheadPages;
 
     public Coder(
         BeamFnStateClient beamFnStateClient,
         Supplier<String> instructionId,
         org.apache.beam.sdk.coders.Coder<T> elemCoder) {
+      this(beamFnStateClient, instructionId, elemCoder, 1);
+    }
+
+    public Coder(
+        BeamFnStateClient beamFnStateClient,
+        Supplier<String> instructionId,
+        org.apache.beam.sdk.coders.Coder<T> elemCoder,
+        int readAheadPages) {
       super(elemCoder, "StateBackedIterable");
       this.beamFnStateClient = beamFnStateClient;
       this.instructionId = instructionId;
+      this.readAheadPages = readAheadPages;
     }
 
     @Override
@@ -129,7 +153,12 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
         long tokenLength = VarInt.decodeLong(in);
         ByteString token = ByteString.readFrom(ByteStreams.limit(in, tokenLength));
         return new StateBackedIterable<>(
-            beamFnStateClient, instructionId.get(), token, getElemCoder(), decodedElements);
+            beamFnStateClient,
+            instructionId.get(),
+            token,
+            getElemCoder(),
+            decodedElements,
+            readAheadPages);
       } else {
         throw new IllegalStateException(
             String.format(
@@ -177,6 +206,11 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
     BeamFnStateClient getStateClient();
 
     Supplier<String> getCurrentInstructionId();
+
+    /** The number of pages to fetch ahead when iterating over a {@link StateBackedIterable}. */
+    default int getStateReadAheadPages() {
+      return 1;
+    }
   }
 
   /** A {@link CoderTranslatorRegistrar} for {@code beam:coder:state_backed_iterable:v1}. */
@@ -221,7 +255,8 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
         return new StateBackedIterable.Coder<>(
             ((StateBackedIterableTranslationContext) context).getStateClient(),
             ((StateBackedIterableTranslationContext) context).getCurrentInstructionId(),
-            Iterables.getOnlyElement(components));
+            Iterables.getOnlyElement(components),
+            ((StateBackedIterableTranslationContext) context).getStateReadAheadPages());
       } else {
         throw new IllegalStateException(
             String.format(
@@ -17,6 +17,10 @@
  */
 package org.apache.beam.fn.harness.state;
 
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.concurrent.CompletableFuture;
@@ -57,7 +61,25 @@ public class StateFetchingIterators {
    */
   public static PrefetchableIterator<ByteString> readAllStartingFrom(
       BeamFnStateClient beamFnStateClient, StateRequest stateRequestForFirstChunk) {
-    return new LazyBlockingStateFetchingIterator(beamFnStateClient, stateRequestForFirstChunk);
+    return readAllStartingFrom(beamFnStateClient, stateRequestForFirstChunk, 1);
+  }
+
+  /**
+   * Like {@link #readAllStartingFrom(BeamFnStateClient, StateRequest)} but keeps up to {@code
+   * readAheadPages} chunks outstanding or buffered ahead of the consumer.
+   *
+   * <p>Since the continuation token for a chunk is only known once the previous chunk has been
+   * received, the requests are pipelined: each request is sent as soon as the response it depends
+   * on arrives instead of when the consumer reaches the end of the previous chunk.
+   *
+   * @param readAheadPages The maximum number of chunks to fetch ahead of the consumer, at least 1.
+   */
+  public static PrefetchableIterator<ByteString> readAllStartingFrom(
+      BeamFnStateClient beamFnStateClient,
+      StateRequest stateRequestForFirstChunk,
+      int readAheadPages) {
+    return new LazyBlockingStateFetchingIterator(
+        beamFnStateClient, stateRequestForFirstChunk, readAheadPages);
   }
 
   /**
@@ -79,7 +101,22 @@ public class StateFetchingIterators {
       BeamFnStateClient beamFnStateClient,
       StateRequest stateRequestForFirstChunk,
       Coder<T> valueCoder) {
-    return new FirstPageAndRemainder<>(beamFnStateClient, stateRequestForFirstChunk, valueCoder);
+    return readAllAndDecodeStartingFrom(
+        beamFnStateClient, stateRequestForFirstChunk, valueCoder, 1);
+  }
+
+  /**
+   * Like {@link #readAllAndDecodeStartingFrom(BeamFnStateClient, StateRequest, Coder)} but keeps
+   * up to {@code readAheadPages} pages after the first outstanding or buffered ahead of the
+   * consumer. See {@link #readAllStartingFrom(BeamFnStateClient, StateRequest, int)}.
+   */
+  public static <T> PrefetchableIterable<T> readAllAndDecodeStartingFrom(
+      BeamFnStateClient beamFnStateClient,
+      StateRequest stateRequestForFirstChunk,
+      Coder<T> valueCoder,
+      int readAheadPages) {
+    return new FirstPageAndRemainder<>(
+        beamFnStateClient, stateRequestForFirstChunk, valueCoder, readAheadPages);
   }
 
   /**
@@ -91,6 +128,7 @@ public class StateFetchingIterators {
     private final BeamFnStateClient beamFnStateClient;
     private final StateRequest stateRequestForFirstChunk;
     private final Coder<T> valueCoder;
+    private final int readAheadPages;
     private LazyCachingIteratorToIterable<T> firstPage;
     private CompletableFuture<StateResponse> firstPageResponseFuture;
     private ByteString continuationToken;
@@ -99,9 +137,18 @@ public class StateFetchingIterators {
         BeamFnStateClient beamFnStateClient,
         StateRequest stateRequestForFirstChunk,
         Coder<T> valueCoder) {
+      this(beamFnStateClient, stateRequestForFirstChunk, valueCoder, 1);
+    }
+
+    FirstPageAndRemainder(
+        BeamFnStateClient beamFnStateClient,
+        StateRequest stateRequestForFirstChunk,
+        Coder<T> valueCoder,
+        int readAheadPages) {
       this.beamFnStateClient = beamFnStateClient;
       this.stateRequestForFirstChunk = stateRequestForFirstChunk;
       this.valueCoder = valueCoder;
+      this.readAheadPages = readAheadPages;
     }
 
     @Override
@@ -150,7 +197,8 @@ public class StateFetchingIterators {
                                   .setGet(
                                       StateGetRequest.newBuilder()
                                           .setContinuationToken(continuationToken))
-                                  .build())));
+                                  .build(),
+                              readAheadPages)));
             }
           }
         }
@@ -218,44 +266,83 @@ public class StateFetchingIterators {
    * An {@link Iterator} which fetches {@link ByteString} chunks using the State API.
    *
    * <p>This iterator will only request a chunk on first access. Subsequently it eagerly pre-fetches
-   * one future chunk at a time.
+   * up to {@code readAheadPages} future chunks. Each request needs the continuation token of the
+   * previous response so requests are only ever sent from the consuming thread, when it observes
+   * that response has arrived, and never from the thread which completes the response.
    */
   @VisibleForTesting
   static class LazyBlockingStateFetchingIterator implements PrefetchableIterator<ByteString> {
 
     private final BeamFnStateClient beamFnStateClient;
     private final StateRequest stateRequestForFirstChunk;
+    private final int readAheadPages;
     private boolean moreToRead;
     private ByteString continuationToken;
-    private CompletableFuture<StateResponse> prefetchedResponse;
+    // The responses for the chunks following continuationToken, in order.
+    private final Deque<CompletableFuture<StateResponse>> prefetchedResponses;
 
     LazyBlockingStateFetchingIterator(
         BeamFnStateClient beamFnStateClient, StateRequest stateRequestForFirstChunk) {
+      this(beamFnStateClient, stateRequestForFirstChunk, 1);
+    }
+
+    LazyBlockingStateFetchingIterator(
+        BeamFnStateClient beamFnStateClient,
+        StateRequest stateRequestForFirstChunk,
+        int readAheadPages) {
+      checkArgument(
+          readAheadPages >= 1,
+          "Expected at least one page of read-ahead but got %s",
+          readAheadPages);
       this.moreToRead = true;
       this.beamFnStateClient = beamFnStateClient;
       this.stateRequestForFirstChunk = stateRequestForFirstChunk;
+      this.readAheadPages = readAheadPages;
       this.continuationToken = stateRequestForFirstChunk.getGet().getContinuationToken();
+      this.prefetchedResponses = new ArrayDeque<>(readAheadPages);
     }
 
     @Override
     public boolean isReady() {
-      if (prefetchedResponse == null) {
+      if (prefetchedResponses.isEmpty()) {
         return !moreToRead;
       }
-      return prefetchedResponse.isDone();
+      return prefetchedResponses.peekFirst().isDone();
     }
 
     @Override
     public void prefetch() {
-      if (moreToRead && prefetchedResponse == null) {
-        prefetchedResponse =
-            beamFnStateClient.handle(
-                stateRequestForFirstChunk
-                    .toBuilder()
-                    .setGet(StateGetRequest.newBuilder().setContinuationToken(continuationToken)));
+      if (moreToRead && prefetchedResponses.isEmpty()) {
+        prefetchedResponses.addLast(requestChunk(continuationToken));
+      }
+      readAhead();
+    }
+
+    /**
+     * Tops up the outstanding requests to {@code readAheadPages} chunks for as long as the last
+     * outstanding response has already arrived and supplies the continuation token of the next one.
+     */
+    private void readAhead() {
+      while (prefetchedResponses.size() < readAheadPages) {
+        CompletableFuture<StateResponse> last = prefetchedResponses.peekLast();
+        if (last == null || !last.isDone() || last.isCompletedExceptionally()) {
+          return;
+        }
+        ByteString token = last.join().getGet().getContinuationToken();
+        if (ByteString.EMPTY.equals(token)) {
+          return;
+        }
+        prefetchedResponses.addLast(requestChunk(token));
       }
     }
 
+    private CompletableFuture<StateResponse> requestChunk(ByteString token) {
+      return beamFnStateClient.handle(
+          stateRequestForFirstChunk
+              .toBuilder()
+              .setGet(StateGetRequest.newBuilder().setContinuationToken(token)));
+    }
+
     @Override
     public boolean hasNext() {
       return moreToRead;
@@ -270,7 +357,7 @@ public class StateFetchingIterators {
       prefetch();
       StateResponse stateResponse;
       try {
-        stateResponse = prefetchedResponse.get();
+        stateResponse = prefetchedResponses.removeFirst().get();
       } catch (InterruptedException e) {
         Thread.currentThread().interrupt();
         throw new IllegalStateException(e);
@@ -281,12 +368,12 @@ public class StateFetchingIterators {
         Throwables.throwIfUnchecked(e.getCause());
         throw new IllegalStateException(e.getCause());
       }
-      prefetchedResponse = null;
       continuationToken = stateResponse.getGet().getContinuationToken();
 
       // If the continuation token is empty, that means we have reached EOF.
       if (ByteString.EMPTY.equals(continuationToken)) {
         moreToRead = false;
+        prefetchedResponses.clear();
       } else {
         prefetch();
       }
@@ -25,6 +25,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
+import org.apache.beam.sdk.util.Weighted;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -52,6 +54,17 @@ public class CachesTest {
     testCache(Caches.fromOptions(PipelineOptionsFactory.create()));
   }
 
+  @Test
+  public void testDefaultCacheWeighsWeightedValues() {
+    SdkHarnessOptions options = PipelineOptionsFactory.as(SdkHarnessOptions.class);
+    options.setMaxCacheMemoryUsageMb(1);
+    Cache<String, Weighted> cache = Caches.fromOptions(options);
+    // The value is tiny on the heap but reports more memory than the cache may hold.
+    Weighted value = () -> 2L * 1024 * 1024;
+    cache.put("key", value);
+    assertNull(cache.peek("key"));
+  }
+
   @Test
   public void testSubCache() {
     testCache(Caches.subCache(Caches.eternal(), "prefix"));
@@ -578,6 +578,73 @@ public class FnApiDoFnRunnerTest implements Serializable {
       assertThat(mainOutputValues, empty());
     }
 
+    private static class TestBatchProcessingDoFn extends DoFn<String, String> {
+      @ProcessElement
+      public void processElement(ProcessContext context) {
+        throw new IllegalStateException("Expected elements to be processed in batches.");
+      }
+
+      @ProcessBatch
+      public void processBatch(ElementBatch<String, String> batch) {
+        for (int i = 0; i < batch.elements().size(); ++i) {
+          batch.output(i, batch.elements().get(i) + ":" + batch.timestamp(i).getMillis());
+        }
+      }
+    }
+
+    @Test
+    public void testProcessBatch() throws Exception {
+      Pipeline p = Pipeline.create();
+      PCollection<String> valuePCollection =
+          p.apply(Create.of("unused"))
+              .apply(Window.into(FixedWindows.of(Duration.standardMinutes(1))));
+      PCollection<String> outputPCollection =
+          valuePCollection.apply(TEST_TRANSFORM_ID, ParDo.of(new TestBatchProcessingDoFn()));
+
+      SdkComponents sdkComponents = SdkComponents.create(p.getOptions());
+      RunnerApi.Pipeline pProto = PipelineTranslation.toProto(p, sdkComponents, true);
+      String inputPCollectionId = sdkComponents.registerPCollection(valuePCollection);
+      String outputPCollectionId = sdkComponents.registerPCollection(outputPCollection);
+
+      RunnerApi.PTransform pTransform =
+          pProto.getComponents().getTransformsOrThrow(TEST_TRANSFORM_ID);
+
+      PTransformRunnerFactoryTestContext context =
+          PTransformRunnerFactoryTestContext.builder(TEST_TRANSFORM_ID, pTransform)
+              .processBundleInstructionId("57")
+              .pCollections(pProto.getComponents().getPcollectionsMap())
+              .coders(pProto.getComponents().getCodersMap())
+              .windowingStrategies(pProto.getComponents().getWindowingStrategiesMap())
+              .build();
+      List<WindowedValue<String>> mainOutputValues = new ArrayList<>();
+      context.addPCollectionConsumer(
+          outputPCollectionId,
+          (FnDataReceiver) (FnDataReceiver<WindowedValue<String>>) mainOutputValues::add,
+          StringUtf8Coder.of());
+
+      new FnApiDoFnRunner.Factory<>().createRunnerForPTransform(context);
+      Iterables.getOnlyElement(context.getStartBundleFunctions()).run();
+
+      FnDataReceiver<WindowedValue<?>> mainInput =
+          context.getPCollectionConsumer(inputPCollectionId);
+      IntervalWindow window = new IntervalWindow(new Instant(0L), Duration.standardMinutes(1));
+      mainInput.accept(
+          WindowedValue.of("X", new Instant(1L), window, PaneInfo.ON_TIME_AND_ONLY_FIRING));
+      mainInput.accept(
+          WindowedValue.of("Y", new Instant(2L), window, PaneInfo.ON_TIME_AND_ONLY_FIRING));
+      // Elements are buffered until the batch is full or the bundle finishes.
+      assertThat(mainOutputValues, empty());
+
+      Iterables.getOnlyElement(context.getFinishBundleFunctions()).run();
+      assertThat(
+          mainOutputValues,
+          contains(
+              WindowedValue.of("X:1", new Instant(1L), window, PaneInfo.ON_TIME_AND_ONLY_FIRING),
+              WindowedValue.of("Y:2", new Instant(2L), window, PaneInfo.ON_TIME_AND_ONLY_FIRING)));
+
+      Iterables.getOnlyElement(context.getTearDownFunctions()).run();
+    }
+
     private static class TestSideInputIsAccessibleForDownstreamCallersDoFn
         extends DoFn<String, Iterable<String>> {
       public static final String USER_COUNTER_NAME = "userCountedElems";
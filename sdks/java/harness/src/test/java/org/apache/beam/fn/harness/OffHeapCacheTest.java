@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.emptyIterable;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link OffHeapCache}. */
+@RunWith(JUnit4.class)
+public class OffHeapCacheTest {
+  @Test
+  public void testCache() {
+    Cache<String, String> cache = new OffHeapCache<>(StringUtf8Coder.of(), 1024);
+    assertNull(cache.peek("key1"));
+
+    // Test put
+    cache.put("key1", "value1");
+    assertEquals("value1", cache.peek("key1"));
+
+    // Test compute without load
+    assertEquals("value1", cache.computeIfAbsent("key1", (unused) -> "anotherValue"));
+    assertEquals("value1", cache.peek("key1"));
+
+    // Test compute with load
+    assertEquals("value2", cache.computeIfAbsent("key2", (unused) -> "value2"));
+    assertEquals("value2", cache.peek("key2"));
+
+    assertThat(cache.keys(), containsInAnyOrder("key1", "key2"));
+
+    // Test removal
+    cache.remove("key1");
+    assertNull(cache.peek("key1"));
+    assertEquals("value2", cache.peek("key2"));
+    assertThat(cache.keys(), containsInAnyOrder("key2"));
+
+    // Test clear
+    cache.clear();
+    assertNull(cache.peek("key1"));
+    assertNull(cache.peek("key2"));
+    assertThat(cache.keys(), is(emptyIterable()));
+  }
+
+  @Test
+  public void testWeightIncludesLengthPrefix() {
+    // Values are stored using the nested encoding of the coder.
+    OffHeapCache<String, String> cache = new OffHeapCache<>(StringUtf8Coder.of(), 1024, 1);
+    cache.put("key", "value");
+    assertEquals(6, cache.getWeightInBytes());
+  }
+
+  @Test
+  public void testValuesAreDecodedOnEachAccess() {
+    Cache<String, String> cache = new OffHeapCache<>(StringUtf8Coder.of(), 1024);
+    cache.put("key", "value");
+    assertNotSame(cache.peek("key"), cache.peek("key"));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    OffHeapCache<String, String> cache = new OffHeapCache<>(StringUtf8Coder.of(), 32, 1);
+    String value = Strings.repeat("a", 10);
+    cache.put("key1", value);
+    cache.put("key2", value);
+    // Access key1 so that key2 becomes the least recently used entry.
+    assertEquals(value, cache.peek("key1"));
+    cache.put("key3", value);
+
+    assertEquals(value, cache.peek("key1"));
+    assertNull(cache.peek("key2"));
+    assertEquals(value, cache.peek("key3"));
+    assertEquals(22, cache.getWeightInBytes());
+  }
+
+  @Test
+  public void testValueLargerThanCacheIsNotStored() {
+    OffHeapCache<String, String> cache = new OffHeapCache<>(StringUtf8Coder.of(), 10, 1);
+    cache.put("key1", Strings.repeat("a", 100));
+    assertNull(cache.peek("key1"));
+    assertEquals(0, cache.getWeightInBytes());
+
+    // The blocks taken while encoding the value have been returned.
+    cache.put("key2", "small");
+    assertEquals("small", cache.peek("key2"));
+    assertEquals(6, cache.getWeightInBytes());
+    assertEquals(10, cache.getAllocatedBytes());
+  }
+
+  @Test
+  public void testReplacingValueUpdatesWeight() {
+    OffHeapCache<String, String> cache = new OffHeapCache<>(StringUtf8Coder.of(), 1024, 1);
+    cache.put("key", "value");
+    cache.put("key", "longer value");
+    assertEquals("longer value", cache.peek("key"));
+    assertEquals(13, cache.getWeightInBytes());
+  }
+
+  @Test
+  public void testValueSpanningBlocks() {
+    OffHeapCache<String, String> cache = new OffHeapCache<>(StringUtf8Coder.of(), 1024, 4);
+    String value = Strings.repeat("abc", 33);
+    cache.put("key", value);
+    assertEquals(value, cache.peek("key"));
+    // The 100 bytes of the encoding occupy 25 blocks.
+    assertEquals(100, cache.getWeightInBytes());
+  }
+
+  @Test
+  public void testReusesBlocksOfEvictedValues() {
+    OffHeapCache<String, String> cache = new OffHeapCache<>(StringUtf8Coder.of(), 64, 4);
+    String value = Strings.repeat("a", 10);
+    for (int i = 0; i < 100; i++) {
+      cache.put("key" + i, value);
+      assertEquals(value, cache.peek("key" + i));
+    }
+    // Each value takes 3 blocks, so only the 5 most recent values fit within the 16 blocks.
+    assertThat(cache.keys(), containsInAnyOrder("key95", "key96", "key97", "key98", "key99"));
+    assertEquals(60, cache.getWeightInBytes());
+    assertEquals(64, cache.getAllocatedBytes());
+
+    cache.clear();
+    assertEquals(0, cache.getWeightInBytes());
+    cache.put("key", value);
+    assertEquals(value, cache.peek("key"));
+    // Direct memory is only allocated once and is reused afterwards.
+    assertEquals(64, cache.getAllocatedBytes());
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.beam.fn.harness;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.emptyArray;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.in;
 import static org.hamcrest.core.Is.is;
@@ -34,11 +35,17 @@ import org.apache.beam.fn.harness.PrecombineGroupingTable.Combiner;
 import org.apache.beam.fn.harness.PrecombineGroupingTable.GroupingKeyCreator;
 import org.apache.beam.fn.harness.PrecombineGroupingTable.SamplingSizeEstimator;
 import org.apache.beam.fn.harness.PrecombineGroupingTable.SizeEstimator;
+import org.apache.beam.fn.harness.PrecombineGroupingTable.SortedRunSpiller;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.values.KV;
 import org.hamcrest.Description;
 import org.hamcrest.TypeSafeDiagnosingMatcher;
 import org.hamcrest.collection.IsIterableContainingInAnyOrder;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -46,6 +53,8 @@ import org.junit.runners.JUnit4;
 @RunWith(JUnit4.class)
 public class PrecombineGroupingTableTest {
 
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
   private static class TestOutputReceiver implements Receiver {
     final List<Object> outputElems = new ArrayList<>();
 
@@ -121,6 +130,142 @@ public class PrecombineGroupingTableTest {
             KV.of("A", 1L), KV.of("B", 2L + 3), KV.of("C", 5000L + 4), KV.of("DDDD", 6L)));
   }
 
+  @Test
+  public void testSpillingGroupingTable() throws Exception {
+    SortedRunSpiller<String, Long> spiller =
+        new SortedRunSpiller<>(
+            tmpFolder.getRoot(),
+            (String key) -> CoderUtils.encodeToByteArray(StringUtf8Coder.of(), key),
+            StringUtf8Coder.of(),
+            VarLongCoder.of());
+    PrecombineGroupingTable<String, Integer, Long> table =
+        new PrecombineGroupingTable<>(
+            1000,
+            new IdentityGroupingKeyCreator(),
+            new KvPairInfo(),
+            new SummingCombiner(),
+            new StringPowerSizeEstimator(),
+            new IdentitySizeEstimator(),
+            spiller);
+
+    TestOutputReceiver receiver = new TestOutputReceiver();
+
+    table.put("A", 1, receiver);
+    table.put("B", 2, receiver);
+    table.put("C", 5000, receiver);
+    // The table is full but entries are spilled instead of being output.
+    assertThat(receiver.outputElems, empty());
+    assertEquals(1, spiller.getNumRuns());
+    assertEquals(0, table.size());
+
+    table.put("B", 3, receiver);
+    table.put("C", 4, receiver);
+    table.put("DDDD", 6, receiver);
+    assertThat(receiver.outputElems, empty());
+    assertEquals(2, spiller.getNumRuns());
+
+    table.put("A", 10, receiver);
+    table.flush(receiver);
+    // Values for the same key are combined across runs.
+    assertThat(
+        receiver.outputElems,
+        IsIterableContainingInAnyOrder.containsInAnyOrder(
+            KV.of("A", 1L + 10), KV.of("B", 2L + 3), KV.of("C", 5000L + 4), KV.of("DDDD", 6L)));
+    assertEquals(0, spiller.getNumRuns());
+    assertThat(tmpFolder.getRoot().listFiles(), emptyArray());
+  }
+
+  @Test
+  public void testSpillingGroupingTableWithoutSpilling() throws Exception {
+    SortedRunSpiller<String, Long> spiller =
+        new SortedRunSpiller<>(
+            tmpFolder.getRoot(),
+            (String key) -> CoderUtils.encodeToByteArray(StringUtf8Coder.of(), key),
+            StringUtf8Coder.of(),
+            VarLongCoder.of());
+    PrecombineGroupingTable<String, Integer, Long> table =
+        new PrecombineGroupingTable<>(
+            100_000_000L,
+            new IdentityGroupingKeyCreator(),
+            new KvPairInfo(),
+            new SummingCombiner(),
+            new StringPowerSizeEstimator(),
+            new IdentitySizeEstimator(),
+            spiller);
+
+    TestOutputReceiver receiver = new TestOutputReceiver();
+    table.put("A", 1, receiver);
+    table.put("A", 2, receiver);
+    table.flush(receiver);
+    assertThat(
+        receiver.outputElems, IsIterableContainingInAnyOrder.containsInAnyOrder(KV.of("A", 3L)));
+    assertEquals(0, spiller.getNumRuns());
+  }
+
+  @Test
+  public void testSpillingGroupingTableDiscard() throws Exception {
+    SortedRunSpiller<String, Long> spiller =
+        new SortedRunSpiller<>(
+            tmpFolder.getRoot(),
+            (String key) -> CoderUtils.encodeToByteArray(StringUtf8Coder.of(), key),
+            StringUtf8Coder.of(),
+            VarLongCoder.of());
+    PrecombineGroupingTable<String, Integer, Long> table =
+        new PrecombineGroupingTable<>(
+            1000,
+            new IdentityGroupingKeyCreator(),
+            new KvPairInfo(),
+            new SummingCombiner(),
+            new StringPowerSizeEstimator(),
+            new IdentitySizeEstimator(),
+            spiller);
+
+    TestOutputReceiver receiver = new TestOutputReceiver();
+    table.put("A", 1, receiver);
+    table.put("C", 5000, receiver);
+    table.put("B", 2, receiver);
+    assertEquals(1, spiller.getNumRuns());
+
+    // A failed bundle discards the table instead of flushing it.
+    table.discard();
+    assertThat(receiver.outputElems, empty());
+    assertEquals(0, table.size());
+    assertEquals(0, spiller.getNumRuns());
+    assertThat(tmpFolder.getRoot().listFiles(), emptyArray());
+  }
+
+  /** Sums the values of each key. */
+  private static class SummingCombiner implements Combiner<Object, Integer, Long, Long> {
+    @Override
+    public Long createAccumulator(Object key) {
+      return 0L;
+    }
+
+    @Override
+    public Long add(Object key, Long accumulator, Integer value) {
+      return accumulator + value;
+    }
+
+    @Override
+    public Long merge(Object key, Iterable<Long> accumulators) {
+      long sum = 0;
+      for (Long part : accumulators) {
+        sum += part;
+      }
+      return sum;
+    }
+
+    @Override
+    public Long compact(Object key, Long accumulator) {
+      return accumulator;
+    }
+
+    @Override
+    public Long extract(Object key, Long accumulator) {
+      return accumulator;
+    }
+  }
+
   ////////////////////////////////////////////////////////////////////////////
   // Tests for the sampling size estimator.
 
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.fn.harness.GroupingTable.Receiver;
+import org.apache.beam.fn.harness.PrimitivePrecombineGroupingTable.PrimitiveCombineFn;
+import org.apache.beam.sdk.coders.DoubleCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.transforms.Combine;
+import org.apache.beam.sdk.transforms.Count;
+import org.apache.beam.sdk.transforms.Max;
+import org.apache.beam.sdk.transforms.Mean;
+import org.apache.beam.sdk.transforms.Sum;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+import org.joda.time.Instant;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PrimitivePrecombineGroupingTable}. */
+@RunWith(JUnit4.class)
+@SuppressWarnings({
+  "rawtypes", // TODO(https://issues.apache.org/jira/browse/BEAM-10556)
+  "unchecked"
+})
+public class PrimitivePrecombineGroupingTableTest {
+
+  private static class TestOutputReceiver implements Receiver {
+    final List<WindowedValue<KV<String, Object>>> outputElems = new ArrayList<>();
+
+    @Override
+    public void process(Object elem) {
+      outputElems.add((WindowedValue<KV<String, Object>>) elem);
+    }
+  }
+
+  @Test
+  public void testSumLongs() throws Exception {
+    PrimitivePrecombineGroupingTable<String, Long, long[]> table =
+        new PrimitivePrecombineGroupingTable<>(
+            100_000_000L,
+            PrimitivePrecombineGroupingTable.forCombineFn(Sum.ofLongs()),
+            StringUtf8Coder.of(),
+            GlobalWindow.Coder.INSTANCE);
+    TestOutputReceiver receiver = new TestOutputReceiver();
+
+    table.put(WindowedValue.valueInGlobalWindow(KV.of("A", 1L)), receiver);
+    table.put(WindowedValue.valueInGlobalWindow(KV.of("B", 2L)), receiver);
+    table.put(WindowedValue.valueInGlobalWindow(KV.of("B", 3L)), receiver);
+    table.put(WindowedValue.valueInGlobalWindow(KV.of("A", 4L)), receiver);
+    assertThat(receiver.outputElems, empty());
+
+    table.flush(receiver);
+    Map<String, Long> sums = new HashMap<>();
+    for (WindowedValue<KV<String, Object>> output : receiver.outputElems) {
+      assertEquals(GlobalWindow.INSTANCE, output.getWindows().iterator().next());
+      sums.put(output.getValue().getKey(), ((long[]) output.getValue().getValue())[0]);
+    }
+    assertEquals(2, sums.size());
+    assertEquals(5L, (long) sums.get("A"));
+    assertEquals(5L, (long) sums.get("B"));
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  public void testGroupsByWindowAndPane() throws Exception {
+    PrimitivePrecombineGroupingTable<String, Long, long[]> table =
+        new PrimitivePrecombineGroupingTable<>(
+            100_000_000L,
+            PrimitivePrecombineGroupingTable.forCombineFn(Max.ofLongs()),
+            StringUtf8Coder.of(),
+            IntervalWindow.getCoder());
+    TestOutputReceiver receiver = new TestOutputReceiver();
+    IntervalWindow first = new IntervalWindow(new Instant(0), new Instant(10));
+    IntervalWindow second = new IntervalWindow(new Instant(10), new Instant(20));
+
+    table.put(
+        WindowedValue.of(KV.of("A", 1L), new Instant(1), first, PaneInfo.NO_FIRING), receiver);
+    table.put(
+        WindowedValue.of(KV.of("A", 7L), new Instant(2), first, PaneInfo.NO_FIRING), receiver);
+    table.put(
+        WindowedValue.of(KV.of("A", 3L), new Instant(11), second, PaneInfo.NO_FIRING), receiver);
+    table.put(
+        WindowedValue.of(KV.of("A", 5L), new Instant(12), second, PaneInfo.ON_TIME_AND_ONLY_FIRING),
+        receiver);
+    table.flush(receiver);
+
+    List<String> outputs = new ArrayList<>();
+    for (WindowedValue<KV<String, Object>> output : receiver.outputElems) {
+      outputs.add(
+          output.getWindows().iterator().next()
+              + "/"
+              + output.getPane().getTiming()
+              + "="
+              + ((long[]) output.getValue().getValue())[0]);
+    }
+    assertThat(
+        outputs,
+        containsInAnyOrder(first + "/UNKNOWN=7", second + "/UNKNOWN=3", second + "/ON_TIME=5"));
+  }
+
+  @Test
+  public void testFlushesWhenFull() throws Exception {
+    PrimitivePrecombineGroupingTable<String, Object, long[]> table =
+        new PrimitivePrecombineGroupingTable<>(
+            1000L,
+            (PrimitiveCombineFn) PrimitivePrecombineGroupingTable.forCombineFn(Count.combineFn()),
+            StringUtf8Coder.of(),
+            GlobalWindow.Coder.INSTANCE);
+    TestOutputReceiver receiver = new TestOutputReceiver();
+
+    // Insert enough distinct keys to both grow the table and exceed the size limit.
+    long total = 0;
+    for (int i = 0; i < 5000; ++i) {
+      table.put(WindowedValue.valueInGlobalWindow(KV.of("key" + (i % 2000), "value")), receiver);
+      total += 1;
+    }
+    assertThat(receiver.outputElems.isEmpty(), is(false));
+    table.flush(receiver);
+
+    long counted = 0;
+    for (WindowedValue<KV<String, Object>> output : receiver.outputElems) {
+      counted += ((long[]) output.getValue().getValue())[0];
+    }
+    assertEquals(total, counted);
+  }
+
+  @Test
+  public void testSumDoublesAndIntegers() throws Exception {
+    PrimitivePrecombineGroupingTable<String, Double, double[]> doubles =
+        new PrimitivePrecombineGroupingTable<>(
+            100_000_000L,
+            PrimitivePrecombineGroupingTable.forCombineFn(Sum.ofDoubles()),
+            StringUtf8Coder.of(),
+            GlobalWindow.Coder.INSTANCE);
+    TestOutputReceiver receiver = new TestOutputReceiver();
+    doubles.put(WindowedValue.valueInGlobalWindow(KV.of("A", 1.5)), receiver);
+    doubles.put(WindowedValue.valueInGlobalWindow(KV.of("A", -0.25)), receiver);
+    doubles.flush(receiver);
+    assertEquals(1, receiver.outputElems.size());
+    assertArrayEquals(
+        new double[] {1.25}, (double[]) receiver.outputElems.get(0).getValue().getValue(), 0.0);
+
+    PrimitivePrecombineGroupingTable<String, Integer, int[]> integers =
+        new PrimitivePrecombineGroupingTable<>(
+            100_000_000L,
+            PrimitivePrecombineGroupingTable.forCombineFn(Sum.ofIntegers()),
+            StringUtf8Coder.of(),
+            GlobalWindow.Coder.INSTANCE);
+    receiver = new TestOutputReceiver();
+    integers.put(WindowedValue.valueInGlobalWindow(KV.of("A", 3)), receiver);
+    integers.put(WindowedValue.valueInGlobalWindow(KV.of("A", 4)), receiver);
+    integers.flush(receiver);
+    assertEquals(1, receiver.outputElems.size());
+    assertArrayEquals(new int[] {7}, (int[]) receiver.outputElems.get(0).getValue().getValue());
+  }
+
+  @Test
+  public void testUnsupportedCombineFn() {
+    assertNull(PrimitivePrecombineGroupingTable.forCombineFn(Mean.<Long>of()));
+    assertNotNull(PrimitivePrecombineGroupingTable.forCombineFn(Count.combineFn()));
+    // A user subclass may override any method of the CombineFn, so it is not treated as primitive.
+    assertNull(
+        PrimitivePrecombineGroupingTable.forCombineFn(
+            new Combine.BinaryCombineLongFn() {
+              @Override
+              public long apply(long left, long right) {
+                return left + right;
+              }
+
+              @Override
+              public long identity() {
+                return 0;
+              }
+
+              @Override
+              public long[] addInput(long[] accumulator, Long input) {
+                return super.addInput(accumulator, input * 2);
+              }
+            }));
+    assertNull(
+        PrimitivePrecombineGroupingTable.combiningIfSupported(
+            PipelineOptionsFactory.create(),
+            Sum.ofLongs(),
+            DoubleCoder.of(),
+            GlobalWindow.Coder.INSTANCE));
+  }
+}
@@ -28,7 +28,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import org.apache.beam.fn.harness.OffHeapCache;
 import org.apache.beam.fn.harness.state.CachingBeamFnStateClient.StateCacheKey;
+import org.apache.beam.fn.harness.state.CachingBeamFnStateClient.StateGetResponseCoder;
+import org.apache.beam.fn.harness.state.CachingBeamFnStateClient.StatePageKey;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleRequest.CacheToken;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateAppendRequest;
@@ -44,6 +47,7 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheBuild
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheLoader;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.LoadingCache;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -114,6 +118,63 @@ public class CachingBeamFnStateClientTest {
     assertEquals(3, fakeClient.getCallCount());
   }
 
+  @Test
+  public void testCachingUserStateWithPageCache() throws Exception {
+    FakeBeamFnStateClient fakeClient =
+        new FakeBeamFnStateClient(ImmutableMap.of(key("A"), encode("A1", "A2", "A3")), 3);
+
+    cacheTokenList.add(userStateToken);
+
+    OffHeapCache<StatePageKey, StateGetResponse> pageCache =
+        new OffHeapCache<>(StateGetResponseCoder.of(), 1024 * 1024);
+    CachingBeamFnStateClient cachingClient =
+        new CachingBeamFnStateClient(fakeClient, stateCache, pageCache, cacheTokenList);
+
+    assertEquals(fakeClient.getData().get(key("A")), getALlDataForKey(key("A"), cachingClient));
+    assertEquals(3, fakeClient.getCallCount());
+    // Only the final page is kept within the on heap state cache.
+    assertEquals(1, pagesWithData(key("A")));
+    assertEquals(2, Iterables.size(pageCache.keys()));
+
+    assertEquals(fakeClient.getData().get(key("A")), getALlDataForKey(key("A"), cachingClient));
+    assertEquals(3, fakeClient.getCallCount());
+
+    // Appending only invalidates the final page.
+    appendToKey(key("A"), encode("A4"), cachingClient);
+    assertEquals(0, pagesWithData(key("A")));
+    assertEquals(2, Iterables.size(pageCache.keys()));
+    assertEquals(fakeClient.getData().get(key("A")), getALlDataForKey(key("A"), cachingClient));
+    assertEquals(6, fakeClient.getCallCount());
+
+    // Clearing makes the cached pages unreachable.
+    clearKey(key("A"), cachingClient);
+    assertEquals(ByteString.EMPTY, getALlDataForKey(key("A"), cachingClient));
+    assertEquals(7, fakeClient.getCallCount());
+    assertEquals(0, Iterables.size(pageCache.keys()));
+  }
+
+  @Test
+  public void testCacheClearWithPageCacheAndReusedContinuationTokens() throws Exception {
+    FakeBeamFnStateClient fakeClient =
+        new FakeBeamFnStateClient(ImmutableMap.of(key("A"), encode("A1", "A2", "A3")), 3);
+
+    cacheTokenList.add(userStateToken);
+
+    OffHeapCache<StatePageKey, StateGetResponse> pageCache =
+        new OffHeapCache<>(StateGetResponseCoder.of(), 1024 * 1024);
+    CachingBeamFnStateClient cachingClient =
+        new CachingBeamFnStateClient(fakeClient, stateCache, pageCache, cacheTokenList);
+    getALlDataForKey(key("A"), cachingClient);
+
+    // The fake client reuses its continuation tokens for the new pages of the state, which must
+    // not be answered with pages cached before the state was cleared.
+    clearKey(key("A"), cachingClient);
+    appendToKey(key("A"), encode("B1"), cachingClient);
+    appendToKey(key("A"), encode("B2"), cachingClient);
+    appendToKey(key("A"), encode("B3"), cachingClient);
+    assertEquals(encode("B1", "B2", "B3"), getALlDataForKey(key("A"), cachingClient));
+  }
+
   @Test
   public void testCachingIterableSideInput() throws Exception {
     StateKey iterableSideInput =
@@ -261,6 +322,13 @@ public class CachingBeamFnStateClientTest {
     assertEquals(4, fakeClient.getCallCount());
   }
 
+  /** Returns the number of pages of the state key holding data within the on heap cache. */
+  private long pagesWithData(StateKey key) {
+    return stateCache.getUnchecked(key).values().stream()
+        .filter(page -> !page.getData().isEmpty())
+        .count();
+  }
+
   private StateKey key(String id) throws IOException {
     return StateKey.newBuilder()
         .setBagUserState(
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.transforms.Materializations.MultimapView;
+import org.apache.beam.vendor.grpc.v1p36p0.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link MultimapSideInputIndex}. */
+@RunWith(JUnit4.class)
+public class MultimapSideInputIndexTest {
+  private static final ByteString ENCODED_WINDOW = ByteString.copyFromUtf8("encodedWindow");
+
+  @Test
+  public void testLookups() throws Exception {
+    FakeBeamFnStateClient fakeBeamFnStateClient =
+        new FakeBeamFnStateClient(
+            ImmutableMap.of(
+                keysKey(), encode("A", "B"),
+                key("A"), encode("A1", "A2", "A3"),
+                key("B"), encode("B1", "B2")),
+            3);
+
+    MultimapSideInputIndex index = materialize(fakeBeamFnStateClient, Long.MAX_VALUE).get();
+    int callCount = fakeBeamFnStateClient.getCallCount();
+    assertEquals(2, index.size());
+    assertEquals(encode("A", "B", "A1", "A2", "A3", "B1", "B2").size(), index.getSizeInBytes());
+
+    MultimapView<String, String> view = index.asView(StringUtf8Coder.of(), StringUtf8Coder.of());
+    assertArrayEquals(new String[] {"A", "B"}, Iterables.toArray(view.get(), String.class));
+    assertArrayEquals(
+        new String[] {"A1", "A2", "A3"}, Iterables.toArray(view.get("A"), String.class));
+    assertArrayEquals(new String[] {"B1", "B2"}, Iterables.toArray(view.get("B"), String.class));
+    assertArrayEquals(new String[] {}, Iterables.toArray(view.get("unknown"), String.class));
+    assertNull(index.getEncodedValues(encode("unknown")));
+    // Lookups are answered by the index without any further state requests.
+    assertEquals(callCount, fakeBeamFnStateClient.getCallCount());
+  }
+
+  @Test
+  public void testManyKeys() throws Exception {
+    Map<StateKey, ByteString> data = new HashMap<>();
+    ByteString.Output keys = ByteString.newOutput();
+    for (int i = 0; i < 1000; ++i) {
+      StringUtf8Coder.of().encode("key" + i, keys);
+      data.put(key("key" + i), encode("value" + i));
+    }
+    data.put(keysKey(), keys.toByteString());
+
+    MultimapSideInputIndex index =
+        materialize(new FakeBeamFnStateClient(data, 100), Long.MAX_VALUE).get();
+    assertEquals(1000, index.size());
+    MultimapView<String, String> view = index.asView(StringUtf8Coder.of(), StringUtf8Coder.of());
+    for (int i = 0; i < 1000; ++i) {
+      assertEquals("value" + i, Iterables.getOnlyElement(view.get("key" + i)));
+    }
+    assertEquals(1000, Iterables.size(view.get()));
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    MultimapSideInputIndex index =
+        materialize(new FakeBeamFnStateClient(ImmutableMap.of()), Long.MAX_VALUE).get();
+    assertEquals(0, index.size());
+    MultimapView<String, String> view = index.asView(StringUtf8Coder.of(), StringUtf8Coder.of());
+    assertTrue(Iterables.isEmpty(view.get()));
+    assertTrue(Iterables.isEmpty(view.get("unknown")));
+  }
+
+  @Test
+  public void testExceedsMaxSize() throws Exception {
+    FakeBeamFnStateClient fakeBeamFnStateClient =
+        new FakeBeamFnStateClient(
+            ImmutableMap.of(
+                keysKey(), encode("A", "B"),
+                key("A"), encode("A1", "A2", "A3"),
+                key("B"), encode("B1", "B2")));
+    assertFalse(materialize(fakeBeamFnStateClient, 10).isPresent());
+  }
+
+  private Optional<MultimapSideInputIndex> materialize(
+      BeamFnStateClient beamFnStateClient, long maxSizeInBytes) {
+    return MultimapSideInputIndex.materialize(
+        beamFnStateClient,
+        "instructionId",
+        "ptransformId",
+        "sideInputId",
+        ENCODED_WINDOW,
+        StringUtf8Coder.of(),
+        2,
+        maxSizeInBytes);
+  }
+
+  private StateKey keysKey() {
+    return StateKey.newBuilder()
+        .setMultimapKeysSideInput(
+            StateKey.MultimapKeysSideInput.newBuilder()
+                .setTransformId("ptransformId")
+                .setSideInputId("sideInputId")
+                .setWindow(ENCODED_WINDOW))
+        .build();
+  }
+
+  private StateKey key(String id) throws IOException {
+    return StateKey.newBuilder()
+        .setMultimapSideInput(
+            StateKey.MultimapSideInput.newBuilder()
+                .setTransformId("ptransformId")
+                .setSideInputId("sideInputId")
+                .setWindow(ENCODED_WINDOW)
+                .setKey(encode(id)))
+        .build();
+  }
+
+  private ByteString encode(String... values) throws IOException {
+    ByteString.Output out = ByteString.newOutput();
+    for (String value : values) {
+      StringUtf8Coder.of().encode(value, out);
+    }
+    return out.toByteString();
+  }
+}
@@ -20,12 +20,16 @@ package org.apache.beam.fn.harness.state;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.apache.beam.fn.harness.state.StateFetchingIterators.FirstPageAndRemainder;
@@ -199,6 +203,124 @@ public class StateFetchingIteratorsTest {
 
       assertEquals(Arrays.asList(expected), results);
     }
+
+    @Test
+    public void testReadAheadReturnsAllChunks() throws Exception {
+      ByteString[] expected = {
+        ByteString.copyFromUtf8("A"),
+        ByteString.EMPTY,
+        ByteString.copyFromUtf8("BC"),
+        ByteString.copyFromUtf8("DEF"),
+        ByteString.EMPTY
+      };
+      AtomicInteger callCount = new AtomicInteger();
+      PrefetchableIterator<ByteString> byteStrings =
+          StateFetchingIterators.readAllStartingFrom(
+              fakeStateClient(callCount, expected), StateRequest.getDefaultInstance(), 3);
+      List<ByteString> results = new ArrayList<>();
+      while (byteStrings.hasNext()) {
+        results.add(byteStrings.next());
+      }
+      assertEquals(Arrays.asList(expected), results);
+      assertEquals(expected.length, callCount.get());
+    }
+
+    @Test
+    public void testReadAheadPipelinesRequests() throws Exception {
+      List<ByteString> requestedTokens = new ArrayList<>();
+      List<CompletableFuture<StateResponse>> responses = new ArrayList<>();
+      BeamFnStateClient fakeStateClient =
+          requestBuilder -> {
+            requestedTokens.add(requestBuilder.getGet().getContinuationToken());
+            CompletableFuture<StateResponse> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+          };
+      PrefetchableIterator<ByteString> byteStrings =
+          new LazyBlockingStateFetchingIterator(
+              fakeStateClient, StateRequest.getDefaultInstance(), 3);
+
+      byteStrings.prefetch();
+      completeChunk(responses.get(0), "A", "1");
+      assertEquals(ByteString.copyFromUtf8("A"), byteStrings.next());
+      // Only the next chunk can be requested until its response supplies a continuation token.
+      assertEquals(2, responses.size());
+
+      // Completing a response does not send any request by itself, the consumer sends the request
+      // for the following chunk once it observes the response, up to the limit.
+      completeChunk(responses.get(1), "B", "2");
+      assertEquals(2, responses.size());
+      byteStrings.prefetch();
+      assertEquals(3, responses.size());
+      completeChunk(responses.get(2), "C", "3");
+      byteStrings.prefetch();
+      assertEquals(4, responses.size());
+      assertTrue(byteStrings.isReady());
+
+      assertEquals(ByteString.copyFromUtf8("B"), byteStrings.next());
+      completeChunk(responses.get(3), "D", "");
+      // The end of the stream has been reached so no further requests are made.
+      assertEquals(4, responses.size());
+      assertEquals(ByteString.copyFromUtf8("C"), byteStrings.next());
+      assertEquals(ByteString.copyFromUtf8("D"), byteStrings.next());
+      assertFalse(byteStrings.hasNext());
+      assertTrue(byteStrings.isReady());
+
+      assertEquals(
+          Arrays.asList(
+              ByteString.EMPTY,
+              ByteString.copyFromUtf8("1"),
+              ByteString.copyFromUtf8("2"),
+              ByteString.copyFromUtf8("3")),
+          requestedTokens);
+    }
+
+    @Test
+    public void testReadAheadRequestsFromConsumingThread() throws Exception {
+      int numChunks = 20;
+      ByteString[] expected = new ByteString[numChunks];
+      for (int i = 0; i < numChunks; ++i) {
+        expected[i] = ByteString.copyFromUtf8(Integer.toString(i));
+      }
+      BeamFnStateClient completedStateClient = fakeStateClient(new AtomicInteger(), expected);
+      List<Thread> requestingThreads = Collections.synchronizedList(new ArrayList<>());
+      ExecutorService responseExecutor = Executors.newSingleThreadExecutor();
+      try {
+        // Responses are completed on another thread like the inbound thread of the state channel.
+        BeamFnStateClient fakeStateClient =
+            requestBuilder -> {
+              requestingThreads.add(Thread.currentThread());
+              StateResponse response = completedStateClient.handle(requestBuilder).join();
+              return CompletableFuture.supplyAsync(() -> response, responseExecutor);
+            };
+        PrefetchableIterator<ByteString> byteStrings =
+            new LazyBlockingStateFetchingIterator(
+                fakeStateClient, StateRequest.getDefaultInstance(), 3);
+        List<ByteString> results = new ArrayList<>();
+        while (byteStrings.hasNext()) {
+          results.add(byteStrings.next());
+        }
+
+        assertEquals(Arrays.asList(expected), results);
+        assertEquals(numChunks, requestingThreads.size());
+        for (Thread requestingThread : requestingThreads) {
+          assertSame(Thread.currentThread(), requestingThread);
+        }
+      } finally {
+        responseExecutor.shutdownNow();
+      }
+    }
+
+    private static void completeChunk(
+        CompletableFuture<StateResponse> response, String data, String continuationToken) {
+      response.complete(
+          StateResponse.newBuilder()
+              .setGet(
+                  StateGetResponse.newBuilder()
+                      .setData(ByteString.copyFromUtf8(data))
+                      .setContinuationToken(ByteString.copyFromUtf8(continuationToken)))
+              .build());
+    }
   }
 
   @RunWith(JUnit4.class)